@@ -110,6 +110,11 @@ public class StockChangePoolsAction
             }
         } catch (final Exception e) {
             throw new MinerException(e);
+        } finally {
+            // The new conf may have changed the work mode
+            WorkModeCache.invalidate(
+                    ip,
+                    port);
         }
 
         return success;
@@ -10,6 +10,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
+import org.apache.http.HttpStatus;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -77,6 +78,13 @@ public class StockPowerModeStrategy
         boolean reallyHasErrors = hasErrors;
         Asic.PowerMode powerMode = Asic.PowerMode.NORMAL;
 
+        if (hashRate != 0) {
+            // Awake, so a later zero hash rate must be classified again
+            WorkModeCache.invalidate(
+                    this.ip,
+                    this.port);
+        }
+
         if (hasErrors && hashRate == 0D && boardCount > 0 && isSeer(values)) {
             reallyHasErrors = false;
             powerMode = Asic.PowerMode.SLEEPING;
@@ -94,29 +102,9 @@ public class StockPowerModeStrategy
             if ("254".equals(mode) || mode.contains("slowly")) {
                 powerMode = Asic.PowerMode.SLEEPING;
                 reallyHasErrors = false;
-            } else {
-                if (hashRate == 0) {
-                    try {
-                        final AtomicBoolean sleeping = new AtomicBoolean(false);
-                        Query.digestGet(
-                                this.ip,
-                                this.port,
-                                this.realm,
-                                "/cgi-bin/get_miner_conf.cgi",
-                                this.username,
-                                this.password,
-                                (code, s) ->
-                                        toSleepingIdentifier(context, s)
-                                                .ifPresent(ident -> sleeping.set(s.contains(ident))),
-                                this.applicationConfiguration.getReadSocketTimeout());
-                        if (sleeping.get()) {
-                            powerMode = Asic.PowerMode.SLEEPING;
-                            reallyHasErrors = false;
-                        }
-                    } catch (final Exception e) {
-                        // Ignore
-                    }
-                }
+            } else if (hashRate == 0 && isSleeping(values, context)) {
+                powerMode = Asic.PowerMode.SLEEPING;
+                reallyHasErrors = false;
             }
         }
 
@@ -157,16 +145,13 @@ public class StockPowerModeStrategy
     }
 
     /**
-     * Obtains the sleeping identifier from the provided context.
+     * Parses the miner's configuration.
      *
-     * @param context The context.
-     * @param rawConf The response parameters.
+     * @param rawConf The raw configuration.
      *
-     * @return The sleeping identifier.
+     * @return The configuration.
      */
-    private static Optional<String> toSleepingIdentifier(
-            final Context context,
-            final String rawConf) {
+    private static Map<String, Object> toConf(final String rawConf) {
         final Map<String, Object> conf = new HashMap<>();
         try {
             conf.putAll(
@@ -177,6 +162,20 @@ public class StockPowerModeStrategy
         } catch (final JsonProcessingException e) {
             // Ignore
         }
+        return conf;
+    }
+
+    /**
+     * Obtains the sleeping identifier from the provided context.
+     *
+     * @param context The context.
+     * @param conf    The configuration.
+     *
+     * @return The sleeping identifier.
+     */
+    private static Optional<String> toSleepingIdentifier(
+            final Context context,
+            final Map<String, Object> conf) {
         return context.getSimple(ContextKey.MINER_TYPE)
                 .map(s -> {
                     if (AntminerUtils.isNewGen(
@@ -190,4 +189,76 @@ public class StockPowerModeStrategy
                     }
                 });
     }
+
+    /**
+     * Obtains the uptime from the stats.
+     *
+     * @param stats The stats.
+     *
+     * @return The uptime, or <code>-1</code> if unknown.
+     */
+    private static long toUptime(final Map<String, String> stats) {
+        try {
+            return Long.parseLong(stats.getOrDefault("Elapsed", "-1"));
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Checks whether or not a miner that isn't hashing was put to sleep,
+     * reading its work mode only if it wasn't already classified since it
+     * last stopped hashing.
+     *
+     * @param values  The values.
+     * @param context The context.
+     *
+     * @return Whether or not the miner is sleeping.
+     */
+    private boolean isSleeping(
+            final Map<String, String> values,
+            final Context context) {
+        final long uptime = toUptime(values);
+        final Optional<WorkModeCache.WorkMode> cached =
+                WorkModeCache.get(
+                        this.ip,
+                        this.port,
+                        uptime);
+        if (cached.isPresent()) {
+            return cached.get().isSleeping();
+        }
+
+        final AtomicBoolean sleeping = new AtomicBoolean(false);
+        try {
+            Query.digestGet(
+                    this.ip,
+                    this.port,
+                    this.realm,
+                    "/cgi-bin/get_miner_conf.cgi",
+                    this.username,
+                    this.password,
+                    (code, s) -> {
+                        final Map<String, Object> conf = toConf(s);
+                        final Optional<String> identifier =
+                                toSleepingIdentifier(context, conf);
+                        identifier.ifPresent(ident -> sleeping.set(s.contains(ident)));
+                        // Only remember a conf that could be classified
+                        if (code == HttpStatus.SC_OK && identifier.isPresent()) {
+                            final Object workMode = conf.get("bitmain-work-mode");
+                            WorkModeCache.put(
+                                    this.ip,
+                                    this.port,
+                                    uptime,
+                                    sleeping.get(),
+                                    workMode != null
+                                            ? workMode.toString()
+                                            : null);
+                        }
+                    },
+                    this.applicationConfiguration.getReadSocketTimeout());
+        } catch (final Exception e) {
+            // Ignore
+        }
+        return sleeping.get();
+    }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package mn.foreman.antminer;
 
 import mn.foreman.cgminer.Context;
 import mn.foreman.cgminer.ContextKey;
+import mn.foreman.io.ConnectionFactory;
 import mn.foreman.model.ApplicationConfiguration;
 import mn.foreman.model.Miner;
 import mn.foreman.model.MinerID;
@@ -12,6 +13,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -69,7 +71,7 @@ public class VersionDecorator
     private final int webPort;
 
     /** When the next version query should be ran. */
-    private long nextQueryTime = System.currentTimeMillis();
+    private volatile long nextQueryTime = System.currentTimeMillis();
 
     /**
      * Constructor.
@@ -154,22 +156,29 @@ public class VersionDecorator
 
     @Override
     public MinerStats getStats() throws MinerException {
-        if (shouldQueryVersion()) {
-            updateType();
-        }
+        return toCurrentMiner().getStats();
+    }
 
-        final AntminerType currentType = this.type.get();
-        if (currentType != null) {
-            if (currentType.isBraiins()) {
-                return this.braiins.getStats();
-            } else if (currentType.isVnish()) {
-                return this.vnish.getStats();
-            } else {
-                return this.antminer.getStats();
+    @Override
+    public CompletableFuture<MinerStats> getStatsAsync() {
+        // Resolving the type may make HTTP calls, so it's kept off of the
+        // caller's thread
+        final CompletableFuture<Void> typeResolved =
+                shouldQueryVersion()
+                        ? CompletableFuture.runAsync(
+                        this::updateType,
+                        ConnectionFactory.getBlockingExecutor())
+                        : CompletableFuture.completedFuture(null);
+        return typeResolved.thenCompose(aVoid -> {
+            try {
+                return toTypedMiner().getStatsAsync();
+            } catch (final MinerException me) {
+                final CompletableFuture<MinerStats> failed =
+                        new CompletableFuture<>();
+                failed.completeExceptionally(me);
+                return failed;
             }
-        } else {
-            throw new MinerException("Failed to find antminer type");
-        }
+        });
     }
 
     /**
@@ -181,6 +190,42 @@ public class VersionDecorator
         return ((this.type.get() == null) || (this.nextQueryTime <= System.currentTimeMillis()));
     }
 
+    /**
+     * Determines the miner to use for the current firmware, updating the type
+     * if it's time to check it again.
+     *
+     * @return The miner for the current firmware.
+     *
+     * @throws MinerException if the firmware type couldn't be determined.
+     */
+    private Miner toCurrentMiner() throws MinerException {
+        if (shouldQueryVersion()) {
+            updateType();
+        }
+        return toTypedMiner();
+    }
+
+    /**
+     * Determines the miner to use for the last known firmware.
+     *
+     * @return The miner for the firmware.
+     *
+     * @throws MinerException if the firmware type isn't known.
+     */
+    private Miner toTypedMiner() throws MinerException {
+        final AntminerType currentType = this.type.get();
+        if (currentType != null) {
+            if (currentType.isBraiins()) {
+                return this.braiins;
+            } else if (currentType.isVnish()) {
+                return this.vnish;
+            } else {
+                return this.antminer;
+            }
+        }
+        throw new MinerException("Failed to find antminer type");
+    }
+
     /** Updates the type. */
     private void updateType() {
         AntminerUtils.getType(
@@ -0,0 +1,162 @@
+package mn.foreman.antminer;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link WorkModeCache} remembers the work mode that was read from each stock
+ * Antminer's <code>get_miner_conf.cgi</code> while it wasn't hashing, so that
+ * a miner that's intentionally sleeping isn't asked again on every poll.
+ *
+ * <p>A classification is only reused while the miner hasn't restarted (its
+ * uptime hasn't gone backwards).  It must be {@link #invalidate(String, int)
+ * invalidated} once the miner is hashing again, and by actions that rewrite
+ * a miner's configuration.
+ * Every classification also expires after {@link #MAX_AGE_MINUTES}, in case
+ * the work mode was changed outside of the pickaxe.</p>
+ */
+class WorkModeCache {
+
+    /** The most minutes that a classification is reused for. */
+    private static final long MAX_AGE_MINUTES = 10;
+
+    /** The classifications, keyed by miner. */
+    private static final Cache<String, WorkMode> WORK_MODES =
+            CacheBuilder
+                    .newBuilder()
+                    .expireAfterWrite(MAX_AGE_MINUTES, TimeUnit.MINUTES)
+                    .build();
+
+    /**
+     * Constructor.
+     *
+     * Note: intentionally hidden.
+     */
+    private WorkModeCache() {
+        // Do nothing
+    }
+
+    /**
+     * Returns the classification of the miner, if it's still valid.
+     *
+     * @param ip     The ip.
+     * @param port   The port.
+     * @param uptime The current uptime, or <code>-1</code> if unknown.
+     *
+     * @return The classification.
+     */
+    static Optional<WorkMode> get(
+            final String ip,
+            final int port,
+            final long uptime) {
+        final String key = toKey(ip, port);
+        final WorkMode workMode = WORK_MODES.getIfPresent(key);
+        if (workMode == null) {
+            return Optional.empty();
+        }
+        if (uptime < workMode.uptime) {
+            WORK_MODES.invalidate(key);
+            return Optional.empty();
+        }
+        return Optional.of(workMode);
+    }
+
+    /**
+     * Forgets the classification of the miner.
+     *
+     * @param ip   The ip.
+     * @param port The port.
+     */
+    static void invalidate(
+            final String ip,
+            final int port) {
+        WORK_MODES.invalidate(toKey(ip, port));
+    }
+
+    /**
+     * Remembers the classification of the miner.
+     *
+     * @param ip       The ip.
+     * @param port     The port.
+     * @param uptime   The uptime when the miner was classified.
+     * @param sleeping Whether or not the miner is sleeping.
+     * @param workMode The <code>bitmain-work-mode</code>, if present.
+     */
+    static void put(
+            final String ip,
+            final int port,
+            final long uptime,
+            final boolean sleeping,
+            final String workMode) {
+        WORK_MODES.put(
+                toKey(ip, port),
+                new WorkMode(
+                        uptime,
+                        sleeping,
+                        workMode));
+    }
+
+    /**
+     * Creates the key for a miner.
+     *
+     * @param ip   The ip.
+     * @param port The port.
+     *
+     * @return The key.
+     */
+    private static String toKey(
+            final String ip,
+            final int port) {
+        return ip + ":" + port;
+    }
+
+    /** The work mode of a miner when it was classified. */
+    static class WorkMode {
+
+        /** Whether or not the miner is sleeping. */
+        private final boolean sleeping;
+
+        /** The uptime when classified. */
+        private final long uptime;
+
+        /** The <code>bitmain-work-mode</code>. */
+        private final String workMode;
+
+        /**
+         * Constructor.
+         *
+         * @param uptime   The uptime when classified.
+         * @param sleeping Whether or not the miner is sleeping.
+         * @param workMode The <code>bitmain-work-mode</code>.
+         */
+        private WorkMode(
+                final long uptime,
+                final boolean sleeping,
+                final String workMode) {
+            this.uptime = uptime;
+            this.sleeping = sleeping;
+            this.workMode = workMode;
+        }
+
+        /**
+         * Returns the <code>bitmain-work-mode</code>.
+         *
+         * @return The <code>bitmain-work-mode</code>.
+         */
+        Optional<String> getWorkMode() {
+            return Optional.ofNullable(this.workMode);
+        }
+
+        /**
+         * Returns whether or not the miner is sleeping.
+         *
+         * @return Whether or not the miner is sleeping.
+         */
+        boolean isSleeping() {
+            return this.sleeping;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package mn.foreman.benchmarks;
+
+import mn.foreman.antminer.PowerModeStrategy;
+import mn.foreman.antminer.response.antminer.StatsResponseStrategy;
+import mn.foreman.cgminer.Context;
+import mn.foreman.cgminer.request.CgMinerCommand;
+import mn.foreman.cgminer.response.CgMinerResponse;
+import mn.foreman.model.miners.MinerStats;
+import mn.foreman.model.miners.asic.Asic;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of converting an antminer {@link CgMinerCommand#STATS}
+ * response to {@link MinerStats}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AntminerStatsBenchmark {
+
+    /** The recorded response to process. */
+    @Param({
+            "antminer-s9-stats",
+            "antminer-s19-stats"
+    })
+    public String payload;
+
+    /** The response. */
+    private CgMinerResponse response;
+
+    /** The strategy being measured. */
+    private StatsResponseStrategy strategy;
+
+    /**
+     * Loads the payload.
+     *
+     * @throws IOException on failure to load the payload.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        this.response =
+                Payloads.loadResponse(
+                        this.payload,
+                        CgMinerCommand.STATS);
+        // The stock strategy queries the miner, so it can't be used here
+        final PowerModeStrategy powerModeStrategy =
+                (builder, values, hashRate, boardCount, hasErrors, context) ->
+                        builder.setPowerMode(Asic.PowerMode.NORMAL);
+        this.strategy =
+                new StatsResponseStrategy(
+                        new Context(),
+                        powerModeStrategy);
+    }
+
+    /**
+     * Processes the response.
+     *
+     * @return The stats.
+     */
+    @Benchmark
+    public MinerStats processResponse() {
+        final MinerStats.Builder builder =
+                new MinerStats.Builder()
+                        .setApiIp("192.168.1.10")
+                        .setApiPort(4028);
+        this.strategy.processResponse(
+                builder,
+                this.response);
+        return builder.build();
+    }
+}
@@ -0,0 +1,56 @@
+package mn.foreman.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks, accepting the standard JMH arguments.
+ *
+ * <p>Unless otherwise specified, results are written as JSON to
+ * <code>jmh-result.json</code> and the GC profiler is enabled, so both
+ * throughput and allocation rate can be compared between releases.</p>
+ */
+public class BenchmarkRunner {
+
+    /** The default results file. */
+    private static final String RESULTS_FILE = "jmh-result.json";
+
+    /**
+     * Entry point.
+     *
+     * @param args The JMH arguments.
+     *
+     * @throws Exception on failure to run the benchmarks.
+     */
+    public static void main(final String[] args) throws Exception {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() ||
+                commandLine.shouldList() ||
+                commandLine.shouldListWithParams() ||
+                commandLine.shouldListProfilers() ||
+                commandLine.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+
+        final OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+        options.resultFormat(
+                commandLine
+                        .getResultFormat()
+                        .orElse(ResultFormatType.JSON));
+        options.result(
+                commandLine
+                        .getResult()
+                        .orElse(RESULTS_FILE));
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,84 @@
+package mn.foreman.benchmarks;
+
+import mn.foreman.antminer.response.braiins.BraiinsResponseStrategy;
+import mn.foreman.cgminer.Context;
+import mn.foreman.cgminer.request.CgMinerCommand;
+import mn.foreman.cgminer.response.CgMinerResponse;
+import mn.foreman.model.error.MinerException;
+import mn.foreman.model.miners.MinerStats;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of converting a full set of braiins OS responses to
+ * {@link MinerStats}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BraiinsBenchmark {
+
+    /** The responses, in the order that they're requested. */
+    private List<CgMinerResponse> responses;
+
+    /** The strategy being measured. */
+    private BraiinsResponseStrategy strategy;
+
+    /**
+     * Loads the payloads.
+     *
+     * @throws IOException on failure to load the payloads.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        this.responses =
+                Arrays.asList(
+                        Payloads.loadResponse(
+                                "braiins-summary",
+                                CgMinerCommand.SUMMARY),
+                        Payloads.loadResponse(
+                                "braiins-fans",
+                                CgMinerCommand.FANS),
+                        Payloads.loadResponse(
+                                "braiins-temps",
+                                CgMinerCommand.TEMPS),
+                        Payloads.loadResponse(
+                                "braiins-tunerstatus",
+                                CgMinerCommand.TUNERSTATUS),
+                        Payloads.loadResponse(
+                                "braiins-devs",
+                                CgMinerCommand.DEVS));
+        this.strategy =
+                new BraiinsResponseStrategy(
+                        new Context());
+    }
+
+    /**
+     * Processes the responses.
+     *
+     * @return The stats.
+     *
+     * @throws MinerException on failure to process a response.
+     */
+    @Benchmark
+    public MinerStats processResponse() throws MinerException {
+        final MinerStats.Builder builder =
+                new MinerStats.Builder()
+                        .setApiIp("192.168.1.10")
+                        .setApiPort(4028);
+        for (final CgMinerResponse response : this.responses) {
+            this.strategy.processResponse(
+                    builder,
+                    response);
+        }
+        return builder.build();
+    }
+}
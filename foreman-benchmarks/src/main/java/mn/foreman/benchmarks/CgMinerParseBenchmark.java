@@ -0,0 +1,82 @@
+package mn.foreman.benchmarks;
+
+import mn.foreman.cgminer.ForkPatchingStrategy;
+import mn.foreman.cgminer.NullPatchingStrategy;
+import mn.foreman.cgminer.ResponsePatchingStrategy;
+import mn.foreman.cgminer.ResponseStrategy;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of patching and parsing raw cgminer API responses into
+ * the maps that every {@link ResponseStrategy} operates on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CgMinerParseBenchmark {
+
+    /** The recorded response to parse. */
+    @Param({
+            "antminer-s9-stats",
+            "antminer-s19-stats",
+            "braiins-devs",
+            "braiins-tunerstatus",
+            "whatsminer-summary"
+    })
+    public String payload;
+
+    /** The raw response. */
+    private String json;
+
+    /** The patching strategy. */
+    private ResponsePatchingStrategy patchingStrategy;
+
+    /**
+     * Loads the payload.
+     *
+     * @throws IOException on failure to load the payload.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        this.json = Payloads.load(this.payload);
+        this.patchingStrategy =
+                new ForkPatchingStrategy(
+                        new NullPatchingStrategy());
+    }
+
+    /**
+     * Patches and parses the response.
+     *
+     * @return The parsed response.
+     *
+     * @throws IOException on failure to parse.
+     */
+    @Benchmark
+    public Map<String, Object> patchAndParse() throws IOException {
+        return Payloads.MAPPER.readValue(
+                this.patchingStrategy.patch(this.json),
+                new TypeReference<Map<String, Object>>() {
+                });
+    }
+
+    /**
+     * Patches the response.
+     *
+     * @return The patched response.
+     *
+     * @throws IOException on failure to patch.
+     */
+    @Benchmark
+    public String patchJson() throws IOException {
+        return this.patchingStrategy.patch(this.json);
+    }
+}
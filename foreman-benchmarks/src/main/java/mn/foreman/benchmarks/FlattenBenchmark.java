@@ -0,0 +1,81 @@
+package mn.foreman.benchmarks;
+
+import mn.foreman.util.Flatten;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of {@link Flatten#flattenAndFilter(String, List)}, which
+ * runs against every response when raw stats are whitelisted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlattenBenchmark {
+
+    /** The recorded response to flatten. */
+    @Param({
+            "antminer-s19-stats",
+            "braiins-devs",
+            "whatsminer-summary"
+    })
+    public String payload;
+
+    /** The whitelist to apply. */
+    @Param({
+            "selected",
+            "all"
+    })
+    public String whitelist;
+
+    /** The raw response. */
+    private String json;
+
+    /** The whitelisted keys. */
+    private List<String> keys;
+
+    /**
+     * Loads the payload.
+     *
+     * @throws IOException on failure to load the payload.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        this.json = Payloads.load(this.payload);
+        this.keys =
+                "all".equals(this.whitelist)
+                        ? Collections.singletonList("all")
+                        : Arrays.asList(
+                                "STATS.1.temp_chip1",
+                                "STATS.1.temp_chip2",
+                                "STATS.1.temp_chip3",
+                                "STATS.1.chain_hw1",
+                                "STATS.1.chain_hw2",
+                                "STATS.1.chain_hw3",
+                                "DEVS.0.hardware_errors",
+                                "SUMMARY.0.chip_temp_max",
+                                "SUMMARY.0.power_rt");
+    }
+
+    /**
+     * Flattens and filters the response.
+     *
+     * @return The flattened values.
+     */
+    @Benchmark
+    public Map<String, Object> flattenAndFilter() {
+        return Flatten.flattenAndFilter(
+                this.json,
+                this.keys);
+    }
+}
@@ -0,0 +1,96 @@
+package mn.foreman.benchmarks;
+
+import mn.foreman.pickaxe.contraints.IpValidator;
+import mn.foreman.pickaxe.contraints.IpValidatorImpl;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures the cost of checking whether a miner is allowed to be queried
+ * against large lists of allowed ranges.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IpValidatorBenchmark {
+
+    /** The number of IPs to cycle through (must be a power of 2). */
+    private static final int IP_COUNT = 1024;
+
+    /** The number of allowed ranges. */
+    @Param({
+            "10",
+            "100",
+            "1000"
+    })
+    public int ranges;
+
+    /** The IPs to check, half of which are allowed. */
+    private String[] ips;
+
+    /** The MACs to check. */
+    private String[] macs;
+
+    /** The next IP to check. */
+    private int next;
+
+    /** The validator being measured. */
+    private IpValidator validator;
+
+    /** Creates the ranges and the IPs to check. */
+    @Setup
+    public void setUp() {
+        final List<String> allowedRanges = new ArrayList<>(this.ranges);
+        for (int i = 0; i < this.ranges; i++) {
+            allowedRanges.add(
+                    String.format(
+                            "10.%d.%d.0-255",
+                            i / 256,
+                            i % 256));
+        }
+        this.validator =
+                new IpValidatorImpl(
+                        new AtomicReference<>(allowedRanges),
+                        new AtomicReference<>(Collections.emptyList()));
+
+        this.ips = new String[IP_COUNT];
+        this.macs = new String[IP_COUNT];
+        for (int i = 0; i < IP_COUNT; i++) {
+            final int range = (i * 7919) % this.ranges;
+            this.ips[i] =
+                    String.format(
+                            "%d.%d.%d.%d",
+                            i % 2 == 0 ? 10 : 172,
+                            range / 256,
+                            range % 256,
+                            i % 256);
+            this.macs[i] =
+                    String.format(
+                            "00:1a:2b:3c:%02x:%02x",
+                            i / 256,
+                            i % 256);
+        }
+    }
+
+    /**
+     * Checks the next IP.
+     *
+     * @return Whether or not it was allowed.
+     */
+    @Benchmark
+    public boolean isAllowed() {
+        final int i = this.next++ & (IP_COUNT - 1);
+        return this.validator.isAllowed(
+                this.ips[i],
+                this.macs[i]);
+    }
+}
@@ -0,0 +1,88 @@
+package mn.foreman.benchmarks;
+
+import mn.foreman.model.MetricsReport;
+import mn.foreman.model.metadata.ApiVersion;
+import mn.foreman.model.metadata.Metadata;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures the cost of serializing a {@link MetricsReport} before it's
+ * uploaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MetricsReportBenchmark {
+
+    /** The mapper, configured like the one used for uploads. */
+    private static final ObjectMapper MAPPER =
+            new ObjectMapper()
+                    .registerModule(new JavaTimeModule());
+
+    /** The number of miners in the report. */
+    @Param({
+            "1000",
+            "10000"
+    })
+    public int miners;
+
+    /** The report. */
+    private MetricsReport report;
+
+    /** Creates the report. */
+    @Setup
+    public void setUp() {
+        final MetricsReport.Builder builder =
+                new MetricsReport.Builder()
+                        .setMetadata(
+                                new Metadata.Builder()
+                                        .setApiVersion(ApiVersion.V1_0_0)
+                                        .setTimestamp(ZonedDateTime.now())
+                                        .build())
+                        .setLoopTimeMs(12_000);
+        SyntheticStats
+                .create(this.miners)
+                .forEach(builder::addMinerStats);
+        this.report = builder.build();
+    }
+
+    /**
+     * Serializes the report.
+     *
+     * @throws IOException on failure to serialize.
+     */
+    @Benchmark
+    public void serialize() throws IOException {
+        MAPPER.writeValue(
+                NullOutputStream.NULL_OUTPUT_STREAM,
+                this.report);
+    }
+
+    /**
+     * Serializes and compresses the report, like it's done for uploads.
+     *
+     * @throws IOException on failure to serialize.
+     */
+    @Benchmark
+    public void serializeGzip() throws IOException {
+        try (final OutputStream outputStream =
+                     new GZIPOutputStream(NullOutputStream.NULL_OUTPUT_STREAM)) {
+            MAPPER.writeValue(
+                    outputStream,
+                    this.report);
+        }
+    }
+}
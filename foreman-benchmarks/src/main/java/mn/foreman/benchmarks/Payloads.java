@@ -0,0 +1,94 @@
+package mn.foreman.benchmarks;
+
+import mn.foreman.cgminer.request.CgMinerCommand;
+import mn.foreman.cgminer.request.CgMinerRequest;
+import mn.foreman.cgminer.response.CgMinerResponse;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utilities for loading the miner responses, recorded from real miners, that
+ * the benchmarks operate on.
+ */
+public class Payloads {
+
+    /** The mapper, configured like the one used by the cgminer API. */
+    public static final ObjectMapper MAPPER =
+            new ObjectMapper()
+                    .configure(
+                            JsonParser.Feature.ALLOW_UNQUOTED_CONTROL_CHARS,
+                            true);
+
+    /**
+     * Loads a recorded response.
+     *
+     * @param name The name of the payload.
+     *
+     * @return The raw response.
+     *
+     * @throws IOException on failure to read the payload.
+     */
+    public static String load(final String name) throws IOException {
+        try (final InputStream inputStream =
+                     Payloads.class.getResourceAsStream("/payloads/" + name + ".json")) {
+            if (inputStream == null) {
+                throw new IOException("No payload named " + name);
+            }
+            return IOUtils.toString(
+                    inputStream,
+                    StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Loads a recorded response and converts it to a {@link CgMinerResponse},
+     * like the cgminer API would after receiving it.
+     *
+     * @param name    The name of the payload.
+     * @param command The command that produced the response.
+     *
+     * @return The response.
+     *
+     * @throws IOException on failure to read the payload.
+     */
+    @SuppressWarnings("unchecked")
+    public static CgMinerResponse loadResponse(
+            final String name,
+            final CgMinerCommand command)
+            throws IOException {
+        // Older bmminers separate STATS objects with '}{'
+        final Map<String, Object> responseMap =
+                MAPPER.readValue(
+                        load(name).replace("}{", "},{"),
+                        new TypeReference<Map<String, Object>>() {
+                        });
+
+        final CgMinerResponse.Builder builder =
+                new CgMinerResponse.Builder()
+                        .setRequest(
+                                new CgMinerRequest.Builder()
+                                        .setCommand(command)
+                                        .build());
+        responseMap
+                .entrySet()
+                .stream()
+                .filter(entry -> !entry.getKey().equals("id"))
+                .filter(entry -> !entry.getKey().equals("STATUS"))
+                .forEach(entry ->
+                        ((List<Map<String, Object>>) entry.getValue())
+                                .forEach(value ->
+                                        builder.addObjectValues(
+                                                entry.getKey(),
+                                                value)));
+        return builder.build();
+    }
+}
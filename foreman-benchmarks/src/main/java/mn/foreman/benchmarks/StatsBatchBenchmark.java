@@ -0,0 +1,79 @@
+package mn.foreman.benchmarks;
+
+import mn.foreman.model.miners.MinerStats;
+import mn.foreman.pickaxe.run.MetricsDeltaTracker;
+import mn.foreman.pickaxe.run.thread.StatsBatch;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of splitting the cached stats into the batches that are
+ * uploaded each cycle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatsBatchBenchmark {
+
+    /** The number of miners per batch. */
+    @Param({
+            "100",
+            "1000"
+    })
+    public int batchSize;
+
+    /** The number of miners. */
+    @Param({
+            "1000",
+            "10000"
+    })
+    public int miners;
+
+    /** The delta tracker, which never sees any changes. */
+    private MetricsDeltaTracker deltaTracker;
+
+    /** The stats. */
+    private List<MinerStats> stats;
+
+    /** Creates the stats. */
+    @Setup
+    public void setUp() {
+        this.stats = SyntheticStats.create(this.miners);
+        this.deltaTracker =
+                new MetricsDeltaTracker(
+                        1,
+                        TimeUnit.DAYS);
+        // The first diff is always a snapshot
+        this.deltaTracker.diff(this.stats);
+    }
+
+    /**
+     * Batches the stats.
+     *
+     * @return The batches.
+     */
+    @Benchmark
+    public List<StatsBatch> toBatches() {
+        return StatsBatch.toBatches(
+                this.stats,
+                this.batchSize);
+    }
+
+    /**
+     * Diffs the stats against the last push and batches the result.
+     *
+     * @return The batches.
+     */
+    @Benchmark
+    public List<StatsBatch> toDeltaBatches() {
+        return StatsBatch.toBatches(
+                this.deltaTracker.diff(this.stats),
+                this.batchSize);
+    }
+}
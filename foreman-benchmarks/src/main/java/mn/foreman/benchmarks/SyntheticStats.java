@@ -0,0 +1,91 @@
+package mn.foreman.benchmarks;
+
+import mn.foreman.model.miners.FanInfo;
+import mn.foreman.model.miners.MinerStats;
+import mn.foreman.model.miners.Pool;
+import mn.foreman.model.miners.asic.Asic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates {@link MinerStats} that resemble a site of 3-board antminers, for
+ * benchmarks that need far more miners than were recorded.
+ */
+public class SyntheticStats {
+
+    /**
+     * Creates stats for the provided number of miners.
+     *
+     * @param count The number of miners.
+     *
+     * @return The stats.
+     */
+    public static List<MinerStats> create(final int count) {
+        final List<MinerStats> stats = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            stats.add(create(
+                    String.format(
+                            "10.%d.%d.%d",
+                            (i >> 16) & 0xFF,
+                            (i >> 8) & 0xFF,
+                            i & 0xFF),
+                    i));
+        }
+        return stats;
+    }
+
+    /**
+     * Creates stats for a single miner.
+     *
+     * @param ip   The miner IP.
+     * @param seed Varies the values between miners.
+     *
+     * @return The stats.
+     */
+    private static MinerStats create(
+            final String ip,
+            final int seed) {
+        final Asic.Builder asicBuilder =
+                new Asic.Builder()
+                        .setHashRate(100_000_000_000_000D + seed * 1_000_000D)
+                        .setBoards(3)
+                        .setFanInfo(
+                                new FanInfo.Builder()
+                                        .setCount(4)
+                                        .setSpeedUnits("RPM")
+                                        .addSpeed(5400 + (seed % 120))
+                                        .addSpeed(5400)
+                                        .addSpeed(5520)
+                                        .addSpeed(5400)
+                                        .build())
+                        .setPowerMode(Asic.PowerMode.NORMAL)
+                        .hasErrors(false);
+        for (int board = 0; board < 3; board++) {
+            asicBuilder.addTemp(58 + board + (seed % 5));
+            asicBuilder.addTemp(73 + board + (seed % 5));
+        }
+
+        final MinerStats.Builder builder =
+                new MinerStats.Builder()
+                        .setApiIp(ip)
+                        .setApiPort(4028)
+                        .addAsic(asicBuilder.build());
+        for (int pool = 0; pool < 3; pool++) {
+            builder.addPool(
+                    new Pool.Builder()
+                            .setName("stratum+tcp://pool" + pool + ".example.com:3333")
+                            .setWorker("worker." + seed)
+                            .setPriority(pool)
+                            .setStatus(
+                                    true,
+                                    pool == 0)
+                            .setCounts(
+                                    pool == 0 ? 41_297 + seed : 0,
+                                    pool == 0 ? 31 : 0,
+                                    0)
+                            .build());
+        }
+        return builder.build();
+    }
+}
@@ -5,8 +5,9 @@ import mn.foreman.cgminer.request.CgMinerRequest;
 import mn.foreman.cgminer.response.CgMinerResponse;
 import mn.foreman.io.ApiRequest;
 import mn.foreman.io.ApiRequestImpl;
-import mn.foreman.io.Connection;
+import mn.foreman.io.AsyncApiConnection;
 import mn.foreman.io.ConnectionFactory;
+import mn.foreman.io.SocketApiConnection;
 import mn.foreman.model.*;
 import mn.foreman.model.error.MinerException;
 import mn.foreman.model.miners.MinerStats;
@@ -18,8 +19,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.SocketTimeoutException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * A {@link CgMiner} represents a remote cgminer instance.
@@ -44,6 +49,12 @@ public class CgMiner
     /** The mapper. */
     private static final ObjectMapper MAPPER;
 
+    /** What's been learned about which miners accept multi-requests. */
+    private static final MultiRequestSupport MULTI_SUPPORT =
+            new MultiRequestSupport(
+                    6,
+                    TimeUnit.HOURS);
+
     static {
         MAPPER = new ObjectMapper();
         MAPPER.configure(
@@ -54,6 +65,9 @@ public class CgMiner
     /** The command key. */
     private final String commandKey;
 
+    /** All of the commands that are queried. */
+    private final List<CgMinerCommand> commands;
+
     /** The connection timeout. */
     private final int connectTimeout;
 
@@ -78,6 +92,12 @@ public class CgMiner
                 builder.macStrategy);
         this.commandKey = builder.commandKey;
         this.requests = new ArrayList<>(builder.requests);
+        this.commands =
+                this.requests
+                        .stream()
+                        .map(request -> request.request.getCommands())
+                        .flatMap(List::stream)
+                        .collect(Collectors.toList());
         this.connectTimeout = builder.connectTimeout;
         this.connectTimeoutUnits = builder.connectTimeoutUnits;
         this.failureCallback = builder.failureCallback;
@@ -87,73 +107,154 @@ public class CgMiner
     protected void addStats(
             final MinerStats.Builder statsBuilder)
             throws MinerException {
+        final List<List<Request>> batches = toBatches();
         boolean continueEval = true;
-        for (int i = 0; i < this.requests.size() && continueEval; i++) {
-            final Request request = this.requests.get(i);
-            try {
-                final List<CgMinerResponse> responses =
-                        query(
-                                request.request,
-                                request.patchingStrategy);
-                final ResponseStrategy strategy = request.responseStrategy;
-                for (final CgMinerResponse response : responses) {
-                    strategy.processResponse(
-                            statsBuilder,
-                            response);
-                }
-            } catch (final MinerException me) {
+        for (int i = 0; i < batches.size() && continueEval; i++) {
+            final List<Request> batch = batches.get(i);
+            if (batch.size() == 1) {
+                final Request request = batch.get(0);
+                continueEval =
+                        evaluate(
+                                statsBuilder,
+                                request,
+                                () -> query(
+                                        request.request,
+                                        request.patchingStrategy));
+            } else {
+                Map<CgMinerCommand, List<CgMinerResponse>> merged = null;
                 try {
+                    merged = queryMerged(batch);
+                } catch (final MinerException me) {
+                    // Don't wait on a miner that isn't responding again
                     continueEval =
-                            this.failureCallback.failed(
+                            evaluateFailed(
                                     statsBuilder,
+                                    batch,
                                     me);
-                } catch (final Exception e) {
-                    // Not all requests require a response
-                    if (request.required) {
-                        throw e;
-                    }
+                }
+                if (merged != null) {
+                    continueEval =
+                            evaluateMerged(
+                                    statsBuilder,
+                                    batch,
+                                    merged);
                 }
             }
         }
     }
 
+    @Override
+    protected CompletableFuture<Void> addStatsAsync(
+            final MinerStats.Builder statsBuilder) {
+        return addStatsAsync(
+                statsBuilder,
+                toBatches(),
+                0);
+    }
+
     /**
-     * Fixes invalid JSON formatting present in some forks of cgminer.
-     *
-     * @param json             The JSON to patch.
-     * @param patchingStrategy The strategy to use for patching the response.
+     * Performs the batch at the provided index and, if evaluation should
+     * continue, chains the next batch once it completes.
      *
-     * @return The patched JSON.
+     * @param statsBuilder The builder to update.
+     * @param batches      The batches of requests to perform.
+     * @param index        The index of the batch to perform.
      *
-     * @throws IOException on failure to patch JSON.
+     * @return A future that completes once all of the requests have been
+     *         processed.
      */
-    private static String patchJson(
-            final String json,
-            final ResponsePatchingStrategy patchingStrategy)
-            throws IOException {
-        String goodJson = json;
-
-        // Patch miners returning '}{'
-        goodJson = goodJson.replace("}{", "},{");
+    private CompletableFuture<Void> addStatsAsync(
+            final MinerStats.Builder statsBuilder,
+            final List<List<Request>> batches,
+            final int index) {
+        if (index >= batches.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-        // Patching miners ending in \x00
-        goodJson = goodJson.replace("\\x00", "");
+        final List<Request> batch = batches.get(index);
 
-        // Patch miners returning 'nan'
-        if (goodJson.contains("nan,")) {
-            goodJson = goodJson.replace("nan,", "0,");
+        final CompletableFuture<Boolean> evaluation;
+        if (batch.size() == 1) {
+            final Request request = batch.get(0);
+            evaluation =
+                    evaluateAsync(
+                            statsBuilder,
+                            request,
+                            queryAsync(
+                                    request.request,
+                                    request.patchingStrategy));
+        } else {
+            final CgMinerRequest mergedRequest = toMergedRequest(batch);
+            final ApiRequest apiRequest = toApiRequest(mergedRequest);
+            evaluation =
+                    queryAsync(
+                            apiRequest,
+                            mergedRequest,
+                            new NullPatchingStrategy())
+                            .handle((responses, throwable) -> {
+                                if (throwable == null) {
+                                    return evaluateMergedAsync(
+                                            statsBuilder,
+                                            batch,
+                                            toResponsesByCommand(responses),
+                                            null,
+                                            0);
+                                }
+                                final MinerException failure =
+                                        unwrap(throwable);
+                                return evaluateMergedAsync(
+                                        statsBuilder,
+                                        batch,
+                                        Collections.emptyMap(),
+                                        isAnswered(apiRequest, failure)
+                                                ? null
+                                                : failure,
+                                        0);
+                            })
+                            .thenCompose(future -> future);
         }
 
-        // Patch miners returning 'inf'
-        if (goodJson.contains("inf,")) {
-            goodJson = goodJson.replace("inf,", "0,");
-        }
+        return evaluation.thenCompose(continueEval ->
+                continueEval
+                        ? addStatsAsync(statsBuilder, batches, index + 1)
+                        : CompletableFuture.<Void>completedFuture(null));
+    }
 
-        // Patch invalid escapes
-        if (goodJson.contains("\\'")) {
-            goodJson = goodJson.replace("\\'", "");
+    /**
+     * Returns whether or not the miner replied to a request that failed, as
+     * opposed to refusing the connection or never answering it.
+     *
+     * @param apiRequest The request.
+     * @param failure    The failure.
+     *
+     * @return Whether or not the miner replied.
+     */
+    private static boolean isAnswered(
+            final ApiRequest apiRequest,
+            final MinerException failure) {
+        if (!apiRequest.connected()) {
+            return false;
+        }
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException) {
+                return false;
+            }
         }
-        return patchingStrategy.patch(goodJson);
+        return true;
+    }
+
+    /**
+     * Returns whether or not responses can be parsed as they're read.  Custom
+     * patching strategies operate on the entire response, so they require it
+     * to be buffered.
+     *
+     * @param patchingStrategy The patching strategy.
+     *
+     * @return Whether or not responses can be streamed.
+     */
+    private static boolean isStreamable(
+            final ResponsePatchingStrategy patchingStrategy) {
+        return patchingStrategy instanceof NullPatchingStrategy;
     }
 
     /**
@@ -209,10 +310,25 @@ public class CgMiner
             final List<CgMinerResponse> dest) {
         if (request.isMulti()) {
             for (final Map.Entry<String, Object> entry : response.entrySet()) {
-                if (!entry.getKey().equals("id")) {
+                final Object value = entry.getValue();
+                if (!entry.getKey().equals("id") &&
+                        value instanceof List &&
+                        !((List<?>) value).isEmpty()) {
+                    // Attribute each section to the command that produced it
+                    final CgMinerRequest commandRequest =
+                            request
+                                    .getCommands()
+                                    .stream()
+                                    .filter(command -> command.getCommand().equalsIgnoreCase(entry.getKey()))
+                                    .findFirst()
+                                    .map(command ->
+                                            new CgMinerRequest.Builder()
+                                                    .setCommand(command)
+                                                    .build())
+                                    .orElse(request);
                     toResponse(
-                            request,
-                            ((List<Map<String, Object>>) entry.getValue()).get(0),
+                            commandRequest,
+                            ((List<Map<String, Object>>) value).get(0),
                             dest);
                 }
             }
@@ -224,6 +340,316 @@ public class CgMiner
         }
     }
 
+    /**
+     * Creates a multi-request containing the commands from every request in
+     * the batch.
+     *
+     * @param batch The batch.
+     *
+     * @return The multi-request.
+     */
+    private static CgMinerRequest toMergedRequest(final List<Request> batch) {
+        final CgMinerRequest.Builder builder = new CgMinerRequest.Builder();
+        batch
+                .stream()
+                .map(request -> request.request.getCommands())
+                .flatMap(List::stream)
+                .forEach(builder::addCommand);
+        return builder.build();
+    }
+
+    /**
+     * Groups the responses to a multi-request by the command that produced
+     * them.
+     *
+     * @param responses The responses.
+     *
+     * @return The responses, by command.
+     */
+    private static Map<CgMinerCommand, List<CgMinerResponse>> toResponsesByCommand(
+            final List<CgMinerResponse> responses) {
+        final Map<CgMinerCommand, List<CgMinerResponse>> byCommand =
+                new EnumMap<>(CgMinerCommand.class);
+        for (final CgMinerResponse response : responses) {
+            final CgMinerRequest request = response.getRequest();
+            if (!request.isMulti()) {
+                byCommand
+                        .computeIfAbsent(
+                                request.getCommands().get(0),
+                                command -> new LinkedList<>())
+                        .add(response);
+            }
+        }
+        return byCommand;
+    }
+
+    /**
+     * Obtains the {@link MinerException} that caused an asynchronous query to
+     * fail.
+     *
+     * @param throwable The failure.
+     *
+     * @return The {@link MinerException}.
+     */
+    private static MinerException unwrap(final Throwable throwable) {
+        final Throwable cause =
+                throwable instanceof CompletionException && throwable.getCause() != null
+                        ? throwable.getCause()
+                        : throwable;
+        if (cause instanceof MinerException) {
+            return (MinerException) cause;
+        }
+        return new MinerException(cause);
+    }
+
+    /**
+     * Processes the responses for a single request, giving the failure
+     * callback a chance to react if they couldn't be obtained.
+     *
+     * @param statsBuilder The builder to update.
+     * @param request      The request.
+     * @param responses    Supplies the responses.
+     *
+     * @return Whether or not evaluation should continue.
+     *
+     * @throws MinerException if a required request failed.
+     */
+    private boolean evaluate(
+            final MinerStats.Builder statsBuilder,
+            final Request request,
+            final ResponseSupplier responses)
+            throws MinerException {
+        boolean continueEval = true;
+        try {
+            final ResponseStrategy strategy = request.responseStrategy;
+            for (final CgMinerResponse response : responses.get()) {
+                strategy.processResponse(
+                        statsBuilder,
+                        response);
+            }
+        } catch (final MinerException me) {
+            try {
+                continueEval =
+                        this.failureCallback.failed(
+                                statsBuilder,
+                                me);
+            } catch (final Exception e) {
+                // Not all requests require a response
+                if (request.required) {
+                    throw e;
+                }
+            }
+        }
+        return continueEval;
+    }
+
+    /**
+     * Processes the responses for a single request once they've been obtained,
+     * without blocking the thread that obtained them.
+     *
+     * <p>Some {@link ResponseStrategy strategies} and {@link
+     * RequestFailureCallback failure callbacks} query the miner again, so
+     * evaluation runs on the shared {@link
+     * ConnectionFactory#getBlockingExecutor() blocking executor} rather than
+     * the event loop.</p>
+     *
+     * @param statsBuilder The builder to update.
+     * @param request      The request.
+     * @param responses    The pending responses.
+     *
+     * @return A future that completes with whether or not evaluation should
+     *         continue.
+     */
+    private CompletableFuture<Boolean> evaluateAsync(
+            final MinerStats.Builder statsBuilder,
+            final Request request,
+            final CompletableFuture<List<CgMinerResponse>> responses) {
+        return responses.handleAsync(
+                (result, throwable) ->
+                        evaluateUnchecked(
+                                statsBuilder,
+                                request,
+                                () -> {
+                                    if (throwable != null) {
+                                        throw unwrap(throwable);
+                                    }
+                                    return result;
+                                }),
+                ConnectionFactory.getBlockingExecutor());
+    }
+
+    /**
+     * Gives every request in a batch the failure of the multi-request that
+     * it was sent in.
+     *
+     * @param statsBuilder The builder to update.
+     * @param batch        The requests that were merged.
+     * @param failure      Why the multi-request failed.
+     *
+     * @return Whether or not evaluation should continue.
+     *
+     * @throws MinerException if a required request failed.
+     */
+    private boolean evaluateFailed(
+            final MinerStats.Builder statsBuilder,
+            final List<Request> batch,
+            final MinerException failure)
+            throws MinerException {
+        boolean continueEval = true;
+        for (int i = 0; i < batch.size() && continueEval; i++) {
+            continueEval =
+                    evaluate(
+                            statsBuilder,
+                            batch.get(i),
+                            () -> {
+                                throw failure;
+                            });
+        }
+        return continueEval;
+    }
+
+    /**
+     * Processes the responses to a multi-request, falling back to querying
+     * each command on its own if the miner didn't answer it.
+     *
+     * @param statsBuilder The builder to update.
+     * @param batch        The requests that were merged.
+     * @param merged       The responses, by command.
+     *
+     * @return Whether or not evaluation should continue.
+     *
+     * @throws MinerException if a required request failed.
+     */
+    private boolean evaluateMerged(
+            final MinerStats.Builder statsBuilder,
+            final List<Request> batch,
+            final Map<CgMinerCommand, List<CgMinerResponse>> merged)
+            throws MinerException {
+        boolean continueEval = true;
+        for (int i = 0; i < batch.size() && continueEval; i++) {
+            final Request request = batch.get(i);
+            final CgMinerCommand command = request.request.getCommands().get(0);
+            final List<CgMinerResponse> responses = merged.get(command);
+            if (responses != null) {
+                continueEval =
+                        evaluate(
+                                statsBuilder,
+                                request,
+                                () -> responses);
+            } else {
+                continueEval =
+                        evaluate(
+                                statsBuilder,
+                                request,
+                                () -> queryUnmerged(
+                                        request,
+                                        !merged.isEmpty()));
+            }
+        }
+        return continueEval;
+    }
+
+    /**
+     * Processes the responses to a multi-request, starting at the provided
+     * request, falling back to querying each command on its own without
+     * blocking if the miner didn't answer it.
+     *
+     * @param statsBuilder The builder to update.
+     * @param batch        The requests that were merged.
+     * @param merged       The responses, by command.
+     * @param failure      Why the miner didn't reply to the multi-request, or
+     *                     <code>null</code> if it did.
+     * @param index        The index of the request to process.
+     *
+     * @return A future that completes with whether or not evaluation should
+     *         continue.
+     */
+    private CompletableFuture<Boolean> evaluateMergedAsync(
+            final MinerStats.Builder statsBuilder,
+            final List<Request> batch,
+            final Map<CgMinerCommand, List<CgMinerResponse>> merged,
+            final MinerException failure,
+            final int index) {
+        if (index >= batch.size()) {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        final Request request = batch.get(index);
+
+        final CompletableFuture<List<CgMinerResponse>> responses;
+        if (failure != null) {
+            responses = new CompletableFuture<>();
+            responses.completeExceptionally(failure);
+        } else {
+            final List<CgMinerResponse> answered =
+                    merged.get(request.request.getCommands().get(0));
+            responses =
+                    answered != null
+                            ? CompletableFuture.completedFuture(answered)
+                            : queryUnmergedAsync(
+                                    request,
+                                    !merged.isEmpty());
+        }
+
+        return evaluateAsync(
+                statsBuilder,
+                request,
+                responses)
+                .thenCompose(continueEval ->
+                        continueEval
+                                ? evaluateMergedAsync(
+                                        statsBuilder,
+                                        batch,
+                                        merged,
+                                        failure,
+                                        index + 1)
+                                : CompletableFuture.<Boolean>completedFuture(false));
+    }
+
+    /**
+     * Processes the responses for a single request from within a future.
+     *
+     * @param statsBuilder The builder to update.
+     * @param request      The request.
+     * @param responses    Supplies the responses.
+     *
+     * @return Whether or not evaluation should continue.
+     */
+    private boolean evaluateUnchecked(
+            final MinerStats.Builder statsBuilder,
+            final Request request,
+            final ResponseSupplier responses) {
+        try {
+            return evaluate(
+                    statsBuilder,
+                    request,
+                    responses);
+        } catch (final MinerException me) {
+            throw new CompletionException(me);
+        }
+    }
+
+    /**
+     * Returns whether or not the provided request can be merged into a
+     * multi-request.
+     *
+     * <p>Only requests without JSON patching are merged, as patches are
+     * written against the response to a single command.</p>
+     *
+     * @param request The request.
+     *
+     * @return Whether or not the request can be merged.
+     */
+    private boolean isMergeable(final Request request) {
+        return !request.request.isMulti() &&
+                request.patchingStrategy instanceof NullPatchingStrategy &&
+                MULTI_SUPPORT.isMergeable(
+                        this.apiIp,
+                        this.apiPort,
+                        this.commands,
+                        request.request.getCommands().get(0));
+    }
+
     /**
      * Connects to the IP and port provided and sends the {@link CgMinerRequest}
      * as bytes to the interface.
@@ -242,68 +668,402 @@ public class CgMiner
             final CgMinerRequest request,
             final ResponsePatchingStrategy patchingStrategy)
             throws MinerException {
-        final List<CgMinerResponse> responses = new LinkedList<>();
+        return query(
+                toApiRequest(request),
+                request,
+                patchingStrategy);
+    }
 
-        try {
-            final String message =
-                    "{\"" + this.commandKey + "\":\"" + request.toCommand() + "\"}";
-            LOG.debug("Sending message ({}) to {}:{}",
-                    message,
-                    this.apiIp,
-                    this.apiPort);
+    /**
+     * Sends the {@link CgMinerRequest} using the provided {@link ApiRequest},
+     * which can be inspected afterwards to see whether or not the miner was
+     * reached.
+     *
+     * @param apiRequest       The request to send.
+     * @param request          The request that the message was created from.
+     * @param patchingStrategy The patching strategy.
+     *
+     * @return The {@link CgMinerResponse}.
+     *
+     * @throws MinerException on failure to query.
+     */
+    private List<CgMinerResponse> query(
+            final ApiRequest apiRequest,
+            final CgMinerRequest request,
+            final ResponsePatchingStrategy patchingStrategy)
+            throws MinerException {
+        List<CgMinerResponse> responses = Collections.emptyList();
+        Throwable failure = null;
 
-            final ApiRequest apiRequest =
-                    new ApiRequestImpl(
-                            this.apiIp,
-                            this.apiPort,
-                            message);
+        LOG.debug("Sending message ({}) to {}:{}",
+                apiRequest.getRequest(),
+                this.apiIp,
+                this.apiPort);
 
-            final Connection connection =
+        if (isStreamable(patchingStrategy)) {
+            try {
+                responses =
+                        ConnectionFactory.createStreamingConnection(
+                                apiRequest,
+                                this.connectTimeout,
+                                this.connectTimeoutUnits)
+                                .query(new StreamingResponseDecoder(
+                                        MAPPER,
+                                        request));
+            } catch (final IOException ioe) {
+                LOG.debug("Exception occurred while querying {}:{}",
+                        this.apiIp,
+                        this.apiPort,
+                        ioe);
+                failure = ioe;
+            }
+        } else {
+            final SocketApiConnection connection =
                     ConnectionFactory.createRawConnection(
                             apiRequest,
                             this.connectTimeout,
                             this.connectTimeoutUnits);
             connection.query();
+            failure = connection.getFailure().orElse(null);
 
             if (apiRequest.waitForCompletion(
                     this.connectTimeout,
                     this.connectTimeoutUnits)) {
-                String responseString =
-                        apiRequest.getResponse();
-                LOG.debug("Received response: {}", responseString);
-                if (responseString != null && !responseString.isEmpty()) {
-                    responseString =
-                            patchJson(
-                                    responseString,
+                try {
+                    responses =
+                            toResponses(
+                                    request,
+                                    apiRequest.getResponse(),
                                     patchingStrategy);
-                    final Map<String, Object> responseMap =
-                            MAPPER.readValue(
-                                    responseString,
-                                    new TypeReference<Map<String, Object>>() {
-                                    });
-                    if (!responseMap.isEmpty()) {
-                        toResponses(
-                                request,
-                                responseMap,
-                                responses);
-                    }
+                } catch (final IOException ioe) {
+                    LOG.debug("Exception occurred while querying {}:{}",
+                            this.apiIp,
+                            this.apiPort,
+                            ioe);
+                    failure = ioe;
                 }
             }
-        } catch (final IOException ioe) {
-            LOG.debug("Exception occurred while querying {}:{}",
+        }
+
+        if (responses.isEmpty()) {
+            throw toNoResponseException(failure);
+        }
+
+        return responses;
+    }
+
+    /**
+     * Connects to the IP and port provided and sends the {@link CgMinerRequest}
+     * without waiting for the response.
+     *
+     * @param request          The request to send.
+     * @param patchingStrategy The patching strategy.
+     *
+     * @return A future that completes with the {@link CgMinerResponse
+     *         responses}, or exceptionally with a {@link MinerException} if no
+     *         response was obtained.
+     */
+    private CompletableFuture<List<CgMinerResponse>> queryAsync(
+            final CgMinerRequest request,
+            final ResponsePatchingStrategy patchingStrategy) {
+        return queryAsync(
+                toApiRequest(request),
+                request,
+                patchingStrategy);
+    }
+
+    /**
+     * Sends the {@link CgMinerRequest} using the provided {@link ApiRequest}
+     * without waiting for the response.
+     *
+     * @param apiRequest       The request to send.
+     * @param request          The request that the message was created from.
+     * @param patchingStrategy The patching strategy.
+     *
+     * @return A future that completes with the {@link CgMinerResponse
+     *         responses}, or exceptionally with a {@link MinerException} if no
+     *         response was obtained.
+     */
+    private CompletableFuture<List<CgMinerResponse>> queryAsync(
+            final ApiRequest apiRequest,
+            final CgMinerRequest request,
+            final ResponsePatchingStrategy patchingStrategy) {
+        LOG.debug("Sending async message ({}) to {}:{}",
+                apiRequest.getRequest(),
+                this.apiIp,
+                this.apiPort);
+
+        final AsyncApiConnection connection =
+                ConnectionFactory.createAsyncConnection(
+                        apiRequest,
+                        this.connectTimeout,
+                        this.connectTimeoutUnits);
+        final CompletableFuture<List<CgMinerResponse>> responses;
+        if (isStreamable(patchingStrategy)) {
+            // Cheap enough to decode on the event loop as the bytes arrive
+            responses =
+                    connection.queryAsync(
+                            new StreamingResponseDecoder(
+                                    MAPPER,
+                                    request));
+        } else {
+            responses =
+                    connection
+                            .queryAsync()
+                            // Parsed on the event loop, since nothing here
+                            // waits on a miner
+                            .thenApply(
+                                    apiRequest -> {
+                                        try {
+                                            return toResponses(
+                                                    request,
+                                                    apiRequest.getResponse(),
+                                                    patchingStrategy);
+                                        } catch (final IOException ioe) {
+                                            throw new CompletionException(
+                                                    toNoResponseException(ioe));
+                                        }
+                                    });
+        }
+        return responses.thenApply(result -> {
+            if (result.isEmpty()) {
+                throw new CompletionException(
+                        toNoResponseException(
+                                connection.getFailure().orElse(null)));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Sends the provided batch as a single multi-request.
+     *
+     * @param batch The requests to merge.
+     *
+     * @return The responses, by command, which will be empty if the miner
+     *         replied but rejected the multi-request.
+     *
+     * @throws MinerException if the miner didn't reply.
+     */
+    private Map<CgMinerCommand, List<CgMinerResponse>> queryMerged(
+            final List<Request> batch)
+            throws MinerException {
+        final CgMinerRequest request = toMergedRequest(batch);
+        final ApiRequest apiRequest = toApiRequest(request);
+        try {
+            return toResponsesByCommand(
+                    query(
+                            apiRequest,
+                            request,
+                            new NullPatchingStrategy()));
+        } catch (final MinerException me) {
+            if (!isAnswered(apiRequest, me)) {
+                throw me;
+            }
+            LOG.debug("Multi-request to {}:{} failed",
                     this.apiIp,
                     this.apiPort,
-                    ioe);
+                    me);
+            return Collections.emptyMap();
         }
+    }
 
-        if (responses.isEmpty()) {
-            throw new MinerException(
-                    String.format(
-                            "Failed to obtain a response from %s:%d",
-                            this.apiIp,
-                            this.apiPort));
+    /**
+     * Queries a request on its own after it wasn't answered as part of a
+     * multi-request, remembering what didn't work.
+     *
+     * @param request         The request.
+     * @param partiallyMerged Whether or not the multi-request returned
+     *                        responses for other commands.
+     *
+     * @return The responses.
+     *
+     * @throws MinerException on failure to query.
+     */
+    private List<CgMinerResponse> queryUnmerged(
+            final Request request,
+            final boolean partiallyMerged)
+            throws MinerException {
+        if (partiallyMerged) {
+            rejectCommand(request);
         }
 
+        final List<CgMinerResponse> responses =
+                query(
+                        request.request,
+                        request.patchingStrategy);
+
+        if (!partiallyMerged) {
+            rejectMulti();
+        }
+
+        return responses;
+    }
+
+    /**
+     * Queries a request on its own, without blocking, after it wasn't
+     * answered as part of a multi-request, remembering what didn't work.
+     *
+     * @param request         The request.
+     * @param partiallyMerged Whether or not the multi-request returned
+     *                        responses for other commands.
+     *
+     * @return A future that completes with the responses.
+     */
+    private CompletableFuture<List<CgMinerResponse>> queryUnmergedAsync(
+            final Request request,
+            final boolean partiallyMerged) {
+        if (partiallyMerged) {
+            rejectCommand(request);
+        }
+        return queryAsync(
+                request.request,
+                request.patchingStrategy)
+                .thenApply(responses -> {
+                    if (!partiallyMerged) {
+                        rejectMulti();
+                    }
+                    return responses;
+                });
+    }
+
+    /**
+     * Remembers that the miner supports multi-requests, just not with the
+     * provided request's command.
+     *
+     * @param request The request.
+     */
+    private void rejectCommand(final Request request) {
+        MULTI_SUPPORT.rejectCommand(
+                this.apiIp,
+                this.apiPort,
+                this.commands,
+                request.request.getCommands().get(0));
+    }
+
+    /**
+     * Remembers that the miner is up, but it didn't like the multi-request.
+     */
+    private void rejectMulti() {
+        LOG.debug("{}:{} doesn't support multi-requests",
+                this.apiIp,
+                this.apiPort);
+        MULTI_SUPPORT.rejectMulti(
+                this.apiIp,
+                this.apiPort,
+                this.commands);
+    }
+
+    /**
+     * Creates the {@link ApiRequest} that will send the provided request.
+     *
+     * @param request The request.
+     *
+     * @return The {@link ApiRequest}.
+     */
+    private ApiRequest toApiRequest(final CgMinerRequest request) {
+        return new ApiRequestImpl(
+                this.apiIp,
+                this.apiPort,
+                toMessage(request));
+    }
+
+    /**
+     * Groups the requests into batches that will each be sent using a single
+     * connection.
+     *
+     * @return The batches.
+     */
+    private List<List<Request>> toBatches() {
+        final List<List<Request>> batches = new LinkedList<>();
+        List<Request> merged = new LinkedList<>();
+        final Set<CgMinerCommand> mergedCommands =
+                EnumSet.noneOf(CgMinerCommand.class);
+        for (final Request request : this.requests) {
+            if (isMergeable(request) &&
+                    mergedCommands.add(request.request.getCommands().get(0))) {
+                merged.add(request);
+            } else {
+                if (!merged.isEmpty()) {
+                    batches.add(merged);
+                    merged = new LinkedList<>();
+                    mergedCommands.clear();
+                }
+                if (isMergeable(request)) {
+                    merged.add(request);
+                    mergedCommands.add(request.request.getCommands().get(0));
+                } else {
+                    batches.add(Collections.singletonList(request));
+                }
+            }
+        }
+        if (!merged.isEmpty()) {
+            batches.add(merged);
+        }
+        return batches;
+    }
+
+    /**
+     * Creates the message to send to cgminer for the provided request.
+     *
+     * @param request The request.
+     *
+     * @return The message.
+     */
+    private String toMessage(final CgMinerRequest request) {
+        return "{\"" + this.commandKey + "\":\"" + request.toCommand() + "\"}";
+    }
+
+    /**
+     * Creates the exception to raise when a miner didn't respond.
+     *
+     * @param cause Why the miner didn't respond, or <code>null</code> if it
+     *              isn't known.
+     *
+     * @return The exception.
+     */
+    private MinerException toNoResponseException(final Throwable cause) {
+        return new MinerException(
+                String.format(
+                        "Failed to obtain a response from %s:%d",
+                        this.apiIp,
+                        this.apiPort),
+                cause);
+    }
+
+    /**
+     * Parses the raw response from cgminer.
+     *
+     * @param request          The request that was sent.
+     * @param responseString   The raw response.
+     * @param patchingStrategy The patching strategy.
+     *
+     * @return The parsed responses, which will be empty if nothing valid was
+     *         received.
+     *
+     * @throws IOException on failure to parse the response.
+     */
+    private List<CgMinerResponse> toResponses(
+            final CgMinerRequest request,
+            final String responseString,
+            final ResponsePatchingStrategy patchingStrategy)
+            throws IOException {
+        final List<CgMinerResponse> responses = new LinkedList<>();
+        LOG.debug("Received response: {}", responseString);
+        if (responseString != null && !responseString.isEmpty()) {
+            final Map<String, Object> responseMap =
+                    MAPPER.readValue(
+                            new ForkPatchingStrategy(patchingStrategy)
+                                    .patch(responseString),
+                            new TypeReference<Map<String, Object>>() {
+                            });
+            if (!responseMap.isEmpty()) {
+                toResponses(
+                        request,
+                        responseMap,
+                        responses);
+            }
+        }
         return responses;
     }
 
@@ -639,4 +1399,18 @@ public class CgMiner
             this.required = required;
         }
     }
-}
\ No newline at end of file
+
+    /** Supplies the responses to a request. */
+    @FunctionalInterface
+    private interface ResponseSupplier {
+
+        /**
+         * Obtains the responses.
+         *
+         * @return The responses.
+         *
+         * @throws MinerException on failure to obtain the responses.
+         */
+        List<CgMinerResponse> get() throws MinerException;
+    }
+}
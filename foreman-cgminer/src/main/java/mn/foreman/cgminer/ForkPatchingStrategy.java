@@ -0,0 +1,51 @@
+package mn.foreman.cgminer;
+
+import java.io.IOException;
+
+/**
+ * A {@link ForkPatchingStrategy} provides a {@link ResponsePatchingStrategy}
+ * implementation that fixes the invalid JSON formatting present in some forks
+ * of cgminer before handing it to another strategy.
+ */
+public class ForkPatchingStrategy
+        implements ResponsePatchingStrategy {
+
+    /** The strategy to run after the JSON is fixed. */
+    private final ResponsePatchingStrategy real;
+
+    /**
+     * Constructor.
+     *
+     * @param real The strategy to run after the JSON is fixed.
+     */
+    public ForkPatchingStrategy(final ResponsePatchingStrategy real) {
+        this.real = real;
+    }
+
+    @Override
+    public String patch(final String json) throws IOException {
+        String goodJson = json;
+
+        // Patch miners returning '}{'
+        goodJson = goodJson.replace("}{", "},{");
+
+        // Patching miners ending in \x00
+        goodJson = goodJson.replace("\\x00", "");
+
+        // Patch miners returning 'nan'
+        if (goodJson.contains("nan,")) {
+            goodJson = goodJson.replace("nan,", "0,");
+        }
+
+        // Patch miners returning 'inf'
+        if (goodJson.contains("inf,")) {
+            goodJson = goodJson.replace("inf,", "0,");
+        }
+
+        // Patch invalid escapes
+        if (goodJson.contains("\\'")) {
+            goodJson = goodJson.replace("\\'", "");
+        }
+        return this.real.patch(goodJson);
+    }
+}
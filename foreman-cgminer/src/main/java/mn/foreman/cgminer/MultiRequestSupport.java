@@ -0,0 +1,164 @@
+package mn.foreman.cgminer;
+
+import mn.foreman.cgminer.request.CgMinerCommand;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link MultiRequestSupport} remembers, per miner and firmware, whether
+ * cgminer accepted <code>cmd1+cmd2</code> multi-requests and which commands
+ * had to be removed from them.
+ *
+ * <p>{@link CgMiner CgMiners} are recreated every time the configuration is
+ * reloaded, so what was learned is kept here rather than on the miner.  The
+ * firmware is identified by the commands that are queried, as each firmware
+ * variant (stock, braiins, vnish, etc) is queried using its own set.  Entries
+ * expire so that firmware upgrades are eventually re-evaluated.</p>
+ */
+class MultiRequestSupport {
+
+    /** What was learned, by miner and command set. */
+    private final Cache<String, Support> support;
+
+    /**
+     * Constructor.
+     *
+     * @param expiration      How long to remember what was learned.
+     * @param expirationUnits The expiration units.
+     */
+    MultiRequestSupport(
+            final long expiration,
+            final TimeUnit expirationUnits) {
+        this.support =
+                CacheBuilder.newBuilder()
+                        .expireAfterWrite(
+                                expiration,
+                                expirationUnits)
+                        .build();
+    }
+
+    /**
+     * Returns whether or not the provided command may be merged with others.
+     *
+     * @param ip       The miner IP.
+     * @param port     The miner port.
+     * @param commands All of the commands queried from the miner.
+     * @param command  The command to check.
+     *
+     * @return Whether or not the command may be merged.
+     */
+    boolean isMergeable(
+            final String ip,
+            final int port,
+            final List<CgMinerCommand> commands,
+            final CgMinerCommand command) {
+        final Support support =
+                this.support.getIfPresent(
+                        toKey(
+                                ip,
+                                port,
+                                commands));
+        return support == null ||
+                (!support.multiRejected && !support.rejectedCommands.contains(command));
+    }
+
+    /**
+     * Records that a command was missing from a multi-response.
+     *
+     * @param ip       The miner IP.
+     * @param port     The miner port.
+     * @param commands All of the commands queried from the miner.
+     * @param command  The rejected command.
+     */
+    void rejectCommand(
+            final String ip,
+            final int port,
+            final List<CgMinerCommand> commands,
+            final CgMinerCommand command) {
+        toSupport(
+                ip,
+                port,
+                commands).rejectedCommands.add(command);
+    }
+
+    /**
+     * Records that multi-requests aren't supported by the miner.
+     *
+     * @param ip       The miner IP.
+     * @param port     The miner port.
+     * @param commands All of the commands queried from the miner.
+     */
+    void rejectMulti(
+            final String ip,
+            final int port,
+            final List<CgMinerCommand> commands) {
+        toSupport(
+                ip,
+                port,
+                commands).multiRejected = true;
+    }
+
+    /**
+     * Creates the cache key.
+     *
+     * @param ip       The miner IP.
+     * @param port     The miner port.
+     * @param commands The commands.
+     *
+     * @return The key.
+     */
+    private static String toKey(
+            final String ip,
+            final int port,
+            final List<CgMinerCommand> commands) {
+        return ip + ":" + port + "/" + commands
+                .stream()
+                .map(CgMinerCommand::getCommand)
+                .collect(Collectors.joining("+"));
+    }
+
+    /**
+     * Gets or creates what's known for the miner.
+     *
+     * @param ip       The miner IP.
+     * @param port     The miner port.
+     * @param commands The commands.
+     *
+     * @return What's known.
+     */
+    private Support toSupport(
+            final String ip,
+            final int port,
+            final List<CgMinerCommand> commands) {
+        try {
+            return this.support.get(
+                    toKey(
+                            ip,
+                            port,
+                            commands),
+                    Support::new);
+        } catch (final ExecutionException e) {
+            // Not possible - the loader can't fail
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** What has been learned about a miner. */
+    private static class Support {
+
+        /** The commands that couldn't be merged. */
+        private final Set<CgMinerCommand> rejectedCommands =
+                Sets.newConcurrentHashSet();
+
+        /** Whether or not multi-requests were rejected entirely. */
+        private volatile boolean multiRejected;
+    }
+}
@@ -0,0 +1,199 @@
+package mn.foreman.cgminer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+
+/**
+ * A {@link PatchingInputStream} corrects the invalid JSON that's returned by
+ * some forks of cgminer while it's being read, so the response can be parsed
+ * without first being buffered into a {@link String}.
+ *
+ * <p>The same corrections that were historically made with string
+ * replacements are applied:</p>
+ *
+ * <ul>
+ *     <li><code>}{</code> becomes <code>},{</code></li>
+ *     <li><code>\x00</code> is removed</li>
+ *     <li><code>nan,</code> becomes <code>0,</code></li>
+ *     <li><code>inf,</code> becomes <code>0,</code></li>
+ *     <li><code>\'</code> is removed</li>
+ * </ul>
+ *
+ * <p>Unlike the string replacements, structural corrections are only made
+ * outside of string values.  Multi-byte UTF-8 sequences never contain ASCII
+ * bytes, so it's safe to operate on the raw bytes.</p>
+ */
+class PatchingInputStream
+        extends FilterInputStream {
+
+    /** The largest number of bytes that need to be inspected at once. */
+    private static final int LOOKAHEAD = 4;
+
+    /** The bytes that were read while looking ahead. */
+    private final byte[] lookahead = new byte[LOOKAHEAD];
+
+    /** The source. */
+    private final PushbackInputStream source;
+
+    /** Whether or not the next byte is escaped. */
+    private boolean escaped;
+
+    /** Whether or not the stream is positioned inside of a string value. */
+    private boolean inString;
+
+    /** A byte that must be emitted before reading from the source again. */
+    private int pending = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param inputStream The stream to patch.
+     */
+    PatchingInputStream(final InputStream inputStream) {
+        this(new PushbackInputStream(
+                inputStream,
+                LOOKAHEAD));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param source The stream to patch.
+     */
+    private PatchingInputStream(final PushbackInputStream source) {
+        super(source);
+        this.source = source;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (this.pending != -1) {
+            final int next = this.pending;
+            this.pending = -1;
+            return next;
+        }
+
+        int next;
+        while ((next = this.source.read()) == '\\' && !this.escaped) {
+            if (consume("x00") || consume("'")) {
+                continue;
+            }
+            break;
+        }
+
+        if (next == -1) {
+            return -1;
+        }
+
+        if (this.inString) {
+            if (this.escaped) {
+                this.escaped = false;
+            } else if (next == '\\') {
+                this.escaped = true;
+            } else if (next == '"') {
+                this.inString = false;
+            }
+        } else if (next == '"') {
+            this.inString = true;
+        } else if (next == '}' && peek('{')) {
+            this.pending = ',';
+        } else if ((next == 'n' && consume("an,")) || (next == 'i' && consume("nf,"))) {
+            next = '0';
+            this.pending = ',';
+        }
+
+        return next;
+    }
+
+    @Override
+    public int read(
+            final byte[] buffer,
+            final int offset,
+            final int length)
+            throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        int count = 0;
+        while (count < length) {
+            final int next = read();
+            if (next == -1) {
+                break;
+            }
+            buffer[offset + count++] = (byte) next;
+            if (this.pending == -1 && this.source.available() <= 0) {
+                // Don't block for more data if some is ready to be parsed
+                break;
+            }
+        }
+
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && read() != -1) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    /**
+     * Checks to see if the next byte matches the expected byte, without
+     * consuming it.
+     *
+     * @param expected The expected byte.
+     *
+     * @return Whether or not the next byte matches.
+     *
+     * @throws IOException on failure to read.
+     */
+    private boolean peek(final int expected) throws IOException {
+        final int next = this.source.read();
+        if (next != -1) {
+            this.source.unread(next);
+        }
+        return next == expected;
+    }
+
+    /**
+     * Consumes the expected bytes if they're next in the stream.
+     *
+     * @param expected The expected bytes.
+     *
+     * @return Whether or not the bytes were present and consumed.
+     *
+     * @throws IOException on failure to read.
+     */
+    private boolean consume(final String expected) throws IOException {
+        final int length = expected.length();
+        int count = 0;
+        boolean matches = true;
+        while (matches && count < length) {
+            final int next = this.source.read();
+            if (next == -1) {
+                matches = false;
+            } else {
+                this.lookahead[count] = (byte) next;
+                matches = (next == expected.charAt(count));
+                count++;
+            }
+        }
+        if (!matches) {
+            this.source.unread(
+                    this.lookahead,
+                    0,
+                    count);
+        }
+        return matches;
+    }
+}
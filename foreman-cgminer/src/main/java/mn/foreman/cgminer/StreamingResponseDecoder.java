@@ -0,0 +1,254 @@
+package mn.foreman.cgminer;
+
+import mn.foreman.cgminer.request.CgMinerRequest;
+import mn.foreman.cgminer.response.CgMinerResponse;
+import mn.foreman.io.ResponseDecoder;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link StreamingResponseDecoder} parses cgminer responses token by token,
+ * straight from the bytes received from the miner, into {@link CgMinerResponse
+ * responses}.
+ *
+ * <p>This produces the same responses as patching the JSON, reading it into a
+ * {@link Map} and converting it, but without materializing the response as a
+ * {@link String} or a tree of intermediate objects.  Invalid JSON produced by
+ * some cgminer forks is corrected by a {@link PatchingInputStream} as it's
+ * read.</p>
+ */
+class StreamingResponseDecoder
+        implements ResponseDecoder<List<CgMinerResponse>> {
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(StreamingResponseDecoder.class);
+
+    /** The mapper used to create parsers. */
+    private final ObjectMapper objectMapper;
+
+    /** The request that was sent. */
+    private final CgMinerRequest request;
+
+    /**
+     * Constructor.
+     *
+     * @param objectMapper The mapper used to create parsers.
+     * @param request      The request that was sent.
+     */
+    StreamingResponseDecoder(
+            final ObjectMapper objectMapper,
+            final CgMinerRequest request) {
+        this.objectMapper = objectMapper;
+        this.request = request;
+    }
+
+    @Override
+    public List<CgMinerResponse> decode(final InputStream inputStream)
+            throws IOException {
+        final List<CgMinerResponse> responses = new LinkedList<>();
+        try (final JsonParser parser =
+                     this.objectMapper
+                             .getFactory()
+                             .createParser(
+                                     new PatchingInputStream(inputStream))) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                if (this.request.isMulti()) {
+                    readMulti(
+                            parser,
+                            responses);
+                } else {
+                    readResponse(
+                            parser,
+                            this.request,
+                            responses);
+                }
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Reads an object whose values are all scalars, converting each to a
+     * {@link String}.
+     *
+     * <p>Nested structures, which are rarely seen, are converted the same way
+     * they would have been when read into a {@link Map}.</p>
+     *
+     * @param parser The parser, positioned at the start of the object.
+     *
+     * @return The values.
+     *
+     * @throws IOException on failure to parse.
+     */
+    private static Map<String, String> readValues(final JsonParser parser)
+            throws IOException {
+        final Map<String, String> values = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+            switch (token) {
+                case VALUE_STRING:
+                    values.put(
+                            name,
+                            parser.getText());
+                    break;
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    values.put(
+                            name,
+                            parser.getNumberValue().toString());
+                    break;
+                case VALUE_TRUE:
+                case VALUE_FALSE:
+                    values.put(
+                            name,
+                            Boolean.toString(token == JsonToken.VALUE_TRUE));
+                    break;
+                case VALUE_NULL:
+                    // Nothing to record
+                    break;
+                default:
+                    values.put(
+                            name,
+                            parser.readValueAs(Object.class).toString());
+                    break;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Skips everything remaining in the current array.
+     *
+     * @param parser The parser, positioned within an array.
+     *
+     * @throws IOException on failure to parse.
+     */
+    private static void skipRemaining(final JsonParser parser)
+            throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            parser.skipChildren();
+        }
+    }
+
+    /**
+     * Reads the response to a multi-request, where each command's response is
+     * nested within an array named after the command.
+     *
+     * @param parser The parser, positioned at the start of the response.
+     * @param dest   The destination for the responses.
+     *
+     * @throws IOException on failure to parse.
+     */
+    private void readMulti(
+            final JsonParser parser,
+            final List<CgMinerResponse> dest)
+            throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String key = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+            if (!"id".equals(key) && token == JsonToken.START_ARRAY) {
+                final JsonToken first = parser.nextToken();
+                if (first == JsonToken.START_OBJECT) {
+                    readResponse(
+                            parser,
+                            toCommandRequest(key),
+                            dest);
+                    skipRemaining(parser);
+                } else if (first != JsonToken.END_ARRAY) {
+                    parser.skipChildren();
+                    skipRemaining(parser);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Reads a single cgminer response.
+     *
+     * @param parser  The parser, positioned at the start of the response.
+     * @param request The request that produced the response.
+     * @param dest    The destination for the response.
+     *
+     * @throws IOException on failure to parse.
+     */
+    private void readResponse(
+            final JsonParser parser,
+            final CgMinerRequest request,
+            final List<CgMinerResponse> dest)
+            throws IOException {
+        final CgMinerResponse.Builder builder =
+                new CgMinerResponse.Builder()
+                        .setRequest(request);
+        boolean hasStatus = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String key = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+            if ("id".equals(key) || token != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+
+            final boolean isStatus = "STATUS".equals(key);
+            JsonToken element;
+            while ((element = parser.nextToken()) != JsonToken.END_ARRAY && element != null) {
+                if (element == JsonToken.START_OBJECT) {
+                    final Map<String, String> values = readValues(parser);
+                    if (isStatus) {
+                        builder.addStatus(values);
+                        hasStatus = true;
+                    } else {
+                        builder.addValues(
+                                key,
+                                values);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        if (hasStatus) {
+            dest.add(builder.build());
+        } else {
+            LOG.warn("Obtained a failed response to {}", request);
+        }
+    }
+
+    /**
+     * Finds the request for the command that produced a section of a
+     * multi-response.
+     *
+     * @param key The section name.
+     *
+     * @return The single-command request, or the multi-request if the command
+     *         wasn't recognized.
+     */
+    private CgMinerRequest toCommandRequest(final String key) {
+        return this.request
+                .getCommands()
+                .stream()
+                .filter(command -> command.getCommand().equalsIgnoreCase(key))
+                .findFirst()
+                .map(command ->
+                        new CgMinerRequest.Builder()
+                                .setCommand(command)
+                                .build())
+                .orElse(this.request);
+    }
+}
@@ -13,17 +13,11 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
-import org.apache.http.conn.ssl.TrustAllStrategy;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.impl.client.BasicCookieStore;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.client.LaxRedirectStrategy;
 import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -418,29 +412,16 @@ public class HttpRequestBuilder<U> {
             final int socketTimeoutMillis =
                     (int) this.socketTimeoutUnits.toMillis(this.socketTimeout);
 
-            final HttpClientContext context = HttpClientContext.create();
-            context.setCookieStore(this.cookieStore);
-
-            final CloseableHttpClient httpClient =
-                    HttpClients
-                            .custom()
-                            .setSSLContext(
-                                    new SSLContextBuilder()
-                                            .loadTrustMaterial(null, TrustAllStrategy.INSTANCE)
-                                            .build())
-                            .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE)
-                            .setRedirectStrategy(new LaxRedirectStrategy())
-                            .setDefaultRequestConfig(
-                                    RequestConfig
-                                            .custom()
-                                            .setConnectTimeout(socketTimeoutMillis)
-                                            .setConnectionRequestTimeout(socketTimeoutMillis)
-                                            .setSocketTimeout(socketTimeoutMillis)
-                                            .setCookieSpec(CookieSpecs.DEFAULT)
-                                            .build())
-                            .setDefaultCookieStore(this.cookieStore)
-                            .disableAutomaticRetries()
-                            .build();
+            final HttpClientContext context =
+                    MinerHttpTransport.newContext(
+                            RequestConfig
+                                    .custom()
+                                    .setConnectTimeout(socketTimeoutMillis)
+                                    .setConnectionRequestTimeout(socketTimeoutMillis)
+                                    .setSocketTimeout(socketTimeoutMillis)
+                                    .setCookieSpec(CookieSpecs.DEFAULT)
+                                    .build(),
+                            this.cookieStore);
 
             final HttpRequest httpRequest;
             if (isPost) {
@@ -531,7 +512,7 @@ public class HttpRequestBuilder<U> {
                     .forEach(entry -> httpRequest.setHeader(entry.getKey(), entry.getValue()));
 
             try (final CloseableHttpResponse response =
-                         httpClient.execute(
+                         MinerHttpTransport.getLaxRedirectClient().execute(
                                  targetHost,
                                  httpRequest,
                                  context)) {
@@ -0,0 +1,237 @@
+package mn.foreman.http;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScheme;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.TrustAllStrategy;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.client.LaxRedirectStrategy;
+import org.apache.http.impl.client.TargetAuthenticationStrategy;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContextBuilder;
+
+import javax.net.ssl.SSLContext;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link MinerHttpTransport} provides the HTTP clients that are used to
+ * talk to miners, which all share one bounded pool of keep-alive connections.
+ *
+ * <p>Miners use self-signed certificates, so every certificate and hostname
+ * is trusted, using an {@link SSLContext} that's only built once.  The
+ * clients have no timeouts, cookies, or credentials of their own: every
+ * request must be executed with a context from {@link #newContext(int,
+ * TimeUnit, CookieStore)} so that nothing leaks between miners.</p>
+ *
+ * <p>Digest challenges are cached alongside basic ones, so a request that's
+ * executed with a shared {@link org.apache.http.client.AuthCache} can answer
+ * the miner's last challenge without being rejected first.</p>
+ *
+ * <p>Note: the clients are shared, so they must never be closed.</p>
+ */
+public class MinerHttpTransport {
+
+    /** The longest that an idle connection is kept. */
+    private static final long IDLE_SECONDS = 15;
+
+    /**
+     * The idle time after which a connection is checked before it's reused,
+     * since miners are quick to drop keep-alive connections and requests are
+     * never retried.
+     */
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 500;
+
+    /** The client that follows redirects for every method. */
+    private static final CloseableHttpClient LAX_REDIRECT_CLIENT;
+
+    /** The client that only follows redirects for GETs and HEADs. */
+    private static final CloseableHttpClient STANDARD_CLIENT;
+
+    static {
+        final PoolingHttpClientConnectionManager connectionManager =
+                new PoolingHttpClientConnectionManager(toRegistry());
+        connectionManager.setMaxTotal(
+                Integer.getInteger(
+                        "MINER_HTTP_MAX_CONNECTIONS",
+                        1024));
+        connectionManager.setDefaultMaxPerRoute(
+                Integer.getInteger(
+                        "MINER_HTTP_MAX_CONNECTIONS_PER_MINER",
+                        4));
+        connectionManager.setValidateAfterInactivity(
+                VALIDATE_AFTER_INACTIVITY_MILLIS);
+
+        new IdleConnectionEvictor(
+                connectionManager,
+                IDLE_SECONDS,
+                TimeUnit.SECONDS).start();
+
+        STANDARD_CLIENT =
+                HttpClients
+                        .custom()
+                        .setConnectionManager(connectionManager)
+                        .setConnectionManagerShared(true)
+                        .setKeepAliveStrategy(MinerHttpTransport::toKeepAlive)
+                        .setTargetAuthenticationStrategy(new CachingAuthenticationStrategy())
+                        .disableAutomaticRetries()
+                        .build();
+        LAX_REDIRECT_CLIENT =
+                HttpClients
+                        .custom()
+                        .setConnectionManager(connectionManager)
+                        .setConnectionManagerShared(true)
+                        .setKeepAliveStrategy(MinerHttpTransport::toKeepAlive)
+                        .setTargetAuthenticationStrategy(new CachingAuthenticationStrategy())
+                        .setRedirectStrategy(new LaxRedirectStrategy())
+                        .disableAutomaticRetries()
+                        .build();
+    }
+
+    /**
+     * Returns the client that follows redirects for every method, including
+     * POSTs.
+     *
+     * @return The client.
+     */
+    public static CloseableHttpClient getLaxRedirectClient() {
+        return LAX_REDIRECT_CLIENT;
+    }
+
+    /**
+     * Returns the client that only follows redirects for GETs and HEADs.
+     *
+     * @return The client.
+     */
+    public static CloseableHttpClient getStandardClient() {
+        return STANDARD_CLIENT;
+    }
+
+    /**
+     * Creates a context for a single request, or a series of requests that
+     * share a session.
+     *
+     * @param timeout      The connect, socket, and pool timeout.
+     * @param timeoutUnits The timeout (units).
+     * @param cookieStore  The cookies, or <code>null</code> to use new ones.
+     *
+     * @return The context.
+     */
+    public static HttpClientContext newContext(
+            final int timeout,
+            final TimeUnit timeoutUnits,
+            final CookieStore cookieStore) {
+        final int timeoutMillis = (int) timeoutUnits.toMillis(timeout);
+        return newContext(
+                RequestConfig
+                        .custom()
+                        .setConnectTimeout(timeoutMillis)
+                        .setConnectionRequestTimeout(timeoutMillis)
+                        .setSocketTimeout(timeoutMillis)
+                        .build(),
+                cookieStore);
+    }
+
+    /**
+     * Creates a context for a single request, or a series of requests that
+     * share a session.
+     *
+     * @param requestConfig The request configuration, which must set a
+     *                      connection request timeout.
+     * @param cookieStore   The cookies, or <code>null</code> to use new
+     *                      ones.
+     *
+     * @return The context.
+     */
+    public static HttpClientContext newContext(
+            final RequestConfig requestConfig,
+            final CookieStore cookieStore) {
+        final HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(requestConfig);
+        context.setCookieStore(
+                cookieStore != null
+                        ? cookieStore
+                        : new BasicCookieStore());
+        return context;
+    }
+
+    /**
+     * Returns how long a connection can be kept alive, which is capped so
+     * that connections are dropped before the miners drop them.
+     *
+     * @param response The response.
+     * @param context  The context.
+     *
+     * @return How long the connection can be kept alive, in millis.
+     */
+    private static long toKeepAlive(
+            final HttpResponse response,
+            final HttpContext context) {
+        final long max = TimeUnit.SECONDS.toMillis(IDLE_SECONDS);
+        final long keepAlive =
+                DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(
+                        response,
+                        context);
+        return keepAlive > 0
+                ? Math.min(keepAlive, max)
+                : max;
+    }
+
+    /**
+     * Creates the socket factories, trusting every miner's certificate.
+     *
+     * @return The socket factories.
+     */
+    private static Registry<ConnectionSocketFactory> toRegistry() {
+        final SSLContext sslContext;
+        try {
+            sslContext =
+                    new SSLContextBuilder()
+                            .loadTrustMaterial(null, TrustAllStrategy.INSTANCE)
+                            .build();
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        return RegistryBuilder
+                .<ConnectionSocketFactory>create()
+                .register(
+                        "http",
+                        PlainConnectionSocketFactory.getSocketFactory())
+                .register(
+                        "https",
+                        new SSLConnectionSocketFactory(
+                                sslContext,
+                                NoopHostnameVerifier.INSTANCE))
+                .build();
+    }
+
+    /**
+     * A {@link CachingAuthenticationStrategy} is a {@link
+     * TargetAuthenticationStrategy} that caches digest schemes once they
+     * succeed, rather than only basic ones.
+     */
+    private static class CachingAuthenticationStrategy
+            extends TargetAuthenticationStrategy {
+
+        @Override
+        protected boolean isCachable(final AuthScheme authScheme) {
+            return super.isCachable(authScheme) ||
+                    (authScheme != null &&
+                            authScheme.isComplete() &&
+                            "digest".equalsIgnoreCase(authScheme.getSchemeName()));
+        }
+    }
+}
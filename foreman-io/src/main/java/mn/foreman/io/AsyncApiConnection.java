@@ -0,0 +1,289 @@
+package mn.foreman.io;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.timeout.ReadTimeoutException;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link AsyncApiConnection} provides a non-blocking, Netty-based
+ * connection to a remote miner instance.
+ *
+ * <p>The request is written as soon as the connection is established and the
+ * response is accumulated until the remote side closes the connection (the
+ * cgminer API behavior) or the read timeout elapses.  No thread is held while
+ * waiting on the remote miner.</p>
+ *
+ * <p>The {@link ApiRequest} is always {@link ApiRequest#completed()
+ * completed}, regardless of whether the connection was successful, to mirror
+ * {@link SocketApiConnection}.  Why the connection failed, if it did, is
+ * available from {@link #getFailure()} once it's been completed.</p>
+ */
+public class AsyncApiConnection
+        implements Connection {
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(AsyncApiConnection.class);
+
+    /** The request. */
+    private final ApiRequest apiRequest;
+
+    /** The connection timeout. */
+    private final int connectTimeout;
+
+    /** The connection timeout units. */
+    private final TimeUnit connectTimeoutUnits;
+
+    /** The event group. */
+    private final EventLoopGroup eventLoopGroup;
+
+    /** The first failure that was observed. */
+    private volatile Throwable failure;
+
+    /**
+     * Constructor.
+     *
+     * @param apiRequest          The request.
+     * @param eventLoopGroup      The event group.
+     * @param connectTimeout      The connection timeout.
+     * @param connectTimeoutUnits The connection timeout units.
+     */
+    AsyncApiConnection(
+            final ApiRequest apiRequest,
+            final EventLoopGroup eventLoopGroup,
+            final int connectTimeout,
+            final TimeUnit connectTimeoutUnits) {
+        Validate.notNull(
+                apiRequest,
+                "Request cannot be null");
+        Validate.notNull(
+                eventLoopGroup,
+                "Event group cannot be null");
+        Validate.isTrue(
+                connectTimeout >= 0,
+                "connectTimeout must be >= 0");
+        Validate.notNull(
+                connectTimeoutUnits,
+                "connectTimeoutUnits cannot be null");
+        this.apiRequest = apiRequest;
+        this.eventLoopGroup = eventLoopGroup;
+        this.connectTimeout = connectTimeout;
+        this.connectTimeoutUnits = connectTimeoutUnits;
+    }
+
+    /**
+     * Returns why the connection failed, if it did.  Netty's connect and read
+     * timeouts are reported as {@link SocketTimeoutException
+     * SocketTimeoutExceptions}, the same as {@link SocketApiConnection}.
+     *
+     * @return The failure.
+     */
+    public Optional<Throwable> getFailure() {
+        return Optional.ofNullable(this.failure);
+    }
+
+    @Override
+    public void query() {
+        queryAsync().join();
+    }
+
+    /**
+     * Starts the query and returns immediately.
+     *
+     * @return A future that completes, on an event loop thread, once the
+     *         response has been fully received or the connection has failed.
+     */
+    public CompletableFuture<ApiRequest> queryAsync() {
+        return queryAsync(inputStream -> {
+            this.apiRequest.setResponse(
+                    IOUtils.toString(
+                            inputStream,
+                            StandardCharsets.UTF_8));
+            return this.apiRequest;
+        });
+    }
+
+    /**
+     * Starts the query and returns immediately.  Once the response has been
+     * fully received, it's handed to the provided decoder straight from the
+     * network buffers.
+     *
+     * <p>Note: decoding happens on an event loop thread, so the decoder must
+     * not block.</p>
+     *
+     * @param decoder The decoder.
+     * @param <T>     The response type.
+     *
+     * @return A future that completes with the decoded response, or
+     *         exceptionally if it couldn't be decoded.
+     */
+    public <T> CompletableFuture<T> queryAsync(
+            final ResponseDecoder<T> decoder) {
+        final CompletableFuture<T> future =
+                new CompletableFuture<>();
+        final CompositeByteBuf received = Unpooled.compositeBuffer();
+
+        final Bootstrap bootstrap = new Bootstrap();
+        bootstrap
+                .group(this.eventLoopGroup)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS,
+                        (int) this.connectTimeoutUnits.toMillis(
+                                this.connectTimeout))
+                .handler(new ChannelInitializer<SocketChannel>() {
+
+                    @Override
+                    protected void initChannel(final SocketChannel channel) {
+                        channel.pipeline().addLast(
+                                new ReadTimeoutHandler(
+                                        AsyncApiConnection.this.connectTimeout,
+                                        AsyncApiConnection.this.connectTimeoutUnits),
+                                new ChannelInboundHandlerAdapter() {
+
+                                    @Override
+                                    public void channelInactive(
+                                            final ChannelHandlerContext context) {
+                                        finish(
+                                                received,
+                                                decoder,
+                                                future);
+                                    }
+
+                                    @Override
+                                    public void channelRead(
+                                            final ChannelHandlerContext context,
+                                            final Object msg) {
+                                        received.addComponent(
+                                                true,
+                                                (ByteBuf) msg);
+                                    }
+
+                                    @Override
+                                    public void exceptionCaught(
+                                            final ChannelHandlerContext context,
+                                            final Throwable cause) {
+                                        LOG.debug("Exception occurred while communicating with {}:{}",
+                                                AsyncApiConnection.this.apiRequest.getIp(),
+                                                AsyncApiConnection.this.apiRequest.getPort(),
+                                                cause);
+                                        recordFailure(cause);
+                                        context.close();
+                                    }
+                                });
+                    }
+                });
+
+        bootstrap
+                .connect(
+                        this.apiRequest.getIp(),
+                        this.apiRequest.getPort())
+                .addListener((ChannelFutureListener) connectFuture -> {
+                    if (connectFuture.isSuccess()) {
+                        this.apiRequest.connected(true);
+                        final Channel channel = connectFuture.channel();
+                        final String request = this.apiRequest.getRequest();
+                        if (!request.isEmpty()) {
+                            channel.writeAndFlush(
+                                    Unpooled.copiedBuffer(
+                                            request,
+                                            StandardCharsets.UTF_8));
+                        }
+                    } else {
+                        LOG.debug("Failed to connect to {}:{}",
+                                this.apiRequest.getIp(),
+                                this.apiRequest.getPort(),
+                                connectFuture.cause());
+                        recordFailure(connectFuture.cause());
+                        finish(
+                                received,
+                                decoder,
+                                future);
+                    }
+                });
+
+        return future;
+    }
+
+    /**
+     * Converts Netty's timeouts to the exceptions that a blocking socket would
+     * have thrown.
+     *
+     * @param cause The failure.
+     *
+     * @return The converted failure.
+     */
+    private static Throwable toFailure(final Throwable cause) {
+        final String message;
+        if (cause instanceof ConnectTimeoutException) {
+            message = "connect timed out";
+        } else if (cause instanceof ReadTimeoutException) {
+            message = "Read timed out";
+        } else {
+            return cause;
+        }
+        final SocketTimeoutException timeout =
+                new SocketTimeoutException(message);
+        timeout.initCause(cause);
+        return timeout;
+    }
+
+    /**
+     * Decodes everything that was received, completes the request and the
+     * future.
+     *
+     * @param received The bytes received.
+     * @param decoder  The decoder.
+     * @param future   The future to complete.
+     * @param <T>      The response type.
+     */
+    private <T> void finish(
+            final CompositeByteBuf received,
+            final ResponseDecoder<T> decoder,
+            final CompletableFuture<T> future) {
+        if (!future.isDone()) {
+            try (final InputStream inputStream =
+                         new ByteBufInputStream(received)) {
+                future.complete(decoder.decode(inputStream));
+            } catch (final Exception e) {
+                // A partial response is the symptom, not the cause
+                future.completeExceptionally(
+                        this.failure != null
+                                ? this.failure
+                                : e);
+            } finally {
+                received.release();
+                this.apiRequest.completed();
+            }
+        }
+    }
+
+    /**
+     * Remembers the first failure that was observed.
+     *
+     * @param cause The failure.
+     */
+    private void recordFailure(final Throwable cause) {
+        if (this.failure == null && cause != null) {
+            this.failure = toFailure(cause);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package mn.foreman.io;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.*;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ConnectProbe} checks whether anything is listening at an IP by
+ * opening, and immediately closing, TCP connections to a set of ports.
+ *
+ * <p>A port counts as reachable if the connection is accepted or actively
+ * refused, since a refusal means that a host answered.  Only timeouts and
+ * unreachable routes mean that nothing is there.  Probes are serviced by the
+ * shared event loop, so thousands can be outstanding without holding a
+ * thread each.</p>
+ */
+public class ConnectProbe {
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(ConnectProbe.class);
+
+    /** The bootstrap used for every probe. */
+    private final Bootstrap bootstrap;
+
+    /**
+     * Constructor.
+     *
+     * @param eventLoopGroup      The event group.
+     * @param connectTimeout      The connection timeout.
+     * @param connectTimeoutUnits The connection timeout units.
+     */
+    ConnectProbe(
+            final EventLoopGroup eventLoopGroup,
+            final int connectTimeout,
+            final TimeUnit connectTimeoutUnits) {
+        Validate.notNull(
+                eventLoopGroup,
+                "Event group cannot be null");
+        Validate.isTrue(
+                connectTimeout >= 0,
+                "connectTimeout must be >= 0");
+        Validate.notNull(
+                connectTimeoutUnits,
+                "connectTimeoutUnits cannot be null");
+        this.bootstrap =
+                new Bootstrap()
+                        .group(eventLoopGroup)
+                        .channel(NioSocketChannel.class)
+                        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS,
+                                (int) connectTimeoutUnits.toMillis(connectTimeout))
+                        // Skips the FIN handshake so probes don't linger
+                        .option(ChannelOption.SO_LINGER, 0)
+                        .handler(new ChannelInboundHandlerAdapter());
+    }
+
+    /**
+     * Connects to the provided port, and immediately closes the connection.
+     *
+     * <p>Unlike {@link #probe(String, List)}, a refused connection is a
+     * failure, since it means that nothing is listening on the port.</p>
+     *
+     * @param ip   The IP.
+     * @param port The port.
+     *
+     * @return A future that completes, on an event loop thread, once the
+     *         connection was accepted, or exceptionally with why it wasn't. A
+     *         timeout is reported as a {@link SocketTimeoutException}.
+     */
+    public CompletableFuture<Void> connect(
+            final String ip,
+            final int port) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        this.bootstrap
+                .connect(
+                        ip,
+                        port)
+                .addListener((ChannelFutureListener) connectFuture -> {
+                    if (connectFuture.isSuccess()) {
+                        connectFuture.channel().close();
+                        future.complete(null);
+                    } else if (connectFuture.cause() instanceof ConnectTimeoutException) {
+                        final SocketTimeoutException timeout =
+                                new SocketTimeoutException(
+                                        connectFuture.cause().getMessage());
+                        timeout.initCause(connectFuture.cause());
+                        future.completeExceptionally(timeout);
+                    } else {
+                        future.completeExceptionally(connectFuture.cause());
+                    }
+                });
+        return future;
+    }
+
+    /**
+     * Probes the provided ports, completing as soon as any of them is found
+     * to be reachable.
+     *
+     * @param ip    The IP.
+     * @param ports The ports to probe.
+     *
+     * @return A future that completes, on an event loop thread, with whether
+     *         or not the host is reachable.
+     */
+    public CompletableFuture<Boolean> probe(
+            final String ip,
+            final List<Integer> ports) {
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        if (ports.isEmpty()) {
+            future.complete(false);
+            return future;
+        }
+
+        final AtomicInteger remaining = new AtomicInteger(ports.size());
+        for (final int port : ports) {
+            this.bootstrap
+                    .connect(
+                            ip,
+                            port)
+                    .addListener((ChannelFutureListener) connectFuture -> {
+                        if (connectFuture.isSuccess()) {
+                            connectFuture.channel().close();
+                        }
+                        final boolean reachable =
+                                isReachable(connectFuture);
+                        LOG.debug("Probed {}:{} (reachable={})",
+                                ip,
+                                port,
+                                reachable);
+                        if (reachable) {
+                            future.complete(true);
+                        } else if (remaining.decrementAndGet() == 0) {
+                            future.complete(false);
+                        }
+                    });
+        }
+        return future;
+    }
+
+    /**
+     * Checks whether or not the outcome of a connection attempt means that a
+     * host answered.
+     *
+     * @param connectFuture The attempt.
+     *
+     * @return Whether or not the host answered.
+     */
+    private static boolean isReachable(final ChannelFuture connectFuture) {
+        if (connectFuture.isSuccess()) {
+            return true;
+        }
+        final Throwable cause = connectFuture.cause();
+        return cause instanceof ConnectException &&
+                !(cause instanceof ConnectTimeoutException);
+    }
+}
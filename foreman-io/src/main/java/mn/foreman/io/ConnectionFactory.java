@@ -1,5 +1,6 @@
 package mn.foreman.io;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.EventLoopGroup;
@@ -11,7 +12,7 @@ import org.apache.http.client.CookieStore;
 import org.apache.http.impl.client.BasicCookieStore;
 
 import java.util.Arrays;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
 /**
  * A {@link ConnectionFactory} provides a factory to creating {@link Connection
@@ -19,10 +20,37 @@ import java.util.concurrent.TimeUnit;
  */
 public class ConnectionFactory {
 
+    /**
+     * The threads shared by every miner for the work that can't run on the
+     * event loop because it may wait on a miner (ex: a response strategy that
+     * makes an HTTP call).  Idle threads exit.
+     */
+    private static final ExecutorService BLOCKING_EXECUTOR;
+
     /** A default thread pool. */
     private static final EventLoopGroup DEFAULT_GROUP =
             new NioEventLoopGroup();
 
+    static {
+        final int threads =
+                Integer.getInteger(
+                        "BLOCKING_THREADS",
+                        Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+        final ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(
+                        threads,
+                        threads,
+                        1,
+                        TimeUnit.MINUTES,
+                        new LinkedBlockingQueue<>(),
+                        new ThreadFactoryBuilder()
+                                .setNameFormat("io-blocking-%d")
+                                .setDaemon(true)
+                                .build());
+        executor.allowCoreThreadTimeOut(true);
+        BLOCKING_EXECUTOR = executor;
+    }
+
     /**
      * Constructor.
      *
@@ -32,6 +60,46 @@ public class ConnectionFactory {
         // Do nothing
     }
 
+    /**
+     * Creates a non-blocking {@link Connection} that sends the request and
+     * reads until the remote side closes the connection.  The connection is
+     * serviced by the shared event loop.
+     *
+     * @param request             The request.
+     * @param connectTimeout      The connection timeout.
+     * @param connectTimeoutUnits The connection timeout (units).
+     *
+     * @return The new {@link AsyncApiConnection}.
+     */
+    public static AsyncApiConnection createAsyncConnection(
+            final ApiRequest request,
+            final int connectTimeout,
+            final TimeUnit connectTimeoutUnits) {
+        return new AsyncApiConnection(
+                request,
+                DEFAULT_GROUP,
+                connectTimeout,
+                connectTimeoutUnits);
+    }
+
+    /**
+     * Creates a {@link ConnectProbe} for checking whether hosts are reachable
+     * before querying them.  Probes are serviced by the shared event loop.
+     *
+     * @param connectTimeout      The connection timeout.
+     * @param connectTimeoutUnits The connection timeout (units).
+     *
+     * @return The new {@link ConnectProbe}.
+     */
+    public static ConnectProbe createConnectProbe(
+            final int connectTimeout,
+            final TimeUnit connectTimeoutUnits) {
+        return new ConnectProbe(
+                DEFAULT_GROUP,
+                connectTimeout,
+                connectTimeoutUnits);
+    }
+
     /**
      * Creates a {@link Connection} to a miner that accepts RPC calls that are
      * delimiter based.
@@ -142,7 +210,27 @@ public class ConnectionFactory {
      *
      * @return The connection.
      */
-    public static Connection createRawConnection(
+    public static SocketApiConnection createRawConnection(
+            final ApiRequest request,
+            final int connectTimeout,
+            final TimeUnit connectTimeoutUnits) {
+        return new SocketApiConnection(
+                request,
+                connectTimeout,
+                connectTimeoutUnits);
+    }
+
+    /**
+     * Creates a raw java socket connection whose response can be decoded as
+     * it's read via {@link SocketApiConnection#query(ResponseDecoder)}.
+     *
+     * @param request             The request.
+     * @param connectTimeout      The connect timeout.
+     * @param connectTimeoutUnits The connect timeout (units).
+     *
+     * @return The connection.
+     */
+    public static SocketApiConnection createStreamingConnection(
             final ApiRequest request,
             final int connectTimeout,
             final TimeUnit connectTimeoutUnits) {
@@ -204,4 +292,14 @@ public class ConnectionFactory {
                 connectTimeoutUnits,
                 new BasicCookieStore());
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the executor for work that may wait on a miner, which must be
+     * kept off of the event loop.
+     *
+     * @return The executor.
+     */
+    public static Executor getBlockingExecutor() {
+        return BLOCKING_EXECUTOR;
+    }
+}
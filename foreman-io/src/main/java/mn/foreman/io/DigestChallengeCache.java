@@ -0,0 +1,206 @@
+package mn.foreman.io;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.http.Header;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.auth.AuthScheme;
+import org.apache.http.auth.AuthenticationException;
+import org.apache.http.auth.ContextAwareAuthScheme;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.MalformedChallengeException;
+import org.apache.http.client.AuthCache;
+import org.apache.http.conn.SchemePortResolver;
+import org.apache.http.conn.UnsupportedSchemeException;
+import org.apache.http.impl.auth.DigestScheme;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DigestChallengeCache} is an {@link AuthCache} that remembers the
+ * last digest challenge from every host, across requests, so that a request
+ * can answer the challenge up front rather than being rejected to get one.
+ *
+ * <p>Each host's {@link DigestScheme} is shared as-is, rather than copied,
+ * so that it keeps the realm, nonce, and opaque from the challenge and counts
+ * every use of the nonce.  The scheme is replaced once the host issues a new
+ * challenge and the request that received it succeeds.</p>
+ *
+ * <p>Note: HttpClient treats a rejected answer as a failed login, since
+ * miners don't mark their reissued challenges as stale, and removes the
+ * host's scheme.  Callers must retry once to get the new challenge.</p>
+ *
+ * <p>Only digest schemes are cached, for up to {@link #MAX_HOSTS} hosts.  A
+ * host's scheme is dropped once it hasn't been used for {@link
+ * #EXPIRE_MINUTES} minutes, after which its next request is challenged
+ * again.</p>
+ */
+class DigestChallengeCache
+        implements AuthCache {
+
+    /** How long a scheme is kept after it was last used (minutes). */
+    private static final int EXPIRE_MINUTES = 30;
+
+    /** The most hosts to keep schemes for. */
+    private static final int MAX_HOSTS = 65536;
+
+    /** Resolves the default port for hosts without one. */
+    private final SchemePortResolver schemePortResolver =
+            DefaultSchemePortResolver.INSTANCE;
+
+    /** The last scheme that succeeded for each host. */
+    private final Cache<HttpHost, AuthScheme> schemes =
+            CacheBuilder.newBuilder()
+                    .maximumSize(MAX_HOSTS)
+                    .expireAfterAccess(
+                            EXPIRE_MINUTES,
+                            TimeUnit.MINUTES)
+                    .build();
+
+    @Override
+    public void clear() {
+        this.schemes.invalidateAll();
+    }
+
+    @Override
+    public AuthScheme get(final HttpHost host) {
+        return this.schemes.getIfPresent(toKey(host));
+    }
+
+    @Override
+    public void put(
+            final HttpHost host,
+            final AuthScheme authScheme) {
+        if (authScheme instanceof SharedDigestScheme) {
+            this.schemes.put(
+                    toKey(host),
+                    authScheme);
+        } else if (authScheme instanceof DigestScheme) {
+            this.schemes.put(
+                    toKey(host),
+                    new SharedDigestScheme((DigestScheme) authScheme));
+        }
+    }
+
+    @Override
+    public void remove(final HttpHost host) {
+        this.schemes.invalidate(toKey(host));
+    }
+
+    /**
+     * Normalizes the host so that hosts with and without their default port
+     * are the same.
+     *
+     * @param host The host.
+     *
+     * @return The key for the host.
+     */
+    private HttpHost toKey(final HttpHost host) {
+        if (host.getPort() <= 0) {
+            try {
+                return new HttpHost(
+                        host.getHostName(),
+                        this.schemePortResolver.resolve(host),
+                        host.getSchemeName());
+            } catch (final UnsupportedSchemeException e) {
+                return host;
+            }
+        }
+        return host;
+    }
+
+    /**
+     * A {@link SharedDigestScheme} serializes access to a {@link DigestScheme}
+     * that's used by concurrent requests, since the scheme stores the method
+     * and URI of the request it's answering and advances the nonce count.
+     */
+    private static class SharedDigestScheme
+            implements ContextAwareAuthScheme {
+
+        /** The scheme. */
+        private final DigestScheme digestScheme;
+
+        /**
+         * Constructor.
+         *
+         * @param digestScheme The scheme.
+         */
+        SharedDigestScheme(final DigestScheme digestScheme) {
+            this.digestScheme = digestScheme;
+        }
+
+        @Override
+        public Header authenticate(
+                final Credentials credentials,
+                final HttpRequest request,
+                final HttpContext context)
+                throws AuthenticationException {
+            synchronized (this.digestScheme) {
+                return this.digestScheme.authenticate(
+                        credentials,
+                        request,
+                        context);
+            }
+        }
+
+        @Override
+        @Deprecated
+        public Header authenticate(
+                final Credentials credentials,
+                final HttpRequest request)
+                throws AuthenticationException {
+            return authenticate(
+                    credentials,
+                    request,
+                    new BasicHttpContext());
+        }
+
+        @Override
+        public String getParameter(final String name) {
+            synchronized (this.digestScheme) {
+                return this.digestScheme.getParameter(name);
+            }
+        }
+
+        @Override
+        public String getRealm() {
+            synchronized (this.digestScheme) {
+                return this.digestScheme.getRealm();
+            }
+        }
+
+        @Override
+        public String getSchemeName() {
+            return this.digestScheme.getSchemeName();
+        }
+
+        @Override
+        public boolean isComplete() {
+            synchronized (this.digestScheme) {
+                return this.digestScheme.isComplete();
+            }
+        }
+
+        @Override
+        public boolean isConnectionBased() {
+            return false;
+        }
+
+        @Override
+        public void processChallenge(final Header header)
+                throws MalformedChallengeException {
+            synchronized (this.digestScheme) {
+                this.digestScheme.processChallenge(header);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return this.digestScheme.toString();
+        }
+    }
+}
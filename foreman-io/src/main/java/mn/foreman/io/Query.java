@@ -1,5 +1,6 @@
 package mn.foreman.io;
 
+import mn.foreman.http.MinerHttpTransport;
 import mn.foreman.model.ApplicationConfiguration;
 import mn.foreman.model.error.MinerException;
 
@@ -12,7 +13,6 @@ import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.AuthCache;
 import org.apache.http.client.CredentialsProvider;
-import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
@@ -23,11 +23,8 @@ import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.impl.auth.BasicScheme;
-import org.apache.http.impl.auth.DigestScheme;
 import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
@@ -51,6 +48,13 @@ public class Query {
     private static final Logger LOG =
             LoggerFactory.getLogger(Query.class);
 
+    /**
+     * The last digest challenge from each miner, which is answered up front
+     * until the miner issues a new one.
+     */
+    private static final AuthCache DIGEST_CHALLENGES =
+            new DigestChallengeCache();
+
     /** The mapper for JSON. */
     private static final ObjectMapper OBJECT_MAPPER =
             new ObjectMapper()
@@ -755,57 +759,43 @@ public class Query {
                         url.getPort(),
                         url.getProtocol());
 
-        CloseableHttpClient httpClient = null;
-        try {
-            final HttpClientContext context = HttpClientContext.create();
-            httpClient =
-                    HttpClients
-                            .custom()
-                            .disableAutomaticRetries()
-                            .setDefaultRequestConfig(
-                                    RequestConfig
-                                            .custom()
-                                            .setConnectTimeout((int) timeoutUnits.toMillis(timeout))
-                                            .setSocketTimeout((int) timeoutUnits.toMillis(timeout))
-                                            .build())
-                            .build();
+        final HttpClientContext context =
+                MinerHttpTransport.newContext(
+                        timeout,
+                        timeoutUnits,
+                        null);
 
-            final HttpPost httpPost = new HttpPost(url.getPath());
-            httpPost.setEntity(new StringEntity(payload));
-            httpPost.setHeader("Accept", "application/json");
-            httpPost.setHeader("Content-type", "application/json");
-            if (auth != null) {
-                httpPost.setHeader("Authorization", "Bearer " + auth);
-            }
+        final HttpPost httpPost = new HttpPost(url.getPath());
+        httpPost.setEntity(new StringEntity(payload));
+        httpPost.setHeader("Accept", "application/json");
+        httpPost.setHeader("Content-type", "application/json");
+        if (auth != null) {
+            httpPost.setHeader("Authorization", "Bearer " + auth);
+        }
 
-            LOG.debug("Sending request: {}", httpPost);
-
-            try (final CloseableHttpResponse response =
-                         httpClient.execute(
-                                 targetHost,
-                                 httpPost,
-                                 context)) {
-                final StatusLine statusLine =
-                        response.getStatusLine();
-                final String responseBody =
-                        EntityUtils.toString(response.getEntity());
-                LOG.debug("Received digest API response: {}", responseBody);
-                try {
-                    result =
-                            OBJECT_MAPPER.readValue(
-                                    responseBody,
-                                    type);
-                } catch (final Exception e) {
-                    throw new MinerException(e);
-                }
-                responseProcessor.accept(
-                        statusLine.getStatusCode(),
-                        responseBody);
-            }
-        } finally {
-            if (httpClient != null) {
-                httpClient.close();
+        LOG.debug("Sending request: {}", httpPost);
+
+        try (final CloseableHttpResponse response =
+                     MinerHttpTransport.getStandardClient().execute(
+                             targetHost,
+                             httpPost,
+                             context)) {
+            final StatusLine statusLine =
+                    response.getStatusLine();
+            final String responseBody =
+                    EntityUtils.toString(response.getEntity());
+            LOG.debug("Received digest API response: {}", responseBody);
+            try {
+                result =
+                        OBJECT_MAPPER.readValue(
+                                responseBody,
+                                type);
+            } catch (final Exception e) {
+                throw new MinerException(e);
             }
+            responseProcessor.accept(
+                    statusLine.getStatusCode(),
+                    responseBody);
         }
         return Optional.ofNullable(result);
     }
@@ -1301,160 +1291,158 @@ public class Query {
                         url.getPort(),
                         url.getProtocol());
 
-        final int socketTimeoutMillis =
-                (int) socketTimeoutUnits.toMillis(socketTimeout);
-
-        CloseableHttpClient httpClient = null;
-        try {
-            final HttpClientContext context = HttpClientContext.create();
-
-            if (realm != null && username != null) {
-                final CredentialsProvider credsProvider =
-                        new BasicCredentialsProvider();
-                credsProvider.setCredentials(
-                        AuthScope.ANY,
-                        new UsernamePasswordCredentials(
-                                username,
-                                password));
-                final AuthCache authCache = new BasicAuthCache();
-                final DigestScheme digestScheme = new DigestScheme();
-                digestScheme.overrideParamter(
-                        "realm",
-                        realm);
-                digestScheme.overrideParamter(
-                        "nonce",
-                        UUID
-                                .randomUUID()
-                                .toString()
-                                .replace("-", ""));
-                authCache.put(targetHost, digestScheme);
-
-                httpClient =
-                        HttpClients
-                                .custom()
-                                .setDefaultCredentialsProvider(credsProvider)
-                                .disableAutomaticRetries()
-                                .setDefaultRequestConfig(
-                                        RequestConfig
-                                                .custom()
-                                                .setConnectTimeout(socketTimeoutMillis)
-                                                .setSocketTimeout(socketTimeoutMillis)
-                                                .build())
-                                .build();
-                context.setAuthCache(authCache);
-            } else {
-                httpClient =
-                        HttpClients
-                                .custom()
-                                .disableAutomaticRetries()
-                                .setDefaultRequestConfig(
-                                        RequestConfig
-                                                .custom()
-                                                .setConnectTimeout(socketTimeoutMillis)
-                                                .setSocketTimeout(socketTimeoutMillis)
-                                                .build())
-                                .build();
-            }
+        final HttpClientContext context =
+                MinerHttpTransport.newContext(
+                        socketTimeout,
+                        socketTimeoutUnits,
+                        null);
+
+        if (realm != null && username != null) {
+            final CredentialsProvider credsProvider =
+                    new BasicCredentialsProvider();
+            credsProvider.setCredentials(
+                    AuthScope.ANY,
+                    new UsernamePasswordCredentials(
+                            username,
+                            password));
+            context.setCredentialsProvider(credsProvider);
+            context.setAuthCache(DIGEST_CHALLENGES);
+        }
 
-            final HttpRequest httpRequest;
-            if (!isPost) {
-                // GET
-                final URIBuilder uriBuilder =
-                        new URIBuilder()
-                                .setScheme("http")
-                                .setHost(host)
-                                .setPort(port)
-                                .setPath(path);
-                if (content != null) {
+        final HttpRequest httpRequest;
+        if (!isPost) {
+            // GET
+            final URIBuilder uriBuilder =
+                    new URIBuilder()
+                            .setScheme("http")
+                            .setHost(host)
+                            .setPort(port)
+                            .setPath(path);
+            if (content != null) {
+                content.forEach(entry ->
+                        uriBuilder.addParameter(
+                                entry.get("key").toString(),
+                                entry.get("value").toString()));
+            }
+            httpRequest = new HttpGet(uriBuilder.build());
+        } else {
+            final HttpPost httpPost = new HttpPost(url.getPath());
+            if (content != null) {
+                final HttpEntity entity;
+                if (multipart) {
+                    final MultipartEntityBuilder builder =
+                            MultipartEntityBuilder.create();
+                    content.forEach(param -> {
+                        final String key = param.get("key").toString();
+                        final Object value = param.get("value");
+                        if (value instanceof File) {
+                            builder.addBinaryBody(
+                                    key,
+                                    (File) value,
+                                    ContentType.APPLICATION_OCTET_STREAM,
+                                    "blob");
+                        } else if (value instanceof byte[]) {
+                            builder.addBinaryBody(
+                                    key,
+                                    (byte[]) value,
+                                    ContentType.APPLICATION_OCTET_STREAM,
+                                    "blob");
+                        } else {
+                            builder.addTextBody(
+                                    key,
+                                    value.toString());
+                        }
+                    });
+                    entity = builder.build();
+                } else {
+                    final List<NameValuePair> params = new ArrayList<>();
                     content.forEach(entry ->
-                            uriBuilder.addParameter(
-                                    entry.get("key").toString(),
-                                    entry.get("value").toString()));
-                }
-                httpRequest = new HttpGet(uriBuilder.build());
-            } else {
-                final HttpPost httpPost = new HttpPost(url.getPath());
-                if (content != null) {
-                    final HttpEntity entity;
-                    if (multipart) {
-                        final MultipartEntityBuilder builder =
-                                MultipartEntityBuilder.create();
-                        content.forEach(param -> {
-                            final String key = param.get("key").toString();
-                            final Object value = param.get("value");
-                            if (value instanceof File) {
-                                builder.addBinaryBody(
-                                        key,
-                                        (File) value,
-                                        ContentType.APPLICATION_OCTET_STREAM,
-                                        "blob");
-                            } else if (value instanceof byte[]) {
-                                builder.addBinaryBody(
-                                        key,
-                                        (byte[]) value,
-                                        ContentType.APPLICATION_OCTET_STREAM,
-                                        "blob");
-                            } else {
-                                builder.addTextBody(
-                                        key,
-                                        value.toString());
-                            }
-                        });
-                        entity = builder.build();
-                    } else {
-                        final List<NameValuePair> params = new ArrayList<>();
-                        content.forEach(entry ->
-                                params.add(
-                                        new BasicNameValuePair(
-                                                entry.get("key").toString(),
-                                                entry.get("value").toString())));
-                        LOG.debug("Params for POST: {}", params);
-
-                        entity =
-                                new UrlEncodedFormEntity(
-                                        params,
-                                        "UTF-8");
-                    }
-                    LOG.debug("Entity: {}", entity);
-                    httpPost.setEntity(entity);
-                } else if (payload != null) {
-                    httpPost.setEntity(new StringEntity(payload));
-                    httpPost.setHeader("Accept", "application/json");
-                    httpPost.setHeader("Content-type", "application/json");
+                            params.add(
+                                    new BasicNameValuePair(
+                                            entry.get("key").toString(),
+                                            entry.get("value").toString())));
+                    LOG.debug("Params for POST: {}", params);
+
+                    entity =
+                            new UrlEncodedFormEntity(
+                                    params,
+                                    "UTF-8");
                 }
-                httpRequest = httpPost;
+                LOG.debug("Entity: {}", entity);
+                httpPost.setEntity(entity);
+            } else if (payload != null) {
+                httpPost.setEntity(new StringEntity(payload));
+                httpPost.setHeader("Accept", "application/json");
+                httpPost.setHeader("Content-type", "application/json");
             }
+            httpRequest = httpPost;
+        }
 
-            LOG.debug("Sending request: {}", httpRequest);
-
-            try (final CloseableHttpResponse response =
-                         httpClient.execute(
-                                 targetHost,
-                                 httpRequest,
-                                 context)) {
-                final StatusLine statusLine =
-                        response.getStatusLine();
-                final String responseBody =
-                        EntityUtils.toString(response.getEntity());
-                LOG.debug("Received digest API response: {}", responseBody);
-                responseProcessor.accept(
-                        statusLine.getStatusCode(),
-                        responseBody);
-            } catch (final SocketTimeoutException ste) {
-                final String message = ste.getMessage();
-                if (message != null && !message.contains("Read timed out")) {
-                    // Allow read timeouts - sometimes, miners just don't
-                    // respond
-                    throw ste;
-                }
-            }
-        } finally {
-            if (httpClient != null) {
-                httpClient.close();
+        LOG.debug("Sending request: {}", httpRequest);
+
+        try (final CloseableHttpResponse response =
+                     executeDigest(
+                             targetHost,
+                             httpRequest,
+                             context)) {
+            final StatusLine statusLine =
+                    response.getStatusLine();
+            final String responseBody =
+                    EntityUtils.toString(response.getEntity());
+            LOG.debug("Received digest API response: {}", responseBody);
+            responseProcessor.accept(
+                    statusLine.getStatusCode(),
+                    responseBody);
+        } catch (final SocketTimeoutException ste) {
+            final String message = ste.getMessage();
+            if (message != null && !message.contains("Read timed out")) {
+                // Allow read timeouts - sometimes, miners just don't
+                // respond
+                throw ste;
             }
         }
     }
 
+    /**
+     * Executes a digest request, answering the miner's cached challenge up
+     * front.  If the miner has since issued a new challenge, the answer is
+     * rejected and the cached challenge is dropped, so the request is retried
+     * once to obtain the new one.
+     *
+     * @param targetHost  The host.
+     * @param httpRequest The request.
+     * @param context     The context.
+     *
+     * @return The response.
+     *
+     * @throws IOException on failure to connect.
+     */
+    private static CloseableHttpResponse executeDigest(
+            final HttpHost targetHost,
+            final HttpRequest httpRequest,
+            final HttpClientContext context) throws IOException {
+        final boolean answered =
+                context.getAuthCache() != null &&
+                        context.getAuthCache().get(targetHost) != null;
+        final CloseableHttpResponse response =
+                MinerHttpTransport.getStandardClient().execute(
+                        targetHost,
+                        httpRequest,
+                        context);
+        if (answered &&
+                response.getStatusLine().getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+            LOG.debug("{} issued a new digest challenge", targetHost);
+            EntityUtils.consume(response.getEntity());
+            response.close();
+            context.getTargetAuthState().reset();
+            return MinerHttpTransport.getStandardClient().execute(
+                    targetHost,
+                    httpRequest,
+                    context);
+        }
+        return response;
+    }
+
     /**
      * Runs the query.
      *
@@ -1552,22 +1540,14 @@ public class Query {
         final AuthCache authCache = new BasicAuthCache();
         authCache.put(targetHost, new BasicScheme());
 
-        final HttpClientContext context = HttpClientContext.create();
+        final HttpClientContext context =
+                MinerHttpTransport.newContext(
+                        socketTimeout,
+                        socketTimeoutUnits,
+                        null);
         context.setCredentialsProvider(provider);
         context.setAuthCache(authCache);
 
-        final CloseableHttpClient httpClient =
-                HttpClients
-                        .custom()
-                        .disableAutomaticRetries()
-                        .setDefaultRequestConfig(
-                                RequestConfig
-                                        .custom()
-                                        .setConnectTimeout((int) socketTimeoutUnits.toMillis(socketTimeout))
-                                        .setSocketTimeout((int) socketTimeoutUnits.toMillis(socketTimeout))
-                                        .build())
-                        .build();
-
         final HttpRequest httpRequest;
         if (!isGet) {
             final HttpPost post = new HttpPost(url.getPath());
@@ -1584,7 +1564,7 @@ public class Query {
         }
 
         try (final CloseableHttpResponse response =
-                     httpClient.execute(
+                     MinerHttpTransport.getStandardClient().execute(
                              targetHost,
                              httpRequest,
                              context)) {
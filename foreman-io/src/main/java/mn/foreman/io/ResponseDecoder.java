@@ -0,0 +1,25 @@
+package mn.foreman.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link ResponseDecoder} converts the bytes received from a miner directly
+ * into a response, without first buffering them into a {@link String}.
+ *
+ * @param <T> The response type.
+ */
+@FunctionalInterface
+public interface ResponseDecoder<T> {
+
+    /**
+     * Decodes the response.
+     *
+     * @param inputStream The bytes received from the miner.
+     *
+     * @return The decoded response.
+     *
+     * @throws IOException on failure to read or decode the response.
+     */
+    T decode(InputStream inputStream) throws IOException;
+}
@@ -1,5 +1,7 @@
 package mn.foreman.io;
 
+import mn.foreman.http.MinerHttpTransport;
+
 import org.apache.commons.lang3.Validate;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.CookieStore;
@@ -10,9 +12,6 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.client.LaxRedirectStrategy;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -109,14 +108,7 @@ public class RestConnection
                         .setCookieSpec(CookieSpecs.STANDARD)
                         .build();
 
-        try (final CloseableHttpClient httpClient =
-                     HttpClients
-                             .custom()
-                             .setRedirectStrategy(new LaxRedirectStrategy())
-                             .setDefaultRequestConfig(requestConfig)
-                             .setDefaultCookieStore(this.cookieStore)
-                             .disableAutomaticRetries()
-                             .build()) {
+        try {
             final HttpRequestBase httpRequest =
                     toRequest();
 
@@ -128,7 +120,11 @@ public class RestConnection
             }
 
             try (final CloseableHttpResponse httpResponse =
-                         httpClient.execute(httpRequest)) {
+                         MinerHttpTransport.getLaxRedirectClient().execute(
+                                 httpRequest,
+                                 MinerHttpTransport.newContext(
+                                         requestConfig,
+                                         this.cookieStore))) {
                 final int statusCode =
                         httpResponse
                                 .getStatusLine()
@@ -142,8 +138,6 @@ public class RestConnection
                             this.url,
                             statusCode);
                 }
-            } catch (final IOException ioe) {
-                LOG.debug("Exception occurred while querying", ioe);
             }
         } catch (final IOException ioe) {
             LOG.debug("Exception occurred while querying", ioe);
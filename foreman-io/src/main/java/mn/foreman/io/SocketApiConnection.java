@@ -1,14 +1,17 @@
 package mn.foreman.io;
 
+import mn.foreman.util.IpUtils;
+
 import com.google.common.net.InetAddresses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.*;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
 /** A raw, java socket connection. */
@@ -25,6 +28,9 @@ public class SocketApiConnection
     /** The socket timeout. */
     private final int socketTimeout;
 
+    /** Why {@link #query()} failed, if it did. */
+    private volatile Exception failure;
+
     /**
      * Constructor.
      *
@@ -40,21 +46,18 @@ public class SocketApiConnection
         this.socketTimeout = (int) connectTimeoutUnits.toMillis(connectTimeout);
     }
 
-    @SuppressWarnings("UnstableApiUsage")
+    /**
+     * Returns why {@link #query()} failed, if it did.
+     *
+     * @return The failure.
+     */
+    public Optional<Exception> getFailure() {
+        return Optional.ofNullable(this.failure);
+    }
+
     @Override
     public void query() {
-        try (final Socket socket = new Socket()) {
-            final InetSocketAddress socketAddress =
-                    new InetSocketAddress(
-                            InetAddresses.forString(
-                                    this.apiRequest.getIp()),
-                            this.apiRequest.getPort());
-            socket.setTcpNoDelay(true);
-            socket.setSoTimeout(this.socketTimeout);
-            socket.connect(socketAddress, this.socketTimeout);
-
-            this.apiRequest.connected(true);
-
+        try (final Socket socket = connect()) {
             try (final PrintWriter printWriter =
                          new PrintWriter(
                                  socket.getOutputStream());
@@ -74,14 +77,89 @@ public class SocketApiConnection
                     }
                 } catch (final Exception e) {
                     LOG.info("Socket closed");
+                    this.failure = e;
                 }
                 this.apiRequest.setResponse(stringBuilder.toString());
             } catch (final Exception e) {
                 LOG.warn("Exception occurred while sending/receiving", e);
+                this.failure = e;
             }
         } catch (final Exception e) {
             LOG.info("Exception occurred while connecting", e);
+            this.failure = e;
         }
         this.apiRequest.completed();
     }
+
+    /**
+     * Queries the miner API, handing the response bytes to the provided
+     * decoder as they're read from the socket.
+     *
+     * @param decoder The decoder.
+     * @param <T>     The response type.
+     *
+     * @return The decoded response.
+     *
+     * @throws IOException on failure to communicate or decode.
+     */
+    public <T> T query(final ResponseDecoder<T> decoder)
+            throws IOException {
+        try (final Socket socket = connect()) {
+            final OutputStream outputStream = socket.getOutputStream();
+            outputStream.write(
+                    this.apiRequest.getRequest().getBytes(
+                            StandardCharsets.UTF_8));
+            outputStream.flush();
+            return decoder.decode(
+                    new BufferedInputStream(
+                            socket.getInputStream()));
+        } finally {
+            this.apiRequest.completed();
+        }
+    }
+
+    /**
+     * Converts the provided IP to an address without a DNS lookup.
+     *
+     * @param ip The IP.
+     *
+     * @return The address.
+     *
+     * @throws IOException if the address couldn't be created.
+     */
+    @SuppressWarnings("UnstableApiUsage")
+    private static InetAddress toAddress(final String ip) throws IOException {
+        final long ipv4 = IpUtils.parse(ip);
+        if (ipv4 >= 0) {
+            return InetAddress.getByAddress(IpUtils.toBytes((int) ipv4));
+        }
+        return InetAddresses.forString(ip);
+    }
+
+    /**
+     * Opens a connection to the miner.
+     *
+     * @return The connected socket.
+     *
+     * @throws IOException on failure to connect.
+     */
+    private Socket connect() throws IOException {
+        final Socket socket = new Socket();
+        try {
+            final InetSocketAddress socketAddress =
+                    new InetSocketAddress(
+                            toAddress(this.apiRequest.getIp()),
+                            this.apiRequest.getPort());
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(this.socketTimeout);
+            socket.connect(socketAddress, this.socketTimeout);
+        } catch (final IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+
+        this.apiRequest.connected(true);
+
+        return socket;
+    }
 }
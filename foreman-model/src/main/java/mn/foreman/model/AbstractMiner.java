@@ -10,6 +10,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * An {@link AbstractMiner} provides an abstract class representing a remote
@@ -31,6 +32,9 @@ public abstract class AbstractMiner
     /** Obtains the MAC address. */
     private final MacStrategy macStrategy;
 
+    /** The ID, which is created once since it's used as a key everywhere. */
+    private final MinerID minerID;
+
     /**
      * Constructor.
      *
@@ -66,6 +70,10 @@ public abstract class AbstractMiner
         this.apiIp = apiIp;
         this.apiPort = apiPort;
         this.macStrategy = macStrategy;
+        this.minerID =
+                MinerID.of(
+                        apiIp,
+                        apiPort);
     }
 
     @Override
@@ -104,9 +112,7 @@ public abstract class AbstractMiner
 
     @Override
     public MinerID getMinerID() {
-        return new SimpleMinerID(
-                this.apiIp,
-                this.apiPort);
+        return this.minerID;
     }
 
     @Override
@@ -128,6 +134,24 @@ public abstract class AbstractMiner
                 .build();
     }
 
+    @Override
+    public CompletableFuture<MinerStats> getStatsAsync() {
+        LOG.debug("Obtaining stats asynchronously from {}", this);
+
+        final long startTime = System.currentTimeMillis();
+
+        final MinerStats.Builder builder =
+                new MinerStats.Builder()
+                        .setApiIp(this.apiIp)
+                        .setApiPort(this.apiPort);
+
+        return addStatsAsync(builder)
+                .thenApply(aVoid ->
+                        builder
+                                .setQueryTimeMs(System.currentTimeMillis() - startTime)
+                                .build());
+    }
+
     @Override
     public int hashCode() {
         final HashCodeBuilder hashCodeBuilder =
@@ -159,6 +183,28 @@ public abstract class AbstractMiner
             MinerStats.Builder statsBuilder)
             throws MinerException;
 
+    /**
+     * Adds stats to the provided builder without blocking the caller.
+     *
+     * <p>By default, this delegates to {@link #addStats(MinerStats.Builder)}
+     * in the calling thread.</p>
+     *
+     * @param statsBuilder The builder to update.
+     *
+     * @return A future that completes once the builder has been updated.
+     */
+    protected CompletableFuture<Void> addStatsAsync(
+            final MinerStats.Builder statsBuilder) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            addStats(statsBuilder);
+            future.complete(null);
+        } catch (final Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
     /**
      * Adds to the {@link EqualsBuilder}.
      *
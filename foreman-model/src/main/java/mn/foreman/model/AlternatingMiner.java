@@ -13,6 +13,9 @@ import java.util.Optional;
 /**
  * An {@link AlternatingMiner} provides a {@link Miner} implementation that will
  * evaluate two possible {@link Miner miners} for metrics.
+ *
+ * <p>The candidates are {@link CandidateRace raced}, with the winner
+ * remembered per miner so later polls go straight to it.</p>
  */
 public class AlternatingMiner
         extends AbstractMiner {
@@ -24,6 +27,10 @@ public class AlternatingMiner
     /** The candidates. */
     private final List<Miner> candidates;
 
+    /** Races the candidates, remembering the winner for each miner. */
+    private final CandidateRace<Miner> race =
+            new CandidateRace<>();
+
 
     /**
      * Constructor.
@@ -61,13 +68,15 @@ public class AlternatingMiner
             final MinerStats.Builder statsBuilder)
             throws MinerException {
         MinerStats minerStats = null;
-        for (final Miner candidate : this.candidates) {
-            try {
-                minerStats = candidate.getStats();
-                break;
-            } catch (final Exception e) {
-                // Skip
-            }
+        try {
+            minerStats =
+                    this.race.race(
+                            getMinerID(),
+                            this.candidates,
+                            Miner::getStats,
+                            stats -> true);
+        } catch (final MinerException e) {
+            // Handled below
         }
 
         if (minerStats != null) {
@@ -120,7 +120,7 @@ public class AsyncAsicAction
             final Map<String, Object> newParams =
                     toParams(args);
             final MinerID minerID =
-                    new SimpleMinerID(
+                    MinerID.of(
                             newParams.get("apiIp").toString(),
                             Integer.parseInt(
                                     newParams.get("apiPort").toString()));
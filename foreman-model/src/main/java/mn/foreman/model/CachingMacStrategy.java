@@ -0,0 +1,75 @@
+package mn.foreman.model;
+
+import mn.foreman.model.cache.MacCache;
+
+import java.util.Optional;
+
+/**
+ * A {@link CachingMacStrategy} provides a {@link MacStrategy} implementation
+ * that remembers the MAC obtained from another {@link MacStrategy} in a {@link
+ * MacCache}, so the miner is only asked again once the MAC expired or the
+ * miner stopped looking like the one that the MAC came from.
+ */
+public class CachingMacStrategy
+        implements MacStrategy {
+
+    /** The cache of known MACs. */
+    private final MacCache macCache;
+
+    /** The miner whose MAC is cached. */
+    private final MinerID minerID;
+
+    /** The strategy that obtains the MAC from the miner. */
+    private final MacStrategy real;
+
+    /**
+     * Constructor.
+     *
+     * @param minerID  The miner whose MAC is cached.
+     * @param real     The strategy that obtains the MAC from the miner.
+     * @param macCache The cache of known MACs.
+     */
+    public CachingMacStrategy(
+            final MinerID minerID,
+            final MacStrategy real,
+            final MacCache macCache) {
+        this.minerID = minerID;
+        this.real = real;
+        this.macCache = macCache;
+    }
+
+    @Override
+    public Optional<String> getMacAddress() {
+        final Optional<String> mac = this.macCache.get(this.minerID);
+        if (mac.isPresent()) {
+            return mac;
+        }
+        return refresh();
+    }
+
+    /**
+     * Obtains the MAC from the miner, replacing the cached one.
+     *
+     * @return The MAC address, if present.
+     */
+    public Optional<String> refresh() {
+        final Optional<String> mac = this.real.getMacAddress();
+        mac.ifPresent(value ->
+                this.macCache.put(
+                        this.minerID,
+                        value));
+        return mac;
+    }
+
+    /**
+     * Records what the miner currently looks like, so the MAC is obtained
+     * again if it changed.
+     *
+     * @param identity What the miner currently looks like.
+     */
+    public void verify(final String identity) {
+        this.macCache.verify(
+                this.minerID,
+                identity);
+    }
+}
@@ -0,0 +1,507 @@
+package mn.foreman.model;
+
+import mn.foreman.model.error.MinerException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.primitives.Booleans;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A {@link CandidateRace} evaluates several candidate firmwares for the same
+ * miner concurrently, using the most preferred candidate to produce a valid
+ * result and cancelling the rest.  A later candidate only wins once every
+ * candidate before it has failed, so a faster but less specific candidate
+ * can't shadow a preferred one.
+ *
+ * <p>Each owner of a candidate list has its own race, and the index of the
+ * winning candidate is remembered per {@link MinerID} for an hour after it
+ * won, regardless of how often it's used since.  Later calls go straight to
+ * it, and only race again once it fails or the hour is up, so a preferred
+ * candidate that was down during the race gets another chance.  Without
+ * racing, a miner running the last candidate would wait out a timeout for
+ * every candidate before it on every call.</p>
+ *
+ * <p>A miner where every candidate failed only has its preferred candidate
+ * tried for the next {@link #FAILED_MINUTES} minutes, so a dead miner doesn't
+ * tie up a thread per candidate on every call.  Losing candidates can't be
+ * interrupted while they're blocked reading from a miner, so this, along
+ * with the bounded {@link #THREAD_POOL}, is what limits the threads they
+ * hold.</p>
+ *
+ * <p>Racing can be disabled by setting the <code>FIRMWARE_RACING</code>
+ * system property to <code>false</code>, in which case the candidates are
+ * evaluated in order, one at a time.</p>
+ *
+ * @param <C> The candidate type.
+ */
+public class CandidateRace<C> {
+
+    /** How long only the preferred candidate is tried after a failed race. */
+    private static final int FAILED_MINUTES = 5;
+
+    /** Whether or not candidates should be raced. */
+    private static final boolean ENABLED =
+            Boolean.parseBoolean(
+                    System.getProperty(
+                            "FIRMWARE_RACING",
+                            "true"));
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(CandidateRace.class);
+
+    /**
+     * The threads that run the blocking candidates.  Once every thread is
+     * busy, candidates run on the caller, one at a time.
+     */
+    private static final ExecutorService THREAD_POOL =
+            new ThreadPoolExecutor(
+                    0,
+                    Integer.getInteger(
+                            "FIRMWARE_RACING_THREADS",
+                            64),
+                    60,
+                    TimeUnit.SECONDS,
+                    new SynchronousQueue<>(),
+                    new ThreadFactoryBuilder()
+                            .setNameFormat("candidate-race-%d")
+                            .setDaemon(true)
+                            .build(),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+
+    /** The miners where every candidate failed the last race. */
+    private final Cache<MinerID, Boolean> failed =
+            CacheBuilder.newBuilder()
+                    .expireAfterWrite(
+                            FAILED_MINUTES,
+                            TimeUnit.MINUTES)
+                    .build();
+
+    /** The index of the winning candidate, by miner. */
+    private final Cache<MinerID, Integer> winners =
+            CacheBuilder.newBuilder()
+                    .expireAfterWrite(
+                            1,
+                            TimeUnit.HOURS)
+                    .build();
+
+    /**
+     * Evaluates the candidates, blocking until one of them produces a valid
+     * result.
+     *
+     * @param minerId    The miner being evaluated.
+     * @param candidates The candidates, in order of preference.
+     * @param call       The call to make against each candidate.
+     * @param isValid    Whether or not a result is acceptable.
+     * @param <T>        The result type.
+     *
+     * @return The most preferred valid result.
+     *
+     * @throws MinerException if no candidate produced a valid result.
+     */
+    public <T> T race(
+            final MinerID minerId,
+            final List<C> candidates,
+            final CandidateCall<C, T> call,
+            final Predicate<T> isValid)
+            throws MinerException {
+        if (!ENABLED) {
+            for (final C candidate : candidates) {
+                final T result = tryCall(call, candidate, isValid);
+                if (result != null) {
+                    return result;
+                }
+            }
+            throw new MinerException("No candidate responded");
+        }
+
+        final Integer winner = getWinner(minerId);
+        if (winner != null && winner < candidates.size()) {
+            final T result = tryCall(call, candidates.get(winner), isValid);
+            if (result != null) {
+                return result;
+            }
+            LOG.debug("Previous winner failed for {} - racing again", minerId);
+            setWinner(minerId, null);
+        } else if (hasFailed(minerId) && !candidates.isEmpty()) {
+            final T result = tryCall(call, candidates.get(0), isValid);
+            if (result != null) {
+                setWinner(minerId, 0);
+                return result;
+            }
+            throw new MinerException("No candidate responded");
+        }
+
+        final CompletionService<Map.Entry<Integer, T>> completionService =
+                new ExecutorCompletionService<>(THREAD_POOL);
+        final List<Future<Map.Entry<Integer, T>>> futures =
+                new ArrayList<>(candidates.size());
+        try {
+            for (int i = 0; i < candidates.size(); i++) {
+                final int index = i;
+                futures.add(
+                        completionService.submit(() -> {
+                            final T result =
+                                    tryCall(
+                                            call,
+                                            candidates.get(index),
+                                            isValid);
+                            return new AbstractMap.SimpleImmutableEntry<>(
+                                    index,
+                                    result);
+                        }));
+            }
+            final boolean[] done = new boolean[candidates.size()];
+            final List<T> results =
+                    new ArrayList<>(Collections.nCopies(candidates.size(), null));
+            for (int i = 0; i < candidates.size(); i++) {
+                final Map.Entry<Integer, T> result =
+                        completionService.take().get();
+                done[result.getKey()] = true;
+                results.set(result.getKey(), result.getValue());
+                final int preferred = toPreferred(done, results);
+                if (preferred >= 0) {
+                    setWinner(minerId, preferred);
+                    return results.get(preferred);
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MinerException("Interrupted while racing candidates", e);
+        } catch (final ExecutionException e) {
+            // tryCall() doesn't throw, so this can't happen
+            throw new MinerException("Failed to race candidates", e);
+        } finally {
+            // Interrupts the losers that are still waiting on their miners
+            futures.forEach(future -> future.cancel(true));
+        }
+        setFailed(minerId);
+        throw new MinerException("No candidate responded");
+    }
+
+    /**
+     * Evaluates the candidates without blocking the caller.
+     *
+     * @param minerId    The miner being evaluated.
+     * @param candidates The candidates, in order of preference.
+     * @param call       The call to make against each candidate.
+     * @param isValid    Whether or not a result is acceptable.
+     * @param <T>        The result type.
+     *
+     * @return A future that completes with the most preferred valid result, or
+     *         exceptionally with a {@link MinerException} if no candidate
+     *         produced one.
+     */
+    public <T> CompletableFuture<T> raceAsync(
+            final MinerID minerId,
+            final List<C> candidates,
+            final Function<C, CompletableFuture<T>> call,
+            final Predicate<T> isValid) {
+        if (!ENABLED) {
+            return inOrder(
+                    candidates,
+                    0,
+                    call,
+                    isValid);
+        }
+
+        final Integer winner = getWinner(minerId);
+        if (winner != null && winner < candidates.size()) {
+            return tryCallAsync(call, candidates.get(winner))
+                    .thenCompose(result -> {
+                        if (result != null && isValid.test(result)) {
+                            return CompletableFuture.completedFuture(result);
+                        }
+                        LOG.debug("Previous winner failed for {} - racing again", minerId);
+                        setWinner(minerId, null);
+                        return raceAll(
+                                minerId,
+                                candidates,
+                                call,
+                                isValid);
+                    });
+        } else if (hasFailed(minerId) && !candidates.isEmpty()) {
+            return tryCallAsync(call, candidates.get(0))
+                    .thenCompose(result -> {
+                        if (result != null && isValid.test(result)) {
+                            setWinner(minerId, 0);
+                            return CompletableFuture.completedFuture(result);
+                        }
+                        return noCandidate();
+                    });
+        }
+        return raceAll(
+                minerId,
+                candidates,
+                call,
+                isValid);
+    }
+
+    /**
+     * Creates a failed future.
+     *
+     * @param <T> The result type.
+     *
+     * @return The failed future.
+     */
+    private static <T> CompletableFuture<T> noCandidate() {
+        final CompletableFuture<T> failed = new CompletableFuture<>();
+        failed.completeExceptionally(
+                new MinerException("No candidate responded"));
+        return failed;
+    }
+
+    /**
+     * Finds the most preferred candidate that produced a valid result, once
+     * every candidate before it has failed.
+     *
+     * @param done    Whether or not each candidate has finished.
+     * @param results The valid result from each candidate, or null.
+     *
+     * @return The index of the winner, or -1 if there isn't one yet.
+     */
+    private static int toPreferred(
+            final boolean[] done,
+            final List<?> results) {
+        for (int i = 0; i < done.length; i++) {
+            if (!done[i]) {
+                return -1;
+            }
+            if (results.get(i) != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Makes the call against a candidate, swallowing failures.
+     *
+     * @param call      The call.
+     * @param candidate The candidate.
+     * @param isValid   Whether or not a result is acceptable.
+     * @param <C>       The candidate type.
+     * @param <T>       The result type.
+     *
+     * @return The result, or null if it failed or wasn't valid.
+     */
+    private static <C, T> T tryCall(
+            final CandidateCall<C, T> call,
+            final C candidate,
+            final Predicate<T> isValid) {
+        try {
+            final T result = call.call(candidate);
+            if (result != null && isValid.test(result)) {
+                return result;
+            }
+        } catch (final Exception e) {
+            LOG.debug("Candidate {} failed", candidate, e);
+        }
+        return null;
+    }
+
+    /**
+     * Makes the async call against a candidate, converting failures to a null
+     * result.
+     *
+     * @param call      The call.
+     * @param candidate The candidate.
+     * @param <C>       The candidate type.
+     * @param <T>       The result type.
+     *
+     * @return The result, or null if it failed.
+     */
+    private static <C, T> CompletableFuture<T> tryCallAsync(
+            final Function<C, CompletableFuture<T>> call,
+            final C candidate) {
+        try {
+            return call
+                    .apply(candidate)
+                    .handle((result, throwable) -> throwable == null ? result : null);
+        } catch (final Exception e) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Evaluates the candidates in order, one at a time.
+     *
+     * @param candidates The candidates.
+     * @param index      The candidate to evaluate.
+     * @param call       The call.
+     * @param isValid    Whether or not a result is acceptable.
+     * @param <C>        The candidate type.
+     * @param <T>        The result type.
+     *
+     * @return The first valid result.
+     */
+    private static <C, T> CompletableFuture<T> inOrder(
+            final List<C> candidates,
+            final int index,
+            final Function<C, CompletableFuture<T>> call,
+            final Predicate<T> isValid) {
+        if (index >= candidates.size()) {
+            return noCandidate();
+        }
+        return tryCallAsync(call, candidates.get(index))
+                .thenCompose(result -> {
+                    if (result != null && isValid.test(result)) {
+                        return CompletableFuture.completedFuture(result);
+                    }
+                    return inOrder(
+                            candidates,
+                            index + 1,
+                            call,
+                            isValid);
+                });
+    }
+
+    /**
+     * Starts every candidate at once, completing with the most preferred
+     * valid result.
+     *
+     * @param minerId    The miner being evaluated.
+     * @param candidates The candidates.
+     * @param call       The call.
+     * @param isValid    Whether or not a result is acceptable.
+     * @param <T>        The result type.
+     *
+     * @return The most preferred valid result.
+     */
+    private <T> CompletableFuture<T> raceAll(
+            final MinerID minerId,
+            final List<C> candidates,
+            final Function<C, CompletableFuture<T>> call,
+            final Predicate<T> isValid) {
+        if (candidates.isEmpty()) {
+            return noCandidate();
+        }
+
+        final CompletableFuture<T> race = new CompletableFuture<>();
+        final boolean[] done = new boolean[candidates.size()];
+        final List<T> results =
+                new ArrayList<>(Collections.nCopies(candidates.size(), null));
+        final List<CompletableFuture<T>> attempts =
+                new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            final int index = i;
+            final CompletableFuture<T> attempt =
+                    tryCallAsync(call, candidates.get(i));
+            attempts.add(attempt);
+            attempt.thenAccept(result -> {
+                final int preferred;
+                final T preferredResult;
+                final boolean allDone;
+                synchronized (done) {
+                    done[index] = true;
+                    if (result != null && isValid.test(result)) {
+                        results.set(index, result);
+                    }
+                    preferred = toPreferred(done, results);
+                    preferredResult = preferred >= 0 ? results.get(preferred) : null;
+                    allDone = !Booleans.contains(done, false);
+                }
+                if (preferred >= 0) {
+                    if (race.complete(preferredResult)) {
+                        setWinner(minerId, preferred);
+                    }
+                } else if (allDone && race.completeExceptionally(
+                        new MinerException("No candidate responded"))) {
+                    setFailed(minerId);
+                }
+            });
+        }
+        race.whenComplete((result, throwable) ->
+                attempts.forEach(attempt -> attempt.cancel(true)));
+        return race;
+    }
+
+    /**
+     * Returns the index of the candidate that last won for the miner.
+     *
+     * @param minerId The miner.
+     *
+     * @return The winner, or null if unknown.
+     */
+    private Integer getWinner(final MinerID minerId) {
+        return minerId != null
+                ? this.winners.getIfPresent(minerId)
+                : null;
+    }
+
+    /**
+     * Returns whether or not every candidate failed the miner's last race.
+     *
+     * @param minerId The miner.
+     *
+     * @return Whether or not the last race failed.
+     */
+    private boolean hasFailed(final MinerID minerId) {
+        return minerId != null &&
+                this.failed.getIfPresent(minerId) != null;
+    }
+
+    /**
+     * Remembers that every candidate failed for the miner.
+     *
+     * @param minerId The miner.
+     */
+    private void setFailed(final MinerID minerId) {
+        if (minerId != null) {
+            this.failed.put(minerId, true);
+        }
+    }
+
+    /**
+     * Remembers, or forgets, the winning candidate for the miner.
+     *
+     * @param minerId The miner.
+     * @param winner  The index of the winner, or null to forget it.
+     */
+    private void setWinner(
+            final MinerID minerId,
+            final Integer winner) {
+        if (minerId == null) {
+            return;
+        }
+        if (winner != null) {
+            this.failed.invalidate(minerId);
+            this.winners.put(minerId, winner);
+        } else {
+            this.winners.invalidate(minerId);
+        }
+    }
+
+    /**
+     * A call to make against a candidate.
+     *
+     * @param <C> The candidate type.
+     * @param <T> The result type.
+     */
+    @FunctionalInterface
+    public interface CandidateCall<C, T> {
+
+        /**
+         * Makes the call.
+         *
+         * @param candidate The candidate.
+         *
+         * @return The result.
+         *
+         * @throws Exception on failure.
+         */
+        T call(C candidate) throws Exception;
+    }
+}
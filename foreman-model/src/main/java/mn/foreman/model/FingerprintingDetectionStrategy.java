@@ -0,0 +1,267 @@
+package mn.foreman.model;
+
+import mn.foreman.model.cache.Fingerprint;
+import mn.foreman.model.cache.FingerprintCache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * A {@link DetectionStrategy} decorator that consults a {@link
+ * FingerprintCache} before running the actual {@link #detectionStrategy}.
+ *
+ * <p>When a miner was previously detected at the IP and port, its MAC is
+ * obtained using the {@link MacStrategy} for the cached type's firmware.  If
+ * it matches, the cached fingerprint is trusted and the full detection is
+ * skipped.  Otherwise, the fingerprint is dropped and the miner is detected
+ * from scratch, with the result being cached for next time.</p>
+ *
+ * <p>A miner whose firmware changed can keep its MAC, so a fingerprint of one
+ * of this strategy's types is also dropped whenever the full detection can't
+ * find the miner, or finds it as a different type.</p>
+ */
+public class FingerprintingDetectionStrategy
+        implements DetectionStrategy {
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(FingerprintingDetectionStrategy.class);
+
+    /** The real strategy. */
+    private final DetectionStrategy detectionStrategy;
+
+    /** The cache. */
+    private final FingerprintCache fingerprintCache;
+
+    /** Creates the strategy for verifying the MAC of a cached type. */
+    private final Function<MinerType, MacStrategy> macStrategies;
+
+    /** Converts cached type names back to types. */
+    private final Function<String, Optional<MinerType>> typeResolver;
+
+    /**
+     * Constructor.
+     *
+     * @param fingerprintCache  The cache.
+     * @param typeResolver      Converts cached type names back to types.
+     * @param macStrategies     Creates the strategy for verifying the MAC of a
+     *                          cached type.
+     * @param detectionStrategy The real strategy.
+     */
+    public FingerprintingDetectionStrategy(
+            final FingerprintCache fingerprintCache,
+            final Function<String, Optional<MinerType>> typeResolver,
+            final Function<MinerType, MacStrategy> macStrategies,
+            final DetectionStrategy detectionStrategy) {
+        this.fingerprintCache = fingerprintCache;
+        this.typeResolver = typeResolver;
+        this.macStrategies = macStrategies;
+        this.detectionStrategy = detectionStrategy;
+    }
+
+    @Override
+    public Optional<Detection> detect(
+            final String ip,
+            final int port,
+            final Map<String, Object> args) {
+        final MinerID minerID = MinerID.of(ip, port);
+        final int webPort = toWebPort(args);
+
+        // Workers come from the miner's stats, which aren't cached
+        if (!isPreferred("workerPreferred", args)) {
+            final Optional<Detection> cached =
+                    this.fingerprintCache
+                            .get(minerID)
+                            .filter(fingerprint -> fingerprint.getWebPort() == webPort)
+                            .filter(fingerprint ->
+                                    fingerprint.getHostname() != null ||
+                                            !isPreferred("hostnamePreferred", args))
+                            .flatMap(fingerprint ->
+                                    verify(
+                                            minerID,
+                                            fingerprint,
+                                            args));
+            if (cached.isPresent()) {
+                return cached;
+            }
+        }
+
+        final Optional<Detection> detection =
+                this.detectionStrategy.detect(
+                        ip,
+                        port,
+                        args);
+        if (detection.isPresent()) {
+            remember(
+                    minerID,
+                    webPort,
+                    detection.get());
+        } else {
+            forget(minerID);
+        }
+        return detection;
+    }
+
+    /**
+     * Returns whether or not the flag is set in the arguments.
+     *
+     * @param flag The flag.
+     * @param args The arguments.
+     *
+     * @return Whether or not the flag is set.
+     */
+    private static boolean isPreferred(
+            final String flag,
+            final Map<String, Object> args) {
+        return Boolean.parseBoolean(
+                args.getOrDefault(
+                        flag,
+                        "false").toString());
+    }
+
+    /**
+     * Returns the name of the type that will be cached.
+     *
+     * @param minerType The type.
+     *
+     * @return The name.
+     */
+    private static String toName(final MinerType minerType) {
+        return minerType instanceof Enum
+                ? ((Enum<?>) minerType).name()
+                : minerType.getSlug();
+    }
+
+    /**
+     * Returns the web port that the detection will use.
+     *
+     * @param args The arguments.
+     *
+     * @return The web port.
+     */
+    private static int toWebPort(final Map<String, Object> args) {
+        try {
+            return Integer.parseInt(
+                    args.getOrDefault(
+                            "webPort",
+                            "80").toString());
+        } catch (final NumberFormatException e) {
+            return 80;
+        }
+    }
+
+    /**
+     * Drops the fingerprint of a miner that could no longer be detected, if
+     * it's one of this strategy's types.
+     *
+     * @param minerID The miner.
+     */
+    private void forget(final MinerID minerID) {
+        final boolean ours =
+                this.fingerprintCache
+                        .get(minerID)
+                        .map(Fingerprint::getType)
+                        .flatMap(this.typeResolver)
+                        .isPresent();
+        if (ours) {
+            LOG.debug("Fingerprint for {} is stale (no longer detected)",
+                    minerID);
+            this.fingerprintCache.invalidate(minerID);
+        }
+    }
+
+    /**
+     * Caches the detection, if it found a MAC.
+     *
+     * @param minerID   The miner.
+     * @param webPort   The web port used for the detection.
+     * @param detection The detection.
+     */
+    private void remember(
+            final MinerID minerID,
+            final int webPort,
+            final Detection detection) {
+        final Map<String, Object> parameters = detection.getParameters();
+        final Object mac = parameters.get("mac");
+        if (mac == null) {
+            // Nothing to verify against next time, and whatever was cached
+            // no longer describes this miner
+            this.fingerprintCache.invalidate(minerID);
+            return;
+        }
+        final Object hostname = parameters.get("hostname");
+        this.fingerprintCache.put(
+                minerID,
+                Fingerprint
+                        .builder()
+                        .ip(minerID.getApiIp())
+                        .port(minerID.getApiPort())
+                        .type(toName(detection.getMinerType()))
+                        .mac(mac.toString())
+                        .hostname(hostname != null ? hostname.toString() : null)
+                        .webPort(webPort)
+                        .detectedAt(System.currentTimeMillis())
+                        .build());
+    }
+
+    /**
+     * Verifies that the miner at the fingerprint's location is still the same
+     * miner by checking its MAC.
+     *
+     * @param minerID     The miner.
+     * @param fingerprint The fingerprint.
+     * @param args        The arguments.
+     *
+     * @return The detection, if the fingerprint is still valid and belongs
+     *         to this strategy's types.
+     */
+    private Optional<Detection> verify(
+            final MinerID minerID,
+            final Fingerprint fingerprint,
+            final Map<String, Object> args) {
+        final Optional<MinerType> minerType =
+                this.typeResolver.apply(fingerprint.getType());
+        if (!minerType.isPresent()) {
+            // Another manufacturer's miner, so leave it for that one to verify
+            return Optional.empty();
+        }
+
+        Optional<String> mac = Optional.empty();
+        try {
+            mac =
+                    this.macStrategies
+                            .apply(minerType.get())
+                            .getMacAddress();
+        } catch (final Exception e) {
+            // Treated as a mismatch
+        }
+
+        if (!mac.filter(fingerprint.getMac()::equalsIgnoreCase).isPresent()) {
+            LOG.debug("Fingerprint for {} is stale (mac={}, cached={})",
+                    minerID,
+                    mac.orElse(null),
+                    fingerprint.getMac());
+            this.fingerprintCache.invalidate(minerID);
+            return Optional.empty();
+        }
+
+        final Map<String, Object> parameters = new HashMap<>(args);
+        parameters.put("mac", mac.get());
+        if (isPreferred("hostnamePreferred", args)) {
+            parameters.put("hostname", fingerprint.getHostname());
+        }
+        return Optional.of(
+                Detection
+                        .builder()
+                        .ipAddress(minerID.getApiIp())
+                        .port(minerID.getApiPort())
+                        .minerType(minerType.get())
+                        .parameters(parameters)
+                        .build());
+    }
+}
@@ -1,5 +1,7 @@
 package mn.foreman.model;
 
+import mn.foreman.model.error.MinerException;
+
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -8,6 +10,10 @@ import java.util.Optional;
 /**
  * A {@link DetectionStrategy} that will evaluate multiple candidate strategies,
  * completing when the first one hits.
+ *
+ * <p>The candidates are {@link CandidateRace raced}, so a miner running the
+ * last candidate firmware doesn't wait out a timeout for each of the
+ * others.</p>
  */
 public class FirmwareAwareDetectionStrategy
         implements DetectionStrategy {
@@ -15,6 +21,10 @@ public class FirmwareAwareDetectionStrategy
     /** The candidates. */
     private final List<DetectionStrategy> candidates;
 
+    /** Races the candidates, remembering the winner for each miner. */
+    private final CandidateRace<DetectionStrategy> race =
+            new CandidateRace<>();
+
     /**
      * Constructor.
      *
@@ -29,23 +39,20 @@ public class FirmwareAwareDetectionStrategy
             final String ip,
             final int port,
             final Map<String, Object> args) {
-        return this.candidates
-                .stream()
-                .map(candidate -> {
-                    Optional<Detection> detection = Optional.empty();
-                    try {
-                        detection =
-                                candidate.detect(
-                                        ip,
-                                        port,
-                                        args);
-                    } catch (final Exception e) {
-                        // Ignore
-                    }
-                    return detection;
-                })
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .findFirst();
+        try {
+            return this.race.race(
+                    MinerID.of(
+                            ip,
+                            port),
+                    this.candidates,
+                    candidate ->
+                            candidate.detect(
+                                    ip,
+                                    port,
+                                    args),
+                    Optional::isPresent);
+        } catch (final MinerException e) {
+            return Optional.empty();
+        }
     }
-}
\ No newline at end of file
+}
@@ -9,10 +9,14 @@ import com.google.common.collect.Iterables;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A firmware-aware miner is a miner that will try to obtain stats from two
  * different versions of a miner.
+ *
+ * <p>The firmwares are {@link CandidateRace raced}, with the winner
+ * remembered per miner so later polls go straight to it.</p>
  */
 public class FirmwareAwareMiner
         implements Miner {
@@ -20,6 +24,10 @@ public class FirmwareAwareMiner
     /** The firmware. */
     private final List<Miner> firmwares;
 
+    /** Races the candidates, remembering the winner for each miner. */
+    private final CandidateRace<Miner> race =
+            new CandidateRace<>();
+
     /**
      * Constructor.
      *
@@ -74,18 +82,32 @@ public class FirmwareAwareMiner
     @Override
     public MinerStats getStats()
             throws MinerException {
-        for (final Miner miner : this.firmwares) {
-            try {
-                final MinerStats stats = miner.getStats();
-                final List<Asic> asics = stats.getAsics();
-                if (asics != null && !asics.isEmpty()) {
-                    return stats;
-                }
-            } catch (final Exception e) {
-                // Ignore
-            }
-        }
+        return this.race.race(
+                getMinerID(),
+                this.firmwares,
+                Miner::getStats,
+                FirmwareAwareMiner::hasAsics);
+    }
 
-        throw new MinerException("Miner didn't respond");
+    @Override
+    public CompletableFuture<MinerStats> getStatsAsync() {
+        return this.race.raceAsync(
+                getMinerID(),
+                this.firmwares,
+                Miner::getStatsAsync,
+                FirmwareAwareMiner::hasAsics);
+    }
+
+    /**
+     * Checks whether or not the stats contain ASICs, which is what marks the
+     * firmware as the right one.
+     *
+     * @param stats The stats.
+     *
+     * @return Whether or not ASICs are present.
+     */
+    private static boolean hasAsics(final MinerStats stats) {
+        final List<Asic> asics = stats.getAsics();
+        return asics != null && !asics.isEmpty();
     }
 }
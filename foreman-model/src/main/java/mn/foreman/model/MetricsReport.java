@@ -3,6 +3,7 @@ package mn.foreman.model;
 import mn.foreman.model.metadata.Metadata;
 import mn.foreman.model.miners.MinerStats;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.builder.EqualsBuilder;
@@ -26,9 +27,17 @@ import java.util.List;
  *     "loopTimeMs": 100
  *   }
  * </pre>
+ *
+ * <p>Delta reports, which only contain the miners whose stats changed since
+ * the previous report, additionally contain <code>"delta": true</code> and the
+ * miners that are no longer being reported in <code>"removedMiners"</code>.
+ * Both are omitted from full reports.</p>
  */
 public class MetricsReport {
 
+    /** Whether or not this report only contains changes. */
+    private final boolean delta;
+
     /** The loop time (milliseconds). */
     private final long loopTimeMs;
 
@@ -38,26 +47,41 @@ public class MetricsReport {
     /** The {@link MinerStats stats}. */
     private final List<MinerStats> miners;
 
+    /** The miners that are no longer being reported. */
+    private final List<SimpleMinerID> removedMiners;
+
     /**
      * Constructor.
      *
-     * @param metadata   The {@link Metadata}.
-     * @param stats      The {@link MinerStats stats}.
-     * @param loopTimeMs The loop time (milliseconds).
+     * @param metadata      The {@link Metadata}.
+     * @param stats         The {@link MinerStats stats}.
+     * @param loopTimeMs    The loop time (milliseconds).
+     * @param delta         Whether or not this report only contains changes.
+     * @param removedMiners The miners that are no longer being reported.
      */
     private MetricsReport(
             @JsonProperty("metadata") final Metadata metadata,
             @JsonProperty("miners") final List<MinerStats> stats,
-            @JsonProperty("loopTimeMs") final long loopTimeMs) {
+            @JsonProperty("loopTimeMs") final long loopTimeMs,
+            @JsonProperty("delta") final boolean delta,
+            @JsonProperty("removedMiners") final List<SimpleMinerID> removedMiners) {
         Validate.notNull(
                 metadata,
                 "metadata cannot be null");
-        Validate.notEmpty(
+        Validate.notNull(
                 stats,
-                "stats cannot be empty");
+                "stats cannot be null");
         this.metadata = metadata;
         this.miners = new ArrayList<>(stats);
         this.loopTimeMs = loopTimeMs;
+        this.delta = delta;
+        this.removedMiners =
+                removedMiners != null
+                        ? new ArrayList<>(removedMiners)
+                        : new ArrayList<>();
+        Validate.isTrue(
+                !this.miners.isEmpty() || !this.removedMiners.isEmpty(),
+                "stats cannot be empty");
     }
 
     @Override
@@ -74,6 +98,8 @@ public class MetricsReport {
                             .append(this.metadata, metricsReport.metadata)
                             .append(this.miners, metricsReport.miners)
                             .append(this.loopTimeMs, metricsReport.loopTimeMs)
+                            .append(this.delta, metricsReport.delta)
+                            .append(this.removedMiners, metricsReport.removedMiners)
                             .isEquals();
         }
         return isEqual;
@@ -106,23 +132,47 @@ public class MetricsReport {
         return this.miners;
     }
 
+    /**
+     * Returns the miners that are no longer being reported.
+     *
+     * @return The miners that are no longer being reported.
+     */
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    public List<SimpleMinerID> getRemovedMiners() {
+        return this.removedMiners;
+    }
+
     @Override
     public int hashCode() {
         return new HashCodeBuilder()
                 .append(this.metadata)
                 .append(this.miners)
                 .append(this.loopTimeMs)
+                .append(this.delta)
+                .append(this.removedMiners)
                 .build();
     }
 
+    /**
+     * Returns whether or not this report only contains changes.
+     *
+     * @return Whether or not this report only contains changes.
+     */
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public boolean isDelta() {
+        return this.delta;
+    }
+
     @Override
     public String toString() {
         return String.format(
-                "%s [ metadata=%s, miners=%s, loopTimeMs=%s ]",
+                "%s [ metadata=%s, miners=%s, loopTimeMs=%s, delta=%s, removedMiners=%s ]",
                 getClass().getSimpleName(),
                 this.metadata,
                 this.miners,
-                this.loopTimeMs);
+                this.loopTimeMs,
+                this.delta,
+                this.removedMiners);
     }
 
     /** A builder for creating {@link MetricsReport reports}. */
@@ -132,6 +182,12 @@ public class MetricsReport {
         /** The {@link MinerStats stats}. */
         private final List<MinerStats> minerStats = new LinkedList<>();
 
+        /** The miners that are no longer being reported. */
+        private final List<SimpleMinerID> removedMiners = new LinkedList<>();
+
+        /** Whether or not the report only contains changes. */
+        private boolean delta;
+
         /** The loop time. */
         private long loopTimeMs;
 
@@ -150,12 +206,38 @@ public class MetricsReport {
             return this;
         }
 
+        /**
+         * Adds a miner that is no longer being reported.
+         *
+         * @param minerID The miner.
+         *
+         * @return The builder instance.
+         */
+        public Builder addRemovedMiner(final SimpleMinerID minerID) {
+            this.removedMiners.add(minerID);
+            return this;
+        }
+
         @Override
         public MetricsReport build() {
             return new MetricsReport(
                     this.metadata,
                     this.minerStats,
-                    this.loopTimeMs);
+                    this.loopTimeMs,
+                    this.delta,
+                    this.removedMiners);
+        }
+
+        /**
+         * Sets whether or not the report only contains changes.
+         *
+         * @param delta Whether or not the report only contains changes.
+         *
+         * @return The builder instance.
+         */
+        public Builder setDelta(final boolean delta) {
+            this.delta = delta;
+            return this;
         }
 
         /**
@@ -4,6 +4,7 @@ import mn.foreman.model.error.MinerException;
 import mn.foreman.model.miners.MinerStats;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A common interface to all {@link Miner miners} that provide the ability to
@@ -48,4 +49,26 @@ public interface Miner {
      */
     MinerStats getStats()
             throws MinerException;
-}
\ No newline at end of file
+
+    /**
+     * Obtains a {@link MinerStats} without requiring the caller to wait on the
+     * remote miner.
+     *
+     * <p>By default, this blocks in the calling thread via {@link #getStats()}
+     * and returns an already completed future.  Implementations that are able
+     * to perform their I/O without holding a thread should override this.</p>
+     *
+     * @return A future that completes with the {@link MinerStats}, or
+     *         exceptionally with a {@link MinerException} on failure.
+     */
+    default CompletableFuture<MinerStats> getStatsAsync() {
+        final CompletableFuture<MinerStats> future =
+                new CompletableFuture<>();
+        try {
+            future.complete(getStats());
+        } catch (final Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
@@ -1,8 +1,35 @@
 package mn.foreman.model;
 
+import mn.foreman.util.IpUtils;
+
 /** A {@link MinerID} represents a unique identifier to a {@link Miner}. */
 public interface MinerID {
 
+    /**
+     * Creates the ID for the miner at the provided IP and port.
+     *
+     * <p>IPv4 addresses are {@link PackedMinerID packed}, and anything else
+     * (ex: a hostname) falls back to a {@link SimpleMinerID}.</p>
+     *
+     * @param apiIp   The API IP.
+     * @param apiPort The API port.
+     *
+     * @return The ID.
+     */
+    static MinerID of(
+            final String apiIp,
+            final int apiPort) {
+        final long ip = IpUtils.parse(apiIp);
+        if (ip >= 0 && apiPort >= 0 && apiPort <= 0xFFFF) {
+            return new PackedMinerID(
+                    (int) ip,
+                    apiPort);
+        }
+        return new SimpleMinerID(
+                apiIp,
+                apiPort);
+    }
+
     /**
      * Returns the API IP.
      *
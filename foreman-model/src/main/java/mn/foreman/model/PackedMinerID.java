@@ -0,0 +1,64 @@
+package mn.foreman.model;
+
+import mn.foreman.util.IpUtils;
+
+/**
+ * A {@link PackedMinerID} is a {@link MinerID} for a miner with an IPv4
+ * address, with the address and port packed into a single <code>long</code>
+ * so that it's cheap to store, hash, and compare.
+ *
+ * <p>Note: create these through {@link MinerID#of(String, int)} so that every
+ * ID for the same miner has the same type.</p>
+ */
+public class PackedMinerID
+        implements MinerID {
+
+    /** The IP in the upper bits and the port in the lower 16. */
+    private final long packed;
+
+    /**
+     * Constructor.
+     *
+     * @param apiIp   The API IP, as an <code>int</code>.
+     * @param apiPort The API port.
+     */
+    PackedMinerID(
+            final int apiIp,
+            final int apiPort) {
+        this.packed = ((apiIp & 0xFFFFFFFFL) << 16) | apiPort;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other == this) {
+            return true;
+        }
+        return other != null &&
+                getClass() == other.getClass() &&
+                this.packed == ((PackedMinerID) other).packed;
+    }
+
+    @Override
+    public String getApiIp() {
+        return IpUtils.toString((int) (this.packed >>> 16));
+    }
+
+    @Override
+    public int getApiPort() {
+        return (int) (this.packed & 0xFFFF);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.packed);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s [ apiIp=%s, apiPort=%s ]",
+                getClass().getSimpleName(),
+                getApiIp(),
+                getApiPort());
+    }
+}
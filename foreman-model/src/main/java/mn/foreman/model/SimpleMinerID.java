@@ -1,5 +1,6 @@
 package mn.foreman.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
@@ -22,8 +23,8 @@ public class SimpleMinerID
      * @param apiPort The API port.
      */
     public SimpleMinerID(
-            final String apiIp,
-            final int apiPort) {
+            @JsonProperty("apiIp") final String apiIp,
+            @JsonProperty("apiPort") final int apiPort) {
         this.apiIp = apiIp;
         this.apiPort = apiPort;
     }
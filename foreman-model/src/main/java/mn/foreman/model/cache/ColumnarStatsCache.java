@@ -0,0 +1,180 @@
+package mn.foreman.model.cache;
+
+import mn.foreman.model.MinerID;
+import mn.foreman.model.miners.MinerStats;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link ColumnarStatsCache} provides a {@link StatsCache} implementation
+ * that stores {@link MinerStats} in primitive columns rather than as object
+ * graphs, which drastically reduces the heap needed for large sites.
+ *
+ * <p>Each miner is assigned a dense slot that's reused once the miner is
+ * invalidated or its stats expire.  {@link #getMetrics()} rebuilds the stats
+ * on demand, so only the stats being pushed are ever held as objects.</p>
+ *
+ * <p>Like {@link SelfExpiringStatsCache}, stats are evicted some configurable
+ * interval after they were added.</p>
+ */
+public class ColumnarStatsCache
+        implements StatsCache {
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(ColumnarStatsCache.class);
+
+    /** The columns. */
+    private final StatsColumns columns;
+
+    /** How long stats are kept after being added (milliseconds). */
+    private final long evictAfterWriteMs;
+
+    /** The slots that were released and can be reused. */
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    /** Guards the slots and columns. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** The slot occupied by each miner. */
+    private final Map<MinerID, Integer> slots = new HashMap<>();
+
+    /** The next slot that has never been used. */
+    private int nextSlot;
+
+    /** The miner occupying each slot. */
+    private MinerID[] owners;
+
+    /**
+     * Constructor.
+     *
+     * @param evictAfterWrite      When to auto-evict stats.
+     * @param evictAfterWriteUnits When to auto-evict stats (units).
+     * @param initialCapacity      The number of miners to initially size for.
+     */
+    public ColumnarStatsCache(
+            final int evictAfterWrite,
+            final TimeUnit evictAfterWriteUnits,
+            final int initialCapacity) {
+        Validate.isTrue(
+                initialCapacity > 0,
+                "initialCapacity must be > 0");
+        this.evictAfterWriteMs = evictAfterWriteUnits.toMillis(evictAfterWrite);
+        this.columns = new StatsColumns(initialCapacity);
+        this.owners = new MinerID[initialCapacity];
+    }
+
+    @Override
+    public void add(
+            final MinerID minerID,
+            final MinerStats stats) {
+        this.lock.writeLock().lock();
+        try {
+            Integer slot = this.slots.get(minerID);
+            if (slot == null) {
+                slot = allocate();
+                this.slots.put(
+                        minerID,
+                        slot);
+                this.owners[slot] = minerID;
+            }
+            this.columns.store(
+                    slot,
+                    stats);
+            this.columns.writeTimes[slot] = System.currentTimeMillis();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<MinerStats> getMetrics() {
+        evictAndLockForRead();
+        try {
+            final List<MinerStats> metrics = new ArrayList<>(this.slots.size());
+            for (int slot = 0; slot < this.nextSlot; slot++) {
+                if (this.owners[slot] != null) {
+                    metrics.add(this.columns.load(slot));
+                }
+            }
+            return metrics;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void invalidate(final MinerID minerID) {
+        this.lock.writeLock().lock();
+        try {
+            final Integer slot = this.slots.remove(minerID);
+            if (slot != null) {
+                release(slot);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds a slot for a new miner, growing the columns if necessary.
+     *
+     * @return The slot.
+     */
+    private int allocate() {
+        final Integer free = this.freeSlots.pollFirst();
+        if (free != null) {
+            return free;
+        }
+        if (this.nextSlot == this.columns.capacity()) {
+            final int capacity = this.columns.capacity() * 2;
+            LOG.debug("Growing stats columns to {} slots", capacity);
+            this.columns.resize(capacity);
+            this.owners = Arrays.copyOf(this.owners, capacity);
+        }
+        return this.nextSlot++;
+    }
+
+    /**
+     * Evicts any expired stats, then acquires the read lock.
+     *
+     * <p>Note: the caller must release the read lock.</p>
+     */
+    private void evictAndLockForRead() {
+        this.lock.writeLock().lock();
+        try {
+            final long expiredBefore =
+                    System.currentTimeMillis() - this.evictAfterWriteMs;
+            for (int slot = 0; slot < this.nextSlot; slot++) {
+                final MinerID minerID = this.owners[slot];
+                if (minerID != null &&
+                        this.columns.writeTimes[slot] <= expiredBefore) {
+                    LOG.debug("Evicted {}", minerID);
+                    this.slots.remove(minerID);
+                    release(slot);
+                }
+            }
+            // Downgrade, so nothing can be modified in between
+            this.lock.readLock().lock();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Releases the slot so it can be reused.
+     *
+     * @param slot The slot.
+     */
+    private void release(final int slot) {
+        this.columns.clear(slot);
+        this.owners[slot] = null;
+        this.freeSlots.addFirst(slot);
+    }
+}
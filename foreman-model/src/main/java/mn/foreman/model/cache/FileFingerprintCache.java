@@ -0,0 +1,257 @@
+package mn.foreman.model.cache;
+
+import mn.foreman.model.MinerID;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link FileFingerprintCache} provides a {@link FingerprintCache} that is
+ * held in memory and persisted to a file so that it survives restarts.
+ *
+ * <p>The file has one tab-separated line per fingerprint, and it's only
+ * written by {@link #flush()} when something changed.  Fingerprints expire
+ * a configurable interval after the miner was fully detected, regardless of
+ * how often they're used, so firmware changes that keep the same MAC are
+ * eventually picked up.</p>
+ */
+public class FileFingerprintCache
+        implements FingerprintCache, Closeable {
+
+    /** The first line of the file. */
+    private static final String HEADER = "# pickaxe fingerprints v1";
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(FileFingerprintCache.class);
+
+    /** The separator between fields. */
+    private static final String SEPARATOR = "\t";
+
+    /** Whether or not the cache changed since the last flush. */
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    /** The fingerprints. */
+    private final ConcurrentMap<MinerID, Fingerprint> fingerprints =
+            new ConcurrentHashMap<>();
+
+    /** The file. */
+    private final Path path;
+
+    /** How long fingerprints are valid, in millis. */
+    private final long ttlMillis;
+
+    /**
+     * Constructor.
+     *
+     * <p>Any fingerprints that were previously persisted at the path are
+     * loaded.</p>
+     *
+     * @param path     The file.
+     * @param ttl      How long fingerprints are valid.
+     * @param ttlUnits How long fingerprints are valid (units).
+     */
+    public FileFingerprintCache(
+            final Path path,
+            final long ttl,
+            final TimeUnit ttlUnits) {
+        Validate.notNull(
+                path,
+                "path cannot be null");
+        Validate.isTrue(
+                ttl > 0,
+                "ttl must be > 0");
+        Validate.notNull(
+                ttlUnits,
+                "ttlUnits cannot be null");
+        this.path = path;
+        this.ttlMillis = ttlUnits.toMillis(ttl);
+        load();
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    /** Writes the fingerprints to the file, if any have changed. */
+    public void flush() {
+        if (!this.dirty.getAndSet(false)) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        try {
+            final Path parent = this.path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            final Path temp =
+                    this.path.resolveSibling(
+                            this.path.getFileName() + ".tmp");
+            int written = 0;
+            try (final BufferedWriter writer =
+                         Files.newBufferedWriter(
+                                 temp,
+                                 StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (final Fingerprint fingerprint : this.fingerprints.values()) {
+                    if (!isExpired(fingerprint, now)) {
+                        writer.write(toLine(fingerprint));
+                        writer.newLine();
+                        written++;
+                    }
+                }
+            }
+            Files.move(
+                    temp,
+                    this.path,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            LOG.debug("Persisted {} fingerprints to {}", written, this.path);
+        } catch (final IOException e) {
+            // Try again next time
+            this.dirty.set(true);
+            LOG.warn("Failed to persist fingerprints to {}", this.path, e);
+        }
+    }
+
+    @Override
+    public Optional<Fingerprint> get(final MinerID minerID) {
+        final Fingerprint fingerprint = this.fingerprints.get(minerID);
+        if (fingerprint != null && isExpired(fingerprint, System.currentTimeMillis())) {
+            invalidate(minerID);
+            return Optional.empty();
+        }
+        return Optional.ofNullable(fingerprint);
+    }
+
+    @Override
+    public void invalidate(final MinerID minerID) {
+        if (this.fingerprints.remove(minerID) != null) {
+            this.dirty.set(true);
+        }
+    }
+
+    @Override
+    public void put(
+            final MinerID minerID,
+            final Fingerprint fingerprint) {
+        if (!fingerprint.equals(this.fingerprints.put(minerID, fingerprint))) {
+            this.dirty.set(true);
+        }
+    }
+
+    /**
+     * Parses a line from the file.
+     *
+     * @param line The line.
+     *
+     * @return The fingerprint, if the line was valid.
+     */
+    private static Optional<Fingerprint> fromLine(final String line) {
+        final String[] fields = line.split(SEPARATOR, -1);
+        if (fields.length != 7) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(
+                    Fingerprint
+                            .builder()
+                            .ip(fields[0])
+                            .port(Integer.parseInt(fields[1]))
+                            .type(fields[2])
+                            .mac(fields[3])
+                            .webPort(Integer.parseInt(fields[4]))
+                            .detectedAt(Long.parseLong(fields[5]))
+                            .hostname(!fields[6].isEmpty() ? fields[6] : null)
+                            .build());
+        } catch (final NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Creates a line for the file.
+     *
+     * @param fingerprint The fingerprint.
+     *
+     * @return The line.
+     */
+    private static String toLine(final Fingerprint fingerprint) {
+        return String.join(
+                SEPARATOR,
+                fingerprint.getIp(),
+                Integer.toString(fingerprint.getPort()),
+                fingerprint.getType(),
+                fingerprint.getMac(),
+                Integer.toString(fingerprint.getWebPort()),
+                Long.toString(fingerprint.getDetectedAt()),
+                fingerprint.getHostname() != null
+                        ? fingerprint.getHostname()
+                        : "");
+    }
+
+    /**
+     * Checks whether or not the fingerprint has expired.
+     *
+     * @param fingerprint The fingerprint.
+     * @param now         The current time, in millis.
+     *
+     * @return Whether or not the fingerprint expired.
+     */
+    private boolean isExpired(
+            final Fingerprint fingerprint,
+            final long now) {
+        return now - fingerprint.getDetectedAt() > this.ttlMillis;
+    }
+
+    /** Loads the fingerprints from the file, if it exists. */
+    private void load() {
+        if (!Files.exists(this.path)) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        try (final BufferedReader reader =
+                     Files.newBufferedReader(
+                             this.path,
+                             StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                fromLine(line)
+                        .filter(fingerprint -> !isExpired(fingerprint, now))
+                        .ifPresent(fingerprint ->
+                                this.fingerprints.put(
+                                        MinerID.of(
+                                                fingerprint.getIp(),
+                                                fingerprint.getPort()),
+                                        fingerprint));
+            }
+            LOG.info("Loaded {} fingerprints from {}",
+                    this.fingerprints.size(),
+                    this.path);
+        } catch (final IOException e) {
+            LOG.warn("Failed to load fingerprints from {}", this.path, e);
+        }
+    }
+}
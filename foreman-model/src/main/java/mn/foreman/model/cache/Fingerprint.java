@@ -0,0 +1,34 @@
+package mn.foreman.model.cache;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * A {@link Fingerprint} is everything that was learned about a miner the last
+ * time it was fully detected.
+ */
+@Data
+@Builder
+public class Fingerprint {
+
+    /** When the miner was fully detected, in epoch millis. */
+    private final long detectedAt;
+
+    /** The hostname, if one was detected. */
+    private final String hostname;
+
+    /** The IP. */
+    private final String ip;
+
+    /** The MAC. */
+    private final String mac;
+
+    /** The API port. */
+    private final int port;
+
+    /** The name of the detected type, which includes the firmware family. */
+    private final String type;
+
+    /** The web port that was used for the detection. */
+    private final int webPort;
+}
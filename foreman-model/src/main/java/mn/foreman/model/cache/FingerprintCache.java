@@ -0,0 +1,39 @@
+package mn.foreman.model.cache;
+
+import mn.foreman.model.MinerID;
+
+import java.util.Optional;
+
+/**
+ * A {@link FingerprintCache} remembers the {@link Fingerprint fingerprints} of
+ * miners that were previously detected so they don't need to be identified
+ * from scratch every time they're scanned.
+ */
+public interface FingerprintCache {
+
+    /**
+     * Returns the fingerprint for the miner, if known and not expired.
+     *
+     * @param minerID The ID.
+     *
+     * @return The fingerprint, if present.
+     */
+    Optional<Fingerprint> get(MinerID minerID);
+
+    /**
+     * Removes the fingerprint for the miner.
+     *
+     * @param minerID The ID to invalidate.
+     */
+    void invalidate(MinerID minerID);
+
+    /**
+     * Adds, or replaces, the fingerprint for the miner.
+     *
+     * @param minerID     The ID.
+     * @param fingerprint The fingerprint.
+     */
+    void put(
+            MinerID minerID,
+            Fingerprint fingerprint);
+}
@@ -0,0 +1,50 @@
+package mn.foreman.model.cache;
+
+import mn.foreman.model.MinerID;
+
+import java.util.Optional;
+
+/**
+ * A {@link MacCache} remembers the MAC addresses of miners so that checks that
+ * only need the MAC don't have to query the miner for it every time.
+ */
+public interface MacCache {
+
+    /**
+     * Returns the MAC for the miner, if known and not expired.
+     *
+     * @param minerID The ID.
+     *
+     * @return The MAC, if present.
+     */
+    Optional<String> get(MinerID minerID);
+
+    /**
+     * Removes the MAC for the miner.
+     *
+     * @param minerID The ID to invalidate.
+     */
+    void invalidate(MinerID minerID);
+
+    /**
+     * Adds, or replaces, the MAC for the miner.
+     *
+     * @param minerID The ID.
+     * @param mac     The MAC.
+     */
+    void put(
+            MinerID minerID,
+            String mac);
+
+    /**
+     * Records what the miner currently looks like, removing its MAC if it no
+     * longer looks like the miner that the MAC was obtained from (ex: another
+     * miner was moved to its IP).
+     *
+     * @param minerID  The ID.
+     * @param identity What the miner currently looks like.
+     */
+    void verify(
+            MinerID minerID,
+            String identity);
+}
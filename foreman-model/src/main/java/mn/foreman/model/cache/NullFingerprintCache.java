@@ -0,0 +1,27 @@
+package mn.foreman.model.cache;
+
+import mn.foreman.model.MinerID;
+
+import java.util.Optional;
+
+/** A {@link FingerprintCache} that never remembers anything. */
+public class NullFingerprintCache
+        implements FingerprintCache {
+
+    @Override
+    public Optional<Fingerprint> get(final MinerID minerID) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void invalidate(final MinerID minerID) {
+        // Do nothing
+    }
+
+    @Override
+    public void put(
+            final MinerID minerID,
+            final Fingerprint fingerprint) {
+        // Do nothing
+    }
+}
@@ -0,0 +1,34 @@
+package mn.foreman.model.cache;
+
+import mn.foreman.model.MinerID;
+
+import java.util.Optional;
+
+/** A {@link MacCache} that never remembers anything. */
+public class NullMacCache
+        implements MacCache {
+
+    @Override
+    public Optional<String> get(final MinerID minerID) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void invalidate(final MinerID minerID) {
+        // Do nothing
+    }
+
+    @Override
+    public void put(
+            final MinerID minerID,
+            final String mac) {
+        // Do nothing
+    }
+
+    @Override
+    public void verify(
+            final MinerID minerID,
+            final String identity) {
+        // Do nothing
+    }
+}
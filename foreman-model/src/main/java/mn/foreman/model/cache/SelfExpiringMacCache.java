@@ -0,0 +1,107 @@
+package mn.foreman.model.cache;
+
+import mn.foreman.model.MinerID;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link SelfExpiringMacCache} provides a {@link MacCache} implementation
+ * that will automatically evict MACs some configurable interval after they were
+ * last obtained from the miner.
+ *
+ * <p>The first identity that's {@link #verify(MinerID, String) verified}
+ * after a MAC was obtained is remembered with it, and the MAC is evicted as
+ * soon as a different one is seen.</p>
+ */
+public class SelfExpiringMacCache
+        implements MacCache {
+
+    /** The backing cache. */
+    private final Cache<MinerID, Entry> cache;
+
+    /**
+     * Constructor.
+     *
+     * @param evictAfterWrite      When to auto-evict MACs.
+     * @param evictAfterWriteUnits When to auto-evict MACs (units).
+     */
+    public SelfExpiringMacCache(
+            final int evictAfterWrite,
+            final TimeUnit evictAfterWriteUnits) {
+        this.cache =
+                CacheBuilder.newBuilder()
+                        .expireAfterWrite(
+                                evictAfterWrite,
+                                evictAfterWriteUnits)
+                        .build();
+    }
+
+    @Override
+    public Optional<String> get(final MinerID minerID) {
+        return Optional
+                .ofNullable(this.cache.getIfPresent(minerID))
+                .map(entry -> entry.mac);
+    }
+
+    @Override
+    public void invalidate(final MinerID minerID) {
+        this.cache.invalidate(minerID);
+    }
+
+    @Override
+    public void put(
+            final MinerID minerID,
+            final String mac) {
+        this.cache.put(
+                minerID,
+                new Entry(
+                        mac,
+                        null));
+    }
+
+    @Override
+    public void verify(
+            final MinerID minerID,
+            final String identity) {
+        this.cache.asMap().computeIfPresent(
+                minerID,
+                (id, entry) -> {
+                    if (entry.identity == null) {
+                        return new Entry(
+                                entry.mac,
+                                identity);
+                    }
+                    // Removed if the miner changed
+                    return entry.identity.equals(identity)
+                            ? entry
+                            : null;
+                });
+    }
+
+    /** A MAC, and what the miner looked like when it was obtained. */
+    private static class Entry {
+
+        /** What the miner looked like, or <code>null</code> if unknown. */
+        private final String identity;
+
+        /** The MAC. */
+        private final String mac;
+
+        /**
+         * Constructor.
+         *
+         * @param mac      The MAC.
+         * @param identity What the miner looked like.
+         */
+        private Entry(
+                final String mac,
+                final String identity) {
+            this.mac = mac;
+            this.identity = identity;
+        }
+    }
+}
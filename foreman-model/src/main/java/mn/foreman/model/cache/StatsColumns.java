@@ -0,0 +1,695 @@
+package mn.foreman.model.cache;
+
+import mn.foreman.model.miners.FanInfo;
+import mn.foreman.model.miners.MinerStats;
+import mn.foreman.model.miners.Pool;
+import mn.foreman.model.miners.asic.Asic;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * {@link StatsColumns} stores {@link MinerStats} as primitive columns, where
+ * each miner occupies a slot (an index into every column).
+ *
+ * <p>Only the stats of single-ASIC miners, which is nearly every miner, are
+ * decomposed.  The numbers are held in primitive arrays.  The attributes and
+ * raw stats are packed into a single byte array per miner, with their keys,
+ * which repeat across miners, replaced by IDs into a shared dictionary.
+ * Anything else is held as-is so that {@link #load(int)} always returns stats
+ * equal to what was stored.</p>
+ */
+class StatsColumns {
+
+    /** The number of long pool values per pool. */
+    private static final int POOL_LONGS = 9;
+
+    /** The number of int pool values per pool. */
+    private static final int POOL_INTS = 4;
+
+    /** The number of string pool values per pool. */
+    private static final int POOL_STRINGS = 2;
+
+    /** The power modes, by ordinal. */
+    private static final Asic.PowerMode[] POWER_MODES = Asic.PowerMode.values();
+
+    /** A packed {@link BigDecimal}. */
+    private static final byte TYPE_BIG_DECIMAL = 0;
+
+    /** A packed {@link BigInteger}. */
+    private static final byte TYPE_BIG_INTEGER = 1;
+
+    /** A packed {@link Boolean}. */
+    private static final byte TYPE_BOOLEAN = 2;
+
+    /** A packed {@link Double}. */
+    private static final byte TYPE_DOUBLE = 3;
+
+    /** A packed {@link Integer}. */
+    private static final byte TYPE_INTEGER = 4;
+
+    /** A packed {@link Long}. */
+    private static final byte TYPE_LONG = 5;
+
+    /** A packed <code>null</code>. */
+    private static final byte TYPE_NULL = 6;
+
+    /** A packed {@link String}. */
+    private static final byte TYPE_STRING = 7;
+
+    /** The ID of each key in the payloads. */
+    private final Map<String, Integer> keyIds = new HashMap<>();
+
+    /** The keys in the payloads, by ID. */
+    private final List<String> keys = new ArrayList<>();
+
+    /** The API IPs. */
+    String[] apiIps;
+
+    /** The API ports. */
+    int[] apiPorts;
+
+    /** The board counts. */
+    int[] boards;
+
+    /** The fan counts. */
+    int[] fanCounts;
+
+    /** The fan speeds. */
+    int[][] fanSpeeds;
+
+    /** The fan speed units. */
+    String[] fanSpeedUnits;
+
+    /** Whether or not errors were observed. */
+    boolean[] hasErrors;
+
+    /** The unscaled hash rates. */
+    long[] hashRates;
+
+    /** The hash rate scales. */
+    int[] hashRateScales;
+
+    /** Stats that couldn't be decomposed, which are held as-is. */
+    MinerStats[] overflow;
+
+    /** The packed attributes and raw stats. */
+    byte[][] payloads;
+
+    /** The pool counts. */
+    int[] poolCounts;
+
+    /** The int pool values (priority, enabled, status, has difficulty). */
+    int[][] poolInts;
+
+    /** The long pool values (counts, difficulty shares, works). */
+    long[][] poolLongs;
+
+    /** The string pool values (name, worker). */
+    String[][] poolStrings;
+
+    /** The power mode ordinals, or -1 if not set. */
+    byte[] powerModes;
+
+    /** The power states. */
+    String[] powerStates;
+
+    /** The query times. */
+    long[] queryTimes;
+
+    /** The temperatures. */
+    int[][] temps;
+
+    /** When each slot was written. */
+    long[] writeTimes;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity The initial capacity.
+     */
+    StatsColumns(final int capacity) {
+        this.apiIps = new String[capacity];
+        this.apiPorts = new int[capacity];
+        this.boards = new int[capacity];
+        this.fanCounts = new int[capacity];
+        this.fanSpeeds = new int[capacity][];
+        this.fanSpeedUnits = new String[capacity];
+        this.hasErrors = new boolean[capacity];
+        this.hashRates = new long[capacity];
+        this.hashRateScales = new int[capacity];
+        this.overflow = new MinerStats[capacity];
+        this.payloads = new byte[capacity][];
+        this.poolCounts = new int[capacity];
+        this.poolInts = new int[capacity][];
+        this.poolLongs = new long[capacity][];
+        this.poolStrings = new String[capacity][];
+        this.powerModes = new byte[capacity];
+        this.powerStates = new String[capacity];
+        this.queryTimes = new long[capacity];
+        this.temps = new int[capacity][];
+        this.writeTimes = new long[capacity];
+    }
+
+    /**
+     * Returns the number of slots.
+     *
+     * @return The number of slots.
+     */
+    int capacity() {
+        return this.apiPorts.length;
+    }
+
+    /**
+     * Releases everything held by the slot.
+     *
+     * @param slot The slot.
+     */
+    void clear(final int slot) {
+        this.apiIps[slot] = null;
+        this.fanSpeeds[slot] = null;
+        this.fanSpeedUnits[slot] = null;
+        this.overflow[slot] = null;
+        this.payloads[slot] = null;
+        this.poolInts[slot] = null;
+        this.poolLongs[slot] = null;
+        this.poolStrings[slot] = null;
+        this.powerStates[slot] = null;
+        this.temps[slot] = null;
+    }
+
+    /**
+     * Grows every column.
+     *
+     * @param capacity The new capacity.
+     */
+    void resize(final int capacity) {
+        this.apiIps = Arrays.copyOf(this.apiIps, capacity);
+        this.apiPorts = Arrays.copyOf(this.apiPorts, capacity);
+        this.boards = Arrays.copyOf(this.boards, capacity);
+        this.fanCounts = Arrays.copyOf(this.fanCounts, capacity);
+        this.fanSpeeds = Arrays.copyOf(this.fanSpeeds, capacity);
+        this.fanSpeedUnits = Arrays.copyOf(this.fanSpeedUnits, capacity);
+        this.hasErrors = Arrays.copyOf(this.hasErrors, capacity);
+        this.hashRates = Arrays.copyOf(this.hashRates, capacity);
+        this.hashRateScales = Arrays.copyOf(this.hashRateScales, capacity);
+        this.overflow = Arrays.copyOf(this.overflow, capacity);
+        this.payloads = Arrays.copyOf(this.payloads, capacity);
+        this.poolCounts = Arrays.copyOf(this.poolCounts, capacity);
+        this.poolInts = Arrays.copyOf(this.poolInts, capacity);
+        this.poolLongs = Arrays.copyOf(this.poolLongs, capacity);
+        this.poolStrings = Arrays.copyOf(this.poolStrings, capacity);
+        this.powerModes = Arrays.copyOf(this.powerModes, capacity);
+        this.powerStates = Arrays.copyOf(this.powerStates, capacity);
+        this.queryTimes = Arrays.copyOf(this.queryTimes, capacity);
+        this.temps = Arrays.copyOf(this.temps, capacity);
+        this.writeTimes = Arrays.copyOf(this.writeTimes, capacity);
+    }
+
+    /**
+     * Rebuilds the stats held in the slot.
+     *
+     * @param slot The slot.
+     *
+     * @return The stats.
+     */
+    MinerStats load(final int slot) {
+        if (this.overflow[slot] != null) {
+            return this.overflow[slot];
+        }
+
+        final FanInfo.Builder fanBuilder =
+                new FanInfo.Builder()
+                        .setCount(this.fanCounts[slot])
+                        .setSpeedUnits(this.fanSpeedUnits[slot]);
+        for (final int speed : this.fanSpeeds[slot]) {
+            if (speed < 0) {
+                fanBuilder.addSpeed(speed);
+            } else {
+                fanBuilder.addSpeed(
+                        speed,
+                        true);
+            }
+        }
+
+        final Asic.Builder asicBuilder =
+                new Asic.Builder()
+                        .setHashRate(
+                                new BigDecimal(
+                                        BigInteger.valueOf(this.hashRates[slot]),
+                                        this.hashRateScales[slot]))
+                        .setBoards(this.boards[slot])
+                        .setPowerMode(
+                                this.powerModes[slot] >= 0
+                                        ? POWER_MODES[this.powerModes[slot]]
+                                        : null)
+                        .setFanInfo(fanBuilder.build())
+                        .hasErrors(this.hasErrors[slot])
+                        .setPowerState(this.powerStates[slot]);
+        unpack(
+                this.payloads[slot],
+                asicBuilder);
+        for (final int temp : this.temps[slot]) {
+            asicBuilder.addTemp(
+                    temp,
+                    true);
+        }
+
+        final MinerStats.Builder builder =
+                new MinerStats.Builder()
+                        .setApiIp(this.apiIps[slot])
+                        .setApiPort(this.apiPorts[slot])
+                        .setQueryTimeMs(this.queryTimes[slot])
+                        .addAsic(asicBuilder.build());
+        for (int i = 0; i < this.poolCounts[slot]; i++) {
+            builder.addPool(toPool(slot, i));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Stores the stats in the slot.
+     *
+     * @param slot  The slot.
+     * @param stats The stats.
+     */
+    void store(
+            final int slot,
+            final MinerStats stats) {
+        clear(slot);
+        this.apiIps[slot] = stats.getApiIp();
+        this.apiPorts[slot] = stats.getApiPort();
+        this.queryTimes[slot] = stats.getQueryTimeMs();
+        final byte[] payload =
+                isDecomposable(stats)
+                        ? pack(stats.getAsics().get(0))
+                        : null;
+        if (payload == null) {
+            this.overflow[slot] = stats;
+            return;
+        }
+
+        final Asic asic = stats.getAsics().get(0);
+        this.payloads[slot] = payload;
+        final BigDecimal hashRate = asic.getHashRate();
+        this.hashRates[slot] = hashRate.unscaledValue().longValue();
+        this.hashRateScales[slot] = hashRate.scale();
+        this.boards[slot] = asic.getBoards();
+        this.powerModes[slot] =
+                asic.getPowerMode() != null
+                        ? (byte) asic.getPowerMode().ordinal()
+                        : -1;
+        this.hasErrors[slot] = asic.getHasErrors();
+        this.powerStates[slot] = asic.getPowerState();
+        this.temps[slot] = toInts(asic.getTemps());
+
+        final FanInfo fans = asic.getFans();
+        this.fanCounts[slot] = fans.getCount();
+        this.fanSpeeds[slot] = toInts(fans.getSpeeds());
+        this.fanSpeedUnits[slot] = fans.getSpeedUnits();
+
+        final List<Pool> pools = stats.getPools();
+        final int poolCount = pools.size();
+        this.poolCounts[slot] = poolCount;
+        this.poolLongs[slot] = new long[poolCount * POOL_LONGS];
+        this.poolInts[slot] = new int[poolCount * POOL_INTS];
+        this.poolStrings[slot] = new String[poolCount * POOL_STRINGS];
+        for (int i = 0; i < poolCount; i++) {
+            storePool(slot, i, pools.get(i));
+        }
+    }
+
+    /**
+     * Checks whether or not the stats can be decomposed into columns and
+     * rebuilt exactly.
+     *
+     * @param stats The stats.
+     *
+     * @return Whether or not the stats can be decomposed.
+     */
+    private static boolean isDecomposable(final MinerStats stats) {
+        if (stats.getAsics().size() != 1 ||
+                !stats.getRigs().isEmpty() ||
+                !stats.getCpus().isEmpty()) {
+            return false;
+        }
+
+        final Asic asic = stats.getAsics().get(0);
+        final String powerState = asic.getPowerState();
+        if (asic.getHashRate().unscaledValue().bitLength() >= Long.SIZE ||
+                asic.getAttributes() == null ||
+                asic.getRawStats() == null ||
+                (powerState != null && !powerState.equals(powerState.toLowerCase()))) {
+            return false;
+        }
+
+        for (final Pool pool : stats.getPools()) {
+            final int difficulties =
+                    (pool.getDifficultyAccepted() != null ? 1 : 0) +
+                            (pool.getDifficultyRejected() != null ? 1 : 0) +
+                            (pool.getDifficultyStale() != null ? 1 : 0);
+            if ((difficulties != 0 && difficulties != 3) ||
+                    pool.getWorker() == null ||
+                    pool.getWorker().isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts the provided values to primitives.
+     *
+     * @param values The values.
+     *
+     * @return The primitives.
+     */
+    private static int[] toInts(final List<Integer> values) {
+        final int[] ints = new int[values.size()];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = values.get(i);
+        }
+        return ints;
+    }
+
+    /**
+     * Reads a value written by {@link #writeValue(DataOutputStream, Object)}.
+     *
+     * @param input The input.
+     *
+     * @return The value.
+     *
+     * @throws IOException on failure to read.
+     */
+    private static Object readValue(final DataInputStream input)
+            throws IOException {
+        final byte type = input.readByte();
+        switch (type) {
+            case TYPE_BIG_DECIMAL:
+                final int scale = input.readInt();
+                return new BigDecimal(
+                        readBigInteger(input),
+                        scale);
+            case TYPE_BIG_INTEGER:
+                return readBigInteger(input);
+            case TYPE_BOOLEAN:
+                return input.readBoolean();
+            case TYPE_DOUBLE:
+                return input.readDouble();
+            case TYPE_INTEGER:
+                return input.readInt();
+            case TYPE_LONG:
+                return input.readLong();
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return input.readUTF();
+            default:
+                throw new IOException("Unknown type: " + type);
+        }
+    }
+
+    /**
+     * Reads a {@link BigInteger}.
+     *
+     * @param input The input.
+     *
+     * @return The value.
+     *
+     * @throws IOException on failure to read.
+     */
+    private static BigInteger readBigInteger(final DataInputStream input)
+            throws IOException {
+        final byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new BigInteger(bytes);
+    }
+
+    /**
+     * Writes a value with its type, so it's read back as an equal value.
+     *
+     * @param output The output.
+     * @param value  The value.
+     *
+     * @return Whether or not the value's type could be packed.
+     *
+     * @throws IOException on failure to write.
+     */
+    private static boolean writeValue(
+            final DataOutputStream output,
+            final Object value) throws IOException {
+        if (value == null) {
+            output.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            output.writeByte(TYPE_STRING);
+            output.writeUTF((String) value);
+        } else if (value instanceof BigDecimal) {
+            final BigDecimal decimal = (BigDecimal) value;
+            output.writeByte(TYPE_BIG_DECIMAL);
+            output.writeInt(decimal.scale());
+            writeBigInteger(
+                    output,
+                    decimal.unscaledValue());
+        } else if (value instanceof BigInteger) {
+            output.writeByte(TYPE_BIG_INTEGER);
+            writeBigInteger(
+                    output,
+                    (BigInteger) value);
+        } else if (value instanceof Boolean) {
+            output.writeByte(TYPE_BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if (value instanceof Double) {
+            output.writeByte(TYPE_DOUBLE);
+            output.writeDouble((Double) value);
+        } else if (value instanceof Integer) {
+            output.writeByte(TYPE_INTEGER);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(TYPE_LONG);
+            output.writeLong((Long) value);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes a {@link BigInteger}.
+     *
+     * @param output The output.
+     * @param value  The value.
+     *
+     * @throws IOException on failure to write.
+     */
+    private static void writeBigInteger(
+            final DataOutputStream output,
+            final BigInteger value) throws IOException {
+        final byte[] bytes = value.toByteArray();
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Packs the attributes and raw stats.
+     *
+     * @param asic The ASIC.
+     *
+     * @return The payload, or <code>null</code> if a value couldn't be
+     *         packed.
+     */
+    private byte[] pack(final Asic asic) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final DataOutputStream output = new DataOutputStream(bytes)) {
+            final List<Map<String, String>> attributes = asic.getAttributes();
+            output.writeInt(attributes.size());
+            for (final Map<String, String> attribute : attributes) {
+                if (!packEntries(output, attribute)) {
+                    return null;
+                }
+            }
+            if (!packEntries(output, asic.getRawStats())) {
+                return null;
+            }
+        } catch (final IOException e) {
+            // Ex: a string that's too long
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Packs the entries of a map.
+     *
+     * @param output The output.
+     * @param values The map.
+     *
+     * @return Whether or not every value could be packed.
+     *
+     * @throws IOException on failure to write.
+     */
+    private boolean packEntries(
+            final DataOutputStream output,
+            final Map<String, ?> values) throws IOException {
+        output.writeInt(values.size());
+        for (final Map.Entry<String, ?> entry : values.entrySet()) {
+            if (entry.getKey() == null) {
+                return false;
+            }
+            output.writeInt(toKeyId(entry.getKey()));
+            if (!writeValue(output, entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores a pool.
+     *
+     * @param slot  The slot.
+     * @param index The pool index.
+     * @param pool  The pool.
+     */
+    private void storePool(
+            final int slot,
+            final int index,
+            final Pool pool) {
+        final long[] longs = this.poolLongs[slot];
+        final int longOffset = index * POOL_LONGS;
+        final boolean hasDifficulty = pool.getDifficultyAccepted() != null;
+        longs[longOffset] = pool.getAccepted();
+        longs[longOffset + 1] = pool.getRejected();
+        longs[longOffset + 2] = pool.getStale();
+        longs[longOffset + 3] = hasDifficulty ? pool.getDifficultyAccepted() : 0;
+        longs[longOffset + 4] = hasDifficulty ? pool.getDifficultyRejected() : 0;
+        longs[longOffset + 5] = hasDifficulty ? pool.getDifficultyStale() : 0;
+        longs[longOffset + 6] = pool.getLastShareDifficulty();
+        longs[longOffset + 7] = pool.getDiscarded();
+        longs[longOffset + 8] = pool.getGetWorks();
+
+        final int[] ints = this.poolInts[slot];
+        final int intOffset = index * POOL_INTS;
+        ints[intOffset] = pool.getPriority();
+        ints[intOffset + 1] = pool.getEnabled() ? 1 : 0;
+        ints[intOffset + 2] = pool.getStatus() ? 1 : 0;
+        ints[intOffset + 3] = hasDifficulty ? 1 : 0;
+
+        final String[] strings = this.poolStrings[slot];
+        final int stringOffset = index * POOL_STRINGS;
+        strings[stringOffset] = pool.getName();
+        strings[stringOffset + 1] = pool.getWorker();
+    }
+
+    /**
+     * Returns the ID for the provided key, adding it to the dictionary if it's
+     * new.
+     *
+     * @param key The key.
+     *
+     * @return The ID.
+     */
+    private int toKeyId(final String key) {
+        Integer id = this.keyIds.get(key);
+        if (id == null) {
+            id = this.keys.size();
+            this.keys.add(key);
+            this.keyIds.put(key, id);
+        }
+        return id;
+    }
+
+    /**
+     * Rebuilds a pool.
+     *
+     * @param slot  The slot.
+     * @param index The pool index.
+     *
+     * @return The pool.
+     */
+    private Pool toPool(
+            final int slot,
+            final int index) {
+        final long[] longs = this.poolLongs[slot];
+        final int longOffset = index * POOL_LONGS;
+        final int[] ints = this.poolInts[slot];
+        final int intOffset = index * POOL_INTS;
+        final String[] strings = this.poolStrings[slot];
+        final int stringOffset = index * POOL_STRINGS;
+
+        final Pool.Builder builder =
+                new Pool.Builder()
+                        .setName(strings[stringOffset])
+                        .setWorker(strings[stringOffset + 1])
+                        .setPriority(ints[intOffset])
+                        .setStatus(
+                                ints[intOffset + 1] == 1,
+                                ints[intOffset + 2] == 1)
+                        .setCounts(
+                                longs[longOffset],
+                                longs[longOffset + 1],
+                                longs[longOffset + 2])
+                        .setLastShareDifficulty(longs[longOffset + 6])
+                        .setDiscarded(longs[longOffset + 7])
+                        .setGetWorks(longs[longOffset + 8]);
+        if (ints[intOffset + 3] == 1) {
+            builder.setDifficultyShares(
+                    longs[longOffset + 3],
+                    longs[longOffset + 4],
+                    longs[longOffset + 5]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Unpacks the attributes and raw stats into the provided builder.
+     *
+     * @param payload     The payload.
+     * @param asicBuilder The builder.
+     */
+    @SuppressWarnings("unchecked")
+    private void unpack(
+            final byte[] payload,
+            final Asic.Builder asicBuilder) {
+        try (final DataInputStream input =
+                     new DataInputStream(new ByteArrayInputStream(payload))) {
+            final int attributes = input.readInt();
+            for (int i = 0; i < attributes; i++) {
+                final Map<String, String> attribute = new HashMap<>();
+                unpackEntries(
+                        input,
+                        (Map<String, Object>) (Map<String, ?>) attribute);
+                asicBuilder.addAttributes(attribute);
+            }
+            final Map<String, Object> rawStats = new LinkedHashMap<>();
+            unpackEntries(
+                    input,
+                    rawStats);
+            asicBuilder.addRawStats(rawStats);
+        } catch (final IOException e) {
+            // Not possible - the payload was written by pack()
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Unpacks the entries of a map.
+     *
+     * @param input  The input.
+     * @param values The map to populate.
+     *
+     * @throws IOException on failure to read.
+     */
+    private void unpackEntries(
+            final DataInputStream input,
+            final Map<String, Object> values) throws IOException {
+        final int size = input.readInt();
+        for (int i = 0; i < size; i++) {
+            final String key = this.keys.get(input.readInt());
+            values.put(
+                    key,
+                    readValue(input));
+        }
+    }
+}
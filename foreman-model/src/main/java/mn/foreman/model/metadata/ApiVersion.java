@@ -12,6 +12,12 @@ public enum ApiVersion {
     /** API version 1.0.0. */
     V1_0_0("1.0.0"),
 
+    /**
+     * API version 1.1.0, which allows reports to only contain the miners that
+     * changed.
+     */
+    V1_1_0("1.1.0"),
+
     /** An unknown API version. */
     UNKNOWN("unknown");
 
@@ -5,10 +5,7 @@ import mn.foreman.pickaxe.command.PostCommandProcessor;
 import mn.foreman.pickaxe.command.StrategyFactory;
 import mn.foreman.pickaxe.command.asic.discover.DiscoverStrategy;
 import mn.foreman.pickaxe.command.asic.rawstats.RawStatsStrategy;
-import mn.foreman.pickaxe.command.asic.scan.MacFilteringStrategy;
-import mn.foreman.pickaxe.command.asic.scan.RangesSourceStrategy;
-import mn.foreman.pickaxe.command.asic.scan.ScanStrategy;
-import mn.foreman.pickaxe.command.asic.scan.StartStopSourceStrategy;
+import mn.foreman.pickaxe.command.asic.scan.*;
 import mn.foreman.pickaxe.command.asic.terminate.TerminateStrategy;
 import mn.foreman.pickaxe.contraints.IpValidatingCommandStrategyDecorator;
 import mn.foreman.pickaxe.contraints.IpValidator;
@@ -16,7 +13,6 @@ import mn.foreman.pickaxe.contraints.IpValidator;
 import com.google.common.util.concurrent.RateLimiter;
 
 import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -57,19 +53,15 @@ public class AsicStrategyFactory
      * @param postRebootProcessor      The post processor for rebooting.
      * @param context                  The context.
      * @param isControl                Whether command and control is enabled.
-     * @param startStopJobs            The scanner job queue for start/stop
-     *                                 jobs.
+     * @param scanScheduler            The scheduler shared by every kind of
+     *                                 scan.
      * @param startStopLimiter         The limiter for start-stop scans.
-     * @param rangesJobs               The scanner job queue for range-based
-     *                                 jobs.
      * @param rangesLimiter            The limiter for range scans.
-     * @param targetedStartStopJobs    The scanner job queue for targeted,
-     *                                 start/stop jobs.
      * @param targetedStartStopLimiter The limiter for start-stop targeted
      *                                 scans.
-     * @param targetedRangesJobs       The scanner job queue for targeted,
-     *                                 ranges jobs.
      * @param targetedRangesLimiter    The limiter for range targeted scans.
+     * @param probingStrategy          The strategy for skipping unreachable
+     *                                 IPs during scans.
      */
     @SuppressWarnings("UnstableApiUsage")
     public AsicStrategyFactory(
@@ -77,14 +69,12 @@ public class AsicStrategyFactory
             final ManufacturerContext context,
             final AtomicBoolean isControl,
             final IpValidator ipValidator,
-            final BlockingQueue<ScanStrategy.Scanner.ScanJob> startStopJobs,
+            final ScanScheduler scanScheduler,
             final RateLimiter startStopLimiter,
-            final BlockingQueue<ScanStrategy.Scanner.ScanJob> rangesJobs,
             final RateLimiter rangesLimiter,
-            final BlockingQueue<ScanStrategy.Scanner.ScanJob> targetedStartStopJobs,
             final RateLimiter targetedStartStopLimiter,
-            final BlockingQueue<ScanStrategy.Scanner.ScanJob> targetedRangesJobs,
-            final RateLimiter targetedRangesLimiter) {
+            final RateLimiter targetedRangesLimiter,
+            final ProbingStrategy probingStrategy) {
         this.postRebootProcessor = postRebootProcessor;
         this.context = context;
         this.isControl = isControl;
@@ -94,28 +84,38 @@ public class AsicStrategyFactory
                 new ScanStrategy(
                         startStopLimiter,
                         new StartStopSourceStrategy(),
+                        new NullFilteringStrategy(),
+                        probingStrategy,
                         this.ipValidator,
-                        startStopJobs);
+                        scanScheduler,
+                        ScanClass.START_STOP);
         this.rangesScanStrategy =
                 new ScanStrategy(
                         rangesLimiter,
                         new RangesSourceStrategy(),
+                        new NullFilteringStrategy(),
+                        probingStrategy,
                         this.ipValidator,
-                        rangesJobs);
+                        scanScheduler,
+                        ScanClass.RANGES);
         this.targetedScanStrategy =
                 new ScanStrategy(
                         targetedStartStopLimiter,
                         new StartStopSourceStrategy(),
                         new MacFilteringStrategy(),
+                        probingStrategy,
                         this.ipValidator,
-                        targetedStartStopJobs);
+                        scanScheduler,
+                        ScanClass.TARGETED_START_STOP);
         this.targetedScanRangesStrategy =
                 new ScanStrategy(
                         targetedRangesLimiter,
                         new RangesSourceStrategy(),
                         new MacFilteringStrategy(),
+                        probingStrategy,
                         this.ipValidator,
-                        targetedRangesJobs);
+                        scanScheduler,
+                        ScanClass.TARGETED_RANGES);
     }
 
     @Override
@@ -12,17 +12,22 @@ import mn.foreman.cgminer.CgMinerDetectionStrategy;
 import mn.foreman.cgminer.NullPatchingStrategy;
 import mn.foreman.cgminer.request.CgMinerCommand;
 import mn.foreman.model.*;
+import mn.foreman.model.cache.FingerprintCache;
 import mn.foreman.whatsminer.*;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import one.util.streamex.EntryStream;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /** An enumeration containing all of the known manufacturers. */
 public enum Manufacturer {
@@ -68,6 +73,36 @@ public enum Manufacturer {
                                                     "4028")
                                             .toMap()),
                             configuration),
+            (port, args) ->
+                    toPorts(
+                            port,
+                            // Test hook
+                            port == 4029
+                                    ? 8081
+                                    : toWebPort(args, "80")),
+            byName(AntminerType.class),
+            (args, ip, configuration, type) -> {
+                final AntminerType antminerType = (AntminerType) type;
+                if (antminerType.isBraiins()) {
+                    return new BraiinsMacStrategy(
+                            ip,
+                            args.getOrDefault("username", "").toString(),
+                            args.getOrDefault("password", "").toString());
+                } else if (antminerType.isVnish()) {
+                    return new VnishMacStrategy(
+                            ip,
+                            80,
+                            args.getOrDefault("password", "").toString(),
+                            configuration);
+                }
+                return new StockMacStrategy(
+                        ip,
+                        80,
+                        "antMiner Configuration",
+                        args.getOrDefault("username", "").toString(),
+                        args.getOrDefault("password", "").toString(),
+                        configuration);
+            },
             context ->
                     new ChainedAsicAction(
                             AsicActionFactory.toAsync(
@@ -245,13 +280,13 @@ public enum Manufacturer {
                                             new WhatsminerMacStrategySummary(
                                                     ip,
                                                     4028,
-                                                    args.get("password").toString(),
+                                                    args.getOrDefault("password", "").toString(),
                                                     configuration),
                                             new WhatsminerMacStrategyOld(
                                                     ip,
                                                     80,
-                                                    args.get("username").toString(),
-                                                    args.get("password").toString(),
+                                                    args.getOrDefault("username", "").toString(),
+                                                    args.getOrDefault("password", "").toString(),
                                                     configuration)),
                                     new WhatsminerFactory(
                                             configuration).create(
@@ -272,16 +307,41 @@ public enum Manufacturer {
                                             new WhatsminerMacStrategySummary(
                                                     ip,
                                                     4028,
-                                                    args.get("password").toString(),
+                                                    args.getOrDefault("password", "").toString(),
                                                     configuration),
                                             new WhatsminerMacStrategyOld(
                                                     ip,
                                                     80,
-                                                    args.get("username").toString(),
-                                                    args.get("password").toString(),
+                                                    args.getOrDefault("username", "").toString(),
+                                                    args.getOrDefault("password", "").toString(),
                                                     configuration)),
                                     new NullPatchingStrategy(),
                                     configuration)),
+            (port, args) ->
+                    toPorts(
+                            port,
+                            4028,
+                            toWebPort(args, "443"),
+                            80),
+            byName(WhatsminerType.class),
+            (args, ip, configuration, type) ->
+                    new AwareMacStrategy(
+                            new WhatsminerMacStrategyMinerInfo(
+                                    ip,
+                                    4028,
+                                    args,
+                                    configuration),
+                            new WhatsminerMacStrategySummary(
+                                    ip,
+                                    4028,
+                                    args.getOrDefault("password", "").toString(),
+                                    configuration),
+                            new WhatsminerMacStrategyOld(
+                                    ip,
+                                    80,
+                                    args.getOrDefault("username", "").toString(),
+                                    args.getOrDefault("password", "").toString(),
+                                    configuration)),
             context ->
                     new ChainedAsicAction(
                             AsicActionFactory.toSync(
@@ -356,9 +416,15 @@ public enum Manufacturer {
     /** The strategy for adjusting the cooling mode. */
     private final ActionSupplier coolingModeStrategy;
 
+    /** The ports that detection will use. */
+    private final PortsSupplier detectionPorts;
+
     /** The strategy for detecting. */
     private final DetectionSupplier detectionStrategy;
 
+    /** The strategy for verifying the MAC of a previously detected miner. */
+    private final FingerprintMacSupplier fingerprintMacStrategy;
+
     /** The strategy for performing a factory reset. */
     private final ActionSupplier factoryResetStrategy;
 
@@ -386,6 +452,9 @@ public enum Manufacturer {
     /** The strategy for rebooting. */
     private final ActionSupplier rebootStrategy;
 
+    /** Converts cached type names back to types. */
+    private final Function<String, Optional<MinerType>> typeResolver;
+
     /** The strategy for vnish overclocking. */
     private final ActionSupplier vnishOverclockStrategy;
 
@@ -394,6 +463,11 @@ public enum Manufacturer {
      *
      * @param name                    The name.
      * @param detectionStrategy       The strategy for detecting.
+     * @param detectionPorts          The ports that detection will use.
+     * @param typeResolver            Converts cached type names back to
+     *                                types.
+     * @param fingerprintMacStrategy  The strategy for verifying the MAC of a
+     *                                previously detected miner.
      * @param changePoolsStrategy     The strategy for changing pools.
      * @param rebootStrategy          The strategy for rebooting.
      * @param factoryResetStrategy    The strategy for factory resets.
@@ -410,6 +484,9 @@ public enum Manufacturer {
     Manufacturer(
             final String name,
             final DetectionSupplier detectionStrategy,
+            final PortsSupplier detectionPorts,
+            final Function<String, Optional<MinerType>> typeResolver,
+            final FingerprintMacSupplier fingerprintMacStrategy,
             final ActionSupplier changePoolsStrategy,
             final ActionSupplier rebootStrategy,
             final ActionSupplier factoryResetStrategy,
@@ -424,6 +501,9 @@ public enum Manufacturer {
             final ActionSupplier logStrategy) {
         this.name = name;
         this.detectionStrategy = detectionStrategy;
+        this.detectionPorts = detectionPorts;
+        this.typeResolver = typeResolver;
+        this.fingerprintMacStrategy = fingerprintMacStrategy;
         this.changePoolsStrategy = changePoolsStrategy;
         this.rebootStrategy = rebootStrategy;
         this.factoryResetStrategy = factoryResetStrategy;
@@ -449,6 +529,58 @@ public enum Manufacturer {
         return Optional.ofNullable(TYPES.get(name.toLowerCase()));
     }
 
+    /**
+     * Removes the duplicates from the provided ports.
+     *
+     * @param ports The ports.
+     *
+     * @return The distinct ports, in order.
+     */
+    private static List<Integer> toPorts(final int... ports) {
+        return IntStream
+                .of(ports)
+                .distinct()
+                .boxed()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the web port from the provided args.
+     *
+     * @param args           The args.
+     * @param defaultWebPort The port to use when one wasn't provided.
+     *
+     * @return The web port.
+     */
+    private static int toWebPort(
+            final Map<String, Object> args,
+            final String defaultWebPort) {
+        return Integer.parseInt(
+                args.getOrDefault(
+                        "webPort",
+                        defaultWebPort).toString());
+    }
+
+    /**
+     * Creates a resolver that converts cached type names back to the enum
+     * constants of the provided type.
+     *
+     * @param type The type.
+     * @param <T>  The type.
+     *
+     * @return The resolver.
+     */
+    private static <T extends Enum<T> & MinerType> Function<String, Optional<MinerType>> byName(
+            final Class<T> type) {
+        return name -> {
+            try {
+                return Optional.of(Enum.valueOf(type, name));
+            } catch (final IllegalArgumentException e) {
+                return Optional.empty();
+            }
+        };
+    }
+
     /**
      * Returns the strategy for blinking LEDs.
      *
@@ -502,6 +634,53 @@ public enum Manufacturer {
                 OBJECT_MAPPER);
     }
 
+    /**
+     * Returns the strategy, which will consult the provided cache before
+     * detecting miners from scratch.
+     *
+     * @param args             The args.
+     * @param ip               The IP.
+     * @param configuration    The configuration.
+     * @param fingerprintCache The cache of previously detected miners.
+     *
+     * @return The strategy.
+     */
+    public DetectionStrategy getDetectionStrategy(
+            final Map<String, Object> args,
+            final String ip,
+            final ApplicationConfiguration configuration,
+            final FingerprintCache fingerprintCache) {
+        return new FingerprintingDetectionStrategy(
+                fingerprintCache,
+                this.typeResolver,
+                type ->
+                        this.fingerprintMacStrategy.create(
+                                args,
+                                ip,
+                                configuration,
+                                type),
+                getDetectionStrategy(
+                        args,
+                        ip,
+                        configuration));
+    }
+
+    /**
+     * Returns the ports that the detection strategy will connect to.
+     *
+     * @param port The API port.
+     * @param args The args.
+     *
+     * @return The ports.
+     */
+    public List<Integer> getDetectionPorts(
+            final int port,
+            final Map<String, Object> args) {
+        return this.detectionPorts.create(
+                port,
+                args);
+    }
+
     /**
      * Returns the strategy for factory resets.
      *
@@ -624,6 +803,46 @@ public enum Manufacturer {
         AsicAction create(ManufacturerContext context);
     }
 
+    /**
+     * A supplier for making the {@link MacStrategy} that verifies a previously
+     * detected miner.
+     */
+    private interface FingerprintMacSupplier {
+
+        /**
+         * Creates a new strategy.
+         *
+         * @param args          The args.
+         * @param ip            The ip.
+         * @param configuration The configuration.
+         * @param type          The type that was previously detected.
+         *
+         * @return The strategy.
+         */
+        MacStrategy create(
+                Map<String, Object> args,
+                String ip,
+                ApplicationConfiguration configuration,
+                MinerType type);
+    }
+
+    /** A supplier for the ports that a {@link DetectionStrategy} will use. */
+    @FunctionalInterface
+    private interface PortsSupplier {
+
+        /**
+         * Returns the ports.
+         *
+         * @param port The API port.
+         * @param args The args.
+         *
+         * @return The ports.
+         */
+        List<Integer> create(
+                int port,
+                Map<String, Object> args);
+    }
+
     /** A supplier for making new {@link DetectionStrategy detectors}. */
     private interface DetectionSupplier {
 
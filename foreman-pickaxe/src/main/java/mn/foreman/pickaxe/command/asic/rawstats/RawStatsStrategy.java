@@ -8,6 +8,7 @@ import mn.foreman.api.model.DoneStatus;
 import mn.foreman.model.ApplicationConfiguration;
 import mn.foreman.model.Miner;
 import mn.foreman.model.MinerFactory;
+import mn.foreman.model.cache.NullMacCache;
 import mn.foreman.model.miners.MinerStats;
 import mn.foreman.model.miners.asic.Asic;
 import mn.foreman.pickaxe.command.CommandCompletionCallback;
@@ -171,7 +172,9 @@ public class RawStatsStrategy
                         apiPort,
                         minerConfig,
                         minerFactory,
-                        this.validator);
+                        this.validator,
+                        // One-off query, so nothing to reuse
+                        new NullMacCache());
         final MinerStats minerStats =
                 miner.getStats();
 
@@ -0,0 +1,121 @@
+package mn.foreman.pickaxe.command.asic.scan;
+
+import mn.foreman.io.ConnectProbe;
+import mn.foreman.io.ConnectionFactory;
+import mn.foreman.model.ApplicationConfiguration;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Only scans IPs that answer a non-blocking TCP connect on one of the
+ * detection ports.
+ *
+ * <p>Most of a large range is usually empty, and every empty IP costs the
+ * full detection a read timeout per request.  Probing on the shared event
+ * loop first drops those IPs for the cost of one connect timeout, with many
+ * probes outstanding at once.  The probe is only rebuilt when the
+ * configured timeout changes, rather than for every IP.</p>
+ *
+ * <p>The connect times of the hosts that answered are reported to the {@link
+ * ScanScheduler}, as they're single round trips that reflect how loaded the
+ * network is.</p>
+ */
+public class ConnectProbingStrategy
+        implements ProbingStrategy {
+
+    /** The configuration. */
+    private final ApplicationConfiguration configuration;
+
+    /** The current probe, and the timeout that it was built with. */
+    private final AtomicReference<Map.Entry<ApplicationConfiguration.TimeConfig, ConnectProbe>> connectProbe =
+            new AtomicReference<>();
+
+    /** Limits the number of probes that can be outstanding. */
+    private final Semaphore inFlight;
+
+    /** The scheduler to report round trip times to. */
+    private final ScanScheduler scanScheduler;
+
+    /**
+     * Constructor.
+     *
+     * @param maxInFlight   The maximum number of probes outstanding.
+     * @param scanScheduler The scheduler to report round trip times to.
+     * @param configuration The configuration.
+     */
+    public ConnectProbingStrategy(
+            final int maxInFlight,
+            final ScanScheduler scanScheduler,
+            final ApplicationConfiguration configuration) {
+        Validate.isTrue(
+                maxInFlight > 0,
+                "maxInFlight must be > 0");
+        Validate.notNull(
+                scanScheduler,
+                "scanScheduler cannot be null");
+        Validate.notNull(
+                configuration,
+                "configuration cannot be null");
+        this.inFlight = new Semaphore(maxInFlight);
+        this.scanScheduler = scanScheduler;
+        this.configuration = configuration;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Note: blocks the caller while the maximum number of probes are
+     * outstanding.</p>
+     */
+    @Override
+    public CompletableFuture<Boolean> probe(
+            final String ip,
+            final List<Integer> ports) throws InterruptedException {
+        this.inFlight.acquire();
+
+        final long start = System.nanoTime();
+        return toConnectProbe()
+                .probe(
+                        ip,
+                        ports)
+                .whenComplete((reachable, throwable) -> {
+                    this.inFlight.release();
+                    if (Boolean.TRUE.equals(reachable)) {
+                        this.scanScheduler.sampled(System.nanoTime() - start);
+                    }
+                });
+    }
+
+    /**
+     * Returns the probe for the configured timeout, building a new one only
+     * when the timeout changed.
+     *
+     * @return The probe.
+     */
+    private ConnectProbe toConnectProbe() {
+        final ApplicationConfiguration.TimeConfig timeConfig =
+                this.configuration.getReadSocketTimeout();
+        final Map.Entry<ApplicationConfiguration.TimeConfig, ConnectProbe> current =
+                this.connectProbe.get();
+        // The configuration replaces the time config whenever it's set
+        if (current != null && current.getKey() == timeConfig) {
+            return current.getValue();
+        }
+        final ConnectProbe probe =
+                ConnectionFactory.createConnectProbe(
+                        timeConfig.getTimeout(),
+                        timeConfig.getTimeoutUnits());
+        this.connectProbe.set(
+                new AbstractMap.SimpleImmutableEntry<>(
+                        timeConfig,
+                        probe));
+        return probe;
+    }
+}
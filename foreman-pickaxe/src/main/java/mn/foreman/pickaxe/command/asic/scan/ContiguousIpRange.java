@@ -0,0 +1,55 @@
+package mn.foreman.pickaxe.command.asic.scan;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/** An {@link IpRange} covering every address between a start and a stop. */
+class ContiguousIpRange
+        implements IpRange {
+
+    /** The first address (unsigned). */
+    private final long start;
+
+    /** The last address (unsigned). */
+    private final long stop;
+
+    /**
+     * Constructor.
+     *
+     * @param start The first address (unsigned).
+     * @param stop  The last address (unsigned).
+     */
+    ContiguousIpRange(
+            final long start,
+            final long stop) {
+        this.start = start;
+        this.stop = stop;
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+
+            /** The next address. */
+            private long next = ContiguousIpRange.this.start;
+
+            @Override
+            public boolean hasNext() {
+                return this.next <= ContiguousIpRange.this.stop;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (int) this.next++;
+            }
+        };
+    }
+
+    @Override
+    public long size() {
+        return this.stop - this.start + 1;
+    }
+}
@@ -0,0 +1,86 @@
+package mn.foreman.pickaxe.command.asic.scan;
+
+import mn.foreman.util.IpUtils;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.PrimitiveIterator;
+
+/**
+ * An {@link IpRange} is a set of IPv4 addresses that's iterated lazily, with
+ * each address encoded as an <code>int</code>, so that large ranges can be
+ * scanned without materializing them.
+ *
+ * <p>The following forms can be {@link #parse(String) parsed}:</p>
+ *
+ * <ul>
+ *     <li>A single address (ex: <code>192.168.1.10</code>)</li>
+ *     <li>CIDR (ex: <code>10.16.0.0/12</code>)</li>
+ *     <li>Start/stop (ex: <code>192.168.1.200-192.168.2.50</code>)</li>
+ *     <li>Octet ranges (ex: <code>192.168.1-4.0-255</code> or
+ *     <code>192.168.1.*</code>)</li>
+ * </ul>
+ */
+public interface IpRange {
+
+    /**
+     * Parses the provided range.
+     *
+     * @param range The range.
+     *
+     * @return The parsed range.
+     *
+     * @throws IllegalArgumentException if the range is invalid.
+     */
+    static IpRange parse(final String range) {
+        final String trimmed = range.trim();
+        Validate.notEmpty(
+                trimmed,
+                "range cannot be empty");
+
+        final int slash = trimmed.indexOf('/');
+        if (slash >= 0) {
+            final int prefix =
+                    Integer.parseInt(trimmed.substring(slash + 1).trim());
+            Validate.inclusiveBetween(
+                    0,
+                    32,
+                    prefix,
+                    "Invalid CIDR prefix: " + range);
+            final int mask = prefix == 0 ? 0 : -1 << (32 - prefix);
+            final int network = IpUtils.toInt(trimmed.substring(0, slash).trim()) & mask;
+            // Aligned, so every octet ranges independently
+            return OctetIpRange.between(
+                    network,
+                    network | ~mask);
+        }
+
+        final int dash = trimmed.indexOf('-');
+        if (dash >= 0 && IpUtils.isIpv4(trimmed.substring(0, dash).trim())) {
+            final long start = IpUtils.toInt(trimmed.substring(0, dash).trim()) & 0xFFFFFFFFL;
+            final long stop = IpUtils.toInt(trimmed.substring(dash + 1).trim()) & 0xFFFFFFFFL;
+            Validate.isTrue(
+                    start <= stop,
+                    "Range start is after stop: " + range);
+            return new ContiguousIpRange(
+                    start,
+                    stop);
+        }
+
+        return OctetIpRange.parse(trimmed);
+    }
+
+    /**
+     * Returns a new iterator over the addresses in the range.
+     *
+     * @return The iterator.
+     */
+    PrimitiveIterator.OfInt iterator();
+
+    /**
+     * Returns the number of addresses in the range.
+     *
+     * @return The number of addresses.
+     */
+    long size();
+}
@@ -10,11 +10,15 @@ import java.util.Map;
 public interface IpSourceStrategy {
 
     /**
-     * Generates a list of IPs to scan from the provided arguments.
+     * Generates the ranges of IPs to scan from the provided arguments.  The
+     * ranges are iterated lazily, so they're cheap regardless of their size.
      *
      * @param args The arguments.
      *
-     * @return The list of IPs to scan.
+     * @return The ranges of IPs to scan.
+     *
+     * @throws IllegalArgumentException if the arguments contain an invalid
+     *                                  range.
      */
-    List<String> toIps(Map<String, Object> args);
+    List<IpRange> toIps(Map<String, Object> args);
 }
@@ -0,0 +1,16 @@
+package mn.foreman.pickaxe.command.asic.scan;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/** Scans every IP. */
+public class NullProbingStrategy
+        implements ProbingStrategy {
+
+    @Override
+    public CompletableFuture<Boolean> probe(
+            final String ip,
+            final List<Integer> ports) {
+        return CompletableFuture.completedFuture(true);
+    }
+}
@@ -0,0 +1,165 @@
+package mn.foreman.pickaxe.command.asic.scan;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * An {@link IpRange} where every octet ranges independently (ex:
+ * <code>10.0-3.*.1-100</code>), which also covers CIDR blocks.
+ */
+class OctetIpRange
+        implements IpRange {
+
+    /** The highest value for each octet. */
+    private final int[] high;
+
+    /** The lowest value for each octet. */
+    private final int[] low;
+
+    /**
+     * Constructor.
+     *
+     * @param low  The lowest value for each octet.
+     * @param high The highest value for each octet.
+     */
+    private OctetIpRange(
+            final int[] low,
+            final int[] high) {
+        this.low = low;
+        this.high = high;
+    }
+
+    /**
+     * Creates a range whose octets span from those in the first address to
+     * those in the last.
+     *
+     * @param first The first address.
+     * @param last  The last address.
+     *
+     * @return The range.
+     */
+    static OctetIpRange between(
+            final int first,
+            final int last) {
+        final int[] low = new int[4];
+        final int[] high = new int[4];
+        for (int i = 0; i < 4; i++) {
+            final int shift = 24 - (i * 8);
+            low[i] = (first >>> shift) & 0xFF;
+            high[i] = (last >>> shift) & 0xFF;
+        }
+        return new OctetIpRange(
+                low,
+                high);
+    }
+
+    /**
+     * Parses a dotted range where each octet is a value, a <code>low-high</code>
+     * range or <code>*</code>.
+     *
+     * @param range The range.
+     *
+     * @return The parsed range.
+     *
+     * @throws IllegalArgumentException if the range is invalid.
+     */
+    static OctetIpRange parse(final String range) {
+        final String[] octets = range.split("\\.");
+        Validate.isTrue(
+                octets.length == 4,
+                "Invalid IP range: " + range);
+
+        final int[] low = new int[4];
+        final int[] high = new int[4];
+        for (int i = 0; i < 4; i++) {
+            final String octet = octets[i].trim();
+            if ("*".equals(octet)) {
+                low[i] = 0;
+                high[i] = 255;
+            } else {
+                final int dash = octet.indexOf('-');
+                low[i] = toOctet(dash >= 0 ? octet.substring(0, dash) : octet, range);
+                high[i] = dash >= 0 ? toOctet(octet.substring(dash + 1), range) : low[i];
+            }
+            Validate.isTrue(
+                    low[i] <= high[i],
+                    "Invalid IP range: " + range);
+        }
+        return new OctetIpRange(
+                low,
+                high);
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        final int[] current = this.low.clone();
+        return new PrimitiveIterator.OfInt() {
+
+            /** Whether or not every address has been returned. */
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                return !this.done;
+            }
+
+            @Override
+            public int nextInt() {
+                if (this.done) {
+                    throw new NoSuchElementException();
+                }
+                final int ip =
+                        (current[0] << 24) |
+                                (current[1] << 16) |
+                                (current[2] << 8) |
+                                current[3];
+
+                // Advance like an odometer
+                int i = 3;
+                while (i >= 0 && current[i] == OctetIpRange.this.high[i]) {
+                    current[i] = OctetIpRange.this.low[i];
+                    i--;
+                }
+                if (i < 0) {
+                    this.done = true;
+                } else {
+                    current[i]++;
+                }
+                return ip;
+            }
+        };
+    }
+
+    @Override
+    public long size() {
+        long size = 1;
+        for (int i = 0; i < 4; i++) {
+            size *= (this.high[i] - this.low[i] + 1);
+        }
+        return size;
+    }
+
+    /**
+     * Parses an octet.
+     *
+     * @param octet The octet.
+     * @param range The range being parsed.
+     *
+     * @return The octet value.
+     *
+     * @throws IllegalArgumentException if the octet is invalid.
+     */
+    private static int toOctet(
+            final String octet,
+            final String range) {
+        final int value = Integer.parseInt(octet.trim());
+        Validate.inclusiveBetween(
+                0,
+                255,
+                value,
+                "Invalid IP range: " + range);
+        return value;
+    }
+}
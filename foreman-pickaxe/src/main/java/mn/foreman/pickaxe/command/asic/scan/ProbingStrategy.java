@@ -0,0 +1,26 @@
+package mn.foreman.pickaxe.command.asic.scan;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link ProbingStrategy} provides a cheap first pass over the IPs being
+ * scanned so that the full detection only runs against hosts that answered.
+ */
+public interface ProbingStrategy {
+
+    /**
+     * Checks whether or not anything is listening at the provided IP.
+     *
+     * @param ip    The IP.
+     * @param ports The ports that detection will use.
+     *
+     * @return A future that completes with whether or not the IP should be
+     *         scanned.
+     *
+     * @throws InterruptedException if interrupted before the probe started.
+     */
+    CompletableFuture<Boolean> probe(
+            String ip,
+            List<Integer> ports) throws InterruptedException;
+}
@@ -3,19 +3,28 @@ package mn.foreman.pickaxe.command.asic.scan;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
- * An {@link IpSourceStrategy} implementation that will return a list of IPs to
- * scan that matches the provided IP ranges sent in the command.
+ * An {@link IpSourceStrategy} implementation that will return the IPs to scan
+ * that match the provided IP ranges sent in the command.  Each range can be a
+ * single IP or any of the forms supported by {@link IpRange#parse(String)}.
  */
 public class RangesSourceStrategy
         implements IpSourceStrategy {
 
     @SuppressWarnings("unchecked")
     @Override
-    public List<String> toIps(final Map<String, Object> args) {
-        return (List<String>) args.getOrDefault(
-                        "ranges",
-                        new LinkedList<String>());
+    public List<IpRange> toIps(final Map<String, Object> args) {
+        return ((List<Object>) args.getOrDefault(
+                "ranges",
+                new LinkedList<>()))
+                .stream()
+                .filter(Objects::nonNull)
+                .map(Object::toString)
+                .filter(range -> !range.trim().isEmpty())
+                .map(IpRange::parse)
+                .collect(Collectors.toList());
     }
 }
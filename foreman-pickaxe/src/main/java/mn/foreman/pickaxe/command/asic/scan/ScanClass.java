@@ -0,0 +1,43 @@
+package mn.foreman.pickaxe.command.asic.scan;
+
+/**
+ * A {@link ScanClass} identifies the kind of scan that produced a job, which
+ * determines its share of the {@link ScanScheduler}.
+ */
+public enum ScanClass {
+
+    /** Targeted scans over start/stop IPs. */
+    TARGETED_START_STOP(4),
+
+    /** Targeted scans over ranges. */
+    TARGETED_RANGES(4),
+
+    /** Background scans over start/stop IPs. */
+    START_STOP(1),
+
+    /** Background scans over ranges. */
+    RANGES(1);
+
+    /** The share of the scanners given to the class when others are busy. */
+    private final int weight;
+
+    /**
+     * Constructor.
+     *
+     * @param weight The share of the scanners given to the class when others
+     *               are busy.
+     */
+    ScanClass(final int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * Returns the share of the scanners given to the class when others are
+     * busy.
+     *
+     * @return The weight.
+     */
+    public int getWeight() {
+        return this.weight;
+    }
+}
@@ -0,0 +1,181 @@
+package mn.foreman.pickaxe.command.asic.scan;
+
+import mn.foreman.api.model.CommandUpdate;
+import mn.foreman.pickaxe.command.CommandCompletionCallback;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link ScanProgress} tracks the progress of a single scan without locking
+ * the threads that complete its IPs.
+ *
+ * <p>Progress updates are coalesced so that at most one is sent per {@link
+ * #updateIntervalNanos}, regardless of how many IPs finish in between, plus a
+ * final one when the last IP finishes.  {@link #getCompletion()} completes at
+ * that same moment, so callers can wait on it rather than polling the
+ * counters.</p>
+ */
+class ScanProgress {
+
+    /** The command ID. */
+    private final String commandId;
+
+    /** The callback for sending updates. */
+    private final CommandCompletionCallback commandCompletionCallback;
+
+    /** Completes when every IP was scanned. */
+    private final CompletableFuture<Void> completion =
+            new CompletableFuture<>();
+
+    /** The number of miners that matched the scan. */
+    private final LongAdder found = new LongAdder();
+
+    /** When the last update was sent, in nanos. */
+    private final AtomicLong lastUpdate;
+
+    /** The miners that matched the scan. */
+    private final Queue<Object> miners = new ConcurrentLinkedQueue<>();
+
+    /** The unexpected miners that were found and should be added. */
+    private final Queue<Object> others = new ConcurrentLinkedQueue<>();
+
+    /** The number of IPs remaining. */
+    private final AtomicLong remaining;
+
+    /** The number of IPs scanned. */
+    private final LongAdder scanned = new LongAdder();
+
+    /** The minimum time between updates, in nanos. */
+    private final long updateIntervalNanos;
+
+    /**
+     * Constructor.
+     *
+     * @param commandId                 The command ID.
+     * @param total                     The number of IPs being scanned.
+     * @param commandCompletionCallback The callback for sending updates.
+     * @param updateInterval            The minimum time between updates.
+     * @param updateIntervalUnits       The minimum time between updates
+     *                                  (units).
+     */
+    ScanProgress(
+            final String commandId,
+            final long total,
+            final CommandCompletionCallback commandCompletionCallback,
+            final long updateInterval,
+            final TimeUnit updateIntervalUnits) {
+        this.commandId = commandId;
+        this.remaining = new AtomicLong(total);
+        this.commandCompletionCallback = commandCompletionCallback;
+        this.updateIntervalNanos = updateIntervalUnits.toNanos(updateInterval);
+        this.lastUpdate = new AtomicLong(System.nanoTime());
+        if (total <= 0) {
+            this.completion.complete(null);
+        }
+    }
+
+    /**
+     * Adds a miner that matched the scan.
+     *
+     * @param miner The miner.
+     */
+    void addMiner(final Object miner) {
+        this.miners.add(miner);
+        this.found.increment();
+    }
+
+    /**
+     * Adds an unexpected miner that should be added.
+     *
+     * @param miner The miner.
+     */
+    void addOther(final Object miner) {
+        this.others.add(miner);
+    }
+
+    /**
+     * Returns a future that completes when every IP was scanned.
+     *
+     * @return The future.
+     */
+    CompletableFuture<Void> getCompletion() {
+        return this.completion;
+    }
+
+    /**
+     * Returns the miners that matched the scan.
+     *
+     * @return The miners.
+     */
+    Queue<Object> getMiners() {
+        return this.miners;
+    }
+
+    /**
+     * Returns the unexpected miners that should be added.
+     *
+     * @return The miners.
+     */
+    Queue<Object> getOthers() {
+        return this.others;
+    }
+
+    /**
+     * Returns the number of IPs that were scanned.
+     *
+     * @return The number of IPs scanned.
+     */
+    long getScanned() {
+        return this.scanned.sum();
+    }
+
+    /**
+     * Records that an IP was scanned, sending an update if one is due.
+     *
+     * <p>Note: must be called exactly once per IP.</p>
+     */
+    void scanned() {
+        this.scanned.increment();
+        if (this.remaining.decrementAndGet() == 0) {
+            sendUpdate();
+            this.completion.complete(null);
+            return;
+        }
+
+        final long now = System.nanoTime();
+        final long last = this.lastUpdate.get();
+        if (now - last >= this.updateIntervalNanos &&
+                this.lastUpdate.compareAndSet(last, now)) {
+            sendUpdate();
+        }
+    }
+
+    /** Sends an update with the current progress. */
+    void sendUpdate() {
+        // Sending is rare, and serializing it keeps the counts in the updates
+        // from ever going backwards
+        synchronized (this) {
+            this.commandCompletionCallback.update(
+                    this.commandId,
+                    CommandUpdate
+                            .builder()
+                            .command("scan")
+                            .update(
+                                    ImmutableMap.of(
+                                            "found",
+                                            this.found.intValue(),
+                                            "scanned",
+                                            this.scanned.intValue(),
+                                            "remaining",
+                                            (int) Math.max(0, this.remaining.get())))
+                            .build());
+        }
+    }
+}
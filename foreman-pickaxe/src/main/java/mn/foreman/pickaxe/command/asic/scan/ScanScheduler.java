@@ -0,0 +1,344 @@
+package mn.foreman.pickaxe.command.asic.scan;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link ScanScheduler} hands the jobs from every kind of scan to one shared
+ * set of {@link ScanStrategy.Scanner scanners}.
+ *
+ * <p>Each {@link ScanClass} has its own lane.  When several lanes have work,
+ * they're served by smooth weighted round-robin, so targeted scans get most
+ * of the scanners without starving background scans.  A lane whose rate
+ * limiter is out of permits is skipped rather than waited on, so its budget
+ * never holds a scanner that another lane could use.</p>
+ *
+ * <p>The number of jobs allowed to run at once adapts to the network: it's
+ * raised while the round trip times {@link #sampled(long) reported} for
+ * single requests stay close to the best ones observed, and cut when they
+ * grow well past them.  Only single requests are sampled, since a detection
+ * job makes a varying number of them, and a slow but live miner would
+ * otherwise look like congestion.  Without samples, the limit stays where it
+ * is.</p>
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class ScanScheduler {
+
+    /**
+     * How many times the best round trip time the window's can be before the
+     * network is considered congested.
+     */
+    private static final int CONGESTION_FACTOR = 2;
+
+    /** The fraction of the limit that remains after a cut. */
+    private static final double DECREASE_FACTOR = 0.75;
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(ScanScheduler.class);
+
+    /** The smallest number of samples that the limit is adjusted on. */
+    private static final int MIN_WINDOW = 16;
+
+    /** How long to wait for permits when every waiting lane is throttled. */
+    private static final long THROTTLED_WAIT_MILLIS = 10;
+
+    /** Signalled when jobs are submitted or finish. */
+    private final Condition changed;
+
+    /** The lanes. */
+    private final Map<ScanClass, Lane> lanes = new EnumMap<>(ScanClass.class);
+
+    /** The lock protecting the lanes and the limit. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** The fewest jobs that will be allowed to run at once. */
+    private final int minConcurrency;
+
+    /** The smoothed best round trip time, in nanos. */
+    private long baselineRttNanos;
+
+    /** The number of jobs that are running. */
+    private int inFlight;
+
+    /** The number of jobs that are allowed to run at once. */
+    private int limit;
+
+    /** The most jobs that will be allowed to run at once. */
+    private int maxConcurrency;
+
+    /** The total round trip time of the samples in the window, in nanos. */
+    private long windowRttNanos;
+
+    /** The number of samples in the window. */
+    private int windowSamples;
+
+    /**
+     * Constructor.
+     *
+     * @param minConcurrency The fewest jobs that will be allowed to run at
+     *                       once.
+     * @param maxConcurrency The most jobs that will be allowed to run at once.
+     */
+    public ScanScheduler(
+            final int minConcurrency,
+            final int maxConcurrency) {
+        Validate.isTrue(
+                minConcurrency > 0,
+                "minConcurrency must be > 0");
+        Validate.isTrue(
+                maxConcurrency >= minConcurrency,
+                "maxConcurrency must be >= minConcurrency");
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.limit = maxConcurrency;
+        this.changed = this.lock.newCondition();
+        for (final ScanClass scanClass : ScanClass.values()) {
+            this.lanes.put(
+                    scanClass,
+                    new Lane(scanClass.getWeight()));
+        }
+    }
+
+    /**
+     * Records that a job obtained from {@link #take()} finished.
+     *
+     * @param scanJob The job.
+     */
+    public void completed(final ScanStrategy.Scanner.ScanJob scanJob) {
+        this.lock.lock();
+        try {
+            this.inFlight--;
+            this.changed.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Records the round trip time of a single request made while scanning,
+     * like a connect to a host that answered.
+     *
+     * @param rttNanos The round trip time, in nanos.
+     */
+    public void sampled(final long rttNanos) {
+        this.lock.lock();
+        try {
+            this.windowRttNanos += rttNanos;
+            this.windowSamples++;
+            if (this.windowSamples >= Math.max(this.limit, MIN_WINDOW)) {
+                adjustLimit();
+                this.changed.signalAll();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Changes the most jobs that will be allowed to run at once.
+     *
+     * @param maxConcurrency The new maximum.
+     */
+    public void setMaxConcurrency(final int maxConcurrency) {
+        this.lock.lock();
+        try {
+            this.maxConcurrency = Math.max(this.minConcurrency, maxConcurrency);
+            this.limit = Math.min(this.limit, this.maxConcurrency);
+            this.changed.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a job to be scanned.
+     *
+     * @param scanJob The job.
+     */
+    public void submit(final ScanStrategy.Scanner.ScanJob scanJob) {
+        this.lock.lock();
+        try {
+            this.lanes
+                    .get(scanJob.getScanClass())
+                    .jobs
+                    .add(scanJob);
+            this.changed.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the next job that's allowed to run.
+     *
+     * <p>Note: every job that's taken must be passed to {@link
+     * #completed(ScanStrategy.Scanner.ScanJob)}.</p>
+     *
+     * @return The job.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public ScanStrategy.Scanner.ScanJob take() throws InterruptedException {
+        this.lock.lockInterruptibly();
+        try {
+            while (true) {
+                if (this.inFlight < this.limit) {
+                    final ScanStrategy.Scanner.ScanJob scanJob = poll();
+                    if (scanJob != null) {
+                        this.inFlight++;
+                        return scanJob;
+                    }
+                    if (hasJobs()) {
+                        // Every lane with work is out of permits
+                        this.changed.await(
+                                THROTTLED_WAIT_MILLIS,
+                                TimeUnit.MILLISECONDS);
+                        continue;
+                    }
+                }
+                this.changed.await();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /** Adjusts the limit based on the current window, then starts a new one. */
+    private void adjustLimit() {
+        final int previous = this.limit;
+        final long rtt = this.windowRttNanos / this.windowSamples;
+        if (this.baselineRttNanos == 0) {
+            this.baselineRttNanos = rtt;
+        } else {
+            // Drifts up slowly so a permanently slower network becomes the
+            // new normal
+            this.baselineRttNanos =
+                    Math.min(
+                            rtt,
+                            this.baselineRttNanos + (rtt - this.baselineRttNanos) / 8);
+        }
+        if (rtt > this.baselineRttNanos * CONGESTION_FACTOR) {
+            this.limit =
+                    Math.max(
+                            this.minConcurrency,
+                            (int) (this.limit * DECREASE_FACTOR));
+        } else {
+            this.limit = Math.min(this.maxConcurrency, this.limit + 1);
+        }
+        if (this.limit != previous) {
+            LOG.debug("Adjusted scan concurrency from {} to {} (rtt={}, baseline={})",
+                    previous,
+                    this.limit,
+                    rtt,
+                    this.baselineRttNanos);
+        }
+
+        this.windowRttNanos = 0;
+        this.windowSamples = 0;
+    }
+
+    /**
+     * Returns whether or not any lane has a job waiting.
+     *
+     * @return Whether or not any jobs are waiting.
+     */
+    private boolean hasJobs() {
+        for (final Lane lane : this.lanes.values()) {
+            if (!lane.jobs.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the next job using smooth weighted round-robin, skipping lanes
+     * that are out of permits.
+     *
+     * @return The job, or null if none can run.
+     */
+    private ScanStrategy.Scanner.ScanJob poll() {
+        int totalWeight = 0;
+        for (final Lane lane : this.lanes.values()) {
+            if (!lane.jobs.isEmpty()) {
+                totalWeight += lane.weight;
+            }
+        }
+        if (totalWeight == 0) {
+            return null;
+        }
+
+        // Try the lanes from most to least deserving until one has a permit
+        Lane chosen = null;
+        final Map<ScanClass, Lane> remaining = new EnumMap<>(this.lanes);
+        while (chosen == null && !remaining.isEmpty()) {
+            Lane best = null;
+            ScanClass bestClass = null;
+            for (final Map.Entry<ScanClass, Lane> entry : remaining.entrySet()) {
+                final Lane lane = entry.getValue();
+                if (!lane.jobs.isEmpty() &&
+                        (best == null || lane.current + lane.weight > best.current + best.weight)) {
+                    best = lane;
+                    bestClass = entry.getKey();
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            remaining.remove(bestClass);
+            if (best.jobs.peek().getRateLimiter().tryAcquire()) {
+                chosen = best;
+            }
+        }
+        if (chosen == null) {
+            return null;
+        }
+
+        for (final Lane lane : this.lanes.values()) {
+            if (!lane.jobs.isEmpty()) {
+                lane.current += lane.weight;
+            }
+        }
+        chosen.current -= totalWeight;
+
+        final ScanStrategy.Scanner.ScanJob scanJob = chosen.jobs.poll();
+        if (chosen.jobs.isEmpty()) {
+            // Idle lanes don't carry credit into their next scan
+            chosen.current = 0;
+        }
+        return scanJob;
+    }
+
+    /** The jobs waiting for a {@link ScanClass}. */
+    private static class Lane {
+
+        /** The jobs. */
+        private final Queue<ScanStrategy.Scanner.ScanJob> jobs =
+                new ArrayDeque<>();
+
+        /** The lane's weight. */
+        private final int weight;
+
+        /** The lane's current round-robin credit. */
+        private int current;
+
+        /**
+         * Constructor.
+         *
+         * @param weight The lane's weight.
+         */
+        private Lane(final int weight) {
+            this.weight = weight;
+        }
+    }
+}
@@ -2,17 +2,19 @@ package mn.foreman.pickaxe.command.asic.scan;
 
 import mn.foreman.api.model.CommandDone;
 import mn.foreman.api.model.CommandStart;
-import mn.foreman.api.model.CommandUpdate;
 import mn.foreman.api.model.DoneStatus;
 import mn.foreman.model.ApplicationConfiguration;
 import mn.foreman.model.Detection;
 import mn.foreman.model.DetectionStrategy;
 import mn.foreman.model.MinerType;
+import mn.foreman.model.cache.FingerprintCache;
+import mn.foreman.model.cache.NullFingerprintCache;
 import mn.foreman.pickaxe.command.CommandCompletionCallback;
 import mn.foreman.pickaxe.command.CommandStrategy;
 import mn.foreman.pickaxe.command.asic.Manufacturer;
 import mn.foreman.pickaxe.contraints.IpValidator;
 import mn.foreman.pickaxe.run.thread.WorkerPool;
+import mn.foreman.util.IpUtils;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.RateLimiter;
@@ -23,12 +25,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -43,8 +41,20 @@ public class ScanStrategy
     private static final Logger LOG =
             LoggerFactory.getLogger(ScanStrategy.class);
 
-    /** The number of scan waiting rounds before the scan is considered done. */
-    private static final int SCAN_SIMILAR_ROUNDS_CUTOFF = 6;
+    /** The maximum number of scan jobs that can be pending at once. */
+    private static final int MAX_PENDING_SCANS = 8192;
+
+    /** The largest number of IPs that can be scanned at once (a /8). */
+    private static final long MAX_SCAN_SIZE = 1L << 24;
+
+    /**
+     * How long a scan can go without any IPs finishing before it's considered
+     * done (seconds).
+     */
+    private static final int SCAN_STALL_CUTOFF_SECONDS = 30;
+
+    /** The minimum time between scan progress updates (seconds). */
+    private static final int UPDATE_INTERVAL_SECONDS = 1;
 
     /** The filtering strategy. */
     private final FilteringStrategy filteringStrategy;
@@ -55,14 +65,17 @@ public class ScanStrategy
     /** The IP validator. */
     private final IpValidator ipValidator;
 
-    /** A lock to keep counters protected. */
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** The strategy for skipping IPs that can't be miners. */
+    private final ProbingStrategy probingStrategy;
 
     /** The rate limiter for throttling scans. */
     private final RateLimiter rateLimiter;
 
-    /** The job queue. */
-    private final BlockingQueue<Scanner.ScanJob> scanJobs;
+    /** The kind of scan, which determines its share of the scanners. */
+    private final ScanClass scanClass;
+
+    /** The scheduler that runs the scan jobs. */
+    private final ScanScheduler scanScheduler;
 
     /**
      * Constructor.
@@ -70,19 +83,22 @@ public class ScanStrategy
      * @param rateLimiter      The rate limiter.
      * @param ipSourceStrategy The source strategy.
      * @param ipValidator      The IP validator.
-     * @param scanJobs         The scanner jobs.
+     * @param scanScheduler    The scheduler that runs the scan jobs.
+     * @param scanClass        The kind of scan.
      */
     public ScanStrategy(
             final RateLimiter rateLimiter,
             final IpSourceStrategy ipSourceStrategy,
             final IpValidator ipValidator,
-            final BlockingQueue<Scanner.ScanJob> scanJobs) {
+            final ScanScheduler scanScheduler,
+            final ScanClass scanClass) {
         this(
                 rateLimiter,
                 ipSourceStrategy,
                 new NullFilteringStrategy(),
                 ipValidator,
-                scanJobs);
+                scanScheduler,
+                scanClass);
     }
 
     /**
@@ -92,19 +108,53 @@ public class ScanStrategy
      * @param ipSourceStrategy  The strategy for generating the IPs to scan.
      * @param filteringStrategy The strategy for filtering.
      * @param ipValidator       The IP validator.
-     * @param scanJobs          The scan jobs.
+     * @param scanScheduler     The scheduler that runs the scan jobs.
+     * @param scanClass         The kind of scan.
      */
     public ScanStrategy(
             final RateLimiter rateLimiter,
             final IpSourceStrategy ipSourceStrategy,
             final FilteringStrategy filteringStrategy,
             final IpValidator ipValidator,
-            final BlockingQueue<Scanner.ScanJob> scanJobs) {
+            final ScanScheduler scanScheduler,
+            final ScanClass scanClass) {
+        this(
+                rateLimiter,
+                ipSourceStrategy,
+                filteringStrategy,
+                new NullProbingStrategy(),
+                ipValidator,
+                scanScheduler,
+                scanClass);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param rateLimiter       The rate limiter.
+     * @param ipSourceStrategy  The strategy for generating the IPs to scan.
+     * @param filteringStrategy The strategy for filtering.
+     * @param probingStrategy   The strategy for skipping IPs before the full
+     *                          detection runs.
+     * @param ipValidator       The IP validator.
+     * @param scanScheduler     The scheduler that runs the scan jobs.
+     * @param scanClass         The kind of scan.
+     */
+    public ScanStrategy(
+            final RateLimiter rateLimiter,
+            final IpSourceStrategy ipSourceStrategy,
+            final FilteringStrategy filteringStrategy,
+            final ProbingStrategy probingStrategy,
+            final IpValidator ipValidator,
+            final ScanScheduler scanScheduler,
+            final ScanClass scanClass) {
         this.rateLimiter = rateLimiter;
         this.filteringStrategy = filteringStrategy;
+        this.probingStrategy = probingStrategy;
         this.ipSourceStrategy = ipSourceStrategy;
         this.ipValidator = ipValidator;
-        this.scanJobs = scanJobs;
+        this.scanScheduler = scanScheduler;
+        this.scanClass = scanClass;
     }
 
     @SuppressWarnings("unchecked")
@@ -177,65 +227,23 @@ public class ScanStrategy
                 detection.getIpAddress());
     }
 
-    /**
-     * Creates a {@link CommandUpdate} from the provided parameters.
-     *
-     * @param found     The number of found miners.
-     * @param scanned   The number of IPs scanned.
-     * @param remaining The remaining count.
-     *
-     * @return The update.
-     */
-    private static CommandUpdate toUpdate(
-            final int found,
-            final int scanned,
-            final int remaining) {
-        return CommandUpdate
-                .builder()
-                .command("scan")
-                .update(
-                        ImmutableMap.of(
-                                "found",
-                                found,
-                                "scanned",
-                                scanned,
-                                "remaining",
-                                remaining))
-                .build();
-    }
-
     /**
      * Callback for the completion of a scan attempt.
      *
-     * @param id                        The command ID.
-     * @param detection                 The result.
-     * @param targetMacs                The MACs being searched.
-     * @param targetWorkers             The workers being searched.
-     * @param autoAdd                   Whether miners are automatically being
-     *                                  added.
-     * @param existingMacs              The existing MACs.
-     * @param miners                    The resulting miners.
-     * @param others                    The unexpected, found miners.
-     * @param commandCompletionCallback The callback for command updates.
-     * @param scanned                   The scanned running count.
-     * @param remaining                 The remaining running count.
-     * @param ended                     Whether the scanning was gracefully
-     *                                  terminated.
+     * @param progress      The scan's progress.
+     * @param detection     The result.
+     * @param targetMacs    The MACs being searched.
+     * @param targetWorkers The workers being searched.
+     * @param autoAdd       Whether miners are automatically being added.
+     * @param existingMacs  The existing MACs.
      */
     private void onScanCompletion(
-            final String id,
+            final ScanProgress progress,
             final Detection detection,
             final List<String> targetMacs,
             final List<String> targetWorkers,
             final boolean autoAdd,
-            final List<String> existingMacs,
-            final BlockingQueue<Object> miners,
-            final BlockingQueue<Object> others,
-            final CommandCompletionCallback commandCompletionCallback,
-            final AtomicInteger scanned,
-            final AtomicInteger remaining,
-            final AtomicBoolean ended) {
-        this.lock.writeLock().lock();
+            final List<String> existingMacs) {
         try {
             processDetection(
                     detection,
@@ -243,17 +251,9 @@ public class ScanStrategy
                     targetWorkers,
                     autoAdd,
                     existingMacs,
-                    miners,
-                    others);
-            commandCompletionCallback.update(
-                    id,
-                    toUpdate(
-                            miners.size(),
-                            scanned.incrementAndGet(),
-                            remaining.decrementAndGet()));
-            ended.set(remaining.get() <= 0);
+                    progress);
         } finally {
-            this.lock.writeLock().unlock();
+            progress.scanned();
         }
     }
 
@@ -267,8 +267,7 @@ public class ScanStrategy
      * @param autoAdd       Whether the result should get added if it wasn't a
      *                      target.
      * @param existingMacs  The existing macs.
-     * @param miners        The resulting miners.
-     * @param others        The others.
+     * @param progress      The scan's progress, which holds the results.
      */
     private void processDetection(
             final Detection detection,
@@ -276,22 +275,21 @@ public class ScanStrategy
             final List<String> targetWorkers,
             final boolean autoAdd,
             final List<String> existingMacs,
-            final BlockingQueue<Object> miners,
-            final BlockingQueue<Object> others) {
+            final ScanProgress progress) {
         try {
             if (detection != null) {
                 if (this.filteringStrategy.matches(
                         detection,
                         targetMacs,
                         targetWorkers)) {
-                    miners.add(
+                    progress.addMiner(
                             toMiner(
                                     detection));
                 } else if (autoAdd) {
                     final String mac =
                             (String) detection.getParameters().get("mac");
                     if (mac != null && !existingMacs.contains(mac.toLowerCase())) {
-                        others.add(
+                        progress.addOther(
                                 toMiner(
                                         detection));
                     }
@@ -369,58 +367,82 @@ public class ScanStrategy
             final Map<String, Object> args,
             final Manufacturer manufacturer,
             final CommandDone.CommandDoneBuilder builder) {
-        final List<String> ipsToScan =
-                this.ipSourceStrategy.toIps(
-                        args);
-        if (ipsToScan.size() < 65_536) {
-            final AtomicInteger scanned = new AtomicInteger(0);
-            final AtomicInteger remaining = new AtomicInteger(ipsToScan.size());
+        final List<IpRange> ranges;
+        try {
+            ranges =
+                    this.ipSourceStrategy.toIps(
+                            args);
+        } catch (final IllegalArgumentException e) {
+            LOG.warn("Invalid scan range", e);
+            commandCompletionCallback.done(
+                    id,
+                    builder.status(
+                            CommandDone.Status
+                                    .builder()
+                                    .type(DoneStatus.FAILED)
+                                    .message("Invalid IP range")
+                                    .build())
+                            .build());
+            return;
+        }
 
-            final BlockingQueue<Object> miners = new LinkedBlockingQueue<>();
-            final BlockingQueue<Object> others = new LinkedBlockingQueue<>();
-            final AtomicBoolean ended = new AtomicBoolean(false);
+        final long ipsToScan =
+                ranges
+                        .stream()
+                        .mapToLong(IpRange::size)
+                        .sum();
+        if (ipsToScan <= MAX_SCAN_SIZE) {
+            final ScanProgress progress =
+                    new ScanProgress(
+                            id,
+                            ipsToScan,
+                            commandCompletionCallback,
+                            UPDATE_INTERVAL_SECONDS,
+                            TimeUnit.SECONDS);
 
             // Send an initial update to let the dashboard know how much work
             // needs to be done
-            commandCompletionCallback.update(
-                    id,
-                    toUpdate(
-                            0,
-                            0,
-                            remaining.get()));
-
-            ipsToScan
-                    .stream()
-                    .map(ip ->
-                            Scanner.ScanJob
-                                    .builder()
-                                    .ip(ip)
-                                    .port(port)
-                                    .args(args)
-                                    .rateLimiter(this.rateLimiter)
-                                    .manufacturer(manufacturer)
-                                    .ipValidator(this.ipValidator)
-                                    .queryWorkers(!targetWorkers.isEmpty())
-                                    .detectionConsumer(
-                                            detection ->
-                                                    onScanCompletion(
-                                                            id,
-                                                            detection,
-                                                            targetMacs,
-                                                            targetWorkers,
-                                                            autoAdd,
-                                                            existingMacs,
-                                                            miners,
-                                                            others,
-                                                            commandCompletionCallback,
-                                                            scanned,
-                                                            remaining,
-                                                            ended))
-                                    .build())
-                    .forEach(this.scanJobs::add);
+            progress.sendUpdate();
+
+            final List<Integer> probePorts =
+                    manufacturer.getDetectionPorts(
+                            port,
+                            args);
+
+            // IPs are pulled from the ranges as earlier ones finish so only a
+            // bounded number of jobs exist at once, regardless of the size
+            final Semaphore pending = new Semaphore(MAX_PENDING_SCANS);
+            final Consumer<Detection> detectionConsumer =
+                    detection -> {
+                        try {
+                            onScanCompletion(
+                                    progress,
+                                    detection,
+                                    targetMacs,
+                                    targetWorkers,
+                                    autoAdd,
+                                    existingMacs);
+                        } finally {
+                            pending.release();
+                        }
+                    };
+            try {
+                submitJobs(
+                        ranges,
+                        pending,
+                        probePorts,
+                        port,
+                        args,
+                        manufacturer,
+                        !targetWorkers.isEmpty(),
+                        detectionConsumer);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warn("Interrupted while submitting the scan");
+            }
 
             // Wait for every IP to be examined
-            if (waitForCompletion(scanned, ipsToScan.size(), ended)) {
+            if (waitForCompletion(progress)) {
                 LOG.debug("Scan gracefully stopped");
             } else {
                 LOG.warn("Scan stopped before all of the IPs were found");
@@ -432,9 +454,9 @@ public class ScanStrategy
                             .result(
                                     ImmutableMap.of(
                                             "miners",
-                                            miners,
+                                            progress.getMiners(),
                                             "others",
-                                            others))
+                                            progress.getOthers()))
                             .status(
                                     CommandDone.Status
                                             .builder()
@@ -455,36 +477,100 @@ public class ScanStrategy
     }
 
     /**
-     * Continuously check to see if the scans completed.
+     * Probes every IP in the provided ranges, queueing the ones that answered
+     * to be scanned.
+     *
+     * @param ranges            The ranges.
+     * @param pending           Limits the number of jobs that exist at once.
+     * @param probePorts        The ports to probe.
+     * @param port              The port to inspect.
+     * @param args              The arguments.
+     * @param manufacturer      The manufacturer.
+     * @param queryWorkers      Whether or not workers should be queried.
+     * @param detectionConsumer The consumer of every result.
+     *
+     * @throws InterruptedException if interrupted while waiting for a job to
+     *                              finish or to probe.
+     */
+    private void submitJobs(
+            final List<IpRange> ranges,
+            final Semaphore pending,
+            final List<Integer> probePorts,
+            final int port,
+            final Map<String, Object> args,
+            final Manufacturer manufacturer,
+            final boolean queryWorkers,
+            final Consumer<Detection> detectionConsumer)
+            throws InterruptedException {
+        for (final IpRange range : ranges) {
+            final PrimitiveIterator.OfInt iterator = range.iterator();
+            while (iterator.hasNext()) {
+                pending.acquire();
+                final Scanner.ScanJob scanJob =
+                        Scanner.ScanJob
+                                .builder()
+                                .ip(IpUtils.toString(iterator.nextInt()))
+                                .port(port)
+                                .args(args)
+                                .rateLimiter(this.rateLimiter)
+                                .scanClass(this.scanClass)
+                                .manufacturer(manufacturer)
+                                .ipValidator(this.ipValidator)
+                                .queryWorkers(queryWorkers)
+                                .detectionConsumer(detectionConsumer)
+                                .build();
+                final CompletableFuture<Boolean> probe;
+                try {
+                    probe =
+                            this.probingStrategy.probe(
+                                    scanJob.getIp(),
+                                    probePorts);
+                } catch (final InterruptedException e) {
+                    pending.release();
+                    throw e;
+                }
+                probe.whenComplete((reachable, throwable) -> {
+                    if (throwable != null || Boolean.TRUE.equals(reachable)) {
+                        this.scanScheduler.submit(scanJob);
+                    } else {
+                        // Nothing there - counts as scanned
+                        detectionConsumer.accept(null);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Waits for every IP in the scan to be examined, giving up if the scan
+     * stops making progress.
      *
-     * @param scanned   The number of IPs scanned.
-     * @param ipsToScan The desired number of IPs to scan.
-     * @param ended     Whether the scan gracefully completed.
+     * @param progress The scan's progress.
      *
      * @return Whether every IP was checked.
      */
-    private boolean waitForCompletion(
-            final AtomicInteger scanned,
-            final int ipsToScan,
-            final AtomicBoolean ended) {
-        int lastScanned = -1;
-        int scanSimilarRounds = 0;
-        do {
-            // Go until the scans have stopped
+    private boolean waitForCompletion(final ScanProgress progress) {
+        long lastScanned = -1;
+        while (progress.getScanned() != lastScanned) {
+            lastScanned = progress.getScanned();
             try {
-                TimeUnit.SECONDS.sleep(5);
+                progress
+                        .getCompletion()
+                        .get(
+                                SCAN_STALL_CUTOFF_SECONDS,
+                                TimeUnit.SECONDS);
+                return true;
+            } catch (final TimeoutException e) {
+                // Still going if anything finished in the meantime
             } catch (final InterruptedException e) {
-                // Ignore
-            }
-
-            if (lastScanned == scanned.get()) {
-                scanSimilarRounds++;
-            } else {
-                scanSimilarRounds = 0;
+                Thread.currentThread().interrupt();
+                break;
+            } catch (final ExecutionException e) {
+                // Never completed exceptionally
+                break;
             }
-            lastScanned = scanned.get();
-        } while (!ended.get() && scanSimilarRounds < SCAN_SIMILAR_ROUNDS_CUTOFF);
-        return (ended.get() || (scanned.get() >= ipsToScan));
+        }
+        return progress.getCompletion().isDone();
     }
 
     /**
@@ -498,23 +584,44 @@ public class ScanStrategy
         /** The configuration. */
         private final ApplicationConfiguration configuration;
 
+        /** The cache of previously detected miners. */
+        private final FingerprintCache fingerprintCache;
+
         /** Whether running. */
         private final AtomicBoolean running = new AtomicBoolean(false);
 
-        /** The scan jobs. */
-        private final BlockingQueue<ScanJob> scanJobs;
+        /** The scheduler that hands out the scan jobs. */
+        private final ScanScheduler scanScheduler;
 
         /**
          * Constructor.
          *
-         * @param scanJobs      The job queue.
+         * @param scanScheduler The scheduler that hands out the scan jobs.
          * @param configuration The configuration.
          */
         public Scanner(
-                final BlockingQueue<ScanJob> scanJobs,
+                final ScanScheduler scanScheduler,
                 final ApplicationConfiguration configuration) {
-            this.scanJobs = scanJobs;
+            this(
+                    scanScheduler,
+                    configuration,
+                    new NullFingerprintCache());
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param scanScheduler    The scheduler that hands out the scan jobs.
+         * @param configuration    The configuration.
+         * @param fingerprintCache The cache of previously detected miners.
+         */
+        public Scanner(
+                final ScanScheduler scanScheduler,
+                final ApplicationConfiguration configuration,
+                final FingerprintCache fingerprintCache) {
+            this.scanScheduler = scanScheduler;
             this.configuration = configuration;
+            this.fingerprintCache = fingerprintCache;
         }
 
         @Override
@@ -528,10 +635,8 @@ public class ScanStrategy
 
             while (this.running.get()) {
                 try {
-                    final ScanJob scanJob = this.scanJobs.take();
+                    final ScanJob scanJob = this.scanScheduler.take();
 
-                    final RateLimiter rateLimiter =
-                            scanJob.rateLimiter;
                     final Consumer<Detection> detectionConsumer =
                             scanJob.detectionConsumer;
                     final Manufacturer manufacturer =
@@ -552,19 +657,18 @@ public class ScanStrategy
                                 "true");
                     }
 
-                    final DetectionStrategy detectionStrategy =
-                            manufacturer.getDetectionStrategy(
-                                    args,
-                                    ip,
-                                    this.configuration);
-
-                    // Throttle the scan rates down, if applicable
-                    rateLimiter.acquire();
-
-                    LOG.debug("Scanning {}:{}", ip, port);
-
+                    // Always completes the job, since the scan waits on it
                     Optional<Detection> detectionOpt = Optional.empty();
                     try {
+                        final DetectionStrategy detectionStrategy =
+                                manufacturer.getDetectionStrategy(
+                                        args,
+                                        ip,
+                                        this.configuration,
+                                        this.fingerprintCache);
+
+                        LOG.debug("Scanning {}:{}", ip, port);
+
                         detectionOpt =
                                 detectionStrategy.detect(
                                         ip,
@@ -581,6 +685,10 @@ public class ScanStrategy
                                         .map(this::clean);
                     } catch (final Exception e) {
                         LOG.warn("Exception occurred while querying", e);
+                    } finally {
+                        // The scan rate was already throttled when the job
+                        // was handed out
+                        this.scanScheduler.completed(scanJob);
                     }
 
                     detectionConsumer.accept(detectionOpt.orElse(null));
@@ -642,6 +750,9 @@ public class ScanStrategy
 
             /** The limiter for controlling scan speeds. */
             private final RateLimiter rateLimiter;
+
+            /** The kind of scan that created the job. */
+            private final ScanClass scanClass;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,380 @@
+package mn.foreman.pickaxe.contraints;
+
+import mn.foreman.util.IpUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An {@link AllowList} is an immutable, pre-compiled form of the IP ranges and
+ * MACs that are allowed to be examined.
+ *
+ * <p>Ranges are given per octet (ex: <code>192.168.1-4.0-255</code>).  Each
+ * one is expanded into contiguous intervals of <code>int</code>-encoded IPs,
+ * which are sorted and merged so an IP is checked with a binary search.
+ * Ranges that would expand into too many intervals (ex: a range on the last
+ * octet under a range on the first) are kept as per-octet bounds and checked
+ * directly.  MACs are normalized to their 48-bit values and also binary
+ * searched.  Neither check allocates.</p>
+ */
+class AllowList {
+
+    /** The range that allows every IP. */
+    private static final String ALL_IPS = "0-255.0-255.0-255.0-255";
+
+    /** The MAC that allows every MAC. */
+    private static final String ALL_MACS = "*";
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(AllowList.class);
+
+    /** The most intervals that a single range will be expanded into. */
+    private static final int MAX_INTERVALS = 4096;
+
+    /** Whether or not every MAC is allowed. */
+    private final boolean allMacs;
+
+    /** The per-octet bounds of the ranges that weren't expanded. */
+    private final int[][] boxes;
+
+    /** The inclusive ends of the intervals, matching {@link #starts}. */
+    private final long[] ends;
+
+    /** Whether or not limiting is in place. */
+    private final boolean limited;
+
+    /** The allowed MACs, as sorted 48-bit values. */
+    private final long[] macs;
+
+    /** The sorted starts of the disjoint intervals. */
+    private final long[] starts;
+
+    /** The allowed MACs that aren't valid MACs, lower-cased. */
+    private final String[] unparsedMacs;
+
+    /**
+     * Constructor.
+     *
+     * @param starts       The sorted starts of the disjoint intervals.
+     * @param ends         The inclusive ends of the intervals.
+     * @param boxes        The per-octet bounds of the ranges that weren't
+     *                     expanded.
+     * @param macs         The allowed MACs, as sorted 48-bit values.
+     * @param unparsedMacs The allowed MACs that aren't valid MACs.
+     * @param allMacs      Whether or not every MAC is allowed.
+     * @param limited      Whether or not limiting is in place.
+     */
+    private AllowList(
+            final long[] starts,
+            final long[] ends,
+            final int[][] boxes,
+            final long[] macs,
+            final String[] unparsedMacs,
+            final boolean allMacs,
+            final boolean limited) {
+        this.starts = starts;
+        this.ends = ends;
+        this.boxes = boxes;
+        this.macs = macs;
+        this.unparsedMacs = unparsedMacs;
+        this.allMacs = allMacs;
+        this.limited = limited;
+    }
+
+    /**
+     * Compiles the provided ranges and MACs.
+     *
+     * <p>Note: ranges that can't be parsed are skipped, since they could never
+     * have matched an IP.</p>
+     *
+     * @param allowedRanges The allowed ranges.
+     * @param allowedMacs   The allowed MACs.
+     *
+     * @return The compiled list.
+     */
+    static AllowList compile(
+            final List<String> allowedRanges,
+            final List<String> allowedMacs) {
+        final List<long[]> intervals = new ArrayList<>();
+        final List<int[]> boxes = new ArrayList<>();
+        boolean limited = false;
+        for (final String range : allowedRanges) {
+            limited |= !ALL_IPS.equals(range);
+            final int[] box = toBox(range);
+            if (box == null) {
+                LOG.warn("Ignoring invalid allowed range: {}", range);
+            } else if (!expand(box, intervals)) {
+                boxes.add(box);
+            }
+        }
+
+        intervals.sort((a, b) -> Long.compare(a[0], b[0]));
+        final List<long[]> merged = new ArrayList<>(intervals.size());
+        for (final long[] interval : intervals) {
+            final long[] last =
+                    !merged.isEmpty()
+                            ? merged.get(merged.size() - 1)
+                            : null;
+            if (last != null && interval[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], interval[1]);
+            } else {
+                merged.add(interval);
+            }
+        }
+        final long[] starts = new long[merged.size()];
+        final long[] ends = new long[merged.size()];
+        for (int i = 0; i < merged.size(); i++) {
+            starts[i] = merged.get(i)[0];
+            ends[i] = merged.get(i)[1];
+        }
+
+        boolean allMacs = false;
+        final List<Long> macs = new ArrayList<>();
+        final List<String> unparsedMacs = new ArrayList<>();
+        for (final String mac : allowedMacs) {
+            limited |= !ALL_MACS.equals(mac);
+            if (ALL_MACS.equals(mac)) {
+                allMacs = true;
+            } else if (mac != null) {
+                final long value = toMac(mac);
+                if (value >= 0) {
+                    macs.add(value);
+                } else {
+                    unparsedMacs.add(mac.toLowerCase());
+                }
+            }
+        }
+
+        return new AllowList(
+                starts,
+                ends,
+                boxes.toArray(new int[0][]),
+                macs
+                        .stream()
+                        .mapToLong(Long::longValue)
+                        .sorted()
+                        .distinct()
+                        .toArray(),
+                unparsedMacs.toArray(new String[0]),
+                allMacs,
+                limited);
+    }
+
+    /**
+     * Checks if the IP is allowed.
+     *
+     * @param ip The IP.
+     *
+     * @return Whether allowed.
+     */
+    boolean isAllowedIp(final String ip) {
+        final long value = IpUtils.parse(ip);
+        if (value < 0) {
+            return false;
+        }
+
+        // The last interval that starts at or before the IP
+        int low = 0;
+        int high = this.starts.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (this.starts[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high >= 0 && value <= this.ends[high]) {
+            return true;
+        }
+
+        for (final int[] box : this.boxes) {
+            if (inBox(box, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the MAC is allowed.
+     *
+     * @param mac The MAC.
+     *
+     * @return Whether allowed.
+     */
+    boolean isAllowedMac(final String mac) {
+        if (this.allMacs) {
+            return true;
+        }
+        if (mac == null) {
+            return false;
+        }
+        final long value = toMac(mac);
+        if (value >= 0) {
+            return Arrays.binarySearch(this.macs, value) >= 0;
+        }
+        for (final String unparsed : this.unparsedMacs) {
+            if (unparsed.equalsIgnoreCase(mac)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether limiting is in place.
+     *
+     * @return Whether limiting is in place.
+     */
+    boolean isLimited() {
+        return this.limited;
+    }
+
+    /**
+     * Expands the per-octet bounds into contiguous intervals.
+     *
+     * @param box       The bounds, as min/max pairs for each octet.
+     * @param intervals Where to add the intervals.
+     *
+     * @return Whether or not the bounds were expanded.
+     */
+    private static boolean expand(
+            final int[] box,
+            final List<long[]> intervals) {
+        // Every octet after the last partial one spans 0-255, so each
+        // combination of the octets before it is one contiguous interval
+        int last = 3;
+        while (last >= 0 && box[last * 2] == 0 && box[last * 2 + 1] == 255) {
+            last--;
+        }
+        if (last < 0) {
+            intervals.add(new long[]{0, 0xFFFFFFFFL});
+            return true;
+        }
+
+        long count = 1;
+        for (int i = 0; i < last; i++) {
+            count *= box[i * 2 + 1] - box[i * 2] + 1;
+        }
+        if (count > MAX_INTERVALS) {
+            return false;
+        }
+
+        final int shift = (3 - last) * 8;
+        final long span = (1L << shift) - 1;
+        final int[] prefix = new int[last];
+        for (int i = 0; i < last; i++) {
+            prefix[i] = box[i * 2];
+        }
+        for (long i = 0; i < count; i++) {
+            long base = 0;
+            for (int octet = 0; octet < last; octet++) {
+                base |= (long) prefix[octet] << ((3 - octet) * 8);
+            }
+            intervals.add(
+                    new long[]{
+                            base | ((long) box[last * 2] << shift),
+                            base | ((long) box[last * 2 + 1] << shift) | span
+                    });
+
+            // Advance the prefix like an odometer
+            for (int octet = last - 1; octet >= 0; octet--) {
+                if (prefix[octet] < box[octet * 2 + 1]) {
+                    prefix[octet]++;
+                    break;
+                }
+                prefix[octet] = box[octet * 2];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether or not the IP is within the per-octet bounds.
+     *
+     * @param box The bounds.
+     * @param ip  The IP.
+     *
+     * @return Whether or not the IP is within the bounds.
+     */
+    private static boolean inBox(
+            final int[] box,
+            final long ip) {
+        for (int i = 0; i < 4; i++) {
+            final int octet = (int) (ip >>> ((3 - i) * 8)) & 0xFF;
+            if (octet < box[i * 2] || octet > box[i * 2 + 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a range into min/max pairs for each octet.
+     *
+     * @param range The range.
+     *
+     * @return The bounds, or <code>null</code> if the range is invalid.
+     */
+    private static int[] toBox(final String range) {
+        if (range == null) {
+            return null;
+        }
+        final String[] octets = range.trim().split("\\.");
+        if (octets.length != 4) {
+            return null;
+        }
+        final int[] box = new int[8];
+        try {
+            for (int i = 0; i < 4; i++) {
+                final String octet = octets[i];
+                final int dash = octet.indexOf('-');
+                if (dash >= 0) {
+                    box[i * 2] = Integer.parseInt(octet.substring(0, dash));
+                    box[i * 2 + 1] = Integer.parseInt(octet.substring(dash + 1));
+                } else {
+                    box[i * 2] = Integer.parseInt(octet);
+                    box[i * 2 + 1] = box[i * 2];
+                }
+                if (box[i * 2] < 0 || box[i * 2 + 1] > 255 || box[i * 2] > box[i * 2 + 1]) {
+                    return null;
+                }
+            }
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+        return box;
+    }
+
+    /**
+     * Parses a MAC into its 48-bit value without allocating, ignoring any
+     * separators.
+     *
+     * @param mac The MAC.
+     *
+     * @return The value, or <code>-1</code> if not a valid MAC.
+     */
+    private static long toMac(final String mac) {
+        long value = 0;
+        int digits = 0;
+        for (int i = 0; i < mac.length(); i++) {
+            final char c = mac.charAt(i);
+            final int digit = Character.digit(c, 16);
+            if (digit >= 0) {
+                value = (value << 4) | digit;
+                if (++digits > 12) {
+                    return -1;
+                }
+            } else if (c != ':' && c != '-' && c != '.') {
+                return -1;
+            }
+        }
+        return digits == 12 ? value : -1;
+    }
+}
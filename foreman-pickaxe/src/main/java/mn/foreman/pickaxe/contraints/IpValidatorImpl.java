@@ -2,11 +2,13 @@ package mn.foreman.pickaxe.contraints;
 
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.IntStream;
 
 /**
  * An {@link IpValidator} that verifies that the provided IPs fall within
  * configurable ranges.
+ *
+ * <p>The ranges and MACs are compiled into an {@link AllowList} whenever
+ * either reference is swapped, rather than being parsed on every check.</p>
  */
 public class IpValidatorImpl
         implements IpValidator {
@@ -17,6 +19,9 @@ public class IpValidatorImpl
     /** The allowed ranges. */
     private final AtomicReference<List<String>> allowedRanges;
 
+    /** The most recently compiled allow list. */
+    private volatile Compiled compiled;
+
     /**
      * Constructor.
      *
@@ -32,79 +37,65 @@ public class IpValidatorImpl
 
     @Override
     public boolean isAllowed(final String ip, final String mac) {
-        return isAllowedIp(ip) || isAllowedMac(mac);
+        final AllowList allowList = getAllowList();
+        return allowList.isAllowedIp(ip) || allowList.isAllowedMac(mac);
     }
 
     @Override
     public boolean isLimited() {
-        return this.allowedMacs.get().stream().anyMatch(s -> !s.equals("*")) ||
-                this.allowedRanges.get().stream().anyMatch(s -> !s.equals("0-255.0-255.0-255.0-255"));
+        return getAllowList().isLimited();
     }
 
     /**
-     * Verifies that the provided, split IP is within the provided range.
-     *
-     * @param ipSplit    The IP, split.
-     * @param rangeSplit The candidate range, also split.
+     * Returns the allow list for the current ranges and MACs, compiling it if
+     * either changed.
      *
-     * @return Whether or not the IP fell into the range.
+     * @return The allow list.
      */
-    private static boolean checkRange(
-            final String[] ipSplit,
-            final String[] rangeSplit) {
-        return IntStream
-                .range(0, ipSplit.length)
-                .allMatch(i -> {
-                    boolean matched;
-                    if (rangeSplit[i].contains("-")) {
-                        // Split on dash, max, min
-                        final String[] minMax = rangeSplit[i].split("-");
-                        final int min = Integer.parseInt(minMax[0]);
-                        final int max = Integer.parseInt(minMax[1]);
-                        final int ipNumber = Integer.parseInt(ipSplit[i]);
-                        matched = (min <= ipNumber && ipNumber <= max);
-                    } else {
-                        matched = ipSplit[i].equals(rangeSplit[i]);
-                    }
-                    return matched;
-                });
+    private AllowList getAllowList() {
+        final List<String> ranges = this.allowedRanges.get();
+        final List<String> macs = this.allowedMacs.get();
+        Compiled compiled = this.compiled;
+        if (compiled == null || compiled.ranges != ranges || compiled.macs != macs) {
+            // Racing threads may both compile, but the results are identical
+            compiled =
+                    new Compiled(
+                            ranges,
+                            macs,
+                            AllowList.compile(
+                                    ranges,
+                                    macs));
+            this.compiled = compiled;
+        }
+        return compiled.allowList;
     }
 
-    /**
-     * Checks if the IP is allowed.
-     *
-     * @param ip The IP.
-     *
-     * @return Whether allowed.
-     */
-    private boolean isAllowedIp(final String ip) {
-        final List<String> allowedRanges = this.allowedRanges.get();
-        final String[] ipSplit = ip.split("\\.");
-        return allowedRanges
-                .stream()
-                .map(range -> range.split("\\."))
-                .filter(range -> range.length == ipSplit.length)
-                .anyMatch(
-                        range ->
-                                checkRange(
-                                        ipSplit,
-                                        range));
-    }
+    /** An {@link AllowList} and the lists it was compiled from. */
+    private static class Compiled {
 
-    /**
-     * Checks if the MAC is allowed.
-     *
-     * @param mac The MAC.
-     *
-     * @return Whether allowed.
-     */
-    private boolean isAllowedMac(final String mac) {
-        final List<String> allowed = this.allowedMacs.get();
-        return allowed.contains("*") ||
-                this.allowedMacs
-                        .get()
-                        .stream()
-                        .map(String::toLowerCase)
-                        .anyMatch(s -> mac != null && mac.toLowerCase().equals(s));
+        /** The compiled list. */
+        private final AllowList allowList;
+
+        /** The MACs that were compiled. */
+        private final List<String> macs;
+
+        /** The ranges that were compiled. */
+        private final List<String> ranges;
+
+        /**
+         * Constructor.
+         *
+         * @param ranges    The ranges that were compiled.
+         * @param macs      The MACs that were compiled.
+         * @param allowList The compiled list.
+         */
+        private Compiled(
+                final List<String> ranges,
+                final List<String> macs,
+                final AllowList allowList) {
+            this.ranges = ranges;
+            this.macs = macs;
+            this.allowList = allowList;
+        }
     }
 }
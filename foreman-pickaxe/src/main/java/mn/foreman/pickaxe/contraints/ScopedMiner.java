@@ -1,18 +1,33 @@
 package mn.foreman.pickaxe.contraints;
 
+import mn.foreman.model.CachingMacStrategy;
 import mn.foreman.model.Miner;
 import mn.foreman.model.MinerID;
+import mn.foreman.model.cache.MacCache;
+import mn.foreman.model.cache.NullMacCache;
 import mn.foreman.model.error.MinerException;
 import mn.foreman.model.miners.MinerStats;
+import mn.foreman.model.miners.Pool;
+import mn.foreman.pickaxe.command.asic.Manufacturer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 /**
  * A {@link ScopedMiner} provides a {@link Miner} implementation that will limit
  * access to a miner based on a GUARDrail configuration.
+ *
+ * <p>MACs are only needed when the miner's IP isn't allowed, and they're
+ * obtained through a {@link CachingMacStrategy} that's refreshed whenever the
+ * MAC is obtained from the miner (ex: by the periodic MAC sweep), so scoped
+ * stats polls don't query the miner twice.  The workers seen in every poll
+ * are checked against the ones seen when the MAC was cached, so a different
+ * miner showing up at the same IP has its MAC obtained again.</p>
  */
 public class ScopedMiner
         implements Miner {
@@ -21,6 +36,12 @@ public class ScopedMiner
     private static final Logger LOG =
             LoggerFactory.getLogger(ScopedMiner.class);
 
+    /** Obtains the MAC, preferring the cached one. */
+    private final CachingMacStrategy macStrategy;
+
+    /** The manufacturer, if known. */
+    private final Manufacturer manufacturer;
+
     /** The real miner. */
     private final Miner real;
 
@@ -36,8 +57,34 @@ public class ScopedMiner
     public ScopedMiner(
             final Miner real,
             final IpValidator validator) {
+        this(
+                real,
+                validator,
+                new NullMacCache(),
+                null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param real         The real miner.
+     * @param validator    The validator.
+     * @param macCache     The cache of known MACs.
+     * @param manufacturer The manufacturer, if known.
+     */
+    public ScopedMiner(
+            final Miner real,
+            final IpValidator validator,
+            final MacCache macCache,
+            final Manufacturer manufacturer) {
         this.real = real;
         this.validator = validator;
+        this.manufacturer = manufacturer;
+        this.macStrategy =
+                new CachingMacStrategy(
+                        real.getMinerID(),
+                        real::getMacAddress,
+                        macCache);
     }
 
     @Override
@@ -52,7 +99,7 @@ public class ScopedMiner
 
     @Override
     public Optional<String> getMacAddress() {
-        return this.real.getMacAddress();
+        return this.macStrategy.refresh();
     }
 
     @Override
@@ -60,16 +107,99 @@ public class ScopedMiner
         return this.real.getMinerID();
     }
 
+    /**
+     * Returns the manufacturer.
+     *
+     * @return The manufacturer, if known.
+     */
+    public Optional<Manufacturer> getManufacturer() {
+        return Optional.ofNullable(this.manufacturer);
+    }
+
+    /**
+     * Returns the real miner.
+     *
+     * @return The real miner.
+     */
+    public Miner getReal() {
+        return this.real;
+    }
+
     @Override
     public MinerStats getStats() throws MinerException {
+        checkAllowed();
+        return verify(this.real.getStats());
+    }
+
+    @Override
+    public CompletableFuture<MinerStats> getStatsAsync() {
+        try {
+            checkAllowed();
+        } catch (final MinerException me) {
+            final CompletableFuture<MinerStats> denied =
+                    new CompletableFuture<>();
+            denied.completeExceptionally(me);
+            return denied;
+        }
+        return this.real
+                .getStatsAsync()
+                .thenApply(this::verify);
+    }
+
+    /**
+     * Builds what the miner looks like from its stats.
+     *
+     * @param stats The stats.
+     *
+     * @return The miner's workers.
+     */
+    private static String toIdentity(final MinerStats stats) {
+        return stats
+                .getPools()
+                .stream()
+                .map(Pool::getWorker)
+                .filter(Objects::nonNull)
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Verifies that the miner is allowed to be queried.
+     *
+     * @throws MinerException if the miner is outside of the GUARDrail scope.
+     */
+    private void checkAllowed() throws MinerException {
         if (this.validator.isLimited()) {
             LOG.debug("Miner is scoped - check if it's allowed");
             final String ip = this.real.getIp();
-            final String mac = this.real.getMacAddress().orElse(null);
+            if (this.validator.isAllowed(ip, null)) {
+                return;
+            }
+            final String mac =
+                    this.macStrategy
+                            .getMacAddress()
+                            .orElse(null);
             if (!this.validator.isAllowed(ip, mac)) {
                 throw new MinerException("Denied by GUARDrail");
             }
         }
-        return this.real.getStats();
+    }
+
+    /**
+     * Checks the stats against what the miner looked like when its MAC was
+     * cached.
+     *
+     * @param stats The stats.
+     *
+     * @return The stats.
+     */
+    private MinerStats verify(final MinerStats stats) {
+        if (this.validator.isLimited()) {
+            final String identity = toIdentity(stats);
+            if (!identity.isEmpty()) {
+                this.macStrategy.verify(identity);
+            }
+        }
+        return stats;
     }
 }
@@ -4,8 +4,11 @@ import mn.foreman.antminer.AntminerFactory;
 import mn.foreman.api.model.ApiType;
 import mn.foreman.model.ApplicationConfiguration;
 import mn.foreman.model.MinerFactory;
+import mn.foreman.pickaxe.command.asic.Manufacturer;
 import mn.foreman.whatsminer.WhatsminerFactory;
 
+import java.util.Optional;
+
 /** A factory for creating {@link MinerFactory factories} from configurations. */
 public class MinerTypeFactory {
 
@@ -54,4 +57,29 @@ public class MinerTypeFactory {
         }
         return minerFactory;
     }
+
+    /**
+     * Returns the manufacturer of the miners with the provided API type.
+     *
+     * @param apiType The API type.
+     *
+     * @return The manufacturer, if known.
+     */
+    public static Optional<Manufacturer> toManufacturer(final ApiType apiType) {
+        Manufacturer manufacturer = null;
+        if (apiType != null) {
+            switch (apiType) {
+                case ANTMINER_HS_API:
+                case ANTMINER_MHS_API:
+                case ANTMINER_GHS_API:
+                case ANTMINER_KHS_API:
+                    manufacturer = Manufacturer.ANTMINER;
+                    break;
+                case WHATSMINER_API:
+                    manufacturer = Manufacturer.WHATSMINER;
+                    break;
+            }
+        }
+        return Optional.ofNullable(manufacturer);
+    }
 }
@@ -6,6 +6,7 @@ import mn.foreman.api.model.ApiType;
 import mn.foreman.model.ApplicationConfiguration;
 import mn.foreman.model.Miner;
 import mn.foreman.model.MinerFactory;
+import mn.foreman.model.cache.MacCache;
 import mn.foreman.model.error.MinerException;
 import mn.foreman.pickaxe.contraints.IpValidator;
 import mn.foreman.pickaxe.miners.MinerConfiguration;
@@ -49,19 +50,26 @@ public class RemoteConfiguration
     /** The IP validator. */
     private final IpValidator ipValidator;
 
+    /** The cache of known MACs. */
+    private final MacCache macCache;
+
     /**
      * Constructor.
      *
      * @param foremanApi    The Foreman API.
      * @param configuration The configuration.
+     * @param ipValidator   The IP validator.
+     * @param macCache      The cache of known MACs.
      */
     public RemoteConfiguration(
             final AtomicReference<ForemanApi> foremanApi,
             final ApplicationConfiguration configuration,
-            final IpValidator ipValidator) {
+            final IpValidator ipValidator,
+            final MacCache macCache) {
         this.foremanApi = foremanApi;
         this.configuration = configuration;
         this.ipValidator = ipValidator;
+        this.macCache = macCache;
     }
 
     @Override
@@ -96,6 +104,7 @@ public class RemoteConfiguration
      * @param dest          The destination {@link List}.
      * @param configuration The configuration.
      * @param validator     The validator.
+     * @param macCache      The cache of known MACs.
      */
     private static void addNiceHashCandidates(
             final Pickaxe.MinerConfig config,
@@ -103,7 +112,8 @@ public class RemoteConfiguration
             final List<ApiType> candidates,
             final List<Miner> dest,
             final ApplicationConfiguration configuration,
-            final IpValidator validator) {
+            final IpValidator validator,
+            final MacCache macCache) {
         for (int i = 0; i < 5; i++) {
             final int port = portStart + i;
             dest.addAll(
@@ -115,7 +125,8 @@ public class RemoteConfiguration
                                             port,
                                             config,
                                             configuration,
-                                            validator))
+                                            validator,
+                                            macCache))
                             .flatMap(List::stream)
                             .collect(Collectors.toList()));
         }
@@ -129,6 +140,7 @@ public class RemoteConfiguration
      * @param config        The {@link Pickaxe.MinerConfig}.
      * @param configuration The configuration.
      * @param validator     The validator.
+     * @param macCache      The cache of known MACs.
      *
      * @return The {@link Miner miners}.
      */
@@ -137,7 +149,8 @@ public class RemoteConfiguration
             final int port,
             final Pickaxe.MinerConfig config,
             final ApplicationConfiguration configuration,
-            final IpValidator validator) {
+            final IpValidator validator,
+            final MacCache macCache) {
         LOG.debug("Adding miner for {}", config);
 
         final MinerFactory minerFactory =
@@ -147,7 +160,7 @@ public class RemoteConfiguration
                         configuration);
 
         final List<Miner> miners = new LinkedList<>();
-        miners.add(MinerUtils.toMiner(port, config, minerFactory, validator));
+        miners.add(MinerUtils.toMiner(port, config, minerFactory, validator, macCache));
 
         return miners;
     }
@@ -173,7 +186,8 @@ public class RemoteConfiguration
                                 config.apiPort,
                                 config,
                                 configuration,
-                                this.ipValidator))
+                                this.ipValidator,
+                                this.macCache))
                 .flatMap(List::stream)
                 .collect(Collectors.toList());
     }
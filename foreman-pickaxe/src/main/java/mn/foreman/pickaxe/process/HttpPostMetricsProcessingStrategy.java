@@ -4,29 +4,40 @@ import mn.foreman.model.MetricsReport;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.Builder;
+import lombok.Data;
 import org.apache.commons.lang3.Validate;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPut;
-import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * An {@link HttpPostMetricsProcessingStrategy} provides a mechanism for
  * uploading {@link MetricsReport metrics} to FOREMAN through the FOREMAN API.
+ *
+ * <p>A single pooled client is shared by every upload so that connections
+ * (and their TLS sessions) are kept alive between batches.  Reports are
+ * serialized straight into a length-delimited request body, which can
+ * optionally be gzip-compressed when the server and any proxies in front of
+ * it accept compressed requests.</p>
  */
 public class HttpPostMetricsProcessingStrategy
-        implements MetricsProcessingStrategy {
+        implements MetricsProcessingStrategy, Closeable {
 
     /** The logger for this class. */
     private static final Logger LOG =
@@ -50,33 +61,128 @@ public class HttpPostMetricsProcessingStrategy
     /** The client ID. */
     private final AtomicReference<String> clientId;
 
+    /** The number of compressed bytes that have been uploaded. */
+    private final AtomicLong compressedBytes = new AtomicLong();
+
+    /** The connection pool. */
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    /** Whether or not to gzip the reports. */
+    private final boolean gzip;
+
+    /** The client shared by every upload. */
+    private final CloseableHttpClient httpClient;
+
     /** The pickaxe ID. */
     private final String pickaxeId;
 
+    /** The number of uncompressed bytes that have been uploaded. */
+    private final AtomicLong rawBytes = new AtomicLong();
+
+    /** The number of reports that have been uploaded. */
+    private final AtomicLong reports = new AtomicLong();
+
     /**
      * Constructor.
      *
-     * @param baseUrl   The URL.
-     * @param clientId  The client ID.
-     * @param pickaxeId The pickaxe ID.
-     * @param apiKey    The API key.
+     * @param baseUrl        The URL.
+     * @param clientId       The client ID.
+     * @param pickaxeId      The pickaxe ID.
+     * @param apiKey         The API key.
+     * @param maxConnections The maximum number of pooled connections.
      */
     public HttpPostMetricsProcessingStrategy(
             final String baseUrl,
             final AtomicReference<String> clientId,
             final String pickaxeId,
-            final AtomicReference<String> apiKey) {
+            final AtomicReference<String> apiKey,
+            final int maxConnections) {
+        this(
+                baseUrl,
+                clientId,
+                pickaxeId,
+                apiKey,
+                maxConnections,
+                false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param baseUrl        The URL.
+     * @param clientId       The client ID.
+     * @param pickaxeId      The pickaxe ID.
+     * @param apiKey         The API key.
+     * @param maxConnections The maximum number of pooled connections.
+     * @param gzip           Whether or not to gzip the reports.
+     */
+    public HttpPostMetricsProcessingStrategy(
+            final String baseUrl,
+            final AtomicReference<String> clientId,
+            final String pickaxeId,
+            final AtomicReference<String> apiKey,
+            final int maxConnections,
+            final boolean gzip) {
         Validate.notEmpty(
                 baseUrl,
                 "baseUrl cannot be empty");
+        Validate.isTrue(
+                maxConnections > 0,
+                "maxConnections must be > 0");
         this.baseUrl = baseUrl;
         this.clientId = clientId;
         this.pickaxeId = pickaxeId;
         this.apiKey = apiKey;
+        this.gzip = gzip;
+
+        // Every upload goes to the same route
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        this.connectionManager.setMaxTotal(maxConnections);
+        this.connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        this.httpClient =
+                HttpClients.custom()
+                        .setConnectionManager(this.connectionManager)
+                        .setDefaultRequestConfig(
+                                RequestConfig.custom()
+                                        .setConnectTimeout(SOCKET_TIMEOUT)
+                                        .setConnectionRequestTimeout(SOCKET_TIMEOUT)
+                                        .setSocketTimeout((int) TimeUnit.MINUTES.toMillis(1))
+                                        .build())
+                        .evictExpiredConnections()
+                        .evictIdleConnections(
+                                1,
+                                TimeUnit.MINUTES)
+                        .disableAutomaticRetries()
+                        .build();
     }
 
     @Override
-    public void process(final MetricsReport metricsReport) {
+    public void close() throws IOException {
+        this.httpClient.close();
+    }
+
+    /**
+     * Returns the connection pool and compression stats.
+     *
+     * @return The stats.
+     */
+    public UploadStats getStats() {
+        final PoolStats poolStats = this.connectionManager.getTotalStats();
+        return UploadStats
+                .builder()
+                .availableConnections(poolStats.getAvailable())
+                .compressedBytes(this.compressedBytes.get())
+                .leasedConnections(poolStats.getLeased())
+                .maxConnections(poolStats.getMax())
+                .pendingConnections(poolStats.getPending())
+                .rawBytes(this.rawBytes.get())
+                .reports(this.reports.get())
+                .build();
+    }
+
+    @Override
+    public boolean process(final MetricsReport metricsReport) {
         final String url =
                 String.format(
                         "%s/%s/%s/%s",
@@ -85,59 +191,80 @@ public class HttpPostMetricsProcessingStrategy
                         this.clientId.get(),
                         this.pickaxeId);
 
-        final RequestConfig requestConfig =
-                RequestConfig.custom()
-                        .setConnectTimeout(SOCKET_TIMEOUT)
-                        .setConnectionRequestTimeout(SOCKET_TIMEOUT)
-                        .setSocketTimeout((int) TimeUnit.MINUTES.toMillis(1))
-                        .build();
+        final HttpPut httpPut =
+                new HttpPut(url);
+        httpPut.setHeader(
+                "Authorization",
+                "Token " + this.apiKey);
+
+        try {
+            httpPut.setEntity(
+                    new JsonEntity(
+                            OBJECT_MAPPER,
+                            metricsReport,
+                            this.gzip,
+                            this.rawBytes,
+                            this.compressedBytes));
+        } catch (final IOException ioe) {
+            LOG.warn("Exception occurred while serializing metrics", ioe);
+            return false;
+        }
 
-        try (final CloseableHttpClient httpClient =
-                     HttpClients.custom()
-                             .setDefaultRequestConfig(requestConfig)
-                             .disableAutomaticRetries()
-                             .build()) {
-
-            final String json =
-                    OBJECT_MAPPER.writeValueAsString(metricsReport);
-            LOG.debug("{} generated {}", metricsReport, json);
-
-            final StringEntity stringEntity =
-                    new StringEntity(json);
-
-            final HttpPut httpPut =
-                    new HttpPut(url);
-            httpPut.setEntity(stringEntity);
-            httpPut.setHeader(
-                    "Content-Type",
-                    "application/json");
-            httpPut.setHeader(
-                    "Authorization",
-                    "Token " + this.apiKey);
-
-            try (final CloseableHttpResponse httpResponse =
-                         httpClient.execute(httpPut)) {
-                final int statusCode =
-                        httpResponse
-                                .getStatusLine()
-                                .getStatusCode();
-                if (statusCode != HttpStatus.SC_CREATED) {
-                    LOG.warn("Received a bad response from {}: code({})",
-                            url,
-                            statusCode);
-                }
-                LOG.debug("Metrics response content: {}",
-                        EntityUtils.toString(httpResponse.getEntity()));
-            } catch (final IOException ioe) {
-                LOG.warn("Exception occurred while uploading metrics", ioe);
+        try (final CloseableHttpResponse httpResponse =
+                     this.httpClient.execute(httpPut)) {
+            final int statusCode =
+                    httpResponse
+                            .getStatusLine()
+                            .getStatusCode();
+            if (statusCode != HttpStatus.SC_CREATED) {
+                LOG.warn("Received a bad response from {}: code({})",
+                        url,
+                        statusCode);
             }
+            // Fully consumed so the connection is returned to the pool
+            LOG.debug("Metrics response content: {}",
+                    EntityUtils.toString(httpResponse.getEntity()));
+            this.reports.incrementAndGet();
+            LOG.debug("Metrics upload stats: {}", getStats());
+            return statusCode == HttpStatus.SC_CREATED;
         } catch (final IOException ioe) {
             LOG.warn("Exception occurred while uploading metrics", ioe);
         }
+        return false;
     }
 
     @Override
     public void processAll(final List<MetricsReport> metricsReports) {
         metricsReports.forEach(this::process);
     }
-}
\ No newline at end of file
+
+    /** Connection pool and compression stats for the uploads. */
+    @Data
+    @Builder
+    public static class UploadStats {
+
+        /** The number of idle pooled connections. */
+        private final int availableConnections;
+
+        /**
+         * The number of bytes that have been uploaded, after compression if
+         * it's enabled.
+         */
+        private final long compressedBytes;
+
+        /** The number of connections in use. */
+        private final int leasedConnections;
+
+        /** The maximum number of pooled connections. */
+        private final int maxConnections;
+
+        /** The number of uploads waiting for a connection. */
+        private final int pendingConnections;
+
+        /** The number of uncompressed bytes that have been uploaded. */
+        private final long rawBytes;
+
+        /** The number of reports that have been uploaded. */
+        private final long reports;
+    }
+}
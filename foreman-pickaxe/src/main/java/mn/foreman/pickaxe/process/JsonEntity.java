@@ -0,0 +1,110 @@
+package mn.foreman.pickaxe.process;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A {@link JsonEntity} is an {@link org.apache.http.HttpEntity} that
+ * serializes a value as JSON with Jackson straight into a byte buffer,
+ * optionally through a gzip stream, rather than first rendering it to a
+ * {@link String}.
+ *
+ * <p>The body is buffered so that it's sent with a Content-Length, like the
+ * {@link org.apache.http.entity.StringEntity} it replaces, rather than
+ * chunked.  The entity is repeatable, as the buffer is simply written
+ * again.</p>
+ */
+class JsonEntity
+        extends AbstractHttpEntity {
+
+    /** The number of bytes that were sent. */
+    private final AtomicLong compressedBytes;
+
+    /** The body. */
+    private final byte[] content;
+
+    /** The number of uncompressed bytes in the body. */
+    private final long rawLength;
+
+    /** The number of uncompressed bytes that were sent. */
+    private final AtomicLong rawBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param objectMapper    The mapper.
+     * @param value           The value to serialize.
+     * @param gzip            Whether or not to gzip the body.
+     * @param rawBytes        The number of uncompressed bytes that were
+     *                        sent.
+     * @param compressedBytes The number of bytes that were sent, which are
+     *                        the same as the raw bytes when not gzipped.
+     *
+     * @throws IOException on failure to serialize the value.
+     */
+    JsonEntity(
+            final ObjectMapper objectMapper,
+            final Object value,
+            final boolean gzip,
+            final AtomicLong rawBytes,
+            final AtomicLong compressedBytes)
+            throws IOException {
+        this.rawBytes = rawBytes;
+        this.compressedBytes = compressedBytes;
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        if (gzip) {
+            final CountingOutputStream raw;
+            try (final GZIPOutputStream gzipOutputStream =
+                         new GZIPOutputStream(buffer)) {
+                raw = new CountingOutputStream(gzipOutputStream);
+                objectMapper.writeValue(
+                        raw,
+                        value);
+            }
+            this.rawLength = raw.getByteCount();
+            setContentEncoding("gzip");
+        } else {
+            objectMapper.writeValue(
+                    buffer,
+                    value);
+            this.rawLength = buffer.size();
+        }
+        this.content = buffer.toByteArray();
+        setContentType(ContentType.APPLICATION_JSON.toString());
+    }
+
+    @Override
+    public InputStream getContent() {
+        return new ByteArrayInputStream(this.content);
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.content.length;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public void writeTo(final OutputStream outputStream) throws IOException {
+        outputStream.write(this.content);
+        outputStream.flush();
+        this.rawBytes.addAndGet(this.rawLength);
+        this.compressedBytes.addAndGet(this.content.length);
+    }
+}
@@ -14,8 +14,10 @@ public interface MetricsProcessingStrategy {
      * Processes the provided {@link MetricsReport}.
      *
      * @param metricsReport The report to process.
+     *
+     * @return Whether or not the report was successfully processed.
      */
-    void process(MetricsReport metricsReport);
+    boolean process(MetricsReport metricsReport);
 
     /**
      * Processes all of the provided {@link MetricsReport reports}.
@@ -0,0 +1,121 @@
+package mn.foreman.pickaxe.run;
+
+import mn.foreman.model.SimpleMinerID;
+import mn.foreman.model.miners.MinerStats;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link MetricsDeltaTracker} remembers what was last pushed for each miner
+ * so that only the miners whose stats changed, and the miners that are no
+ * longer being reported, need to be sent on each push.
+ *
+ * <p>A change is detected using {@link MinerStats#hashCode()}, which excludes
+ * the query time.  A full snapshot is periodically produced so that the
+ * dashboard converges even if a delta was lost, and is also produced after
+ * {@link #invalidate()} is invoked (ex: a push failed).</p>
+ */
+public class MetricsDeltaTracker {
+
+    /** The content hash of what was last pushed for each miner. */
+    private final Map<SimpleMinerID, Integer> pushed = new HashMap<>();
+
+    /** How often a full snapshot should be produced (milliseconds). */
+    private final long snapshotIntervalMs;
+
+    /** When the last full snapshot was produced. */
+    private long lastSnapshotMs;
+
+    /** Whether or not the next push must be a full snapshot. */
+    private boolean snapshotRequired = true;
+
+    /**
+     * Constructor.
+     *
+     * @param snapshotInterval      How often a full snapshot should be
+     *                              produced.
+     * @param snapshotIntervalUnits The snapshot interval units.
+     */
+    public MetricsDeltaTracker(
+            final long snapshotInterval,
+            final TimeUnit snapshotIntervalUnits) {
+        this.snapshotIntervalMs = snapshotIntervalUnits.toMillis(snapshotInterval);
+    }
+
+    /**
+     * Determines what needs to be pushed for the current stats.
+     *
+     * @param stats The current stats.
+     *
+     * @return What needs to be pushed.
+     */
+    public synchronized Delta diff(final List<MinerStats> stats) {
+        final long now = System.currentTimeMillis();
+        final boolean snapshot =
+                this.snapshotRequired ||
+                        now - this.lastSnapshotMs >= this.snapshotIntervalMs;
+
+        final Map<SimpleMinerID, Integer> current =
+                new HashMap<>(stats.size());
+        final List<MinerStats> changed = new ArrayList<>();
+        for (final MinerStats minerStats : stats) {
+            final SimpleMinerID minerID =
+                    new SimpleMinerID(
+                            minerStats.getApiIp(),
+                            minerStats.getApiPort());
+            final int hash = minerStats.hashCode();
+            current.put(
+                    minerID,
+                    hash);
+            if (snapshot || !Objects.equals(this.pushed.get(minerID), hash)) {
+                changed.add(minerStats);
+            }
+        }
+
+        final List<SimpleMinerID> removed = new ArrayList<>();
+        if (!snapshot) {
+            for (final SimpleMinerID minerID : this.pushed.keySet()) {
+                if (!current.containsKey(minerID)) {
+                    removed.add(minerID);
+                }
+            }
+        } else {
+            this.lastSnapshotMs = now;
+            this.snapshotRequired = false;
+        }
+
+        this.pushed.clear();
+        this.pushed.putAll(current);
+
+        return Delta
+                .builder()
+                .changed(changed)
+                .removed(removed)
+                .snapshot(snapshot)
+                .build();
+    }
+
+    /** Forces the next push to be a full snapshot. */
+    public synchronized void invalidate() {
+        this.snapshotRequired = true;
+    }
+
+    /** What needs to be pushed. */
+    @Data
+    @Builder
+    public static class Delta {
+
+        /** The stats for the miners that changed. */
+        private final List<MinerStats> changed;
+
+        /** The miners that are no longer being reported. */
+        private final List<SimpleMinerID> removed;
+
+        /** Whether or not this is a full snapshot. */
+        private final boolean snapshot;
+    }
+}
@@ -1,5 +1,6 @@
 package mn.foreman.pickaxe.run;
 
+import mn.foreman.model.SimpleMinerID;
 import mn.foreman.model.miners.MinerStats;
 
 import java.time.ZonedDateTime;
@@ -20,4 +21,20 @@ public interface MetricsSender {
             AtomicLong queryTimeMs,
             ZonedDateTime publishTime,
             List<MinerStats> stats);
+
+    /**
+     * Sends only the metrics that changed since the previous push to the
+     * dashboard.  A report is sent even when nothing changed, since it's
+     * also the dashboard's heartbeat.
+     *
+     * @param queryTimeMs The query time (milliseconds).
+     * @param publishTime The publish time.
+     * @param changed     The metrics that changed.
+     * @param removed     The miners that are no longer being reported.
+     */
+    void sendDelta(
+            AtomicLong queryTimeMs,
+            ZonedDateTime publishTime,
+            List<MinerStats> changed,
+            List<SimpleMinerID> removed);
 }
@@ -1,6 +1,7 @@
 package mn.foreman.pickaxe.run;
 
 import mn.foreman.model.MetricsReport;
+import mn.foreman.model.SimpleMinerID;
 import mn.foreman.model.metadata.ApiVersion;
 import mn.foreman.model.metadata.Metadata;
 import mn.foreman.model.miners.MinerStats;
@@ -24,6 +25,9 @@ public class MetricsSenderImpl
     private static final Logger LOG =
             LoggerFactory.getLogger(MetricsSenderImpl.class);
 
+    /** The callback to invoke when a report couldn't be sent. */
+    private final Runnable failureCallback;
+
     /** The strategy to use for post-processing metrics. */
     private final MetricsProcessingStrategy strategy;
 
@@ -32,8 +36,47 @@ public class MetricsSenderImpl
      *
      * @param strategy The strategy to use for post-processing metrics.
      */
-    MetricsSenderImpl(final MetricsProcessingStrategy strategy) {
+    public MetricsSenderImpl(final MetricsProcessingStrategy strategy) {
+        this(
+                strategy,
+                () -> {
+                });
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param strategy        The strategy to use for post-processing metrics.
+     * @param failureCallback The callback to invoke when a report couldn't be
+     *                        sent.
+     */
+    public MetricsSenderImpl(
+            final MetricsProcessingStrategy strategy,
+            final Runnable failureCallback) {
         this.strategy = strategy;
+        this.failureCallback = failureCallback;
+    }
+
+    @Override
+    public void sendDelta(
+            final AtomicLong queryTimeMs,
+            final ZonedDateTime publishTime,
+            final List<MinerStats> changed,
+            final List<SimpleMinerID> removed) {
+        final MetricsReport.Builder builder =
+                toBuilder(
+                        ApiVersion.V1_1_0,
+                        queryTimeMs,
+                        publishTime)
+                        .setDelta(true);
+        if (changed.isEmpty() && removed.isEmpty()) {
+            // Still sent so the dashboard keeps getting the heartbeat and
+            // loop time while nothing changes
+            LOG.info("No miner stats changes to report");
+        }
+        changed.forEach(builder::addMinerStats);
+        removed.forEach(builder::addRemovedMiner);
+        send(builder);
     }
 
     @Override
@@ -42,28 +85,61 @@ public class MetricsSenderImpl
             final ZonedDateTime publishTime,
             final List<MinerStats> stats) {
         final MetricsReport.Builder builder =
-                new MetricsReport.Builder()
-                        .setMetadata(
-                                new Metadata.Builder()
-                                        .setApiVersion(ApiVersion.V1_0_0)
-                                        .setTimestamp(publishTime)
-                                        .build())
-                        .setLoopTimeMs(queryTimeMs.get());
+                toBuilder(
+                        ApiVersion.V1_0_0,
+                        queryTimeMs,
+                        publishTime);
         if (!stats.isEmpty()) {
             stats.forEach(builder::addMinerStats);
-            try {
-                // Metrics could be empty if everything was down
-                final MetricsReport metricsReport =
-                        builder.build();
-
-                LOG.debug("Generated report: {}", metricsReport);
-
-                this.strategy.process(metricsReport);
-            } catch (final Exception e) {
-                LOG.warn("Exception occurred while generating report", e);
-            }
+            send(builder);
         } else {
             LOG.info("No miner stats to report");
         }
     }
+
+    /**
+     * Creates a builder for a report.
+     *
+     * @param apiVersion  The report version.
+     * @param queryTimeMs The query time (milliseconds).
+     * @param publishTime The publish time.
+     *
+     * @return The builder.
+     */
+    private static MetricsReport.Builder toBuilder(
+            final ApiVersion apiVersion,
+            final AtomicLong queryTimeMs,
+            final ZonedDateTime publishTime) {
+        return new MetricsReport.Builder()
+                .setMetadata(
+                        new Metadata.Builder()
+                                .setApiVersion(apiVersion)
+                                .setTimestamp(publishTime)
+                                .build())
+                .setLoopTimeMs(queryTimeMs.get());
+    }
+
+    /**
+     * Builds and sends the report, notifying the failure callback if it
+     * couldn't be sent.
+     *
+     * @param builder The report builder.
+     */
+    private void send(final MetricsReport.Builder builder) {
+        boolean sent = false;
+        try {
+            // Metrics could be empty if everything was down
+            final MetricsReport metricsReport =
+                    builder.build();
+
+            LOG.debug("Generated report: {}", metricsReport);
+
+            sent = this.strategy.process(metricsReport);
+        } catch (final Exception e) {
+            LOG.warn("Exception occurred while generating report", e);
+        }
+        if (!sent) {
+            this.failureCallback.run();
+        }
+    }
 }
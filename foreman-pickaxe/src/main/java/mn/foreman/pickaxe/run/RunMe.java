@@ -6,22 +6,32 @@ import mn.foreman.api.JdkWebUtil;
 import mn.foreman.api.endpoints.pickaxe.Pickaxe;
 import mn.foreman.api.model.CommandStart;
 import mn.foreman.api.model.Commands;
+import mn.foreman.io.ConnectionFactory;
 import mn.foreman.io.Query;
 import mn.foreman.model.ApplicationConfiguration;
 import mn.foreman.model.Miner;
 import mn.foreman.model.MinerID;
+import mn.foreman.model.cache.ColumnarStatsCache;
+import mn.foreman.model.cache.FileFingerprintCache;
+import mn.foreman.model.cache.FingerprintCache;
+import mn.foreman.model.cache.MacCache;
+import mn.foreman.model.cache.NullFingerprintCache;
+import mn.foreman.model.cache.NullMacCache;
+import mn.foreman.model.cache.SelfExpiringMacCache;
 import mn.foreman.model.cache.SelfExpiringStatsCache;
 import mn.foreman.model.cache.StatsCache;
 import mn.foreman.pickaxe.command.*;
 import mn.foreman.pickaxe.command.asic.AsicStrategyFactory;
 import mn.foreman.pickaxe.command.asic.ManufacturerContext;
 import mn.foreman.pickaxe.command.asic.NullPostProcessor;
+import mn.foreman.pickaxe.command.asic.scan.ConnectProbingStrategy;
+import mn.foreman.pickaxe.command.asic.scan.NullProbingStrategy;
+import mn.foreman.pickaxe.command.asic.scan.ScanScheduler;
 import mn.foreman.pickaxe.command.asic.scan.ScanStrategy;
 import mn.foreman.pickaxe.contraints.*;
 import mn.foreman.pickaxe.miners.MinerConfiguration;
 import mn.foreman.pickaxe.miners.remote.RemoteConfiguration;
 import mn.foreman.pickaxe.process.HttpPostMetricsProcessingStrategy;
-import mn.foreman.pickaxe.process.MetricsProcessingStrategy;
 import mn.foreman.pickaxe.run.thread.*;
 
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -41,12 +51,14 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /** {@link RunMe} provides the application context for PICKAXE. */
 @SuppressWarnings("UnstableApiUsage")
@@ -60,16 +72,52 @@ public class RunMe {
     private static final List<String> ALL_MACS =
             Collections.singletonList("*");
 
+    /** The maximum number of miners to query at once when polling async. */
+    private static final int ASYNC_STATS_IN_FLIGHT;
+
+    /** Whether or not stats should be obtained using the async poller. */
+    private static final boolean ASYNC_STATS_POLLING;
+
+    /** Whether or not stats should be held in primitive columns. */
+    private static final boolean COLUMNAR_STATS;
+
     /** The number of threads to use for running commands. */
     private static final int COMMAND_THREADS;
 
+    /** Whether or not only the metrics that changed should be pushed. */
+    private static final boolean DELTA_METRICS;
+
+    /** How often a full snapshot is pushed when pushing deltas (minutes). */
+    private static final int DELTA_METRICS_SNAPSHOT_MINUTES;
+
+    /**
+     * How long miner fingerprints are trusted during scans (days), or 0 to
+     * detect every miner from scratch.
+     */
+    private static final int FINGERPRINT_CACHE_DAYS;
+
     /** The Foreman base URL. */
     private static final String FOREMAN_BASE_URL;
 
+    /** Whether or not metrics uploads should be gzip-compressed. */
+    private static final boolean GZIP_METRICS;
+
     /** The logger for this class. */
     private final static Logger LOG =
             LoggerFactory.getLogger(RunMe.class);
 
+    /**
+     * How long MACs are trusted for GUARDrail checks (minutes), or 0 to query
+     * the miner for every check.
+     */
+    private static final int MAC_CACHE_MINUTES;
+
+    /** The most threads to query MACs with, across every vendor. */
+    private static final int MAC_SWEEP_MAX_THREADS;
+
+    /** The number of threads to query each vendor's MACs with. */
+    private static final int MAC_SWEEP_THREADS;
+
     /** The number of threads to use for metrics sending. */
     private static final int METRICS_THREADS;
 
@@ -83,6 +131,12 @@ public class RunMe {
     /** The directory where Pickaxe is installed. */
     private static final String PICKAXE_HOME;
 
+    /**
+     * The maximum number of connect probes outstanding during scans, or 0 to
+     * run the full detection against every IP.
+     */
+    private static final int SCAN_PROBE_IN_FLIGHT;
+
     /** The number of threads to use for scanning. */
     private static final int SCANNER_THREADS;
 
@@ -96,6 +150,54 @@ public class RunMe {
                 System.getProperty(
                         "FOREMAN_BASE_URL",
                         "https://api.foreman.mn");
+        ASYNC_STATS_POLLING =
+                Boolean.parseBoolean(
+                        System.getProperty(
+                                "ASYNC_STATS",
+                                "false"));
+        ASYNC_STATS_IN_FLIGHT =
+                Integer.getInteger(
+                        "ASYNC_STATS_IN_FLIGHT",
+                        2048);
+        COLUMNAR_STATS =
+                Boolean.parseBoolean(
+                        System.getProperty(
+                                "COLUMNAR_STATS",
+                                "false"));
+        DELTA_METRICS =
+                Boolean.parseBoolean(
+                        System.getProperty(
+                                "DELTA_METRICS",
+                                "false"));
+        DELTA_METRICS_SNAPSHOT_MINUTES =
+                Integer.getInteger(
+                        "DELTA_METRICS_SNAPSHOT_MINUTES",
+                        10);
+        GZIP_METRICS =
+                Boolean.parseBoolean(
+                        System.getProperty(
+                                "GZIP_METRICS",
+                                "false"));
+        SCAN_PROBE_IN_FLIGHT =
+                Integer.getInteger(
+                        "SCAN_PROBE_IN_FLIGHT",
+                        4096);
+        FINGERPRINT_CACHE_DAYS =
+                Integer.getInteger(
+                        "FINGERPRINT_CACHE_DAYS",
+                        14);
+        MAC_CACHE_MINUTES =
+                Integer.getInteger(
+                        "MAC_CACHE_MINUTES",
+                        30);
+        MAC_SWEEP_MAX_THREADS =
+                Integer.getInteger(
+                        "MAC_SWEEP_MAX_THREADS",
+                        128);
+        MAC_SWEEP_THREADS =
+                Integer.getInteger(
+                        "MAC_SWEEP_THREADS",
+                        64);
         COMMAND_THREADS = Runtime.getRuntime().availableProcessors() * 8;
         STATS_THREADS = Runtime.getRuntime().availableProcessors() * 8;
         METRICS_THREADS = Runtime.getRuntime().availableProcessors() * 4;
@@ -127,6 +229,15 @@ public class RunMe {
     /** Whether or not commands were successfully cancelled. */
     private final AtomicBoolean cancelledCommands = new AtomicBoolean(false);
 
+    /** Tracks the miners whose stats polls are failing. */
+    private final MinerCircuitBreaker circuitBreaker =
+            new MinerCircuitBreaker(
+                    30,
+                    TimeUnit.MINUTES.toSeconds(30),
+                    TimeUnit.SECONDS,
+                    2,
+                    TimeUnit.SECONDS);
+
     /** The client ID. */
     private final AtomicReference<String> clientId = new AtomicReference<>();
 
@@ -144,6 +255,18 @@ public class RunMe {
     /** Whether or not Pickaxe is running with control permissions. */
     private final AtomicBoolean control = new AtomicBoolean(true);
 
+    /** The miners that were previously detected by scans. */
+    private final FingerprintCache fingerprintCache =
+            FINGERPRINT_CACHE_DAYS > 0 && PICKAXE_HOME != null
+                    ? new FileFingerprintCache(
+                    Paths.get(
+                            PICKAXE_HOME,
+                            "data",
+                            "fingerprints.tsv"),
+                    FINGERPRINT_CACHE_DAYS,
+                    TimeUnit.DAYS)
+                    : new NullFingerprintCache();
+
     /** The {@link ForemanApi}. */
     private final AtomicReference<ForemanApi> foremanApi =
             new AtomicReference<>();
@@ -163,6 +286,17 @@ public class RunMe {
     /** The total metrics iteration time. */
     private final AtomicLong iterationTime = new AtomicLong(0);
 
+    /**
+     * The MACs of the configured miners, refreshed by every MAC sweep, which
+     * runs more often than they expire.
+     */
+    private final MacCache macCache =
+            MAC_CACHE_MINUTES > 0
+                    ? new SelfExpiringMacCache(
+                    MAC_CACHE_MINUTES,
+                    TimeUnit.MINUTES)
+                    : new NullMacCache();
+
     /** The thread pool for querying MACs. */
     private final Executor macThreadPool =
             Executors.newSingleThreadExecutor(
@@ -192,6 +326,12 @@ public class RunMe {
     private final Map<String, RateLimiter> rateLimiters =
             new ConcurrentHashMap<>();
 
+    /** Hands out the jobs from every kind of scan to the scanners. */
+    private final ScanScheduler scanScheduler =
+            new ScanScheduler(
+                    8,
+                    SCANNER_THREADS);
+
     /** The thread pool for scheduled services. */
     private final ScheduledExecutorService serviceThreadPool =
             Executors.newScheduledThreadPool(
@@ -210,7 +350,12 @@ public class RunMe {
 
     /** An in-memory cache for holding all of the active stats. */
     private final StatsCache statsCache =
-            new SelfExpiringStatsCache(
+            COLUMNAR_STATS
+                    ? new ColumnarStatsCache(
+                    120,
+                    TimeUnit.SECONDS,
+                    1024)
+                    : new SelfExpiringStatsCache(
                     120,
                     TimeUnit.SECONDS);
 
@@ -242,21 +387,12 @@ public class RunMe {
     /** The thread pool for metrics sending. */
     private WorkerPool metricsThreadPool;
 
-    /** The thread pool for scanning (non-targeted, ranges). */
-    private WorkerPool rangesThreadPool;
-
-    /** The thread pool for scanning (non-targeted, stop/stop). */
-    private WorkerPool startStopThreadPool;
+    /** The thread pool for scanning. */
+    private WorkerPool scanThreadPool;
 
     /** The thread pool for running tasks. */
     private WorkerPool statsThreadPool;
 
-    /** The thread pool for scanning (targeted, ranges). */
-    private WorkerPool targetedRangesThreadPool;
-
-    /** The thread pool for scanning (targeted, stop/stop). */
-    private WorkerPool targetedStartStopThreadPool;
-
     /**
      * Constructor.
      *
@@ -293,7 +429,8 @@ public class RunMe {
                 new RemoteConfiguration(
                         this.foremanApi,
                         this.applicationConfiguration,
-                        this.ipValidator);
+                        this.ipValidator,
+                        this.macCache);
     }
 
     /**
@@ -308,16 +445,46 @@ public class RunMe {
             cancelCommands();
         }
 
-        final MetricsProcessingStrategy metricsProcessingStrategy =
+        final HttpPostMetricsProcessingStrategy metricsProcessingStrategy =
                 new HttpPostMetricsProcessingStrategy(
                         FOREMAN_BASE_URL,
                         this.clientId,
                         this.pickaxeId,
-                        this.apiKey);
+                        this.apiKey,
+                        METRICS_THREADS,
+                        GZIP_METRICS);
+        this.serviceThreadPool.scheduleWithFixedDelay(
+                () -> {
+                    try {
+                        LOG.info("Metrics upload stats: {}",
+                                metricsProcessingStrategy.getStats());
+                    } catch (final Throwable t) {
+                        LOG.warn("Exception while summarizing uploads", t);
+                    }
+                },
+                5,
+                5,
+                TimeUnit.MINUTES);
+        Runtime.getRuntime().addShutdownHook(
+                new Thread(
+                        () -> {
+                            try {
+                                metricsProcessingStrategy.close();
+                            } catch (final IOException ioe) {
+                                LOG.warn("Failed to close the metrics client", ioe);
+                            }
+                        },
+                        "metrics-close"));
+
+        final MetricsDeltaTracker deltaTracker =
+                new MetricsDeltaTracker(
+                        DELTA_METRICS_SNAPSHOT_MINUTES,
+                        TimeUnit.MINUTES);
 
         final MetricsSender metricsSender =
                 new MetricsSenderImpl(
-                        metricsProcessingStrategy);
+                        metricsProcessingStrategy,
+                        deltaTracker::invalidate);
 
         final CommandFinalizer finalizer =
                 new CommandFinalizerImpl(
@@ -333,6 +500,7 @@ public class RunMe {
         startConfigQuerying();
         startUpdateMiners();
         startBlacklistFlush();
+        startFingerprintFlush();
         startMacQuerying();
         startCommandQuerying();
         startCommandFinishing(
@@ -360,10 +528,16 @@ public class RunMe {
                     System.currentTimeMillis() +
                             timeConfig.getTimeoutUnits().toMillis(timeConfig.getTimeout());
 
+            final int batchSize =
+                    this.applicationConfiguration.getMetricsBatchSize();
             final List<StatsBatch> batches =
-                    StatsBatch.toBatches(
+                    DELTA_METRICS
+                            ? StatsBatch.toBatches(
+                            deltaTracker.diff(this.statsCache.getMetrics()),
+                            batchSize)
+                            : StatsBatch.toBatches(
                             this.statsCache.getMetrics(),
-                            this.applicationConfiguration.getMetricsBatchSize());
+                            batchSize);
 
             final CountDownLatch doneLatch = new CountDownLatch(batches.size());
 
@@ -473,6 +647,40 @@ public class RunMe {
         return defaultSize;
     }
 
+    /**
+     * Returns the number of scanner threads, which is the largest of the
+     * per-scan overrides since every kind of scan shares them, or the default
+     * if none are set.
+     *
+     * @param pickaxeConfiguration The configuration.
+     *
+     * @return The number of scanner threads.
+     */
+    private static int toScannerThreads(
+            final Pickaxe.PickaxeConfiguration pickaxeConfiguration) {
+        final int override = Collections.max(
+                Arrays.asList(
+                        toDesired(
+                                pickaxeConfiguration,
+                                pickaxeConfiguration1 -> pickaxeConfiguration1.startStopScannerThreadsOverride,
+                                0),
+                        toDesired(
+                                pickaxeConfiguration,
+                                pickaxeConfiguration1 -> pickaxeConfiguration1.rangesScannerThreadsOverride,
+                                0),
+                        toDesired(
+                                pickaxeConfiguration,
+                                pickaxeConfiguration1 -> pickaxeConfiguration1.targetedStartStopScannerThreadsOverride,
+                                0),
+                        toDesired(
+                                pickaxeConfiguration,
+                                pickaxeConfiguration1 -> pickaxeConfiguration1.targetedRangesScannerThreadsOverride,
+                                0)));
+        return override > 0
+                ? override
+                : SCANNER_THREADS;
+    }
+
     /**
      * Writes the new options file.
      *
@@ -559,6 +767,49 @@ public class RunMe {
         return hasChanged;
     }
 
+    /**
+     * Drops the cached MACs of the miners that are no longer configured, since
+     * their IPs and ports may now belong to different miners.
+     *
+     * @param currentMiners The miners that were configured.
+     * @param newMiners     The miners that are now configured.
+     */
+    private void invalidateMacs(
+            final List<Miner> currentMiners,
+            final List<Miner> newMiners) {
+        final Set<MinerID> configured =
+                newMiners
+                        .stream()
+                        .map(Miner::getMinerID)
+                        .collect(Collectors.toSet());
+        currentMiners
+                .stream()
+                .map(Miner::getMinerID)
+                .filter(minerID -> !configured.contains(minerID))
+                .forEach(this.macCache::invalidate);
+    }
+
+    /**
+     * Queues the provided miner to be queried by the {@link StatsWorker} pool.
+     *
+     * @param miner    The miner to query.
+     * @param jobQueue The queue serviced by the workers.
+     *
+     * @return A future that completes once the miner has been queried.
+     */
+    private CompletableFuture<Void> queueStats(
+            final Miner miner,
+            final BlockingQueue<StatsWorker.StatJob> jobQueue) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        jobQueue.add(
+                StatsWorker.StatJob
+                        .builder()
+                        .miner(miner)
+                        .completionCallback(() -> future.complete(null))
+                        .build());
+        return future;
+    }
+
     /**
      * Resets the configuration back to the file-based config.
      *
@@ -639,6 +890,10 @@ public class RunMe {
                     try {
                         LOG.info("Flushing blacklist");
                         this.blacklistedMiners.clear();
+                        final Map<MinerID, MinerCircuitBreaker.Status> skipped =
+                                this.circuitBreaker.getStatus();
+                        LOG.info("Skipping {} miners with failing polls", skipped.size());
+                        LOG.debug("Skipped miners: {}", skipped);
                     } catch (final Throwable t) {
                         LOG.warn("Exception during blacklist flush", t);
                     }
@@ -685,50 +940,15 @@ public class RunMe {
 
     /** Schedules command and control querying. */
     private void startCommandQuerying() {
-        final BlockingQueue<ScanStrategy.Scanner.ScanJob> startStopJobs =
-                new LinkedBlockingQueue<>();
-        final BlockingQueue<ScanStrategy.Scanner.ScanJob> rangesJobs =
-                new LinkedBlockingQueue<>();
-        final BlockingQueue<ScanStrategy.Scanner.ScanJob> targetedStartStopJobs =
-                new LinkedBlockingQueue<>();
-        final BlockingQueue<ScanStrategy.Scanner.ScanJob> targetedRangesJobs =
-                new LinkedBlockingQueue<>();
-
-        this.startStopThreadPool =
+        this.scanThreadPool =
                 new WorkerPool(
-                        "scan-thread-pool-startstop",
-                        "scan-thread-pool-startstop-%d",
+                        "scan-thread-pool",
+                        "scan-thread-pool-%d",
                         () -> new ScanStrategy.Scanner(
-                                startStopJobs,
-                                this.applicationConfiguration));
-        this.startStopThreadPool.scaleWorkers(SCANNER_THREADS);
-
-        this.rangesThreadPool =
-                new WorkerPool(
-                        "scan-thread-pool-ranges",
-                        "scan-thread-pool-ranges-%d",
-                        () -> new ScanStrategy.Scanner(
-                                rangesJobs,
-                                this.applicationConfiguration));
-        this.rangesThreadPool.scaleWorkers(SCANNER_THREADS);
-
-        this.targetedStartStopThreadPool =
-                new WorkerPool(
-                        "scan-thread-pool-targetedstartstop",
-                        "scan-thread-pool-targetedstartstop-%d",
-                        () -> new ScanStrategy.Scanner(
-                                targetedStartStopJobs,
-                                this.applicationConfiguration));
-        this.targetedStartStopThreadPool.scaleWorkers(SCANNER_THREADS);
-
-        this.targetedRangesThreadPool =
-                new WorkerPool(
-                        "scan-thread-pool-targetedranges",
-                        "scan-thread-pool-targetedranges-%d",
-                        () -> new ScanStrategy.Scanner(
-                                targetedRangesJobs,
-                                this.applicationConfiguration));
-        this.targetedRangesThreadPool.scaleWorkers(SCANNER_THREADS);
+                                this.scanScheduler,
+                                this.applicationConfiguration,
+                                this.fingerprintCache));
+        this.scanThreadPool.scaleWorkers(SCANNER_THREADS);
 
         final ManufacturerContext manufacturerContext =
                 ManufacturerContext
@@ -748,14 +968,17 @@ public class RunMe {
                                 manufacturerContext,
                                 this.control,
                                 this.ipValidator,
-                                startStopJobs,
+                                this.scanScheduler,
                                 this.startStopScanLimiter,
-                                rangesJobs,
                                 this.rangesScanLimiter,
-                                targetedStartStopJobs,
                                 this.targetedScanLimiter,
-                                targetedRangesJobs,
-                                this.targetedRangesScanLimiter));
+                                this.targetedRangesScanLimiter,
+                                SCAN_PROBE_IN_FLIGHT > 0
+                                        ? new ConnectProbingStrategy(
+                                        SCAN_PROBE_IN_FLIGHT,
+                                        this.scanScheduler,
+                                        this.applicationConfiguration)
+                                        : new NullProbingStrategy()));
 
         this.commandThreadPool =
                 new WorkerPool(
@@ -834,6 +1057,9 @@ public class RunMe {
                                     currentMiners,
                                     newMiners)) {
                                 LOG.debug("A new configuration has been obtained");
+                                invalidateMacs(
+                                        currentMiners,
+                                        newMiners);
                                 this.miners.set(newMiners);
                                 this.blacklistedMiners.clear();
                             } else {
@@ -909,36 +1135,25 @@ public class RunMe {
                                                         pickaxeConfiguration,
                                                         pickaxeConfiguration1 -> pickaxeConfiguration1.commandThreadsOverride,
                                                         COMMAND_THREADS));
-                                        this.statsThreadPool.scaleWorkers(
-                                                toDesired(
-                                                        pickaxeConfiguration,
-                                                        pickaxeConfiguration1 -> pickaxeConfiguration1.statsThreadsOverride,
-                                                        STATS_THREADS));
+                                        if (this.statsThreadPool != null) {
+                                            this.statsThreadPool.scaleWorkers(
+                                                    toDesired(
+                                                            pickaxeConfiguration,
+                                                            pickaxeConfiguration1 -> pickaxeConfiguration1.statsThreadsOverride,
+                                                            STATS_THREADS));
+                                        }
                                         this.metricsThreadPool.scaleWorkers(
                                                 toDesired(
                                                         pickaxeConfiguration,
                                                         pickaxeConfiguration1 -> pickaxeConfiguration1.metricsThreadsOverride,
                                                         METRICS_THREADS));
-                                        this.startStopThreadPool.scaleWorkers(
-                                                toDesired(
-                                                        pickaxeConfiguration,
-                                                        pickaxeConfiguration1 -> pickaxeConfiguration1.startStopScannerThreadsOverride,
-                                                        SCANNER_THREADS));
-                                        this.rangesThreadPool.scaleWorkers(
-                                                toDesired(
-                                                        pickaxeConfiguration,
-                                                        pickaxeConfiguration1 -> pickaxeConfiguration1.rangesScannerThreadsOverride,
-                                                        SCANNER_THREADS));
-                                        this.targetedStartStopThreadPool.scaleWorkers(
-                                                toDesired(
-                                                        pickaxeConfiguration,
-                                                        pickaxeConfiguration1 -> pickaxeConfiguration1.targetedStartStopScannerThreadsOverride,
-                                                        SCANNER_THREADS));
-                                        this.targetedRangesThreadPool.scaleWorkers(
-                                                toDesired(
-                                                        pickaxeConfiguration,
-                                                        pickaxeConfiguration1 -> pickaxeConfiguration1.targetedRangesScannerThreadsOverride,
-                                                        SCANNER_THREADS));
+                                        // Every kind of scan shares the
+                                        // scanners, so the largest override
+                                        // wins
+                                        final int scannerThreads =
+                                                toScannerThreads(pickaxeConfiguration);
+                                        this.scanThreadPool.scaleWorkers(scannerThreads);
+                                        this.scanScheduler.setMaxConcurrency(scannerThreads);
                                         LOG.debug("New config: {}", this.applicationConfiguration);
                                     });
                         } catch (final Exception e) {
@@ -953,6 +1168,33 @@ public class RunMe {
                 TimeUnit.MINUTES);
     }
 
+    /**
+     * Periodically persists the {@link #fingerprintCache}, if it's backed by
+     * a file, so that scans after a restart benefit from it.
+     */
+    private void startFingerprintFlush() {
+        if (!(this.fingerprintCache instanceof FileFingerprintCache)) {
+            return;
+        }
+        final FileFingerprintCache fileCache =
+                (FileFingerprintCache) this.fingerprintCache;
+        this.serviceThreadPool.scheduleWithFixedDelay(
+                () -> {
+                    try {
+                        fileCache.flush();
+                    } catch (final Throwable t) {
+                        LOG.warn("Exception during fingerprint flush", t);
+                    }
+                },
+                1,
+                1,
+                TimeUnit.MINUTES);
+        Runtime.getRuntime().addShutdownHook(
+                new Thread(
+                        fileCache::close,
+                        "fingerprint-flush"));
+    }
+
     /**
      * Schedules the periodic querying of guardrail for configuration and
      * constraints.
@@ -1007,76 +1249,68 @@ public class RunMe {
                 new MacWorker(
                         this.miners,
                         this.blacklistedMiners,
-                        this.foremanApi));
+                        this.circuitBreaker,
+                        this.foremanApi,
+                        MAC_SWEEP_THREADS,
+                        MAC_SWEEP_MAX_THREADS));
     }
 
     /** Schedules the job to begin automatically updating miner stats. */
     private void startUpdateMiners() {
-        final BlockingQueue<StatsWorker.StatJob> jobQueue =
-                new LinkedBlockingQueue<>();
-        this.statsThreadPool =
-                new WorkerPool(
-                        "stats-thread-pool",
-                        "stats-thread-pool-%d",
-                        () -> new StatsWorker(
-                                this.blacklistedMiners,
-                                this.statsCache,
-                                jobQueue));
-        this.statsThreadPool.scaleWorkers(STATS_THREADS);
-
-        this.serviceThreadPool.execute(() -> {
-            //noinspection InfiniteLoopStatement
-            while (true) {
-                final long startTime = System.currentTimeMillis();
-
-                try {
-                    LOG.info("Creating stat jobs");
-
-                    final List<Miner> miners = this.miners.get();
-                    final CountDownLatch latch =
-                            new CountDownLatch(miners.size());
-                    for (final Miner miner : miners) {
-                        final StatsWorker.StatJob statJob =
-                                StatsWorker.StatJob
-                                        .builder()
-                                        .miner(miner)
-                                        .completionCallback(latch::countDown)
-                                        .build();
-
-                        // Rate limit, if applicable
-                        try {
-                            this.metricsLimiter.acquire();
-                        } catch (final Exception e) {
-                            // Ignore
-                        }
-                        jobQueue.add(statJob);
-                    }
-
-                    latch.await();
-                } catch (final Throwable t) {
-                    LOG.warn("Exception occurred while updating", t);
-                }
-
-                final long endTime = System.currentTimeMillis();
-                final long runTime = endTime - startTime;
-                this.iterationTime.set(runTime);
-
-                // Delay
-                final ApplicationConfiguration.TimeConfig config =
-                        this.applicationConfiguration.getCollectConfig();
-                final long delayMillis =
-                        config.getTimeoutUnits().toMillis(config.getTimeout());
+        final Function<Miner, CompletableFuture<Void>> statsPoller;
+        if (ASYNC_STATS_POLLING) {
+            LOG.info("Polling stats asynchronously ({} in flight)",
+                    ASYNC_STATS_IN_FLIGHT);
+            final AsyncStatsPoller poller =
+                    new AsyncStatsPoller(
+                            this.blacklistedMiners,
+                            this.circuitBreaker,
+                            this.statsCache,
+                            ConnectionFactory.getBlockingExecutor(),
+                            ASYNC_STATS_IN_FLIGHT);
+            statsPoller = poller::poll;
+        } else {
+            final BlockingQueue<StatsWorker.StatJob> jobQueue =
+                    new LinkedBlockingQueue<>();
+            this.statsThreadPool =
+                    new WorkerPool(
+                            "stats-thread-pool",
+                            "stats-thread-pool-%d",
+                            () -> new StatsWorker(
+                                    this.blacklistedMiners,
+                                    this.circuitBreaker,
+                                    this.statsCache,
+                                    jobQueue));
+            this.statsThreadPool.scaleWorkers(STATS_THREADS);
+            statsPoller =
+                    miner -> queueStats(
+                            miner,
+                            jobQueue);
+        }
 
-                if (runTime < delayMillis) {
-                    final long sleepTime = delayMillis - runTime;
-                    LOG.debug("Waiting {}ms before querying miners again", sleepTime);
+        final CollectScheduler collectScheduler =
+                new CollectScheduler(
+                        this.miners::get,
+                        () -> {
+                            final ApplicationConfiguration.TimeConfig config =
+                                    this.applicationConfiguration.getCollectConfig();
+                            return config.getTimeoutUnits().toMillis(config.getTimeout());
+                        },
+                        statsPoller,
+                        this.metricsLimiter::acquire,
+                        this.iterationTime);
+        this.serviceThreadPool.execute(collectScheduler);
+        this.serviceThreadPool.scheduleWithFixedDelay(
+                () -> {
                     try {
-                        TimeUnit.MILLISECONDS.sleep(sleepTime);
-                    } catch (final InterruptedException e) {
-                        // Ignore - try again
+                        LOG.info("Stats poll lateness: {}",
+                                collectScheduler.getLatenessSummary());
+                    } catch (final Throwable t) {
+                        LOG.warn("Exception while summarizing lateness", t);
                     }
-                }
-            }
-        });
+                },
+                5,
+                5,
+                TimeUnit.MINUTES);
     }
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+package mn.foreman.pickaxe.run.thread;
+
+import mn.foreman.model.Miner;
+import mn.foreman.model.MinerID;
+import mn.foreman.model.cache.StatsCache;
+import mn.foreman.model.miners.MinerStats;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * An {@link AsyncStatsPoller} is the event-driven counterpart to {@link
+ * StatsWorker}: rather than dedicating a thread to each in-flight miner, it
+ * starts every query via {@link Miner#getStatsAsync()} and updates the {@link
+ * StatsCache} from the completion callbacks.
+ *
+ * <p>Each query is started from the provided executor, since querying a
+ * miner that can only be queried synchronously blocks.  Asynchronous miners
+ * return immediately, so the executor only needs to be large enough for the
+ * synchronous ones.</p>
+ */
+public class AsyncStatsPoller {
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(AsyncStatsPoller.class);
+
+    /** All of the blacklisted miners. */
+    private final Set<MinerID> blacklistMiners;
+
+    /** Tracks the miners whose polls are failing. */
+    private final MinerCircuitBreaker circuitBreaker;
+
+    /** The maximum number of miners that may be queried at once. */
+    private final Semaphore inFlight;
+
+    /** The metrics cache. */
+    private final StatsCache statsCache;
+
+    /** The executor used to start each query. */
+    private final Executor threadPool;
+
+    /**
+     * Constructor.
+     *
+     * @param blacklistMiners The blacklisted miners.
+     * @param circuitBreaker  Tracks the miners whose polls are failing.
+     * @param statsCache      The metrics cache.
+     * @param threadPool      The executor used to start each query.
+     * @param maxInFlight     The maximum number of concurrent queries.
+     */
+    public AsyncStatsPoller(
+            final Set<MinerID> blacklistMiners,
+            final MinerCircuitBreaker circuitBreaker,
+            final StatsCache statsCache,
+            final Executor threadPool,
+            final int maxInFlight) {
+        this.blacklistMiners = blacklistMiners;
+        this.circuitBreaker = circuitBreaker;
+        this.statsCache = statsCache;
+        this.threadPool = threadPool;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Starts a query for the provided miner.
+     *
+     * <p>Note: this blocks while the maximum number of queries are in flight,
+     * applying back-pressure to the caller.</p>
+     *
+     * @param miner The miner.
+     *
+     * @return A future that completes once the cache has been updated, which
+     *         never completes exceptionally.
+     */
+    public CompletableFuture<Void> poll(final Miner miner) {
+        final MinerID minerID = miner.getMinerID();
+        if (this.blacklistMiners.contains(minerID)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        this.inFlight.acquireUninterruptibly();
+        return CompletableFuture
+                .supplyAsync(
+                        () -> this.circuitBreaker.allowRequest(minerID)
+                                ? miner.getStatsAsync()
+                                : CompletableFuture.<MinerStats>completedFuture(null),
+                        this.threadPool)
+                .thenCompose(future -> future)
+                .handle((stats, throwable) -> {
+                    try {
+                        if (throwable != null) {
+                            LOG.info("Failed to obtain metrics for {}",
+                                    miner,
+                                    throwable);
+                            this.circuitBreaker.recordFailure(
+                                    minerID,
+                                    throwable);
+                            this.statsCache.invalidate(minerID);
+                        } else if (stats != null) {
+                            this.statsCache.add(
+                                    minerID,
+                                    stats);
+                            this.circuitBreaker.recordSuccess(minerID);
+                            LOG.debug("Cached metrics for {}", miner);
+                        }
+                    } finally {
+                        this.inFlight.release();
+                    }
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,362 @@
+package mn.foreman.pickaxe.run.thread;
+
+import mn.foreman.model.Miner;
+import mn.foreman.model.MinerID;
+
+import lombok.Builder;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A {@link CollectScheduler} schedules each miner's stats poll independently,
+ * rather than querying every miner at once and waiting on the slowest.
+ *
+ * <p>Newly seen miners are given a random offset within the collect interval
+ * so that polls are spread evenly across it.  Once a poll completes, the
+ * miner is rescheduled one (jittered) interval after it was due, so a miner
+ * that's slow to respond only delays itself.  How late each poll started is
+ * recorded per miner and summarized by {@link #getLatenessSummary()}.</p>
+ *
+ * <p>The loop time that's reported to the dashboard becomes the longest time
+ * that any miner took, within each interval, from when it was due until its
+ * stats were obtained.</p>
+ */
+public class CollectScheduler
+        implements Runnable {
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(CollectScheduler.class);
+
+    /** The fraction of the interval that each poll may be moved by. */
+    private static final double JITTER = 0.1;
+
+    /** How often the miners are checked for changes (milliseconds). */
+    private static final long REFRESH_MS = TimeUnit.SECONDS.toMillis(1);
+
+    /** Invoked before each poll is started (rate limiting). */
+    private final Runnable beforeStart;
+
+    /** The polls waiting to be started. */
+    private final DelayQueue<ScheduledPoll> delayQueue = new DelayQueue<>();
+
+    /** The collect interval (milliseconds). */
+    private final LongSupplier intervalMs;
+
+    /** The loop time (milliseconds). */
+    private final AtomicLong iterationTime;
+
+    /** How late each miner's most recent poll was started (milliseconds). */
+    private final Map<MinerID, Long> lateness = new ConcurrentHashMap<>();
+
+    /**
+     * The longest time, within the current interval, from a poll being due
+     * until it completed (milliseconds).
+     */
+    private final AtomicLong maxCompletionMs = new AtomicLong();
+
+    /** The miners to poll. */
+    private final Supplier<List<Miner>> minerSupplier;
+
+    /** Starts a poll, returning a future that completes once it's done. */
+    private final Function<Miner, CompletableFuture<Void>> poller;
+
+    /** The miners that are currently queued or being polled. */
+    private final Set<MinerID> scheduled = ConcurrentHashMap.newKeySet();
+
+    /** The last set of miners that was seen. */
+    private List<Miner> lastMiners;
+
+    /** When the loop time was last updated. */
+    private long lastTickMs = System.currentTimeMillis();
+
+    /** The miners to poll, by ID. */
+    private volatile Map<MinerID, Miner> miners = Collections.emptyMap();
+
+    /**
+     * Constructor.
+     *
+     * @param minerSupplier The miners to poll.
+     * @param intervalMs    The collect interval (milliseconds).
+     * @param poller        Starts a poll, returning a future that completes
+     *                      once it's done.
+     * @param beforeStart   Invoked before each poll is started (rate
+     *                      limiting).
+     * @param iterationTime The loop time to update.
+     */
+    public CollectScheduler(
+            final Supplier<List<Miner>> minerSupplier,
+            final LongSupplier intervalMs,
+            final Function<Miner, CompletableFuture<Void>> poller,
+            final Runnable beforeStart,
+            final AtomicLong iterationTime) {
+        this.minerSupplier = minerSupplier;
+        this.intervalMs = intervalMs;
+        this.poller = poller;
+        this.beforeStart = beforeStart;
+        this.iterationTime = iterationTime;
+    }
+
+    /**
+     * Returns how late each miner's most recent poll was started.
+     *
+     * @return The lateness (milliseconds), by miner.
+     */
+    public Map<MinerID, Long> getLateness() {
+        return new HashMap<>(this.lateness);
+    }
+
+    /**
+     * Summarizes how late the miners' most recent polls were started.
+     *
+     * @return The summary.
+     */
+    public LatenessSummary getLatenessSummary() {
+        final long[] values =
+                this.lateness
+                        .values()
+                        .stream()
+                        .mapToLong(Long::longValue)
+                        .sorted()
+                        .toArray();
+        return LatenessSummary
+                .builder()
+                .miners(values.length)
+                .medianMs(toPercentile(values, 0.5))
+                .p95Ms(toPercentile(values, 0.95))
+                .maxMs(values.length > 0 ? values[values.length - 1] : 0)
+                .build();
+    }
+
+    @Override
+    public void run() {
+        //noinspection InfiniteLoopStatement
+        while (true) {
+            try {
+                refresh();
+                final ScheduledPoll poll =
+                        this.delayQueue.poll(
+                                REFRESH_MS,
+                                TimeUnit.MILLISECONDS);
+                if (poll != null) {
+                    start(poll);
+                }
+                tick();
+            } catch (final InterruptedException e) {
+                // Ignore - try again
+            } catch (final Throwable t) {
+                LOG.warn("Exception occurred while scheduling", t);
+            }
+        }
+    }
+
+    /**
+     * Returns a random offset of up to the provided bound, in either
+     * direction.
+     *
+     * @param bound The bound.
+     *
+     * @return The offset.
+     */
+    private static long toJitter(final long bound) {
+        return bound > 0
+                ? ThreadLocalRandom.current().nextLong(-bound, bound + 1)
+                : 0;
+    }
+
+    /**
+     * Returns the value at the provided percentile.
+     *
+     * @param sorted     The values, sorted.
+     * @param percentile The percentile (0 - 1).
+     *
+     * @return The value, or 0 if there aren't any.
+     */
+    private static long toPercentile(
+            final long[] sorted,
+            final double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        final int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /** Schedules any miners that have been added since the last check. */
+    private void refresh() {
+        final List<Miner> current = this.minerSupplier.get();
+        if (current == this.lastMiners) {
+            return;
+        }
+
+        final Map<MinerID, Miner> byId = new HashMap<>(current.size());
+        current.forEach(miner -> byId.put(miner.getMinerID(), miner));
+        this.miners = byId;
+        this.lastMiners = current;
+
+        final long now = System.currentTimeMillis();
+        final long interval = Math.max(1, this.intervalMs.getAsLong());
+        int added = 0;
+        for (final MinerID minerID : byId.keySet()) {
+            if (this.scheduled.add(minerID)) {
+                this.delayQueue.add(
+                        new ScheduledPoll(
+                                minerID,
+                                now + ThreadLocalRandom.current().nextLong(interval)));
+                added++;
+            }
+        }
+
+        LOG.info("Scheduling {} miners ({} new) across {}ms",
+                byId.size(),
+                added,
+                interval);
+    }
+
+    /**
+     * Schedules the next poll for a miner whose poll has completed.
+     *
+     * @param poll The completed poll.
+     */
+    private void reschedule(final ScheduledPoll poll) {
+        final long now = System.currentTimeMillis();
+        this.maxCompletionMs.accumulateAndGet(
+                now - poll.dueMs,
+                Math::max);
+
+        final long interval = this.intervalMs.getAsLong();
+        final long jitter = (long) (interval * JITTER);
+        long nextDueMs = poll.dueMs + interval + toJitter(jitter);
+        if (nextDueMs < now) {
+            // Fell behind - go again, but don't bunch up with the others
+            nextDueMs = now + Math.abs(toJitter(jitter));
+        }
+
+        this.delayQueue.add(
+                new ScheduledPoll(
+                        poll.minerID,
+                        nextDueMs));
+    }
+
+    /**
+     * Starts a poll that's due, dropping the miner if it's no longer
+     * configured.
+     *
+     * @param poll The poll.
+     */
+    private void start(final ScheduledPoll poll) {
+        final Miner miner = this.miners.get(poll.minerID);
+        if (miner == null) {
+            LOG.debug("No longer polling {}", poll.minerID);
+            this.scheduled.remove(poll.minerID);
+            this.lateness.remove(poll.minerID);
+            return;
+        }
+
+        this.lateness.put(
+                poll.minerID,
+                Math.max(0, System.currentTimeMillis() - poll.dueMs));
+
+        try {
+            this.beforeStart.run();
+        } catch (final Exception e) {
+            // Ignore
+        }
+
+        CompletableFuture<Void> future;
+        try {
+            future = this.poller.apply(miner);
+        } catch (final Exception e) {
+            LOG.warn("Failed to start poll for {}", miner, e);
+            future = CompletableFuture.completedFuture(null);
+        }
+        future.whenComplete((result, throwable) -> reschedule(poll));
+    }
+
+    /** Updates the loop time once per interval. */
+    private void tick() {
+        final long now = System.currentTimeMillis();
+        if (now - this.lastTickMs >= this.intervalMs.getAsLong()) {
+            this.lastTickMs = now;
+            this.iterationTime.set(this.maxCompletionMs.getAndSet(0));
+            LOG.debug("Max lateness: {}ms, loop time: {}ms",
+                    this.lateness
+                            .values()
+                            .stream()
+                            .mapToLong(Long::longValue)
+                            .max()
+                            .orElse(0),
+                    this.iterationTime.get());
+        }
+    }
+
+    /** A poll that's waiting for its due time. */
+    private static class ScheduledPoll
+            implements Delayed {
+
+        /** When the poll is due. */
+        private final long dueMs;
+
+        /** The miner to poll. */
+        private final MinerID minerID;
+
+        /**
+         * Constructor.
+         *
+         * @param minerID The miner to poll.
+         * @param dueMs   When the poll is due.
+         */
+        private ScheduledPoll(
+                final MinerID minerID,
+                final long dueMs) {
+            this.minerID = minerID;
+            this.dueMs = dueMs;
+        }
+
+        @Override
+        public int compareTo(final Delayed other) {
+            if (other instanceof ScheduledPoll) {
+                // Delays are read at different times, so they can't be ordered
+                return Long.compare(
+                        this.dueMs,
+                        ((ScheduledPoll) other).dueMs);
+            }
+            return Long.compare(
+                    getDelay(TimeUnit.MILLISECONDS),
+                    other.getDelay(TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(
+                    this.dueMs - System.currentTimeMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** How late the miners' most recent polls were started. */
+    @Data
+    @Builder
+    public static class LatenessSummary {
+
+        /** The latest that any poll was started (milliseconds). */
+        private final long maxMs;
+
+        /** The median lateness (milliseconds). */
+        private final long medianMs;
+
+        /** The number of miners that have been polled. */
+        private final int miners;
+
+        /** The 95th percentile lateness (milliseconds). */
+        private final long p95Ms;
+    }
+}
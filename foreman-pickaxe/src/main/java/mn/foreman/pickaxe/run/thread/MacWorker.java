@@ -4,23 +4,42 @@ import mn.foreman.api.ForemanApi;
 import mn.foreman.api.endpoints.miners.Miners;
 import mn.foreman.model.Miner;
 import mn.foreman.model.MinerID;
+import mn.foreman.pickaxe.command.asic.Manufacturer;
+import mn.foreman.pickaxe.contraints.ScopedMiner;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
-/** A worker for continuously querying and updating MACs. */
+/**
+ * A worker for continuously querying and updating MACs.
+ *
+ * <p>Each sweep queries the miners in parallel, with every manufacturer
+ * getting its own bounded set of threads so slow firmware can't hold up the
+ * rest.  The threads are split evenly between the manufacturers being queried
+ * so the total never exceeds {@link #maxConcurrency}.  Only
+ * MACs that are new or changed since they were last uploaded are sent, in
+ * batches as they're learned, and everything is re-sent every {@link
+ * #FULL_SYNC_SWEEPS} sweeps in case an upload was lost.</p>
+ *
+ * <p>Miners whose stats polls are failing are skipped until the {@link
+ * MinerCircuitBreaker} lets them be polled again.</p>
+ */
 public class MacWorker
         implements WorkerPool.Worker {
 
+    /** The most MACs to upload at once. */
+    private static final int BATCH_SIZE = 500;
+
+    /** The number of sweeps between uploads of every MAC. */
+    private static final int FULL_SYNC_SWEEPS = 6;
+
     /** The logger for this class. */
     private static final Logger LOG =
             LoggerFactory.getLogger(MacWorker.class);
@@ -28,73 +47,79 @@ public class MacWorker
     /** The blacklisted miners. */
     private final Set<MinerID> blacklistMiners;
 
+    /** Tracks the miners whose polls are failing. */
+    private final MinerCircuitBreaker circuitBreaker;
+
     /** The API handler. */
     private final AtomicReference<ForemanApi> foremanApi;
 
     /** The current miners. */
     private final AtomicReference<List<Miner>> miners;
 
+    /** The most threads to query with, across every manufacturer. */
+    private final int maxConcurrency;
+
+    /** The MACs that were found but not uploaded yet. */
+    private final Map<Miners.Miner, String> pending = new HashMap<>();
+
     /** Whether running. */
     private final AtomicBoolean running = new AtomicBoolean(false);
 
+    /** The MACs that were last uploaded. */
+    private final Map<MinerID, String> uploaded = new HashMap<>();
+
+    /** The number of threads to query each manufacturer's miners with. */
+    private final int vendorConcurrency;
+
+    /** The thread pools for querying each manufacturer's miners. */
+    private final Map<String, ThreadPoolExecutor> vendorThreadPools =
+            new ConcurrentHashMap<>();
+
+    /** The API that the {@link #uploaded} MACs were sent to. */
+    private ForemanApi uploadedTo;
+
     /**
      * Constructor.
      *
-     * @param miners          The miners.
-     * @param blacklistMiners The blacklisted miners.
-     * @param foremanApi      The API.
+     * @param miners            The miners.
+     * @param blacklistMiners   The blacklisted miners.
+     * @param circuitBreaker    Tracks the miners whose polls are failing.
+     * @param foremanApi        The API.
+     * @param vendorConcurrency The number of threads to query each
+     *                          manufacturer's miners with.
+     * @param maxConcurrency    The most threads to query with, across every
+     *                          manufacturer.
      */
     public MacWorker(
             final AtomicReference<List<Miner>> miners,
             final Set<MinerID> blacklistMiners,
-            final AtomicReference<ForemanApi> foremanApi) {
+            final MinerCircuitBreaker circuitBreaker,
+            final AtomicReference<ForemanApi> foremanApi,
+            final int vendorConcurrency,
+            final int maxConcurrency) {
         this.miners = miners;
         this.blacklistMiners = blacklistMiners;
+        this.circuitBreaker = circuitBreaker;
         this.foremanApi = foremanApi;
+        this.vendorConcurrency = vendorConcurrency;
+        this.maxConcurrency = maxConcurrency;
     }
 
     @Override
     public void close() throws IOException {
         this.running.set(false);
+        this.vendorThreadPools.values().forEach(ExecutorService::shutdownNow);
     }
 
     @Override
     public void run() {
         this.running.set(true);
         try {
+            int sweeps = 0;
             while (this.running.get()) {
                 LOG.info("Starting MAC querying...");
                 try {
-                    final Map<Miners.Miner, String> newMacs = new HashMap<>();
-                    this.miners
-                            .get()
-                            .stream()
-                            .filter(miner -> !this.blacklistMiners.contains(miner.getMinerID()))
-                            .forEach(miner -> {
-                                try {
-                                    LOG.info("Attempting to obtain MAC for {}", miner);
-                                    miner
-                                            .getMacAddress()
-                                            .map(String::toLowerCase)
-                                            .ifPresent(mac -> {
-                                                final Miners.Miner apiMiner =
-                                                        new Miners.Miner();
-                                                apiMiner.apiIp = miner.getIp();
-                                                apiMiner.apiPort = miner.getApiPort();
-                                                newMacs.put(
-                                                        apiMiner,
-                                                        mac);
-                                            });
-                                } catch (final Exception e) {
-                                    LOG.warn("Exception occurred while querying for MAC: {}",
-                                            miner,
-                                            e);
-                                }
-                            });
-                    this.foremanApi
-                            .get()
-                            .pickaxe()
-                            .updateMacs(newMacs);
+                    sweep(sweeps++ % FULL_SYNC_SWEEPS == 0);
                 } catch (final Throwable t) {
                     LOG.warn("Exception occurred while querying MACs", t);
                 }
@@ -109,4 +134,228 @@ public class MacWorker
             LOG.warn("Exception occurred", e);
         }
     }
+
+    /**
+     * Resizes the thread pool, growing the maximum before the core size (and
+     * shrinking it after) so the two never conflict.
+     *
+     * @param threadPool The thread pool.
+     * @param size       The new size.
+     */
+    private static void resize(
+            final ThreadPoolExecutor threadPool,
+            final int size) {
+        if (size > threadPool.getMaximumPoolSize()) {
+            threadPool.setMaximumPoolSize(size);
+            threadPool.setCorePoolSize(size);
+        } else {
+            threadPool.setCorePoolSize(size);
+            threadPool.setMaximumPoolSize(size);
+        }
+    }
+
+    /**
+     * Returns the manufacturer of the miner.
+     *
+     * @param miner The miner.
+     *
+     * @return The manufacturer, or <code>other</code> if it isn't known.
+     */
+    private static String toVendor(final Miner miner) {
+        return Optional
+                .of(miner)
+                .filter(ScopedMiner.class::isInstance)
+                .map(ScopedMiner.class::cast)
+                .flatMap(ScopedMiner::getManufacturer)
+                .map(Manufacturer::getName)
+                .orElse("other");
+    }
+
+    /**
+     * Queues the MAC to be uploaded if it's new or changed, uploading the
+     * pending MACs if there's a full batch.
+     *
+     * @param miner The miner.
+     * @param mac   The MAC.
+     */
+    private void found(
+            final Miner miner,
+            final String mac) {
+        final Map<Miners.Miner, String> batch;
+        synchronized (this) {
+            if (mac.equals(this.uploaded.get(miner.getMinerID()))) {
+                return;
+            }
+            final Miners.Miner apiMiner = new Miners.Miner();
+            apiMiner.apiIp = miner.getIp();
+            apiMiner.apiPort = miner.getApiPort();
+            this.pending.put(
+                    apiMiner,
+                    mac);
+            this.uploaded.put(
+                    miner.getMinerID(),
+                    mac);
+            if (this.pending.size() < BATCH_SIZE) {
+                return;
+            }
+            batch = takeBatch();
+        }
+        upload(batch);
+    }
+
+    /**
+     * Creates the thread pool for querying a manufacturer's miners, whose
+     * threads exit while idle between sweeps.
+     *
+     * @param vendor The manufacturer.
+     *
+     * @return The thread pool.
+     */
+    private ThreadPoolExecutor newVendorThreadPool(final String vendor) {
+        final ThreadPoolExecutor threadPool =
+                new ThreadPoolExecutor(
+                        1,
+                        1,
+                        1,
+                        TimeUnit.MINUTES,
+                        new LinkedBlockingQueue<>(),
+                        new ThreadFactoryBuilder()
+                                .setNameFormat("mac-" + vendor + "-%d")
+                                .setDaemon(true)
+                                .build());
+        threadPool.allowCoreThreadTimeOut(true);
+        return threadPool;
+    }
+
+    /**
+     * Obtains the MAC of the miner.
+     *
+     * @param miner The miner.
+     */
+    private void query(final Miner miner) {
+        try {
+            LOG.debug("Attempting to obtain MAC for {}", miner);
+            miner
+                    .getMacAddress()
+                    .map(String::toLowerCase)
+                    .ifPresent(mac -> found(miner, mac));
+        } catch (final Exception e) {
+            LOG.warn("Exception occurred while querying for MAC: {}",
+                    miner,
+                    e);
+        }
+    }
+
+    /**
+     * Queries the MAC of every miner, uploading the new and changed ones.
+     *
+     * @param fullSync Whether or not to upload every MAC, changed or not.
+     *
+     * @throws InterruptedException if interrupted while waiting for the
+     *                              queries to finish.
+     */
+    private void sweep(final boolean fullSync) throws InterruptedException {
+        final List<Miner> miners = this.miners.get();
+        synchronized (this) {
+            if (fullSync || this.uploadedTo != this.foremanApi.get()) {
+                // A new API won't have anything that was sent to the old one
+                this.uploaded.clear();
+            } else {
+                // Forget miners that were removed so they're re-sent if added
+                final Set<MinerID> configured = new HashSet<>();
+                miners.forEach(miner -> configured.add(miner.getMinerID()));
+                this.uploaded.keySet().retainAll(configured);
+            }
+        }
+
+        final long start = System.currentTimeMillis();
+        final Map<String, List<Miner>> vendors = new HashMap<>();
+        for (final Miner miner : miners) {
+            final MinerID minerID = miner.getMinerID();
+            if (!this.blacklistMiners.contains(minerID) &&
+                    !this.circuitBreaker.isOpen(minerID)) {
+                vendors
+                        .computeIfAbsent(
+                                toVendor(miner),
+                                vendor -> new ArrayList<>())
+                        .add(miner);
+            }
+        }
+
+        // Split the threads between the manufacturers being queried
+        final int concurrency =
+                Math.max(
+                        1,
+                        Math.min(
+                                this.vendorConcurrency,
+                                this.maxConcurrency / Math.max(1, vendors.size())));
+        final List<Future<?>> queries = new ArrayList<>(miners.size());
+        vendors.forEach((vendor, vendorMiners) -> {
+            final ThreadPoolExecutor threadPool =
+                    this.vendorThreadPools.computeIfAbsent(
+                            vendor,
+                            this::newVendorThreadPool);
+            resize(
+                    threadPool,
+                    concurrency);
+            vendorMiners.forEach(miner ->
+                    queries.add(threadPool.submit(() -> query(miner))));
+        });
+        for (final Future<?> query : queries) {
+            try {
+                query.get();
+            } catch (final ExecutionException e) {
+                // Already logged by the query
+            }
+        }
+
+        final Map<Miners.Miner, String> batch;
+        synchronized (this) {
+            batch = takeBatch();
+        }
+        upload(batch);
+        LOG.info("Queried {} MACs in {}ms",
+                queries.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Removes the pending MACs so they can be uploaded.
+     *
+     * <p>Note: must be called while synchronized on this worker.</p>
+     *
+     * @return The MACs.
+     */
+    private Map<Miners.Miner, String> takeBatch() {
+        this.uploadedTo = this.foremanApi.get();
+        final Map<Miners.Miner, String> batch = new HashMap<>(this.pending);
+        this.pending.clear();
+        return batch;
+    }
+
+    /**
+     * Uploads the MACs, if there are any.
+     *
+     * <p>Note: this is called without holding the lock so that other queries
+     * can keep queueing MACs while the upload is in progress.</p>
+     *
+     * @param batch The MACs.
+     */
+    private void upload(final Map<Miners.Miner, String> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            LOG.debug("Uploading {} MACs", batch.size());
+            this.foremanApi
+                    .get()
+                    .pickaxe()
+                    .updateMacs(batch);
+        } catch (final Exception e) {
+            LOG.warn("Failed to upload MACs - will retry next sweep", e);
+            synchronized (this) {
+                this.uploaded.clear();
+            }
+        }
+    }
 }
@@ -55,10 +55,18 @@ public class MetricsWorker
                 try {
                     final SendJob job = this.sendQueue.take();
                     try {
-                        this.metricsSender.sendMetrics(
-                                job.iterationTime,
-                                job.batch.getBatchTime(),
-                                job.batch.getBatch());
+                        if (job.batch.isDelta()) {
+                            this.metricsSender.sendDelta(
+                                    job.iterationTime,
+                                    job.batch.getBatchTime(),
+                                    job.batch.getBatch(),
+                                    job.batch.getRemoved());
+                        } else {
+                            this.metricsSender.sendMetrics(
+                                    job.iterationTime,
+                                    job.batch.getBatchTime(),
+                                    job.batch.getBatch());
+                        }
                     } finally {
                         job.completionCallback.run();
                     }
@@ -0,0 +1,397 @@
+package mn.foreman.pickaxe.run.thread;
+
+import mn.foreman.io.ConnectProbe;
+import mn.foreman.io.ConnectionFactory;
+import mn.foreman.model.MinerID;
+import mn.foreman.model.error.NotAuthenticatedException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Builder;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link MinerCircuitBreaker} tracks, per miner, whether stats polls are
+ * failing and, if so, how long polling should be skipped.
+ *
+ * <p>Every consecutive failure doubles (with jitter) the time that the miner
+ * is skipped, up to a maximum.  Once that time has elapsed, a cheap TCP
+ * connect to the miner's API port is started on the shared event loop, and
+ * only once it succeeds is the next poll let through as a trial, so
+ * unreachable miners never hold a worker for a full read timeout, nor for
+ * the connect.  A successful poll closes the circuit.</p>
+ *
+ * <p>Why each miner is being skipped can be obtained via {@link
+ * #getStatus()}.</p>
+ */
+public class MinerCircuitBreaker {
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(MinerCircuitBreaker.class);
+
+    /** The fraction of the backoff that it may be moved by. */
+    private static final double JITTER = 0.2;
+
+    /** The first backoff (milliseconds). */
+    private final long baseBackoffMs;
+
+    /** The circuits that aren't closed, by miner. */
+    private final Cache<MinerID, Circuit> circuits;
+
+    /** The largest backoff (milliseconds). */
+    private final long maxBackoffMs;
+
+    /** Probes the miners whose backoff has elapsed. */
+    private final ConnectProbe connectProbe;
+
+    /**
+     * Constructor.
+     *
+     * @param baseBackoff  The first backoff.
+     * @param maxBackoff   The largest backoff.
+     * @param backoffUnits The backoff units.
+     * @param probeTimeout The connect timeout used when probing.
+     * @param probeUnits   The probe timeout units.
+     */
+    public MinerCircuitBreaker(
+            final long baseBackoff,
+            final long maxBackoff,
+            final TimeUnit backoffUnits,
+            final int probeTimeout,
+            final TimeUnit probeUnits) {
+        this.baseBackoffMs = backoffUnits.toMillis(baseBackoff);
+        this.maxBackoffMs = backoffUnits.toMillis(maxBackoff);
+        this.connectProbe =
+                ConnectionFactory.createConnectProbe(
+                        probeTimeout,
+                        probeUnits);
+        // Forget miners that stopped being polled (ex: removed from the config)
+        this.circuits =
+                CacheBuilder.newBuilder()
+                        .expireAfterAccess(
+                                this.maxBackoffMs * 2,
+                                TimeUnit.MILLISECONDS)
+                        .build();
+    }
+
+    /**
+     * Determines whether or not the miner should be polled, starting a probe
+     * if its backoff has elapsed.  The probe never blocks the caller: the
+     * miner is polled the next time that it's asked for after the probe
+     * succeeded.
+     *
+     * @param minerID The miner.
+     *
+     * @return Whether or not the miner should be polled.
+     */
+    public boolean allowRequest(final MinerID minerID) {
+        final Circuit circuit = this.circuits.getIfPresent(minerID);
+        if (circuit == null) {
+            return true;
+        }
+
+        synchronized (circuit) {
+            switch (circuit.state) {
+                case PROBED:
+                    circuit.state = State.HALF_OPEN;
+                    return true;
+                case OPEN:
+                    if (System.currentTimeMillis() < circuit.retryAtMs) {
+                        return false;
+                    }
+                    circuit.state = State.PROBING;
+                    break;
+                default:
+                    // Already being probed, or another poll is the trial
+                    return false;
+            }
+        }
+
+        probe(
+                minerID,
+                circuit);
+        return false;
+    }
+
+    /**
+     * Returns why each miner is being skipped.
+     *
+     * @return The status of each miner whose circuit isn't closed.
+     */
+    public Map<MinerID, Status> getStatus() {
+        final Map<MinerID, Status> status = new HashMap<>();
+        this.circuits.asMap().forEach((minerID, circuit) ->
+                status.put(
+                        minerID,
+                        toStatus(circuit)));
+        return status;
+    }
+
+    /**
+     * Returns whether or not the miner is currently being skipped, without
+     * probing it.
+     *
+     * @param minerID The miner.
+     *
+     * @return Whether or not the miner is being skipped.
+     */
+    public boolean isOpen(final MinerID minerID) {
+        return this.circuits.getIfPresent(minerID) != null;
+    }
+
+    /**
+     * Records a failed poll.
+     *
+     * @param minerID The miner.
+     * @param cause   The failure.
+     */
+    public void recordFailure(
+            final MinerID minerID,
+            final Throwable cause) {
+        final Circuit circuit;
+        try {
+            circuit =
+                    this.circuits.get(
+                            minerID,
+                            Circuit::new);
+        } catch (final ExecutionException e) {
+            // Not possible - the loader can't fail
+            throw new IllegalStateException(e);
+        }
+        trip(
+                minerID,
+                circuit,
+                classify(cause),
+                cause.getMessage());
+    }
+
+    /**
+     * Records a successful poll.
+     *
+     * @param minerID The miner.
+     */
+    public void recordSuccess(final MinerID minerID) {
+        if (this.circuits.getIfPresent(minerID) != null) {
+            LOG.info("{} is responding again", minerID);
+            this.circuits.invalidate(minerID);
+        }
+    }
+
+    /**
+     * Determines why a poll failed.
+     *
+     * @param cause The failure.
+     *
+     * @return The reason.
+     */
+    private static Reason classify(final Throwable cause) {
+        Throwable current = cause;
+        while (current != null) {
+            if (current instanceof ConnectException) {
+                return Reason.CONNECT_REFUSED;
+            }
+            if (current instanceof NoRouteToHostException ||
+                    current instanceof UnknownHostException) {
+                return Reason.UNREACHABLE;
+            }
+            if (current instanceof SocketTimeoutException ||
+                    current instanceof InterruptedIOException ||
+                    current instanceof TimeoutException) {
+                return Reason.TIMEOUT;
+            }
+            if (current instanceof JsonProcessingException ||
+                    current instanceof NumberFormatException) {
+                return Reason.PARSE_ERROR;
+            }
+            if (current instanceof NotAuthenticatedException) {
+                return Reason.NOT_AUTHENTICATED;
+            }
+            current = current.getCause();
+        }
+        return Reason.NO_RESPONSE;
+    }
+
+    /**
+     * Captures the current state of a circuit.
+     *
+     * @param circuit The circuit.
+     *
+     * @return The status.
+     */
+    private static Status toStatus(final Circuit circuit) {
+        synchronized (circuit) {
+            return Status
+                    .builder()
+                    .failures(circuit.failures)
+                    .message(circuit.message)
+                    .reason(circuit.reason)
+                    .retryAtMs(circuit.retryAtMs)
+                    .state(circuit.state)
+                    .build();
+        }
+    }
+
+    /**
+     * Starts a connection to the miner, letting the next poll through if it
+     * succeeds and backing off further if it doesn't.
+     *
+     * @param minerID The miner.
+     * @param circuit The circuit.
+     */
+    private void probe(
+            final MinerID minerID,
+            final Circuit circuit) {
+        this.connectProbe
+                .connect(
+                        minerID.getApiIp(),
+                        minerID.getApiPort())
+                .whenComplete((ignored, throwable) -> {
+                    if (throwable == null) {
+                        synchronized (circuit) {
+                            if (circuit.state == State.PROBING) {
+                                circuit.state = State.PROBED;
+                            }
+                        }
+                    } else {
+                        final Reason probeFailure = classify(throwable);
+                        LOG.debug("Probe to {} failed: {}", minerID, probeFailure);
+                        trip(
+                                minerID,
+                                circuit,
+                                probeFailure,
+                                "API port isn't accepting connections");
+                    }
+                });
+    }
+
+    /**
+     * Opens the circuit, backing off further than the last time.
+     *
+     * @param minerID The miner.
+     * @param circuit The circuit.
+     * @param reason  Why it failed.
+     * @param message The failure message.
+     */
+    private void trip(
+            final MinerID minerID,
+            final Circuit circuit,
+            final Reason reason,
+            final String message) {
+        synchronized (circuit) {
+            circuit.failures++;
+            final long backoff =
+                    Math.min(
+                            this.maxBackoffMs,
+                            this.baseBackoffMs << Math.min(circuit.failures - 1, 30));
+            final long jitter = (long) (backoff * JITTER);
+            circuit.retryAtMs =
+                    System.currentTimeMillis() +
+                            backoff +
+                            (jitter > 0
+                                    ? ThreadLocalRandom.current().nextLong(-jitter, jitter + 1)
+                                    : 0);
+            circuit.reason = reason;
+            circuit.message = message;
+            circuit.state = State.OPEN;
+            LOG.info("Skipping {} for {}ms after {} failure(s): {}",
+                    minerID,
+                    circuit.retryAtMs - System.currentTimeMillis(),
+                    circuit.failures,
+                    reason);
+        }
+    }
+
+    /** Why polls to a miner are failing. */
+    public enum Reason {
+
+        /** The miner refused the connection. */
+        CONNECT_REFUSED,
+
+        /** The miner rejected the credentials. */
+        NOT_AUTHENTICATED,
+
+        /** The miner didn't return a usable response. */
+        NO_RESPONSE,
+
+        /** The miner's response couldn't be parsed. */
+        PARSE_ERROR,
+
+        /** The miner didn't respond in time. */
+        TIMEOUT,
+
+        /** The miner couldn't be reached. */
+        UNREACHABLE
+    }
+
+    /** The state of a miner's circuit. */
+    public enum State {
+
+        /** Polls are being skipped. */
+        OPEN,
+
+        /** The miner's API port is being probed. */
+        PROBING,
+
+        /** The probe succeeded, so the next poll will be the trial. */
+        PROBED,
+
+        /** A trial poll is being made. */
+        HALF_OPEN
+    }
+
+    /** Why a miner is being skipped. */
+    @Data
+    @Builder
+    public static class Status {
+
+        /** The number of consecutive failures. */
+        private final int failures;
+
+        /** The most recent failure message. */
+        private final String message;
+
+        /** Why the most recent poll failed. */
+        private final Reason reason;
+
+        /** When the miner will next be tried. */
+        private final long retryAtMs;
+
+        /** The circuit state. */
+        private final State state;
+    }
+
+    /** The mutable state of a miner's circuit. */
+    private static class Circuit {
+
+        /** The number of consecutive failures. */
+        private int failures;
+
+        /** The most recent failure message. */
+        private String message;
+
+        /** Why the most recent poll failed. */
+        private Reason reason;
+
+        /** When the miner will next be tried. */
+        private long retryAtMs;
+
+        /** The circuit state. */
+        private State state = State.OPEN;
+    }
+}
@@ -1,6 +1,8 @@
 package mn.foreman.pickaxe.run.thread;
 
+import mn.foreman.model.SimpleMinerID;
 import mn.foreman.model.miners.MinerStats;
+import mn.foreman.pickaxe.run.MetricsDeltaTracker;
 
 import com.google.common.collect.Lists;
 import lombok.Builder;
@@ -10,6 +12,7 @@ import org.slf4j.LoggerFactory;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /** A batch of metrics to send. */
@@ -27,6 +30,12 @@ public class StatsBatch {
     /** The batch time. */
     private final ZonedDateTime batchTime;
 
+    /** Whether or not the batch only contains changes. */
+    private final boolean delta;
+
+    /** The miners that are no longer being reported. */
+    private final List<SimpleMinerID> removed;
+
     /**
      * Creates batches from the provided stats.
      *
@@ -52,6 +61,58 @@ public class StatsBatch {
                             .builder()
                             .batchTime(batchStartTime.plusSeconds(i))
                             .batch(rawBatches.get(i))
+                            .removed(Collections.emptyList())
+                            .build());
+        }
+        return batches;
+    }
+
+    /**
+     * Creates batches from the provided delta.  Full snapshots are batched
+     * like any other stats.  Otherwise, the removed miners are sent with the
+     * first batch, and nothing is sent if nothing changed.
+     *
+     * @param delta     The delta.
+     * @param batchSize The batch size.
+     *
+     * @return The batches.
+     */
+    public static List<StatsBatch> toBatches(
+            final MetricsDeltaTracker.Delta delta,
+            final int batchSize) {
+        if (delta.isSnapshot()) {
+            return toBatches(
+                    delta.getChanged(),
+                    batchSize);
+        }
+
+        LOG.debug("Batching {} changed and {} removed stats using a size of {}",
+                delta.getChanged().size(),
+                delta.getRemoved().size(),
+                batchSize);
+
+        final ZonedDateTime batchStartTime = ZonedDateTime.now();
+        final List<List<MinerStats>> rawBatches =
+                new ArrayList<>(
+                        Lists.partition(
+                                delta.getChanged(),
+                                batchSize));
+        if (rawBatches.isEmpty() && !delta.getRemoved().isEmpty()) {
+            rawBatches.add(Collections.emptyList());
+        }
+
+        final List<StatsBatch> batches = new ArrayList<>(rawBatches.size());
+        for (int i = 0; i < rawBatches.size(); i++) {
+            batches.add(
+                    StatsBatch
+                            .builder()
+                            .batchTime(batchStartTime.plusSeconds(i))
+                            .batch(rawBatches.get(i))
+                            .delta(true)
+                            .removed(
+                                    i == 0
+                                            ? delta.getRemoved()
+                                            : Collections.emptyList())
                             .build());
         }
         return batches;
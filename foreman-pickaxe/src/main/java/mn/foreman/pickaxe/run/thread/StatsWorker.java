@@ -25,6 +25,9 @@ public class StatsWorker
     /** All of the blacklisted miners. */
     private final Set<MinerID> blacklistMiners;
 
+    /** Tracks the miners whose polls are failing. */
+    private final MinerCircuitBreaker circuitBreaker;
+
     /** The work queue. */
     private final BlockingQueue<StatJob> miners;
 
@@ -38,14 +41,17 @@ public class StatsWorker
      * Constructor.
      *
      * @param blacklistMiners The blacklisted miners.
+     * @param circuitBreaker  Tracks the miners whose polls are failing.
      * @param statsCache      The metrics cache.
      * @param miners          The work queue.
      */
     public StatsWorker(
             final Set<MinerID> blacklistMiners,
+            final MinerCircuitBreaker circuitBreaker,
             final StatsCache statsCache,
             final BlockingQueue<StatJob> miners) {
         this.blacklistMiners = blacklistMiners;
+        this.circuitBreaker = circuitBreaker;
         this.statsCache = statsCache;
         this.miners = miners;
     }
@@ -68,17 +74,21 @@ public class StatsWorker
 
                     try {
                         final MinerID minerID = miner.getMinerID();
-                        if (!this.blacklistMiners.contains(minerID)) {
+                        if (!this.blacklistMiners.contains(minerID) &&
+                                this.circuitBreaker.allowRequest(minerID)) {
                             try {
                                 this.statsCache.add(
                                         minerID,
                                         miner.getStats());
+                                this.circuitBreaker.recordSuccess(minerID);
                                 LOG.debug("Cached metrics for {}", miner);
                             } catch (final Exception e) {
                                 LOG.info("Failed to obtain metrics for {}",
                                         miner,
                                         e);
-                                this.blacklistMiners.add(minerID);
+                                this.circuitBreaker.recordFailure(
+                                        minerID,
+                                        e);
                                 this.statsCache.invalidate(minerID);
                             }
                         }
@@ -2,8 +2,10 @@ package mn.foreman.pickaxe.util;
 
 import mn.foreman.api.endpoints.pickaxe.Pickaxe;
 import mn.foreman.model.Miner;
+import mn.foreman.model.cache.MacCache;
 import mn.foreman.pickaxe.contraints.IpValidator;
 import mn.foreman.pickaxe.contraints.ScopedMiner;
+import mn.foreman.pickaxe.miners.remote.MinerTypeFactory;
 
 import java.util.HashMap;
 import java.util.List;
@@ -19,6 +21,7 @@ public class MinerUtils {
      * @param config       The config.
      * @param minerFactory The factory.
      * @param validator    The validator.
+     * @param macCache     The cache of known MACs.
      *
      * @return The {@link Miner}.
      */
@@ -26,7 +29,8 @@ public class MinerUtils {
             final int port,
             final Pickaxe.MinerConfig config,
             final mn.foreman.model.MinerFactory minerFactory,
-            final IpValidator validator) {
+            final IpValidator validator,
+            final MacCache macCache) {
         final Map<String, Object> params = new HashMap<>();
         params.put(
                 "apiIp",
@@ -39,7 +43,11 @@ public class MinerUtils {
                 config.params);
         return new ScopedMiner(
                 minerFactory.create(params),
-                validator);
+                validator,
+                macCache,
+                MinerTypeFactory
+                        .toManufacturer(config.apiType)
+                        .orElse(null));
     }
 
     /**
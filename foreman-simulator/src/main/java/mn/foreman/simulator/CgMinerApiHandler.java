@@ -0,0 +1,277 @@
+package mn.foreman.simulator;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serves the cgminer JSON socket API for a {@link VirtualMiner}: one request
+ * per connection, with the response written before the connection is closed.
+ *
+ * <p>Commands may be joined with <code>+</code>, in which case each response
+ * is wrapped in a section named after its command.  Whatsminers also answer
+ * the plain btminer reads (ex: <code>get_psu</code>) and the encrypted writes
+ * that are sent as <code>{"enc":1,"data":...}</code> after a
+ * <code>get_token</code>.</p>
+ */
+class CgMinerApiHandler
+        extends SimpleChannelInboundHandler<ByteBuf> {
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(CgMinerApiHandler.class);
+
+    /** The mapper for reading requests. */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /** How long a miner waits before rebooting after being told to. */
+    private static final long REBOOT_DELAY_MS = 1000;
+
+    /** The btminer reads that are answered without encryption. */
+    private static final Set<String> WHATSMINER_READS =
+            ImmutableSet.of(
+                    "get_error_code",
+                    "get_miner_info",
+                    "get_psu",
+                    "get_token",
+                    "status");
+
+    /** The farm. */
+    private final MinerFarm farm;
+
+    /** The miner being served. */
+    private final VirtualMiner miner;
+
+    /**
+     * Constructor.
+     *
+     * @param farm  The farm.
+     * @param miner The miner being served.
+     */
+    CgMinerApiHandler(
+            final MinerFarm farm,
+            final VirtualMiner miner) {
+        this.farm = farm;
+        this.miner = miner;
+    }
+
+    @Override
+    public void exceptionCaught(
+            final ChannelHandlerContext context,
+            final Throwable cause) {
+        LOG.debug("Exception occurred on {}", this.miner, cause);
+        context.close();
+    }
+
+    @Override
+    protected void channelRead0(
+            final ChannelHandlerContext context,
+            final ByteBuf request) {
+        String response;
+        try {
+            final Map<String, Object> json =
+                    OBJECT_MAPPER.readValue(
+                            request.toString(StandardCharsets.UTF_8),
+                            new TypeReference<Map<String, Object>>() {
+                            });
+            if (json.containsKey("enc")) {
+                response = toEncryptedResponse(json);
+            } else {
+                final Object command =
+                        json.containsKey("command")
+                                ? json.get("command")
+                                : json.get("cmd");
+                if (command == null) {
+                    response = toCgMinerError("Missing JSON 'command'");
+                } else if (this.miner.getFirmware() == Firmware.WHATSMINER &&
+                        WHATSMINER_READS.contains(command.toString())) {
+                    response = toWhatsminerRead(command.toString());
+                } else {
+                    response = toCgMinerResponse(command.toString());
+                }
+            }
+        } catch (final IOException e) {
+            response = toCgMinerError("Invalid JSON");
+        }
+
+        this.farm.respond(
+                context,
+                this.miner,
+                response,
+                body -> Unpooled.copiedBuffer(body, StandardCharsets.UTF_8),
+                true);
+    }
+
+    /**
+     * Creates a cgminer error response.
+     *
+     * @param message The message.
+     *
+     * @return The response.
+     */
+    private static String toCgMinerError(final String message) {
+        return String.format(
+                "{\"STATUS\":[{\"STATUS\":\"E\",\"When\":%d,\"Code\":14,\"Msg\":\"%s\",\"Description\":\"cgminer\"}],\"id\":1}",
+                System.currentTimeMillis() / 1000,
+                message);
+    }
+
+    /**
+     * Creates a btminer response with the provided status.
+     *
+     * @param status  The status.
+     * @param code    The code.
+     * @param message The message.
+     *
+     * @return The response.
+     */
+    private static String toWhatsminerStatus(
+            final String status,
+            final int code,
+            final String message) {
+        return String.format(
+                "{\"STATUS\":\"%s\",\"When\":%d,\"Code\":%d,\"Msg\":\"%s\",\"Description\":\"\"}",
+                status,
+                System.currentTimeMillis() / 1000,
+                code,
+                message);
+    }
+
+    /**
+     * Renders the response to a cgminer command, which may contain several
+     * commands joined by <code>+</code>.
+     *
+     * @param command The command.
+     *
+     * @return The response.
+     */
+    private String toCgMinerResponse(final String command) {
+        final String[] commands = command.split("\\+");
+        if (commands.length == 1) {
+            return toSingleResponse(command);
+        }
+        final StringBuilder response = new StringBuilder("{");
+        for (final String single : commands) {
+            response
+                    .append('"')
+                    .append(single)
+                    .append("\":[")
+                    .append(toSingleResponse(single))
+                    .append("],");
+        }
+        return response
+                .append("\"id\":1}")
+                .toString();
+    }
+
+    /**
+     * Handles an encrypted btminer write.
+     *
+     * @param json The request.
+     *
+     * @return The response.
+     */
+    private String toEncryptedResponse(final Map<String, Object> json) {
+        if (this.miner.getFirmware() != Firmware.WHATSMINER) {
+            return toCgMinerError("Invalid command");
+        }
+
+        final WhatsminerCrypto.Session session =
+                this.miner.getWhatsminerSession();
+        try {
+            final Map<String, Object> command =
+                    OBJECT_MAPPER.readValue(
+                            WhatsminerCrypto.decrypt(
+                                    session.getAesKey(),
+                                    String.valueOf(json.get("data"))),
+                            new TypeReference<Map<String, Object>>() {
+                            });
+
+            final String result;
+            if (!session.getSign().equals(command.get("token"))) {
+                result =
+                        toWhatsminerStatus(
+                                "E",
+                                135,
+                                "check token error");
+            } else {
+                if ("reboot".equals(command.get("cmd"))) {
+                    this.farm.reboot(
+                            this.miner,
+                            REBOOT_DELAY_MS);
+                }
+                result =
+                        toWhatsminerStatus(
+                                "S",
+                                131,
+                                "API command OK");
+            }
+
+            return OBJECT_MAPPER.writeValueAsString(
+                    ImmutableMap.of(
+                            "enc",
+                            WhatsminerCrypto.encrypt(
+                                    session.getAesKey(),
+                                    result)));
+        } catch (final GeneralSecurityException |
+                       IllegalArgumentException |
+                       JsonProcessingException e) {
+            // Mirrors the firmware, which can't tell a bad key from bad data
+            return toWhatsminerStatus(
+                    "E",
+                    132,
+                    "command error");
+        }
+    }
+
+    /**
+     * Renders the response to a single cgminer command.
+     *
+     * @param command The command.
+     *
+     * @return The response.
+     */
+    private String toSingleResponse(final String command) {
+        return Templates
+                .get(
+                        this.miner.getFirmware(),
+                        command)
+                .map(template -> template.render(this.miner))
+                .orElseGet(() -> toCgMinerError("Invalid command"));
+    }
+
+    /**
+     * Renders the response to a plain btminer read.
+     *
+     * @param command The command.
+     *
+     * @return The response.
+     */
+    private String toWhatsminerRead(final String command) {
+        if ("get_token".equals(command)) {
+            final WhatsminerCrypto.Session session =
+                    this.miner.getWhatsminerSession();
+            return String.format(
+                    "{\"STATUS\":\"S\",\"When\":%d,\"Code\":134,\"Msg\":{\"time\":\"%s\",\"salt\":\"%s\",\"newsalt\":\"%s\"},\"Description\":\"\"}",
+                    System.currentTimeMillis() / 1000,
+                    session.getTime(),
+                    session.getSalt(),
+                    session.getNewSalt());
+        }
+        return toSingleResponse(command);
+    }
+}
@@ -0,0 +1,110 @@
+package mn.foreman.simulator;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.RandomStringUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Issues and checks RFC 2617 digest challenges, like the lighttpd instance
+ * that protects the Antminer CGIs.
+ *
+ * <p>Nonces aren't tracked, so any nonce is accepted as long as the response
+ * hash matches.  That's enough to make clients perform the full
+ * challenge/response exchange, which is the cost being measured.</p>
+ */
+class DigestAuthenticator {
+
+    /** Matches the <code>key=value</code> pairs in a digest header. */
+    private static final Pattern PARAMETER_PATTERN =
+            Pattern.compile("(\\w+)=(?:\"([^\"]*)\"|([^,\\s]*))");
+
+    /** The realm. */
+    private final String realm;
+
+    /**
+     * Constructor.
+     *
+     * @param realm The realm.
+     */
+    DigestAuthenticator(final String realm) {
+        this.realm = realm;
+    }
+
+    /**
+     * Creates a new challenge for the <code>WWW-Authenticate</code> header.
+     *
+     * @return The challenge.
+     */
+    String challenge() {
+        return String.format(
+                "Digest realm=\"%s\", qop=\"auth\", nonce=\"%s\"",
+                this.realm,
+                RandomStringUtils.randomAlphanumeric(32));
+    }
+
+    /**
+     * Checks whether the provided <code>Authorization</code> header is a valid
+     * digest response.
+     *
+     * @param header   The header, which may be null.
+     * @param method   The request method.
+     * @param username The expected username.
+     * @param password The expected password.
+     *
+     * @return Whether or not the request is authorized.
+     */
+    boolean isAuthorized(
+            final String header,
+            final String method,
+            final String username,
+            final String password) {
+        if (header == null || !header.startsWith("Digest ")) {
+            return false;
+        }
+
+        final Map<String, String> parameters = new HashMap<>();
+        final Matcher matcher =
+                PARAMETER_PATTERN.matcher(header.substring(7));
+        while (matcher.find()) {
+            parameters.put(
+                    matcher.group(1),
+                    matcher.group(2) != null
+                            ? matcher.group(2)
+                            : matcher.group(3));
+        }
+
+        if (!username.equals(parameters.get("username")) ||
+                !this.realm.equals(parameters.get("realm"))) {
+            return false;
+        }
+
+        final String ha1 =
+                DigestUtils.md5Hex(
+                        username + ":" + this.realm + ":" + password);
+        final String ha2 =
+                DigestUtils.md5Hex(
+                        method + ":" + parameters.get("uri"));
+        final String expected;
+        if (parameters.containsKey("qop")) {
+            expected =
+                    DigestUtils.md5Hex(
+                            String.join(
+                                    ":",
+                                    ha1,
+                                    parameters.get("nonce"),
+                                    parameters.get("nc"),
+                                    parameters.get("cnonce"),
+                                    parameters.get("qop"),
+                                    ha2));
+        } else {
+            expected =
+                    DigestUtils.md5Hex(
+                            ha1 + ":" + parameters.get("nonce") + ":" + ha2);
+        }
+        return expected.equals(parameters.get("response"));
+    }
+}
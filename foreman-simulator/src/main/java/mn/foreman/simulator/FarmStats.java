@@ -0,0 +1,52 @@
+package mn.foreman.simulator;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters describing the traffic that a {@link MinerFarm} has served. */
+public class FarmStats {
+
+    /** The number of digest challenges that were issued. */
+    final LongAdder authChallenges = new LongAdder();
+
+    /** The number of requests that were rejected for bad credentials. */
+    final LongAdder authFailures = new LongAdder();
+
+    /** The number of response bytes that were written. */
+    final LongAdder bytesOut = new LongAdder();
+
+    /** The number of connections that were accepted. */
+    final LongAdder connections = new LongAdder();
+
+    /** The number of responses that were corrupted. */
+    final LongAdder malformed = new LongAdder();
+
+    /** The number of reboots. */
+    final LongAdder reboots = new LongAdder();
+
+    /** The number of requests that were received. */
+    final LongAdder requests = new LongAdder();
+
+    /** The number of requests that were never answered. */
+    final LongAdder timeouts = new LongAdder();
+
+    /**
+     * Returns a point-in-time copy of the counters.
+     *
+     * @return The counters, by name.
+     */
+    public Map<String, Long> snapshot() {
+        return ImmutableMap.<String, Long>builder()
+                .put("connections", this.connections.sum())
+                .put("requests", this.requests.sum())
+                .put("bytesOut", this.bytesOut.sum())
+                .put("timeouts", this.timeouts.sum())
+                .put("malformed", this.malformed.sum())
+                .put("reboots", this.reboots.sum())
+                .put("authChallenges", this.authChallenges.sum())
+                .put("authFailures", this.authFailures.sum())
+                .build();
+    }
+}
@@ -0,0 +1,116 @@
+package mn.foreman.simulator;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A {@link FaultProfile} describes how badly the {@link VirtualMiner virtual
+ * miners} should behave.
+ *
+ * <p>Rates are probabilities (0 to 1) that are rolled for every response, so
+ * a <code>timeoutRate</code> of <code>0.01</code> leaves roughly 1 in 100
+ * requests unanswered until the client gives up.</p>
+ */
+@Data
+@Builder
+public class FaultProfile {
+
+    /** A profile where every miner responds immediately and correctly. */
+    public static final FaultProfile NONE =
+            FaultProfile
+                    .builder()
+                    .rebootSeconds(60)
+                    .build();
+
+    /** The random jitter added to every response (milliseconds). */
+    private final int jitterMs;
+
+    /** The base latency added to every response (milliseconds). */
+    private final int latencyMs;
+
+    /** The probability that a response will be truncated or corrupted. */
+    private final double malformedRate;
+
+    /** The probability that a request will make the miner reboot. */
+    private final double rebootRate;
+
+    /** How long a miner is unreachable while rebooting (seconds). */
+    private final int rebootSeconds;
+
+    /** The probability that a request will never be answered. */
+    private final double timeoutRate;
+
+    /**
+     * Corrupts the provided JSON so that it can't be parsed, either by
+     * truncating it or by dropping a quote.
+     *
+     * @param json The JSON.
+     *
+     * @return The corrupted JSON.
+     */
+    public static String malform(final String json) {
+        if (json.length() < 2) {
+            return "{";
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int position = 1 + random.nextInt(json.length() - 1);
+        if (random.nextBoolean()) {
+            return json.substring(0, position);
+        }
+        final int quote = json.indexOf('"', position);
+        return quote >= 0
+                ? json.substring(0, quote) + json.substring(quote + 1)
+                : json.substring(0, position);
+    }
+
+    /**
+     * Returns the delay to apply to the next response.
+     *
+     * @return The delay (milliseconds).
+     */
+    public long nextDelayMs() {
+        return this.jitterMs > 0
+                ? this.latencyMs + ThreadLocalRandom.current().nextInt(this.jitterMs + 1)
+                : this.latencyMs;
+    }
+
+    /**
+     * Rolls for whether or not the next response should be corrupted.
+     *
+     * @return Whether or not to corrupt the response.
+     */
+    public boolean shouldMalform() {
+        return roll(this.malformedRate);
+    }
+
+    /**
+     * Rolls for whether or not the miner should reboot.
+     *
+     * @return Whether or not to reboot.
+     */
+    public boolean shouldReboot() {
+        return roll(this.rebootRate);
+    }
+
+    /**
+     * Rolls for whether or not the next request should go unanswered.
+     *
+     * @return Whether or not to time out.
+     */
+    public boolean shouldTimeout() {
+        return roll(this.timeoutRate);
+    }
+
+    /**
+     * Rolls against the provided probability.
+     *
+     * @param rate The probability.
+     *
+     * @return Whether or not the roll succeeded.
+     */
+    private static boolean roll(final double rate) {
+        return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+}
@@ -0,0 +1,143 @@
+package mn.foreman.simulator;
+
+/**
+ * A {@link Firmware} represents a firmware that a {@link VirtualMiner} can
+ * impersonate, along with the APIs that pickaxe expects it to expose.
+ */
+public enum Firmware {
+
+    /** Stock Antminer: cgminer API and the digest-protected CGIs. */
+    ANTMINER(
+            "antminer",
+            "ANTMINER_GHS_API",
+            "root",
+            "root",
+            true,
+            true),
+
+    /** Braiins OS+: cgminer API only. */
+    BRAIINS(
+            "braiins",
+            "ANTMINER_GHS_API",
+            "root",
+            "root",
+            true,
+            false),
+
+    /** Vnish v3: the REST API only, which is detected on the web port. */
+    VNISH(
+            "vnish",
+            "ANTMINER_GHS_API",
+            "root",
+            "admin",
+            false,
+            true),
+
+    /** Whatsminer: cgminer API plus the plain and encrypted btminer API. */
+    WHATSMINER(
+            "whatsminer",
+            "WHATSMINER_API",
+            "admin",
+            "admin",
+            true,
+            false);
+
+    /** The API type that pickaxe should use for the miner. */
+    private final String apiType;
+
+    /** Whether or not the cgminer API is exposed. */
+    private final boolean cgminerApi;
+
+    /** The default password. */
+    private final String password;
+
+    /** The name of the folder containing the response templates. */
+    private final String templateFolder;
+
+    /** The default username. */
+    private final String username;
+
+    /** Whether or not a web API is exposed. */
+    private final boolean webApi;
+
+    /**
+     * Constructor.
+     *
+     * @param templateFolder The name of the folder containing the response
+     *                       templates.
+     * @param apiType        The API type that pickaxe should use for the
+     *                       miner.
+     * @param username       The default username.
+     * @param password       The default password.
+     * @param cgminerApi     Whether or not the cgminer API is exposed.
+     * @param webApi         Whether or not a web API is exposed.
+     */
+    Firmware(
+            final String templateFolder,
+            final String apiType,
+            final String username,
+            final String password,
+            final boolean cgminerApi,
+            final boolean webApi) {
+        this.templateFolder = templateFolder;
+        this.apiType = apiType;
+        this.username = username;
+        this.password = password;
+        this.cgminerApi = cgminerApi;
+        this.webApi = webApi;
+    }
+
+    /**
+     * Returns the API type that pickaxe should use for the miner.
+     *
+     * @return The API type.
+     */
+    public String getApiType() {
+        return this.apiType;
+    }
+
+    /**
+     * Returns the default password.
+     *
+     * @return The default password.
+     */
+    public String getPassword() {
+        return this.password;
+    }
+
+    /**
+     * Returns the name of the folder containing the response templates.
+     *
+     * @return The template folder.
+     */
+    public String getTemplateFolder() {
+        return this.templateFolder;
+    }
+
+    /**
+     * Returns the default username.
+     *
+     * @return The default username.
+     */
+    public String getUsername() {
+        return this.username;
+    }
+
+    /**
+     * Returns whether or not the cgminer API is exposed.
+     *
+     * @return Whether or not the cgminer API is exposed.
+     */
+    public boolean hasCgminerApi() {
+        return this.cgminerApi;
+    }
+
+    /**
+     * Returns whether or not a web API is exposed.
+     *
+     * @return Whether or not a web API is exposed.
+     */
+    public boolean hasWebApi() {
+        return this.webApi;
+    }
+}
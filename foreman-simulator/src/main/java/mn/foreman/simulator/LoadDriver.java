@@ -0,0 +1,477 @@
+package mn.foreman.simulator;
+
+import mn.foreman.api.model.ApiType;
+import mn.foreman.model.ApplicationConfiguration;
+import mn.foreman.model.Miner;
+import mn.foreman.model.MinerFactory;
+import mn.foreman.model.MinerID;
+import mn.foreman.model.cache.ColumnarStatsCache;
+import mn.foreman.model.cache.SelfExpiringStatsCache;
+import mn.foreman.model.cache.StatsCache;
+import mn.foreman.pickaxe.contraints.IpValidator;
+import mn.foreman.pickaxe.contraints.IpValidatorImpl;
+import mn.foreman.pickaxe.contraints.ScopedMiner;
+import mn.foreman.pickaxe.miners.remote.MinerTypeFactory;
+import mn.foreman.pickaxe.process.HttpPostMetricsProcessingStrategy;
+import mn.foreman.pickaxe.run.MetricsDeltaTracker;
+import mn.foreman.pickaxe.run.MetricsSender;
+import mn.foreman.pickaxe.run.MetricsSenderImpl;
+import mn.foreman.pickaxe.run.RunMe;
+import mn.foreman.pickaxe.run.thread.*;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Drives pickaxe's stats and metrics pipeline against a simulated farm and
+ * reports how it keeps up.
+ *
+ * <p>The miners come from the manifest written by the simulator rather than
+ * from the Foreman config API, but everything after that is wired the same
+ * way as {@link RunMe}: the {@link CollectScheduler} feeds either the {@link
+ * AsyncStatsPoller} or the {@link StatsWorker} pool, stats land in the {@link
+ * StatsCache}, and the metrics loop uploads them through the {@link
+ * HttpPostMetricsProcessingStrategy} to a local {@link MetricsEndpoint}.</p>
+ */
+public class LoadDriver {
+
+    /** All IPs. */
+    private static final List<String> ALL_IPS =
+            Collections.singletonList("0-255.0-255.0-255.0-255");
+
+    /** All MACs. */
+    private static final List<String> ALL_MACS =
+            Collections.singletonList("*");
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(LoadDriver.class);
+
+    /** The mapper for reading the manifest and writing the summary. */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * The application entry point.
+     *
+     * @param args The command line arguments.
+     *
+     * @throws Exception on failure.
+     */
+    public static void main(final String[] args) throws Exception {
+        final OptionParser optionParser = new OptionParser();
+
+        // Help
+        optionParser
+                .acceptsAll(Arrays.asList("h", "?"), "Shows help")
+                .forHelp();
+
+        final OptionSpec<String> manifestSpec =
+                optionParser
+                        .accepts("manifest", "The miner manifest written by the simulator")
+                        .withRequiredArg()
+                        .ofType(String.class)
+                        .required();
+        final OptionSpec<Integer> durationSpec =
+                optionParser
+                        .accepts("duration-seconds", "How long to run")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(600);
+        final OptionSpec<Integer> collectSpec =
+                optionParser
+                        .accepts("collect-seconds", "The stats collect interval")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(60);
+        final OptionSpec<Integer> pushSpec =
+                optionParser
+                        .accepts("push-seconds", "The metrics push interval")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(60);
+        final OptionSpec<Integer> batchSizeSpec =
+                optionParser
+                        .accepts("batch-size", "The metrics batch size")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(500);
+        final OptionSpec<Integer> socketTimeoutSpec =
+                optionParser
+                        .accepts("socket-timeout-seconds", "The miner read and write timeout")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(1);
+        final OptionSpec<Integer> statsThreadsSpec =
+                optionParser
+                        .accepts("stats-threads", "The number of stats threads")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(Runtime.getRuntime().availableProcessors() * 8);
+        final OptionSpec<Integer> metricsThreadsSpec =
+                optionParser
+                        .accepts("metrics-threads", "The number of metrics threads")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(4);
+        final OptionSpec<Integer> inFlightSpec =
+                optionParser
+                        .accepts("in-flight", "The maximum number of async polls in flight")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(2048);
+        optionParser.accepts("async", "Polls stats asynchronously");
+        optionParser.accepts("columnar", "Uses the columnar stats cache");
+        optionParser.accepts("delta", "Uploads metrics deltas");
+        final OptionSpec<Integer> metricsPortSpec =
+                optionParser
+                        .accepts("metrics-port", "The port for the stubbed metrics endpoint")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(18080);
+        final OptionSpec<Integer> reportSecondsSpec =
+                optionParser
+                        .accepts("report-seconds", "How often to log progress")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(30);
+        final OptionSpec<String> summarySpec =
+                optionParser
+                        .accepts("summary", "Where to write the JSON summary")
+                        .withRequiredArg()
+                        .ofType(String.class);
+
+        final OptionSet optionSet = optionParser.parse(args);
+
+        final ApplicationConfiguration configuration =
+                new ApplicationConfiguration();
+        configuration.setCollectConfig(
+                optionSet.valueOf(collectSpec),
+                TimeUnit.SECONDS);
+        configuration.setMetricsPushConfig(
+                optionSet.valueOf(pushSpec),
+                TimeUnit.SECONDS);
+        configuration.setMetricsBatchSize(
+                optionSet.valueOf(batchSizeSpec));
+        configuration.setReadSocketTimeout(
+                optionSet.valueOf(socketTimeoutSpec),
+                TimeUnit.SECONDS);
+        configuration.setWriteSocketTimeout(
+                optionSet.valueOf(socketTimeoutSpec),
+                TimeUnit.SECONDS);
+
+        final List<Miner> miners =
+                toMiners(
+                        new File(optionSet.valueOf(manifestSpec)),
+                        configuration);
+        LOG.info("Loaded {} miners", miners.size());
+
+        final MetricsEndpoint endpoint =
+                new MetricsEndpoint(optionSet.valueOf(metricsPortSpec));
+        endpoint.start();
+
+        final StatsCache statsCache =
+                optionSet.has("columnar")
+                        ? new ColumnarStatsCache(
+                        120,
+                        TimeUnit.SECONDS,
+                        1024)
+                        : new SelfExpiringStatsCache(
+                        120,
+                        TimeUnit.SECONDS);
+        final MinerCircuitBreaker circuitBreaker =
+                new MinerCircuitBreaker(
+                        30,
+                        TimeUnit.MINUTES.toSeconds(30),
+                        TimeUnit.SECONDS,
+                        2,
+                        TimeUnit.SECONDS);
+        final Set<MinerID> blacklistedMiners = Sets.newConcurrentHashSet();
+        final AtomicLong iterationTime = new AtomicLong(0);
+        final LongAdder polls = new LongAdder();
+
+        final int statsThreads = optionSet.valueOf(statsThreadsSpec);
+        final Function<Miner, CompletableFuture<Void>> statsPoller;
+        if (optionSet.has("async")) {
+            final AsyncStatsPoller poller =
+                    new AsyncStatsPoller(
+                            blacklistedMiners,
+                            circuitBreaker,
+                            statsCache,
+                            Executors.newFixedThreadPool(
+                                    statsThreads,
+                                    new ThreadFactoryBuilder()
+                                            .setNameFormat("stats-thread-pool-%d")
+                                            .build()),
+                            optionSet.valueOf(inFlightSpec));
+            statsPoller = poller::poll;
+        } else {
+            final BlockingQueue<StatsWorker.StatJob> jobQueue =
+                    new LinkedBlockingQueue<>();
+            new WorkerPool(
+                    "stats-thread-pool",
+                    "stats-thread-pool-%d",
+                    () -> new StatsWorker(
+                            blacklistedMiners,
+                            circuitBreaker,
+                            statsCache,
+                            jobQueue))
+                    .scaleWorkers(statsThreads);
+            statsPoller =
+                    miner -> {
+                        final CompletableFuture<Void> future =
+                                new CompletableFuture<>();
+                        jobQueue.add(
+                                StatsWorker.StatJob
+                                        .builder()
+                                        .miner(miner)
+                                        .completionCallback(() -> future.complete(null))
+                                        .build());
+                        return future;
+                    };
+        }
+
+        final CollectScheduler scheduler =
+                new CollectScheduler(
+                        () -> miners,
+                        () -> {
+                            final ApplicationConfiguration.TimeConfig config =
+                                    configuration.getCollectConfig();
+                            return config.getTimeoutUnits().toMillis(config.getTimeout());
+                        },
+                        miner -> statsPoller
+                                .apply(miner)
+                                .whenComplete((result, throwable) -> polls.increment()),
+                        () -> {
+                        },
+                        iterationTime);
+
+        final int metricsThreads = optionSet.valueOf(metricsThreadsSpec);
+        final HttpPostMetricsProcessingStrategy strategy =
+                new HttpPostMetricsProcessingStrategy(
+                        "http://127.0.0.1:" + optionSet.valueOf(metricsPortSpec),
+                        new AtomicReference<>("1"),
+                        UUID.randomUUID().toString(),
+                        new AtomicReference<>("load-driver"),
+                        metricsThreads);
+        final MetricsDeltaTracker deltaTracker =
+                new MetricsDeltaTracker(
+                        60,
+                        TimeUnit.MINUTES);
+        final MetricsSender metricsSender =
+                new MetricsSenderImpl(
+                        strategy,
+                        deltaTracker::invalidate);
+        final BlockingQueue<MetricsWorker.SendJob> sendQueue =
+                new LinkedBlockingQueue<>();
+        new WorkerPool(
+                "metrics",
+                "metrics-%d",
+                () -> new MetricsWorker(
+                        sendQueue,
+                        metricsSender))
+                .scaleWorkers(metricsThreads);
+
+        final ScheduledExecutorService threadPool =
+                Executors.newScheduledThreadPool(
+                        3,
+                        new ThreadFactoryBuilder()
+                                .setNameFormat("load-driver-%d")
+                                .build());
+        threadPool.execute(scheduler);
+
+        final boolean delta = optionSet.has("delta");
+        final int pushSeconds = optionSet.valueOf(pushSpec);
+        threadPool.scheduleWithFixedDelay(
+                () -> {
+                    final int batchSize = configuration.getMetricsBatchSize();
+                    final List<StatsBatch> batches =
+                            delta
+                                    ? StatsBatch.toBatches(
+                                    deltaTracker.diff(statsCache.getMetrics()),
+                                    batchSize)
+                                    : StatsBatch.toBatches(
+                                    statsCache.getMetrics(),
+                                    batchSize);
+                    final CountDownLatch doneLatch =
+                            new CountDownLatch(batches.size());
+                    batches
+                            .stream()
+                            .map(statsBatch ->
+                                    MetricsWorker.SendJob
+                                            .builder()
+                                            .batch(statsBatch)
+                                            .iterationTime(iterationTime)
+                                            .completionCallback(doneLatch::countDown)
+                                            .build())
+                            .forEach(sendQueue::add);
+                    try {
+                        doneLatch.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                },
+                pushSeconds,
+                pushSeconds,
+                TimeUnit.SECONDS);
+
+        final int reportSeconds = optionSet.valueOf(reportSecondsSpec);
+        threadPool.scheduleAtFixedRate(
+                () -> LOG.info("Progress: {}",
+                        toReport(
+                                polls,
+                                iterationTime,
+                                statsCache,
+                                scheduler,
+                                strategy,
+                                endpoint)),
+                reportSeconds,
+                reportSeconds,
+                TimeUnit.SECONDS);
+
+        TimeUnit.SECONDS.sleep(optionSet.valueOf(durationSpec));
+
+        final Map<String, Object> summary =
+                toReport(
+                        polls,
+                        iterationTime,
+                        statsCache,
+                        scheduler,
+                        strategy,
+                        endpoint);
+        LOG.info("Summary: {}", summary);
+        if (optionSet.has(summarySpec)) {
+            OBJECT_MAPPER
+                    .writerWithDefaultPrettyPrinter()
+                    .writeValue(
+                            new File(optionSet.valueOf(summarySpec)),
+                            summary);
+        }
+
+        threadPool.shutdownNow();
+        strategy.close();
+        endpoint.close();
+        System.exit(0);
+    }
+
+    /**
+     * Creates the report of how the pipeline is keeping up.
+     *
+     * @param polls         The number of polls completed.
+     * @param iterationTime The last stats loop time.
+     * @param statsCache    The cache.
+     * @param scheduler     The scheduler.
+     * @param strategy      The upload strategy.
+     * @param endpoint      The metrics endpoint.
+     *
+     * @return The report.
+     */
+    private static Map<String, Object> toReport(
+            final LongAdder polls,
+            final AtomicLong iterationTime,
+            final StatsCache statsCache,
+            final CollectScheduler scheduler,
+            final HttpPostMetricsProcessingStrategy strategy,
+            final MetricsEndpoint endpoint) {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final long maxLatenessMs =
+                scheduler
+                        .getLateness()
+                        .values()
+                        .stream()
+                        .mapToLong(Long::longValue)
+                        .max()
+                        .orElse(0);
+        final HttpPostMetricsProcessingStrategy.UploadStats uploadStats =
+                strategy.getStats();
+        return ImmutableMap.<String, Object>builder()
+                .put("polls", polls.sum())
+                .put("iterationTimeMs", iterationTime.get())
+                .put("cachedMiners", statsCache.getMetrics().size())
+                .put("maxLatenessMs", maxLatenessMs)
+                .put("uploads", endpoint.getUploads())
+                .put("uploadBytesIn", endpoint.getBytesIn())
+                .put("uploadRawBytes", uploadStats.getRawBytes())
+                .put("uploadCompressedBytes", uploadStats.getCompressedBytes())
+                .put("uploadLeasedConnections", uploadStats.getLeasedConnections())
+                .put("uploadPendingConnections", uploadStats.getPendingConnections())
+                .put("heapUsedBytes", memory.getHeapMemoryUsage().getUsed())
+                .build();
+    }
+
+    /**
+     * Creates the miners described by the manifest, exactly as pickaxe would
+     * from the Foreman config.
+     *
+     * @param manifest      The manifest.
+     * @param configuration The configuration.
+     *
+     * @return The miners.
+     *
+     * @throws IOException on failure to read the manifest.
+     */
+    private static List<Miner> toMiners(
+            final File manifest,
+            final ApplicationConfiguration configuration)
+            throws IOException {
+        final List<Map<String, Object>> entries =
+                OBJECT_MAPPER.readValue(
+                        manifest,
+                        new TypeReference<List<Map<String, Object>>>() {
+                        });
+
+        final IpValidator ipValidator =
+                new IpValidatorImpl(
+                        new AtomicReference<>(ALL_IPS),
+                        new AtomicReference<>(ALL_MACS));
+
+        final Map<ApiType, MinerFactory> factories =
+                new EnumMap<>(ApiType.class);
+        final List<Miner> miners = new ArrayList<>(entries.size());
+        for (final Map<String, Object> entry : entries) {
+            final ApiType apiType =
+                    ApiType.valueOf(entry.get("apiType").toString());
+            final int apiPort =
+                    Integer.parseInt(entry.get("apiPort").toString());
+            final MinerFactory factory =
+                    factories.computeIfAbsent(
+                            apiType,
+                            type -> MinerTypeFactory.toFactory(
+                                    type,
+                                    apiPort,
+                                    configuration));
+
+            final Map<String, Object> params = new HashMap<>();
+            params.put("apiIp", entry.get("ip"));
+            params.put("apiPort", Integer.toString(apiPort));
+            params.put("username", entry.get("username"));
+            params.put("password", entry.get("password"));
+            params.put("port", entry.get("webPort").toString());
+            // Points Vnish at the simulated web port
+            params.put("test", "true");
+            miners.add(
+                    new ScopedMiner(
+                            factory.create(params),
+                            ipValidator));
+        }
+        return miners;
+    }
+}
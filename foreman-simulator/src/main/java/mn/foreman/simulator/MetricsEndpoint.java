@@ -0,0 +1,163 @@
+package mn.foreman.simulator;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.*;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A stand-in for the Foreman dashboard that accepts metrics uploads and
+ * counts them, so pickaxe's upload path can be measured without a real
+ * backend.
+ *
+ * <p>Uploads to <code>/api/metrics/**</code> are answered with
+ * <code>201</code>, like the dashboard.  Anything else gets an empty JSON
+ * object.</p>
+ */
+public class MetricsEndpoint
+        implements Closeable {
+
+    /** The largest upload that will be accepted. */
+    private static final int MAX_UPLOAD_BYTES = 64 * 1024 * 1024;
+
+    /** The number of request body bytes that were received. */
+    private final LongAdder bytesIn = new LongAdder();
+
+    /** The event loops. */
+    private final EventLoopGroup group;
+
+    /** The port. */
+    private final int port;
+
+    /** The number of uploads that were received. */
+    private final LongAdder uploads = new LongAdder();
+
+    /** The listener. */
+    private Channel channel;
+
+    /**
+     * Constructor.
+     *
+     * @param port The port to listen on.
+     */
+    public MetricsEndpoint(final int port) {
+        this.port = port;
+        this.group = new NioEventLoopGroup(2);
+    }
+
+    @Override
+    public void close() {
+        if (this.channel != null) {
+            this.channel.close();
+        }
+        this.group.shutdownGracefully();
+    }
+
+    /**
+     * Returns the number of request body bytes that were received.
+     *
+     * @return The number of bytes.
+     */
+    public long getBytesIn() {
+        return this.bytesIn.sum();
+    }
+
+    /**
+     * Returns the number of uploads that were received.
+     *
+     * @return The number of uploads.
+     */
+    public long getUploads() {
+        return this.uploads.sum();
+    }
+
+    /**
+     * Starts listening.
+     *
+     * @throws IllegalStateException if the port couldn't be bound.
+     */
+    public void start() {
+        final ChannelFuture future =
+                new ServerBootstrap()
+                        .group(this.group)
+                        .channel(NioServerSocketChannel.class)
+                        .childHandler(new ChannelInitializer<SocketChannel>() {
+                            @Override
+                            protected void initChannel(final SocketChannel channel) {
+                                channel.pipeline().addLast(
+                                        new HttpServerCodec(),
+                                        new HttpObjectAggregator(MAX_UPLOAD_BYTES),
+                                        new UploadHandler());
+                            }
+                        })
+                        .bind(
+                                "127.0.0.1",
+                                this.port)
+                        .awaitUninterruptibly();
+        if (!future.isSuccess()) {
+            throw new IllegalStateException(
+                    "Failed to bind metrics endpoint on " + this.port,
+                    future.cause());
+        }
+        this.channel = future.channel();
+    }
+
+    /** Answers every request, counting the metrics uploads. */
+    private class UploadHandler
+            extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+        @Override
+        public void exceptionCaught(
+                final ChannelHandlerContext context,
+                final Throwable cause) {
+            context.close();
+        }
+
+        @Override
+        protected void channelRead0(
+                final ChannelHandlerContext context,
+                final FullHttpRequest request) {
+            final boolean upload =
+                    request.uri().startsWith("/api/metrics/") &&
+                            (request.method() == HttpMethod.PUT ||
+                                    request.method() == HttpMethod.POST);
+            if (upload) {
+                MetricsEndpoint.this.uploads.increment();
+                MetricsEndpoint.this.bytesIn.add(
+                        request.content().readableBytes());
+            }
+
+            final FullHttpResponse response =
+                    new DefaultFullHttpResponse(
+                            request.protocolVersion(),
+                            upload
+                                    ? HttpResponseStatus.CREATED
+                                    : HttpResponseStatus.OK,
+                            Unpooled.copiedBuffer(
+                                    "{}",
+                                    StandardCharsets.UTF_8));
+            response.headers().set(
+                    HttpHeaderNames.CONTENT_TYPE,
+                    HttpHeaderValues.APPLICATION_JSON);
+            HttpUtil.setContentLength(
+                    response,
+                    response.content().readableBytes());
+
+            final boolean keepAlive = HttpUtil.isKeepAlive(request);
+            HttpUtil.setKeepAlive(
+                    response,
+                    keepAlive);
+            final ChannelFuture future = context.writeAndFlush(response);
+            if (!keepAlive) {
+                future.addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package mn.foreman.simulator;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.json.JsonObjectDecoder;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A {@link MinerFarm} binds every {@link VirtualMiner} to its own listeners
+ * and serves the miner APIs from a shared set of Netty event loops, so a
+ * single process can stand in for tens of thousands of miners.
+ *
+ * <p>Every response passes through {@link #respond(ChannelHandlerContext,
+ * VirtualMiner, String, Function, boolean)}, where the {@link FaultProfile}
+ * is applied.  A rebooting miner closes its listeners, so new connections
+ * are refused until the reboot finishes, exactly like an unreachable
+ * miner.</p>
+ */
+public class MinerFarm
+        implements Closeable {
+
+    /** How long a connection that's being timed out is held open. */
+    private static final int HUNG_CONNECTION_SECONDS = 120;
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(MinerFarm.class);
+
+    /** The largest request that will be accepted. */
+    private static final int MAX_REQUEST_BYTES = 64 * 1024;
+
+    /** The event loop that accepts connections. */
+    private final EventLoopGroup bossGroup;
+
+    /** The open listeners, by miner. */
+    private final Map<VirtualMiner, List<Channel>> channels =
+            new ConcurrentHashMap<>();
+
+    /** The faults to apply. */
+    private final FaultProfile faults;
+
+    /** The miners. */
+    private final List<VirtualMiner> miners;
+
+    /** The traffic counters. */
+    private final FarmStats stats = new FarmStats();
+
+    /** The event loops that serve the requests. */
+    private final EventLoopGroup workerGroup;
+
+    /**
+     * Constructor.
+     *
+     * @param miners  The miners.
+     * @param faults  The faults to apply.
+     * @param threads The number of event loop threads.
+     */
+    public MinerFarm(
+            final List<VirtualMiner> miners,
+            final FaultProfile faults,
+            final int threads) {
+        Validate.notEmpty(
+                miners,
+                "At least one miner is required");
+        Validate.notNull(
+                faults,
+                "faults cannot be null");
+        Validate.isTrue(
+                threads > 0,
+                "threads must be > 0");
+        this.miners = new ArrayList<>(miners);
+        this.faults = faults;
+        this.bossGroup = new NioEventLoopGroup(1);
+        this.workerGroup = new NioEventLoopGroup(threads);
+    }
+
+    @Override
+    public void close() {
+        this.channels
+                .values()
+                .stream()
+                .flatMap(List::stream)
+                .forEach(Channel::close);
+        this.channels.clear();
+        this.bossGroup.shutdownGracefully();
+        this.workerGroup.shutdownGracefully();
+    }
+
+    /**
+     * Returns the miners.
+     *
+     * @return The miners.
+     */
+    public List<VirtualMiner> getMiners() {
+        return this.miners;
+    }
+
+    /**
+     * Returns the traffic counters.
+     *
+     * @return The counters.
+     */
+    public FarmStats getStats() {
+        return this.stats;
+    }
+
+    /**
+     * Binds every miner.
+     *
+     * @throws IllegalStateException if a miner couldn't be bound (ex: the
+     *                               loopback alias doesn't exist or the open
+     *                               file limit was reached).
+     */
+    public void start() {
+        for (final VirtualMiner miner : this.miners) {
+            final List<ChannelFuture> futures = bind(miner);
+            for (final ChannelFuture future : futures) {
+                future.awaitUninterruptibly();
+                if (!future.isSuccess()) {
+                    throw new IllegalStateException(
+                            "Failed to bind " + miner,
+                            future.cause());
+                }
+            }
+        }
+        LOG.info("Bound {} miners", this.miners.size());
+    }
+
+    /**
+     * Reboots the provided miner after a delay, closing its listeners until
+     * the reboot finishes.
+     *
+     * @param miner   The miner.
+     * @param delayMs How long to wait before rebooting (milliseconds).
+     */
+    void reboot(
+            final VirtualMiner miner,
+            final long delayMs) {
+        this.workerGroup.schedule(
+                () -> {
+                    if (miner.isRebooting()) {
+                        return;
+                    }
+                    final long rebootMs =
+                            TimeUnit.SECONDS.toMillis(
+                                    this.faults.getRebootSeconds());
+                    this.stats.reboots.increment();
+                    miner.reboot(rebootMs);
+                    final List<Channel> listeners = this.channels.remove(miner);
+                    if (listeners != null) {
+                        listeners.forEach(Channel::close);
+                    }
+                    this.workerGroup.schedule(
+                            () -> bind(miner).forEach(future ->
+                                    future.addListener(result -> {
+                                        if (!result.isSuccess()) {
+                                            LOG.warn("Failed to re-bind {}", miner, result.cause());
+                                        }
+                                    })),
+                            rebootMs,
+                            TimeUnit.MILLISECONDS);
+                },
+                delayMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes a response, applying the {@link FaultProfile}: the response may
+     * be delayed, corrupted, withheld entirely, or the miner may reboot
+     * instead of answering.
+     *
+     * @param context   The channel context.
+     * @param miner     The miner that's responding.
+     * @param body      The response body.
+     * @param toMessage Converts the (possibly corrupted) body to the message
+     *                  to write.
+     * @param close     Whether or not to close the connection once written.
+     */
+    void respond(
+            final ChannelHandlerContext context,
+            final VirtualMiner miner,
+            final String body,
+            final Function<String, Object> toMessage,
+            final boolean close) {
+        this.stats.requests.increment();
+
+        if (miner.isRebooting()) {
+            context.close();
+            return;
+        }
+
+        if (this.faults.shouldReboot()) {
+            context.close();
+            reboot(
+                    miner,
+                    0);
+            return;
+        }
+
+        if (this.faults.shouldTimeout()) {
+            this.stats.timeouts.increment();
+            context.executor().schedule(
+                    () -> context.close(),
+                    HUNG_CONNECTION_SECONDS,
+                    TimeUnit.SECONDS);
+            return;
+        }
+
+        String payload = body;
+        if (body.startsWith("{") && this.faults.shouldMalform()) {
+            this.stats.malformed.increment();
+            payload = FaultProfile.malform(body);
+        }
+        this.stats.bytesOut.add(payload.length());
+
+        final Object message = toMessage.apply(payload);
+        final Runnable write = () -> {
+            final ChannelFuture future = context.writeAndFlush(message);
+            if (close) {
+                future.addListener(ChannelFutureListener.CLOSE);
+            }
+        };
+
+        final long delayMs = this.faults.nextDelayMs();
+        if (delayMs > 0) {
+            context.executor().schedule(
+                    write,
+                    delayMs,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            write.run();
+        }
+    }
+
+    /**
+     * Binds the listeners for the provided miner.
+     *
+     * @param miner The miner.
+     *
+     * @return The bind results.
+     */
+    private List<ChannelFuture> bind(final VirtualMiner miner) {
+        final List<ChannelFuture> futures = new ArrayList<>(2);
+        final Firmware firmware = miner.getFirmware();
+        if (firmware.hasCgminerApi()) {
+            futures.add(
+                    newBootstrap(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(final SocketChannel channel) {
+                            MinerFarm.this.stats.connections.increment();
+                            channel.pipeline().addLast(
+                                    new JsonObjectDecoder(MAX_REQUEST_BYTES),
+                                    new CgMinerApiHandler(
+                                            MinerFarm.this,
+                                            miner));
+                        }
+                    }).bind(
+                            miner.getIp(),
+                            miner.getApiPort()));
+        }
+        if (firmware.hasWebApi()) {
+            futures.add(
+                    newBootstrap(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(final SocketChannel channel) {
+                            MinerFarm.this.stats.connections.increment();
+                            channel.pipeline().addLast(
+                                    new HttpServerCodec(),
+                                    new HttpObjectAggregator(MAX_REQUEST_BYTES),
+                                    new WebApiHandler(
+                                            MinerFarm.this,
+                                            miner));
+                        }
+                    }).bind(
+                            miner.getIp(),
+                            miner.getWebPort()));
+        }
+        final List<Channel> listeners = new ArrayList<>(futures.size());
+        futures.forEach(future -> listeners.add(future.channel()));
+        this.channels.put(
+                miner,
+                listeners);
+        return futures;
+    }
+
+    /**
+     * Creates a bootstrap for a miner listener.
+     *
+     * @param initializer The initializer for accepted connections.
+     *
+     * @return The bootstrap.
+     */
+    private ServerBootstrap newBootstrap(
+            final ChannelInitializer<SocketChannel> initializer) {
+        return new ServerBootstrap()
+                .group(
+                        this.bossGroup,
+                        this.workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .option(ChannelOption.SO_BACKLOG, 128)
+                .option(ChannelOption.SO_REUSEADDR, true)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(initializer);
+    }
+}
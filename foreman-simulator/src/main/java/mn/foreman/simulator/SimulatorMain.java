@@ -0,0 +1,319 @@
+package mn.foreman.simulator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.InetAddresses;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts a {@link MinerFarm} and, optionally, writes a manifest describing
+ * every {@link VirtualMiner} so that a load driver can poll them.
+ */
+public class SimulatorMain {
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(SimulatorMain.class);
+
+    /**
+     * The application entry point.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(final String[] args) {
+        final OptionParser optionParser = new OptionParser();
+
+        // Help
+        optionParser
+                .acceptsAll(Arrays.asList("h", "?"), "Shows help")
+                .forHelp();
+
+        // Farm shape
+        final OptionSpec<Integer> minersSpec =
+                optionParser
+                        .accepts("miners", "The number of miners")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(1000);
+        final OptionSpec<String> mixSpec =
+                optionParser
+                        .accepts("mix", "The firmware weights (ex: antminer=60,whatsminer=30,braiins=5,vnish=5)")
+                        .withRequiredArg()
+                        .ofType(String.class)
+                        .defaultsTo("antminer=60,whatsminer=30,braiins=5,vnish=5");
+        final OptionSpec<String> baseIpSpec =
+                optionParser
+                        .accepts("base-ip", "The IP of the first miner; each miner gets the next IP")
+                        .withRequiredArg()
+                        .ofType(String.class)
+                        .defaultsTo("127.1.0.1");
+        final OptionSpec<Integer> apiPortSpec =
+                optionParser
+                        .accepts("api-port", "The cgminer API port")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(4028);
+        final OptionSpec<Integer> webPortSpec =
+                optionParser
+                        .accepts("web-port", "The web API port")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(8080);
+        final OptionSpec<Double> sleepingRateSpec =
+                optionParser
+                        .accepts("sleeping-rate", "The fraction of miners that report no hash rate")
+                        .withRequiredArg()
+                        .ofType(Double.class)
+                        .defaultsTo(0.0);
+        final OptionSpec<Integer> threadsSpec =
+                optionParser
+                        .accepts("threads", "The number of event loop threads")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(Runtime.getRuntime().availableProcessors());
+
+        // Faults
+        final OptionSpec<Integer> latencySpec =
+                optionParser
+                        .accepts("latency-ms", "The latency added to every response")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(0);
+        final OptionSpec<Integer> jitterSpec =
+                optionParser
+                        .accepts("jitter-ms", "The random jitter added to every response")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(0);
+        final OptionSpec<Double> timeoutRateSpec =
+                optionParser
+                        .accepts("timeout-rate", "The probability that a request is never answered")
+                        .withRequiredArg()
+                        .ofType(Double.class)
+                        .defaultsTo(0.0);
+        final OptionSpec<Double> malformedRateSpec =
+                optionParser
+                        .accepts("malformed-rate", "The probability that a response is corrupted")
+                        .withRequiredArg()
+                        .ofType(Double.class)
+                        .defaultsTo(0.0);
+        final OptionSpec<Double> rebootRateSpec =
+                optionParser
+                        .accepts("reboot-rate", "The probability that a request reboots the miner")
+                        .withRequiredArg()
+                        .ofType(Double.class)
+                        .defaultsTo(0.0);
+        final OptionSpec<Integer> rebootSecondsSpec =
+                optionParser
+                        .accepts("reboot-seconds", "How long a reboot takes")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(60);
+
+        // Output
+        final OptionSpec<String> manifestSpec =
+                optionParser
+                        .accepts("manifest", "Where to write the miner manifest")
+                        .withRequiredArg()
+                        .ofType(String.class);
+        final OptionSpec<Integer> reportSecondsSpec =
+                optionParser
+                        .accepts("report-seconds", "How often to log the traffic counters")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(30);
+
+        final OptionSet optionSet = optionParser.parse(args);
+        if (optionSet.has("h")) {
+            try {
+                optionParser.printHelpOn(System.out);
+            } catch (final IOException ioe) {
+                LOG.warn("Failed to print help", ioe);
+            }
+            return;
+        }
+
+        final List<VirtualMiner> miners =
+                toMiners(
+                        optionSet.valueOf(minersSpec),
+                        toWeights(optionSet.valueOf(mixSpec)),
+                        optionSet.valueOf(baseIpSpec),
+                        optionSet.valueOf(apiPortSpec),
+                        optionSet.valueOf(webPortSpec),
+                        optionSet.valueOf(sleepingRateSpec));
+        final FaultProfile faults =
+                FaultProfile
+                        .builder()
+                        .latencyMs(optionSet.valueOf(latencySpec))
+                        .jitterMs(optionSet.valueOf(jitterSpec))
+                        .timeoutRate(optionSet.valueOf(timeoutRateSpec))
+                        .malformedRate(optionSet.valueOf(malformedRateSpec))
+                        .rebootRate(optionSet.valueOf(rebootRateSpec))
+                        .rebootSeconds(optionSet.valueOf(rebootSecondsSpec))
+                        .build();
+
+        final MinerFarm farm =
+                new MinerFarm(
+                        miners,
+                        faults,
+                        optionSet.valueOf(threadsSpec));
+        farm.start();
+
+        if (optionSet.has(manifestSpec)) {
+            try {
+                writeManifest(
+                        miners,
+                        new File(optionSet.valueOf(manifestSpec)));
+            } catch (final IOException ioe) {
+                LOG.error("Failed to write the manifest", ioe);
+            }
+        }
+
+        final ScheduledExecutorService reporter =
+                Executors.newSingleThreadScheduledExecutor();
+        final int reportSeconds = optionSet.valueOf(reportSecondsSpec);
+        reporter.scheduleAtFixedRate(
+                () -> LOG.info("Farm stats: {}", farm.getStats().snapshot()),
+                reportSeconds,
+                reportSeconds,
+                TimeUnit.SECONDS);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            reporter.shutdownNow();
+            farm.close();
+            LOG.info("Final farm stats: {}", farm.getStats().snapshot());
+        }));
+
+        LOG.info("Simulating {} miners with {}", miners.size(), faults);
+    }
+
+    /**
+     * Creates the miners, assigning firmware by weight and one IP per miner.
+     *
+     * @param count        The number of miners.
+     * @param weights      The firmware weights.
+     * @param baseIp       The IP of the first miner.
+     * @param apiPort      The cgminer API port.
+     * @param webPort      The web API port.
+     * @param sleepingRate The fraction of miners that are sleeping.
+     *
+     * @return The miners.
+     */
+    private static List<VirtualMiner> toMiners(
+            final int count,
+            final Map<Firmware, Integer> weights,
+            final String baseIp,
+            final int apiPort,
+            final int webPort,
+            final double sleepingRate) {
+        final int totalWeight =
+                weights
+                        .values()
+                        .stream()
+                        .mapToInt(Integer::intValue)
+                        .sum();
+        final int base =
+                InetAddresses.coerceToInteger(
+                        InetAddresses.forString(baseIp));
+
+        // Seeded so that the same options always produce the same farm
+        final Random random = new Random(count);
+
+        final List<VirtualMiner> miners = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Interleaved, so any contiguous range has roughly the same mix
+            int slot = i % totalWeight;
+            Firmware firmware = null;
+            for (final Map.Entry<Firmware, Integer> entry : weights.entrySet()) {
+                if (slot < entry.getValue()) {
+                    firmware = entry.getKey();
+                    break;
+                }
+                slot -= entry.getValue();
+            }
+            final Inet4Address ip =
+                    InetAddresses.fromInteger(base + i);
+            miners.add(
+                    new VirtualMiner(
+                            firmware,
+                            i,
+                            ip.getHostAddress(),
+                            apiPort,
+                            webPort,
+                            random.nextDouble() < sleepingRate));
+        }
+        return miners;
+    }
+
+    /**
+     * Parses the firmware weights.
+     *
+     * @param mix The weights (ex: <code>antminer=60,whatsminer=40</code>).
+     *
+     * @return The weights.
+     */
+    private static Map<Firmware, Integer> toWeights(final String mix) {
+        final Map<Firmware, Integer> weights = new EnumMap<>(Firmware.class);
+        for (final String entry : mix.split(",")) {
+            final String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + entry);
+            }
+            final int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(
+                        Firmware.valueOf(parts[0].trim().toUpperCase()),
+                        weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("No firmware in mix: " + mix);
+        }
+        return weights;
+    }
+
+    /**
+     * Writes the manifest that describes how to reach every miner.
+     *
+     * @param miners The miners.
+     * @param file   The destination.
+     *
+     * @throws IOException on failure to write.
+     */
+    private static void writeManifest(
+            final List<VirtualMiner> miners,
+            final File file)
+            throws IOException {
+        final List<Map<String, Object>> manifest =
+                new ArrayList<>(miners.size());
+        for (final VirtualMiner miner : miners) {
+            final Firmware firmware = miner.getFirmware();
+            manifest.add(
+                    ImmutableMap.<String, Object>builder()
+                            .put("firmware", firmware.name())
+                            .put("apiType", firmware.getApiType())
+                            .put("ip", miner.getIp())
+                            .put("apiPort", miner.getApiPort())
+                            .put("webPort", miner.getWebPort())
+                            .put("username", firmware.getUsername())
+                            .put("password", firmware.getPassword())
+                            .build());
+        }
+        new ObjectMapper().writeValue(
+                file,
+                manifest);
+        LOG.info("Wrote manifest for {} miners to {}", miners.size(), file);
+    }
+}
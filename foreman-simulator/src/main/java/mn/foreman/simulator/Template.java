@@ -0,0 +1,175 @@
+package mn.foreman.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A {@link Template} is a recorded miner response with placeholders that are
+ * filled in from a {@link VirtualMiner} on every request, so that each miner
+ * reports its own identity and its stats change between polls.
+ *
+ * <p>Supported placeholders:</p>
+ * <ul>
+ *     <li><code>${when}</code> - the current epoch second</li>
+ *     <li><code>${uptime}</code> - the miner uptime (seconds)</li>
+ *     <li><code>${shares}</code> - accepted shares, which grow with uptime</li>
+ *     <li><code>${index}</code>, <code>${ip}</code>, <code>${mac}</code>,
+ *     <code>${hostname}</code> - the miner identity</li>
+ *     <li><code>${hash:N}</code> - hash rate <code>N</code> with noise, or
+ *     0 when sleeping</li>
+ *     <li><code>${workMode}</code>, <code>${state}</code>,
+ *     <code>${mineroff}</code> - the sleep state, in each firmware's
+ *     dialect</li>
+ * </ul>
+ *
+ * <p>Templates are split into parts once, when loaded, so rendering is a
+ * single pass over a {@link StringBuilder}.</p>
+ */
+public class Template {
+
+    /** The rendered size of the template, used to size the output. */
+    private final int expectedLength;
+
+    /** The parts of the template. */
+    private final List<Part> parts;
+
+    /**
+     * Constructor.
+     *
+     * @param parts          The parts of the template.
+     * @param expectedLength The rendered size of the template.
+     */
+    private Template(
+            final List<Part> parts,
+            final int expectedLength) {
+        this.parts = parts;
+        this.expectedLength = expectedLength;
+    }
+
+    /**
+     * Compiles the provided text into a {@link Template}.
+     *
+     * @param text The text.
+     *
+     * @return The template.
+     *
+     * @throws IllegalArgumentException if a placeholder isn't known.
+     */
+    public static Template compile(final String text) {
+        final List<Part> parts = new ArrayList<>();
+        int position = 0;
+        while (position < text.length()) {
+            final int start = text.indexOf("${", position);
+            if (start < 0) {
+                parts.add(literal(text.substring(position)));
+                break;
+            }
+            final int end = text.indexOf('}', start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unterminated placeholder at " + start);
+            }
+            if (start > position) {
+                parts.add(literal(text.substring(position, start)));
+            }
+            parts.add(placeholder(text.substring(start + 2, end)));
+            position = end + 1;
+        }
+        return new Template(
+                parts,
+                text.length() + 64);
+    }
+
+    /**
+     * Renders the template for the provided miner.
+     *
+     * @param miner The miner.
+     *
+     * @return The rendered template.
+     */
+    public String render(final VirtualMiner miner) {
+        final long now = System.currentTimeMillis() / 1000;
+        final StringBuilder builder = new StringBuilder(this.expectedLength);
+        for (final Part part : this.parts) {
+            part.append(
+                    builder,
+                    miner,
+                    now);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Creates a part that appends fixed text.
+     *
+     * @param text The text.
+     *
+     * @return The part.
+     */
+    private static Part literal(final String text) {
+        return (builder, miner, now) -> builder.append(text);
+    }
+
+    /**
+     * Creates a part that appends the value of a placeholder.
+     *
+     * @param name The placeholder name.
+     *
+     * @return The part.
+     *
+     * @throws IllegalArgumentException if the placeholder isn't known.
+     */
+    private static Part placeholder(final String name) {
+        if (name.startsWith("hash:")) {
+            final double nominal = Double.parseDouble(name.substring(5));
+            return (builder, miner, now) ->
+                    builder.append(
+                            String.format(
+                                    Locale.US,
+                                    "%.2f",
+                                    miner.hashRate(nominal)));
+        }
+        switch (name) {
+            case "when":
+                return (builder, miner, now) -> builder.append(now);
+            case "uptime":
+                return (builder, miner, now) -> builder.append(miner.uptimeSeconds());
+            case "shares":
+                return (builder, miner, now) ->
+                        builder.append(miner.isSleeping() ? 0 : miner.uptimeSeconds() / 20);
+            case "index":
+                return (builder, miner, now) -> builder.append(miner.getIndex());
+            case "ip":
+                return (builder, miner, now) -> builder.append(miner.getIp());
+            case "mac":
+                return (builder, miner, now) -> builder.append(miner.getMac());
+            case "hostname":
+                return (builder, miner, now) -> builder.append(miner.getHostname());
+            case "workMode":
+                return (builder, miner, now) -> builder.append(miner.isSleeping() ? "1" : "0");
+            case "state":
+                return (builder, miner, now) -> builder.append(miner.isSleeping() ? "stopped" : "mining");
+            case "mineroff":
+                return (builder, miner, now) -> builder.append(miner.isSleeping());
+            default:
+                throw new IllegalArgumentException("Unknown placeholder: " + name);
+        }
+    }
+
+    /** A piece of a template. */
+    @FunctionalInterface
+    private interface Part {
+
+        /**
+         * Appends the part.
+         *
+         * @param builder The destination.
+         * @param miner   The miner being rendered.
+         * @param now     The current epoch second.
+         */
+        void append(
+                StringBuilder builder,
+                VirtualMiner miner,
+                long now);
+    }
+}
@@ -0,0 +1,114 @@
+package mn.foreman.simulator;
+
+import com.google.common.io.Resources;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Loads the {@link Template templates} bundled under
+ * <code>/templates/&lt;firmware&gt;/&lt;name&gt;.json</code>, falling back to
+ * <code>/templates/common</code> for responses that every cgminer fork shares
+ * (ex: <code>pools</code>).  Web API responses live in a <code>web</code>
+ * folder beneath the firmware so they can't be requested as cgminer
+ * commands.
+ *
+ * <p>Lookups are cached, including misses, since every request resolves its
+ * template by name.</p>
+ */
+public class Templates {
+
+    /** The folder containing the templates shared by every firmware. */
+    private static final String COMMON = "common";
+
+    /** The names that can be requested. */
+    private static final Pattern NAME_PATTERN =
+            Pattern.compile("[a-z0-9_]+");
+
+    /** The loaded templates, by folder and name. */
+    private static final Map<String, Optional<Template>> TEMPLATES =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Returns the template for the provided firmware and name.
+     *
+     * @param firmware The firmware.
+     * @param name     The name (ex: a lower-case cgminer command).
+     *
+     * @return The template, if one exists.
+     */
+    public static Optional<Template> get(
+            final Firmware firmware,
+            final String name) {
+        if (!NAME_PATTERN.matcher(name).matches()) {
+            return Optional.empty();
+        }
+        final Optional<Template> template =
+                load(
+                        firmware.getTemplateFolder(),
+                        name);
+        return template.isPresent()
+                ? template
+                : load(
+                COMMON,
+                name);
+    }
+
+    /**
+     * Returns the web API template for the provided firmware and name.
+     *
+     * @param firmware The firmware.
+     * @param name     The name (ex: a CGI without its extension).
+     *
+     * @return The template, if one exists.
+     */
+    public static Optional<Template> getWeb(
+            final Firmware firmware,
+            final String name) {
+        if (!NAME_PATTERN.matcher(name).matches()) {
+            return Optional.empty();
+        }
+        return load(
+                firmware.getTemplateFolder() + "/web",
+                name);
+    }
+
+    /**
+     * Loads the template from the provided folder.
+     *
+     * @param folder The folder.
+     * @param name   The name.
+     *
+     * @return The template, if one exists.
+     */
+    private static Optional<Template> load(
+            final String folder,
+            final String name) {
+        return TEMPLATES.computeIfAbsent(
+                folder + "/" + name,
+                key -> {
+                    final URL resource =
+                            Templates.class.getResource(
+                                    "/templates/" + key + ".json");
+                    if (resource == null) {
+                        return Optional.empty();
+                    }
+                    try {
+                        return Optional.of(
+                                Template.compile(
+                                        Resources
+                                                .toString(
+                                                        resource,
+                                                        StandardCharsets.UTF_8)
+                                                .trim()));
+                    } catch (final IOException e) {
+                        throw new IllegalStateException("Failed to load " + key, e);
+                    }
+                });
+    }
+}
@@ -0,0 +1,236 @@
+package mn.foreman.simulator;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A {@link VirtualMiner} holds the state of a single simulated miner: where
+ * it listens, which firmware it impersonates, and whether it's currently
+ * rebooting.
+ */
+public class VirtualMiner {
+
+    /** The cgminer API port. */
+    private final int apiPort;
+
+    /** The firmware. */
+    private final Firmware firmware;
+
+    /** The index of the miner within the farm. */
+    private final int index;
+
+    /** The IP. */
+    private final String ip;
+
+    /** The MAC address. */
+    private final String mac;
+
+    /** Whether or not the miner is sleeping (no hash rate). */
+    private final boolean sleeping;
+
+    /** The web API port. */
+    private final int webPort;
+
+    /** When the miner last booted. */
+    private volatile long bootTimeMs = System.currentTimeMillis();
+
+    /** When the current reboot finishes, or 0 if not rebooting. */
+    private volatile long rebootUntilMs;
+
+    /** The token handed out by the Vnish unlock endpoint. */
+    private volatile String sessionToken = UUID.randomUUID().toString();
+
+    /** The encryption material for the Whatsminer write API. */
+    private volatile WhatsminerCrypto.Session whatsminerSession;
+
+    /**
+     * Constructor.
+     *
+     * @param firmware The firmware.
+     * @param index    The index of the miner within the farm.
+     * @param ip       The IP.
+     * @param apiPort  The cgminer API port.
+     * @param webPort  The web API port.
+     * @param sleeping Whether or not the miner is sleeping.
+     */
+    public VirtualMiner(
+            final Firmware firmware,
+            final int index,
+            final String ip,
+            final int apiPort,
+            final int webPort,
+            final boolean sleeping) {
+        this.firmware = firmware;
+        this.index = index;
+        this.ip = ip;
+        this.apiPort = apiPort;
+        this.webPort = webPort;
+        this.sleeping = sleeping;
+        this.mac =
+                String.format(
+                        "02:00:%02X:%02X:%02X:%02X",
+                        (index >> 24) & 0xFF,
+                        (index >> 16) & 0xFF,
+                        (index >> 8) & 0xFF,
+                        index & 0xFF);
+    }
+
+    /**
+     * Returns the cgminer API port.
+     *
+     * @return The cgminer API port.
+     */
+    public int getApiPort() {
+        return this.apiPort;
+    }
+
+    /**
+     * Returns the firmware.
+     *
+     * @return The firmware.
+     */
+    public Firmware getFirmware() {
+        return this.firmware;
+    }
+
+    /**
+     * Returns the hostname.
+     *
+     * @return The hostname.
+     */
+    public String getHostname() {
+        return "sim-" + this.index;
+    }
+
+    /**
+     * Returns the index of the miner within the farm.
+     *
+     * @return The index.
+     */
+    public int getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Returns the IP.
+     *
+     * @return The IP.
+     */
+    public String getIp() {
+        return this.ip;
+    }
+
+    /**
+     * Returns the MAC address.
+     *
+     * @return The MAC address.
+     */
+    public String getMac() {
+        return this.mac;
+    }
+
+    /**
+     * Returns the token handed out by the Vnish unlock endpoint.
+     *
+     * @return The token.
+     */
+    public String getSessionToken() {
+        return this.sessionToken;
+    }
+
+    /**
+     * Returns the web API port.
+     *
+     * @return The web API port.
+     */
+    public int getWebPort() {
+        return this.webPort;
+    }
+
+    /**
+     * Returns the encryption material for the Whatsminer write API, creating
+     * it on first use since it's expensive to derive.
+     *
+     * @return The session.
+     */
+    public WhatsminerCrypto.Session getWhatsminerSession() {
+        WhatsminerCrypto.Session session = this.whatsminerSession;
+        if (session == null) {
+            session =
+                    WhatsminerCrypto.newSession(
+                            this.firmware.getPassword());
+            this.whatsminerSession = session;
+        }
+        return session;
+    }
+
+    /**
+     * Returns the provided hash rate with some noise applied, or 0 if the
+     * miner is sleeping.
+     *
+     * @param nominal The nominal hash rate.
+     *
+     * @return The current hash rate.
+     */
+    public double hashRate(final double nominal) {
+        if (this.sleeping) {
+            return 0;
+        }
+        return nominal * (0.98 + ThreadLocalRandom.current().nextDouble() * 0.04);
+    }
+
+    /**
+     * Returns whether or not the miner is rebooting.
+     *
+     * @return Whether or not the miner is rebooting.
+     */
+    public boolean isRebooting() {
+        final long until = this.rebootUntilMs;
+        return until != 0 && until > System.currentTimeMillis();
+    }
+
+    /**
+     * Returns whether or not the miner is sleeping.
+     *
+     * @return Whether or not the miner is sleeping.
+     */
+    public boolean isSleeping() {
+        return this.sleeping;
+    }
+
+    /**
+     * Marks the miner as rebooting.  Sessions are lost, like on real
+     * hardware, and the uptime restarts once the reboot finishes.
+     *
+     * @param durationMs How long the reboot takes (milliseconds).
+     */
+    public void reboot(final long durationMs) {
+        final long until = System.currentTimeMillis() + durationMs;
+        this.rebootUntilMs = until;
+        this.bootTimeMs = until;
+        this.sessionToken = UUID.randomUUID().toString();
+        this.whatsminerSession = null;
+    }
+
+    /**
+     * Returns how long the miner has been up.
+     *
+     * @return The uptime (seconds).
+     */
+    public long uptimeSeconds() {
+        return Math.max(
+                0,
+                (System.currentTimeMillis() - this.bootTimeMs) / 1000);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s [ firmware=%s, ip=%s, apiPort=%d, webPort=%d ]",
+                getClass().getSimpleName(),
+                this.firmware,
+                this.ip,
+                this.apiPort,
+                this.webPort);
+    }
+}
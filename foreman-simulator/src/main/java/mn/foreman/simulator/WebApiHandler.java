@@ -0,0 +1,373 @@
+package mn.foreman.simulator;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Serves the web APIs for a {@link VirtualMiner}:
+ *
+ * <ul>
+ *     <li>Stock Antminer: the <code>/cgi-bin/*.cgi</code> endpoints, behind
+ *     digest authentication.</li>
+ *     <li>Vnish v3: the <code>/api/v1</code> REST API, behind a bearer token
+ *     obtained from <code>/api/v1/unlock</code>.</li>
+ * </ul>
+ */
+class WebApiHandler
+        extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    /** The realm used by stock Antminers. */
+    private static final String ANTMINER_REALM = "antMiner Configuration";
+
+    /** The logger for this class. */
+    private static final Logger LOG =
+            LoggerFactory.getLogger(WebApiHandler.class);
+
+    /** The mapper for reading requests. */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /** How long a miner waits before rebooting after being told to. */
+    private static final long REBOOT_DELAY_MS = 1000;
+
+    /** The authenticator for the Antminer CGIs. */
+    private final DigestAuthenticator authenticator =
+            new DigestAuthenticator(ANTMINER_REALM);
+
+    /** The farm. */
+    private final MinerFarm farm;
+
+    /** The miner being served. */
+    private final VirtualMiner miner;
+
+    /**
+     * Constructor.
+     *
+     * @param farm  The farm.
+     * @param miner The miner being served.
+     */
+    WebApiHandler(
+            final MinerFarm farm,
+            final VirtualMiner miner) {
+        this.farm = farm;
+        this.miner = miner;
+    }
+
+    @Override
+    public void exceptionCaught(
+            final ChannelHandlerContext context,
+            final Throwable cause) {
+        LOG.debug("Exception occurred on {}", this.miner, cause);
+        context.close();
+    }
+
+    @Override
+    protected void channelRead0(
+            final ChannelHandlerContext context,
+            final FullHttpRequest request) {
+        final String path =
+                new QueryStringDecoder(request.uri()).path();
+        switch (this.miner.getFirmware()) {
+            case ANTMINER:
+                serveAntminer(
+                        context,
+                        request,
+                        path);
+                break;
+            case VNISH:
+                serveVnish(
+                        context,
+                        request,
+                        path);
+                break;
+            default:
+                respond(
+                        context,
+                        request,
+                        HttpResponseStatus.NOT_FOUND,
+                        "Not Found");
+                break;
+        }
+    }
+
+    /**
+     * Writes a response.
+     *
+     * @param context The channel context.
+     * @param request The request.
+     * @param status  The status.
+     * @param body    The body.
+     */
+    private void respond(
+            final ChannelHandlerContext context,
+            final FullHttpRequest request,
+            final HttpResponseStatus status,
+            final String body) {
+        respond(
+                context,
+                request,
+                status,
+                body,
+                null);
+    }
+
+    /**
+     * Writes a response.
+     *
+     * @param context   The channel context.
+     * @param request   The request.
+     * @param status    The status.
+     * @param body      The body.
+     * @param challenge The digest challenge to send, if any.
+     */
+    private void respond(
+            final ChannelHandlerContext context,
+            final FullHttpRequest request,
+            final HttpResponseStatus status,
+            final String body,
+            final String challenge) {
+        final boolean keepAlive = HttpUtil.isKeepAlive(request);
+        final HttpVersion version = request.protocolVersion();
+        this.farm.respond(
+                context,
+                this.miner,
+                body,
+                payload -> {
+                    final FullHttpResponse response =
+                            new DefaultFullHttpResponse(
+                                    version,
+                                    status,
+                                    Unpooled.copiedBuffer(
+                                            payload,
+                                            StandardCharsets.UTF_8));
+                    final HttpHeaders headers = response.headers();
+                    headers.set(
+                            HttpHeaderNames.CONTENT_TYPE,
+                            payload.startsWith("{")
+                                    ? HttpHeaderValues.APPLICATION_JSON
+                                    : HttpHeaderValues.TEXT_PLAIN);
+                    HttpUtil.setContentLength(
+                            response,
+                            response.content().readableBytes());
+                    HttpUtil.setKeepAlive(
+                            response,
+                            keepAlive);
+                    if (challenge != null) {
+                        headers.set(
+                                HttpHeaderNames.WWW_AUTHENTICATE,
+                                challenge);
+                    }
+                    return response;
+                },
+                !keepAlive);
+    }
+
+    /**
+     * Serves the stock Antminer CGIs.
+     *
+     * @param context The channel context.
+     * @param request The request.
+     * @param path    The request path.
+     */
+    private void serveAntminer(
+            final ChannelHandlerContext context,
+            final FullHttpRequest request,
+            final String path) {
+        if (!path.startsWith("/cgi-bin/") || !path.endsWith(".cgi")) {
+            respond(
+                    context,
+                    request,
+                    HttpResponseStatus.NOT_FOUND,
+                    "Not Found");
+            return;
+        }
+
+        final String authorization =
+                request.headers().get(HttpHeaderNames.AUTHORIZATION);
+        if (!this.authenticator.isAuthorized(
+                authorization,
+                request.method().name(),
+                this.miner.getFirmware().getUsername(),
+                this.miner.getFirmware().getPassword())) {
+            if (authorization != null) {
+                this.farm.getStats().authFailures.increment();
+            }
+            this.farm.getStats().authChallenges.increment();
+            respond(
+                    context,
+                    request,
+                    HttpResponseStatus.UNAUTHORIZED,
+                    "401 Unauthorized",
+                    this.authenticator.challenge());
+            return;
+        }
+
+        final String cgi =
+                path.substring(
+                        "/cgi-bin/".length(),
+                        path.length() - ".cgi".length());
+        switch (cgi) {
+            case "reboot":
+                this.farm.reboot(
+                        this.miner,
+                        REBOOT_DELAY_MS);
+                respond(
+                        context,
+                        request,
+                        HttpResponseStatus.OK,
+                        "{\"stats\":\"success\",\"code\":\"R000\",\"msg\":\"OK!\"}");
+                break;
+            case "set_miner_conf":
+            case "reset_conf":
+                respond(
+                        context,
+                        request,
+                        HttpResponseStatus.OK,
+                        "{\"stats\":\"success\",\"code\":\"M000\",\"msg\":\"OK!\"}");
+                break;
+            default:
+                serveTemplate(
+                        context,
+                        request,
+                        cgi);
+                break;
+        }
+    }
+
+    /**
+     * Serves a web API template.
+     *
+     * @param context The channel context.
+     * @param request The request.
+     * @param name    The template name.
+     */
+    private void serveTemplate(
+            final ChannelHandlerContext context,
+            final FullHttpRequest request,
+            final String name) {
+        final String body =
+                Templates
+                        .getWeb(
+                                this.miner.getFirmware(),
+                                name)
+                        .map(template -> template.render(this.miner))
+                        .orElse(null);
+        if (body != null) {
+            respond(
+                    context,
+                    request,
+                    HttpResponseStatus.OK,
+                    body);
+        } else {
+            respond(
+                    context,
+                    request,
+                    HttpResponseStatus.NOT_FOUND,
+                    "Not Found");
+        }
+    }
+
+    /**
+     * Serves the Vnish v3 REST API.
+     *
+     * @param context The channel context.
+     * @param request The request.
+     * @param path    The request path.
+     */
+    private void serveVnish(
+            final ChannelHandlerContext context,
+            final FullHttpRequest request,
+            final String path) {
+        if ("/api/v1/unlock".equals(path)) {
+            String password = null;
+            try {
+                final Map<String, Object> body =
+                        OBJECT_MAPPER.readValue(
+                                request.content().toString(StandardCharsets.UTF_8),
+                                new TypeReference<Map<String, Object>>() {
+                                });
+                password = String.valueOf(body.get("pw"));
+            } catch (final IOException e) {
+                // Treated as a bad password
+            }
+            if (this.miner.getFirmware().getPassword().equals(password)) {
+                respond(
+                        context,
+                        request,
+                        HttpResponseStatus.OK,
+                        "{\"token\":\"" + this.miner.getSessionToken() + "\"}");
+            } else {
+                this.farm.getStats().authFailures.increment();
+                respond(
+                        context,
+                        request,
+                        HttpResponseStatus.UNAUTHORIZED,
+                        "{\"err\":\"Unauthorized\"}");
+            }
+            return;
+        }
+
+        final String authorization =
+                request.headers().get(HttpHeaderNames.AUTHORIZATION);
+        if (!("Bearer " + this.miner.getSessionToken()).equals(authorization)) {
+            this.farm.getStats().authFailures.increment();
+            respond(
+                    context,
+                    request,
+                    HttpResponseStatus.UNAUTHORIZED,
+                    "{\"err\":\"Unauthorized\"}");
+            return;
+        }
+
+        switch (path) {
+            case "/api/v1/summary":
+                serveTemplate(
+                        context,
+                        request,
+                        "summary");
+                break;
+            case "/api/v1/settings":
+                respond(
+                        context,
+                        request,
+                        HttpResponseStatus.OK,
+                        "{\"restart_required\":false,\"reboot_required\":false}");
+                break;
+            case "/api/v1/system/reboot":
+                this.farm.reboot(
+                        this.miner,
+                        REBOOT_DELAY_MS);
+                respond(
+                        context,
+                        request,
+                        HttpResponseStatus.OK,
+                        "");
+                break;
+            case "/api/v1/logs/miner":
+            case "/api/v1/logs/system":
+            case "/api/v1/logs/autotune":
+                respond(
+                        context,
+                        request,
+                        HttpResponseStatus.OK,
+                        "[" + this.miner.uptimeSeconds() + "] " + this.miner.getHostname() + " is running\n");
+                break;
+            default:
+                respond(
+                        context,
+                        request,
+                        HttpResponseStatus.NOT_FOUND,
+                        "{\"err\":\"Not Found\"}");
+                break;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package mn.foreman.simulator;
+
+import com.google.common.base.Strings;
+import org.apache.commons.codec.digest.Md5Crypt;
+import org.apache.commons.lang3.RandomStringUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The miner side of the encrypted Whatsminer API: the salts handed out by
+ * <code>get_token</code>, the sign that the client must present, and the
+ * AES key that protects the payloads.
+ *
+ * <p>Real firmware rotates <code>time</code> on every token request.  Here it
+ * only changes when the miner reboots so the derived values can be reused,
+ * which keeps 50k simulated miners from being CPU-bound on md5-crypt.</p>
+ */
+public class WhatsminerCrypto {
+
+    /**
+     * Decrypts a payload received from the client.
+     *
+     * @param aesKey  The key.
+     * @param message The base64-encoded payload.
+     *
+     * @return The decrypted payload.
+     *
+     * @throws GeneralSecurityException on failure to decrypt.
+     */
+    public static String decrypt(
+            final byte[] aesKey,
+            final String message)
+            throws GeneralSecurityException {
+        final Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
+        cipher.init(
+                Cipher.DECRYPT_MODE,
+                new SecretKeySpec(
+                        aesKey,
+                        "AES"));
+        final byte[] decrypted =
+                cipher.doFinal(
+                        Base64.getDecoder().decode(
+                                message.getBytes(StandardCharsets.UTF_8)));
+        return new String(decrypted, StandardCharsets.UTF_8)
+                .trim()
+                .replace("\0", "");
+    }
+
+    /**
+     * Encrypts a payload to be sent to the client.
+     *
+     * @param aesKey  The key.
+     * @param message The payload.
+     *
+     * @return The base64-encoded, encrypted payload.
+     *
+     * @throws GeneralSecurityException on failure to encrypt.
+     */
+    public static String encrypt(
+            final byte[] aesKey,
+            final String message)
+            throws GeneralSecurityException {
+        final Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
+        cipher.init(
+                Cipher.ENCRYPT_MODE,
+                new SecretKeySpec(
+                        aesKey,
+                        "AES"));
+        final String padded =
+                Strings.padEnd(
+                        message,
+                        message.length() + 16 - (message.length() % 16),
+                        '\0');
+        return Base64
+                .getEncoder()
+                .encodeToString(
+                        cipher.doFinal(
+                                padded.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Creates new encryption material for a miner.
+     *
+     * @param password The miner password.
+     *
+     * @return The session.
+     */
+    static Session newSession(final String password) {
+        final String salt = RandomStringUtils.randomAlphanumeric(8);
+        final String newSalt = RandomStringUtils.randomAlphanumeric(8);
+        final String time =
+                Integer.toString(
+                        1000 + ThreadLocalRandom.current().nextInt(9000));
+        final String hostPasswordMd5 =
+                md5Crypt(
+                        password,
+                        salt);
+        try {
+            return new Session(
+                    salt,
+                    newSalt,
+                    time,
+                    md5Crypt(
+                            hostPasswordMd5 + time,
+                            newSalt),
+                    MessageDigest
+                            .getInstance("SHA-256")
+                            .digest(hostPasswordMd5.getBytes(StandardCharsets.UTF_8)));
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * MD5 crypts the provided word with the provided salt, keeping only the
+     * hash (what the btminer API calls the result).
+     *
+     * @param word The word.
+     * @param salt The salt.
+     *
+     * @return The hash.
+     */
+    private static String md5Crypt(
+            final String word,
+            final String salt) {
+        return Md5Crypt.md5Crypt(
+                word.getBytes(StandardCharsets.UTF_8),
+                String.format(
+                        "$1$%s$",
+                        salt)).split("\\$")[3];
+    }
+
+    /** The encryption material for a miner. */
+    public static class Session {
+
+        /** The AES key. */
+        private final byte[] aesKey;
+
+        /** The salt used to derive the sign. */
+        private final String newSalt;
+
+        /** The salt used to hash the password. */
+        private final String salt;
+
+        /** The sign that clients must send with every write. */
+        private final String sign;
+
+        /** The token time. */
+        private final String time;
+
+        /**
+         * Constructor.
+         *
+         * @param salt    The salt used to hash the password.
+         * @param newSalt The salt used to derive the sign.
+         * @param time    The token time.
+         * @param sign    The sign that clients must send with every write.
+         * @param aesKey  The AES key.
+         */
+        Session(
+                final String salt,
+                final String newSalt,
+                final String time,
+                final String sign,
+                final byte[] aesKey) {
+            this.salt = salt;
+            this.newSalt = newSalt;
+            this.time = time;
+            this.sign = sign;
+            this.aesKey = aesKey;
+        }
+
+        /**
+         * Returns the AES key.
+         *
+         * @return The AES key.
+         */
+        public byte[] getAesKey() {
+            return this.aesKey;
+        }
+
+        /**
+         * Returns the salt used to derive the sign.
+         *
+         * @return The salt.
+         */
+        public String getNewSalt() {
+            return this.newSalt;
+        }
+
+        /**
+         * Returns the salt used to hash the password.
+         *
+         * @return The salt.
+         */
+        public String getSalt() {
+            return this.salt;
+        }
+
+        /**
+         * Returns the sign that clients must send with every write.
+         *
+         * @return The sign.
+         */
+        public String getSign() {
+            return this.sign;
+        }
+
+        /**
+         * Returns the token time.
+         *
+         * @return The time.
+         */
+        public String getTime() {
+            return this.time;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package mn.foreman.util;
+
+/**
+ * Utilities for processing IPv4 addresses as <code>int</code>s rather than
+ * {@link String strings}.
+ *
+ * <p>Parsing never allocates, and only accepts the canonical dotted form (no
+ * whitespace, no leading zeros), so an address that's parsed and then
+ * formatted again is always the same {@link String}.</p>
+ */
+public class IpUtils {
+
+    /**
+     * Checks whether or not the provided value is a canonical IPv4 address.
+     *
+     * @param ip The value.
+     *
+     * @return Whether or not the value is an IPv4 address.
+     */
+    public static boolean isIpv4(final CharSequence ip) {
+        return parse(ip) >= 0;
+    }
+
+    /**
+     * Parses the provided dotted IPv4 address.
+     *
+     * @param ip The IP.
+     *
+     * @return The IP as an unsigned value, or <code>-1</code> if it isn't a
+     *         canonical IPv4 address.
+     */
+    public static long parse(final CharSequence ip) {
+        if (ip == null) {
+            return -1;
+        }
+        long value = 0;
+        int octet = 0;
+        int digits = 0;
+        int dots = 0;
+        for (int i = 0; i < ip.length(); i++) {
+            final char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits == 1 && octet == 0) {
+                    // Leading zero
+                    return -1;
+                }
+                octet = octet * 10 + (c - '0');
+                if (++digits > 3 || octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && digits > 0 && dots < 3) {
+                value = (value << 8) | octet;
+                octet = 0;
+                digits = 0;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        if (dots != 3 || digits == 0) {
+            return -1;
+        }
+        return (value << 8) | octet;
+    }
+
+    /**
+     * Converts the provided IP to its network-order bytes.
+     *
+     * @param ip The IP.
+     *
+     * @return The bytes.
+     */
+    public static byte[] toBytes(final int ip) {
+        return new byte[]{
+                (byte) (ip >>> 24),
+                (byte) (ip >>> 16),
+                (byte) (ip >>> 8),
+                (byte) ip
+        };
+    }
+
+    /**
+     * Converts the provided dotted IP to an <code>int</code>.
+     *
+     * @param ip The IP.
+     *
+     * @return The IP as an <code>int</code>.
+     *
+     * @throws IllegalArgumentException if the IP is invalid.
+     */
+    public static int toInt(final CharSequence ip) {
+        final long value = parse(ip);
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid IPv4 address: " + ip);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Converts the provided IP to its dotted form.
+     *
+     * @param ip The IP.
+     *
+     * @return The dotted form.
+     */
+    public static String toString(final int ip) {
+        return new StringBuilder(15)
+                .append((ip >>> 24) & 0xFF)
+                .append('.')
+                .append((ip >>> 16) & 0xFF)
+                .append('.')
+                .append((ip >>> 8) & 0xFF)
+                .append('.')
+                .append(ip & 0xFF)
+                .toString();
+    }
+}
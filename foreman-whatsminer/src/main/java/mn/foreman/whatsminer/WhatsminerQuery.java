@@ -1,8 +1,11 @@
 package mn.foreman.whatsminer;
 
+import mn.foreman.http.MinerHttpTransport;
 import mn.foreman.model.ApplicationConfiguration;
 import mn.foreman.model.error.MinerException;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import lombok.Builder;
 import lombok.Data;
@@ -17,15 +20,9 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
-import org.apache.http.conn.ssl.TrustAllStrategy;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.impl.client.BasicCookieStore;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.client.LaxRedirectStrategy;
 import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +32,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
@@ -46,10 +45,28 @@ public class WhatsminerQuery {
     private static final Logger LOG =
             LoggerFactory.getLogger(WhatsminerQuery.class);
 
+    /**
+     * The LuCI sessions, keyed by miner.  LuCI expires a session an hour
+     * after login, so sessions are dropped well before then.
+     */
+    private static final Cache<String, Session> SESSIONS =
+            CacheBuilder
+                    .newBuilder()
+                    .expireAfterWrite(30, TimeUnit.MINUTES)
+                    .build();
+
     /**
      * Queries a Whatsminer, performing a login operation first to obtain a
      * session cookie.
      *
+     * <p>The session from the last login is reused, along with the port that
+     * it was obtained on, until it expires or the miner responds with a 403.
+     * After that, the login is performed again and every query is re-run,
+     * since later queries may depend on tokens that earlier ones obtained in
+     * the old session.  Any other failure on the session's port is thrown
+     * as-is: the port is known to work, and logging in again on every port
+     * would only re-run writes and multiply the timeouts.</p>
+     *
      * @param ip         The ip.
      * @param port       The port.
      * @param username   The username.
@@ -67,31 +84,54 @@ public class WhatsminerQuery {
             final List<Query> queries,
             final ApplicationConfiguration.TimeConfig timeConfig)
             throws MinerException {
+        final String key = toKey(ip, port);
+        final RequestConfig requestConfig = toRequestConfig(timeConfig);
+
+        final Session session = SESSIONS.getIfPresent(key);
+        if (session != null &&
+                Objects.equals(session.username, username) &&
+                Objects.equals(session.password, password)) {
+            if (runQueries(
+                    ip,
+                    session.port,
+                    queries,
+                    requestConfig,
+                    session.cookieStore,
+                    true)) {
+                return;
+            }
+            LOG.debug("Session for {} was rejected - logging in again", key);
+            SESSIONS.invalidate(key);
+        }
+
         // Test hook
         if (port == 8080 || port == 8081) {
             doQuery(
                     ip,
                     port,
+                    key,
                     username,
                     password,
-                    timeConfig,
+                    requestConfig,
                     queries);
         } else {
             try {
                 doQuery(
                         ip,
                         443,
+                        key,
                         username,
                         password,
-                        timeConfig,
+                        requestConfig,
                         queries);
             } catch (final MinerException me) {
                 doQuery(
                         ip,
                         80,
+                        key,
                         username,
                         password,
-                        timeConfig,
+                        requestConfig,
                         queries);
             }
         }
@@ -101,40 +141,26 @@ public class WhatsminerQuery {
      * Queries a Whatsminer, performing a login operation first to obtain a
      * session cookie.
      *
-     * @param ip         The ip.
-     * @param port       The port.
-     * @param username   The username.
-     * @param password   The password.
-     * @param timeConfig The socket config.
-     * @param queries    The queries.
+     * @param ip            The ip.
+     * @param port          The port.
+     * @param key           The session key.
+     * @param username      The username.
+     * @param password      The password.
+     * @param requestConfig The request config.
+     * @param queries       The queries.
      *
      * @throws MinerException on failure.
      */
     private static void doQuery(
             final String ip,
             final int port,
+            final String key,
             final String username,
             final String password,
-            final ApplicationConfiguration.TimeConfig timeConfig,
+            final RequestConfig requestConfig,
             final List<Query> queries)
             throws MinerException {
         final CookieStore cookieStore = new BasicCookieStore();
-        final RequestConfig requestConfig =
-                RequestConfig
-                        .custom()
-                        .setCookieSpec(CookieSpecs.STANDARD)
-                        .setConnectTimeout(
-                                (int) timeConfig
-                                        .getTimeoutUnits()
-                                        .toMillis(
-                                                timeConfig.getTimeout()))
-                        .setSocketTimeout(
-                                (int) timeConfig
-                                        .getTimeoutUnits()
-                                        .toMillis(
-                                                timeConfig.getTimeout()))
-                        .setCircularRedirectsAllowed(true)
-                        .build();
 
         // Login first
         final AtomicBoolean loggedIn = new AtomicBoolean(false);
@@ -167,27 +193,25 @@ public class WhatsminerQuery {
                 e -> {
                 });
         if (loggedIn.get()) {
-            for (final Query query : queries) {
-                query(
-                        ip,
-                        port,
-                        query.uri,
-                        query.isGet,
-                        query.isMultipartForm,
-                        query.boundary,
-                        query.urlParams,
-                        query.paramEnricher,
-                        requestConfig,
-                        cookieStore,
-                        query.callback,
-                        query.timeout);
-            }
+            SESSIONS.put(
+                    key,
+                    new Session(
+                            port,
+                            cookieStore,
+                            username,
+                            password));
+            runQueries(
+                    ip,
+                    port,
+                    queries,
+                    requestConfig,
+                    cookieStore,
+                    false);
         } else {
             throw new MinerException("Failed to obtain config data");
         }
     }
 
-
     /**
      * Queries a Whatsminer miner, performing a login operation first to obtain
      * a session cookie.
@@ -221,19 +245,7 @@ public class WhatsminerQuery {
             final BiConsumer<Integer, String> callback,
             final Consumer<SocketTimeoutException> timeout)
             throws MinerException {
-        try (final CloseableHttpClient client =
-                     HttpClients
-                             .custom()
-                             .setDefaultRequestConfig(requestConfig)
-                             .setDefaultCookieStore(cookieStore)
-                             .disableAutomaticRetries()
-                             .setSSLContext(
-                                     new SSLContextBuilder()
-                                             .loadTrustMaterial(null, TrustAllStrategy.INSTANCE)
-                                             .build())
-                             .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE)
-                             .setRedirectStrategy(new LaxRedirectStrategy())
-                             .build()) {
+        try {
             final String url =
                     toUrl(
                             ip,
@@ -244,13 +256,16 @@ public class WhatsminerQuery {
                 httpRequest = new HttpGet(url);
             } else {
                 final HttpPost post = new HttpPost(url);
+                // Enriched per request, since the query may be run again
+                final List<Map<String, Object>> params =
+                        new ArrayList<>(urlParams);
                 if (paramEnricher != null) {
-                    paramEnricher.accept(urlParams);
+                    paramEnricher.accept(params);
                 }
                 if (isMultipartForm) {
                     final MultipartEntityBuilder builder =
                             MultipartEntityBuilder.create();
-                    urlParams.forEach(param ->
+                    params.forEach(param ->
                             builder.addTextBody(
                                     param.get("key").toString(),
                                     param.get("value").toString()));
@@ -259,18 +274,19 @@ public class WhatsminerQuery {
                     }
                     post.setEntity(builder.build());
                 } else {
-                    if (!urlParams.isEmpty()) {
-                        final List<NameValuePair> params = new ArrayList<>();
-                        urlParams
+                    if (!params.isEmpty()) {
+                        final List<NameValuePair> nameValuePairs =
+                                new ArrayList<>();
+                        params
                                 .stream()
                                 .map(map ->
                                         new BasicNameValuePair(
                                                 map.get("key").toString(),
                                                 map.get("value").toString()))
-                                .forEach(params::add);
+                                .forEach(nameValuePairs::add);
                         post.setEntity(
                                 new UrlEncodedFormEntity(
-                                        params,
+                                        nameValuePairs,
                                         "UTF-8"));
                     }
                 }
@@ -279,7 +295,11 @@ public class WhatsminerQuery {
 
             try {
                 try (final CloseableHttpResponse response =
-                             client.execute(httpRequest)) {
+                             MinerHttpTransport.getLaxRedirectClient().execute(
+                                     httpRequest,
+                                     MinerHttpTransport.newContext(
+                                             requestConfig,
+                                             cookieStore))) {
                     final StatusLine statusLine =
                             response.getStatusLine();
                     final String responseBody =
@@ -298,6 +318,99 @@ public class WhatsminerQuery {
         }
     }
 
+    /**
+     * Runs the provided queries, in order, using an existing session.
+     *
+     * @param ip                The ip.
+     * @param port              The port.
+     * @param queries           The queries.
+     * @param requestConfig     The request config.
+     * @param cookieStore       The session cookies.
+     * @param stopWhenForbidden Whether or not to stop at a 403 rather than
+     *                          passing it to the query's callback.
+     *
+     * @return Whether or not every query was run, which is false if one was
+     *         forbidden.
+     *
+     * @throws MinerException on failure.
+     */
+    private static boolean runQueries(
+            final String ip,
+            final int port,
+            final List<Query> queries,
+            final RequestConfig requestConfig,
+            final CookieStore cookieStore,
+            final boolean stopWhenForbidden)
+            throws MinerException {
+        for (final Query query : queries) {
+            final AtomicBoolean forbidden = new AtomicBoolean(false);
+            query(
+                    ip,
+                    port,
+                    query.uri,
+                    query.isGet,
+                    query.isMultipartForm,
+                    query.boundary,
+                    query.urlParams,
+                    query.paramEnricher,
+                    requestConfig,
+                    cookieStore,
+                    (statusCode, data) -> {
+                        if (stopWhenForbidden &&
+                                statusCode == HttpStatus.SC_FORBIDDEN) {
+                            forbidden.set(true);
+                        } else {
+                            query.callback.accept(
+                                    statusCode,
+                                    data);
+                        }
+                    },
+                    query.timeout);
+            if (forbidden.get()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the session key for a miner.
+     *
+     * @param ip   The ip.
+     * @param port The port that was requested.
+     *
+     * @return The key.
+     */
+    private static String toKey(
+            final String ip,
+            final int port) {
+        return ip + ":" + port;
+    }
+
+    /**
+     * Creates the request config for the provided timeouts.
+     *
+     * @param timeConfig The socket config.
+     *
+     * @return The request config.
+     */
+    private static RequestConfig toRequestConfig(
+            final ApplicationConfiguration.TimeConfig timeConfig) {
+        final int timeoutMillis =
+                (int) timeConfig
+                        .getTimeoutUnits()
+                        .toMillis(
+                                timeConfig.getTimeout());
+        return RequestConfig
+                .custom()
+                .setCookieSpec(CookieSpecs.STANDARD)
+                .setConnectTimeout(timeoutMillis)
+                .setConnectionRequestTimeout(timeoutMillis)
+                .setSocketTimeout(timeoutMillis)
+                .setCircularRedirectsAllowed(true)
+                .build();
+    }
+
     /**
      * Creates a URL from the provided params.
      *
@@ -346,4 +459,39 @@ public class WhatsminerQuery {
         /** The params. */
         private final List<Map<String, Object>> urlParams;
     }
-}
\ No newline at end of file
+
+    /** A logged in LuCI session. */
+    private static class Session {
+
+        /** The session cookies. */
+        private final CookieStore cookieStore;
+
+        /** The password that was used to log in. */
+        private final String password;
+
+        /** The port that the login succeeded on. */
+        private final int port;
+
+        /** The username that was used to log in. */
+        private final String username;
+
+        /**
+         * Constructor.
+         *
+         * @param port        The port that the login succeeded on.
+         * @param cookieStore The session cookies.
+         * @param username    The username that was used to log in.
+         * @param password    The password that was used to log in.
+         */
+        Session(
+                final int port,
+                final CookieStore cookieStore,
+                final String username,
+                final String password) {
+            this.port = port;
+            this.cookieStore = cookieStore;
+            this.username = username;
+            this.password = password;
+        }
+    }
+}
@@ -12,7 +12,10 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import org.apache.commons.codec.digest.Md5Crypt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,9 +23,9 @@ import org.slf4j.LoggerFactory;
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -37,9 +40,41 @@ public class WhatsminerApi {
     private static final Logger LOG =
             LoggerFactory.getLogger(WhatsminerApi.class);
 
+    /**
+     * The AES ciphers for each thread, which are re-initialized with each
+     * session's key rather than created for every message.
+     */
+    private static final ThreadLocal<Cipher> CIPHERS =
+            ThreadLocal.withInitial(() -> {
+                try {
+                    return Cipher.getInstance("AES/ECB/NoPadding");
+                } catch (final GeneralSecurityException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
     /** The mapper for writing and reading json. */
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+    /**
+     * The write sessions, keyed by miner.  Tokens are valid for 30 minutes,
+     * so sessions are dropped a little before then.
+     */
+    private static final Cache<String, Session> SESSIONS =
+            CacheBuilder
+                    .newBuilder()
+                    .expireAfterWrite(25, TimeUnit.MINUTES)
+                    .build();
+
+    /**
+     * The codes that are returned when the token is no longer valid (check
+     * token error, token over max times).
+     */
+    private static final Set<String> TOKEN_ERROR_CODES =
+            ImmutableSet.of(
+                    "135",
+                    "136");
+
     static {
         // Increase the default max key size
         Security.setProperty("crypto.policy", "unlimited");
@@ -187,28 +222,19 @@ public class WhatsminerApi {
      *
      * @return The decrypted message.
      *
-     * @throws NoSuchPaddingException    on cipher failure.
-     * @throws NoSuchAlgorithmException  on cipher failure.
      * @throws InvalidKeyException       on cipher failure.
      * @throws BadPaddingException       on cipher failure.
      * @throws IllegalBlockSizeException on cipher failure.
      */
     private static String decrypt(
-            final byte[] aesKey,
+            final SecretKeySpec aesKey,
             final String message)
             throws
-            NoSuchPaddingException,
-            NoSuchAlgorithmException,
             InvalidKeyException,
             BadPaddingException,
             IllegalBlockSizeException {
-        final SecretKeySpec spec =
-                new SecretKeySpec(
-                        aesKey,
-                        "AES");
-        final Cipher cipher =
-                Cipher.getInstance("AES/ECB/NoPadding");
-        cipher.init(Cipher.DECRYPT_MODE, spec);
+        final Cipher cipher = CIPHERS.get();
+        cipher.init(Cipher.DECRYPT_MODE, aesKey);
 
         final byte[] decoded =
                 Base64.getDecoder().decode(message.getBytes());
@@ -228,28 +254,19 @@ public class WhatsminerApi {
      *
      * @return The encrypted message.
      *
-     * @throws NoSuchPaddingException    on cipher failure.
-     * @throws NoSuchAlgorithmException  on cipher failure.
      * @throws InvalidKeyException       on cipher failure.
      * @throws BadPaddingException       on cipher failure.
      * @throws IllegalBlockSizeException on cipher failure.
      */
     private static String encrypt(
-            final byte[] aesKey,
+            final SecretKeySpec aesKey,
             final String message)
             throws
-            NoSuchPaddingException,
-            NoSuchAlgorithmException,
             InvalidKeyException,
             BadPaddingException,
             IllegalBlockSizeException {
-        final SecretKeySpec spec =
-                new SecretKeySpec(
-                        aesKey,
-                        "AES");
-        final Cipher cipher =
-                Cipher.getInstance("AES/ECB/NoPadding");
-        cipher.init(Cipher.ENCRYPT_MODE, spec);
+        final Cipher cipher = CIPHERS.get();
+        cipher.init(Cipher.ENCRYPT_MODE, aesKey);
 
         final String paddedCommand =
                 Strings.padEnd(
@@ -266,6 +283,34 @@ public class WhatsminerApi {
                 .replace("\n", "");
     }
 
+    /**
+     * Checks whether or not the miner answered an encrypted command with a
+     * plain text error, which happens when it won't run the command (ex: the
+     * token expired, or the write API is disabled).
+     *
+     * @param response The response.
+     *
+     * @return Whether or not the response is a plain text error.
+     */
+    private static boolean isPlainTextError(final String response) {
+        return toPlainTextError(response).isPresent();
+    }
+
+    /**
+     * Checks whether or not the miner rejected an encrypted command because
+     * the token is no longer valid.
+     *
+     * @param response The response.
+     *
+     * @return Whether or not the token was rejected.
+     */
+    private static boolean isRejected(final String response) {
+        return toPlainTextError(response)
+                .map(error -> String.valueOf(error.get("Code")))
+                .filter(TOKEN_ERROR_CODES::contains)
+                .isPresent();
+    }
+
     /**
      * MD5 crypts the provided word with the provided salt.
      *
@@ -293,6 +338,80 @@ public class WhatsminerApi {
         return resultArray[3];
     }
 
+    /**
+     * Performs the token handshake with the miner, caching the resulting
+     * session for later writes.
+     *
+     * @param ip                     The ip.
+     * @param port                   The port.
+     * @param password               The password.
+     * @param connectionTimeout      The connection timeout.
+     * @param connectionTimeoutUnits The connection timeout (units).
+     *
+     * @return The new session.
+     *
+     * @throws ApiException             on failure.
+     * @throws IOException              on failure to read json.
+     * @throws NoSuchAlgorithmException on failure to derive the key.
+     */
+    @SuppressWarnings("unchecked")
+    private static Session newSession(
+            final String ip,
+            final int port,
+            final String password,
+            final int connectionTimeout,
+            final TimeUnit connectionTimeoutUnits)
+            throws
+            ApiException,
+            IOException,
+            NoSuchAlgorithmException {
+        // Request token
+        final Map<String, Object> result =
+                readMap(
+                        query(
+                                ip,
+                                port,
+                                toString(
+                                        toCommand(
+                                                Command.GET_TOKEN,
+                                                Collections.emptyMap(),
+                                                null)),
+                                connectionTimeout,
+                                connectionTimeoutUnits)
+                                .orElseThrow(() -> new ApiException("Failed to obtain response")));
+        LOG.debug("Msg: {}", result.get("Msg"));
+        final Map<String, String> saltInfo =
+                (Map<String, String>) result.get("Msg");
+
+        // Generate md5 and sign
+        final String hostPasswordMd5 =
+                md5Crypt(
+                        password,
+                        saltInfo.get("salt"));
+        final String hostSign =
+                md5Crypt(
+                        hostPasswordMd5 + saltInfo.get("time"),
+                        saltInfo.get("newsalt"));
+
+        // Generate AES key
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        final byte[] aesKey = digest.digest(hostPasswordMd5.getBytes());
+
+        LOG.debug("Host sign: {}", hostSign);
+
+        final Session session =
+                new Session(
+                        password,
+                        hostSign,
+                        new SecretKeySpec(
+                                aesKey,
+                                "AES"));
+        SESSIONS.put(
+                toKey(ip, port),
+                session);
+        return session;
+    }
+
     /**
      * Processes the result.
      *
@@ -320,7 +439,7 @@ public class WhatsminerApi {
         if (status instanceof List) {
             status = ((List<Map<String, Object>>) status).get(0).get("STATUS");
         } else {
-            final String code = finalResult.get("Code").toString();
+            final String code = String.valueOf(finalResult.get("Code"));
             if ("45".equals(code)) {
                 throw new PermissionDeniedException("Write API must be enabled");
             }
@@ -404,7 +523,6 @@ public class WhatsminerApi {
      * @throws ApiException              on failure.
      * @throws PermissionDeniedException on failure.
      */
-    @SuppressWarnings("unchecked")
     private static boolean runWrite(
             final String ip,
             final int port,
@@ -416,66 +534,56 @@ public class WhatsminerApi {
             final ResponseCallback responseCallback)
             throws ApiException, PermissionDeniedException {
         try {
-            // Request token
-            final Map<String, Object> result =
-                    readMap(
-                            query(
+            final String key = toKey(ip, port);
+            final Session cached = SESSIONS.getIfPresent(key);
+
+            Session session =
+                    cached != null && cached.password.equals(password)
+                            ? cached
+                            : newSession(
                                     ip,
                                     port,
-                                    toString(
-                                            toCommand(
-                                                    Command.GET_TOKEN,
-                                                    Collections.emptyMap(),
-                                                    null)),
+                                    password,
                                     connectionTimeout,
-                                    connectionTimeoutUnits)
-                                    .orElseThrow(() -> new ApiException("Failed to obtain response")));
-            LOG.debug("Msg: {}", result.get("Msg"));
-            final Map<String, String> saltInfo =
-                    (Map<String, String>) result.get("Msg");
-
-            // Generate md5 and sign
-            final String hostPasswordMd5 =
-                    md5Crypt(
-                            password,
-                            saltInfo.get("salt"));
-            final String hostSign =
-                    md5Crypt(
-                            hostPasswordMd5 + saltInfo.get("time"),
-                            saltInfo.get("newsalt"));
-
-            // Generate AES key
-            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            final byte[] aesKey = digest.digest(hostPasswordMd5.getBytes());
-
-            LOG.debug("Host sign: {}", hostSign);
-
-            // Encrypt and encode
-            final String encrypted =
-                    encrypt(
-                            aesKey,
-                            toString(
-                                    toCommand(
-                                            command,
-                                            args,
-                                            hostSign)));
-
-            final Map<String, Object> toSend =
-                    ImmutableMap.of(
-                            "enc",
-                            1,
-                            "data",
-                            encrypted);
-
+                                    connectionTimeoutUnits);
             String response =
-                    query(
+                    send(
                             ip,
                             port,
-                            toString(toSend),
+                            session,
+                            command,
+                            args,
                             connectionTimeout,
-                            connectionTimeoutUnits)
-                            .orElseThrow(
-                                    () -> new ApiException("Failed to obtain response"));
+                            connectionTimeoutUnits);
+            if (session == cached && isRejected(response)) {
+                // The token expired early - perform the handshake again
+                LOG.debug("Session for {} was rejected: {}", key, response);
+                SESSIONS.invalidate(key);
+                session =
+                        newSession(
+                                ip,
+                                port,
+                                password,
+                                connectionTimeout,
+                                connectionTimeoutUnits);
+                response =
+                        send(
+                                ip,
+                                port,
+                                session,
+                                command,
+                                args,
+                                connectionTimeout,
+                                connectionTimeoutUnits);
+            }
+
+            if (isPlainTextError(response)) {
+                // Nothing to decrypt - the miner refused to run the command
+                LOG.info("Whatsminer response: {}", response);
+                return processResult(
+                        response,
+                        responseCallback);
+            }
 
             // Depending on the request type, could be structured differently
             final String toDecrypt;
@@ -487,7 +595,7 @@ public class WhatsminerApi {
 
             response =
                     decrypt(
-                            aesKey,
+                            session.aesKey,
                             toDecrypt);
 
             LOG.info("Whatsminer response: {}", response);
@@ -498,7 +606,6 @@ public class WhatsminerApi {
         } catch (final NoSuchAlgorithmException |
                        BadPaddingException |
                        InvalidKeyException |
-                       NoSuchPaddingException |
                        IOException |
                        IllegalArgumentException |
                        IllegalBlockSizeException e) {
@@ -506,6 +613,66 @@ public class WhatsminerApi {
         }
     }
 
+    /**
+     * Encrypts and sends a command using the provided session.
+     *
+     * @param ip                     The ip.
+     * @param port                   The port.
+     * @param session                The session.
+     * @param command                The command.
+     * @param args                   The args.
+     * @param connectionTimeout      The connection timeout.
+     * @param connectionTimeoutUnits The connection timeout (units).
+     *
+     * @return The raw response.
+     *
+     * @throws ApiException              on failure.
+     * @throws IOException               on failure to write json.
+     * @throws InvalidKeyException       on cipher failure.
+     * @throws BadPaddingException       on cipher failure.
+     * @throws IllegalBlockSizeException on cipher failure.
+     */
+    private static String send(
+            final String ip,
+            final int port,
+            final Session session,
+            final Command command,
+            final Map<String, Object> args,
+            final int connectionTimeout,
+            final TimeUnit connectionTimeoutUnits)
+            throws
+            ApiException,
+            IOException,
+            InvalidKeyException,
+            BadPaddingException,
+            IllegalBlockSizeException {
+        // Encrypt and encode
+        final String encrypted =
+                encrypt(
+                        session.aesKey,
+                        toString(
+                                toCommand(
+                                        command,
+                                        args,
+                                        session.hostSign)));
+
+        final Map<String, Object> toSend =
+                ImmutableMap.of(
+                        "enc",
+                        1,
+                        "data",
+                        encrypted);
+
+        return query(
+                ip,
+                port,
+                toString(toSend),
+                connectionTimeout,
+                connectionTimeoutUnits)
+                .orElseThrow(
+                        () -> new ApiException("Failed to obtain response"));
+    }
+
     /**
      * Generates a command from the provided command and arguments.
      *
@@ -528,6 +695,42 @@ public class WhatsminerApi {
         return commandToSend;
     }
 
+    /**
+     * Creates the session key for a miner.
+     *
+     * @param ip   The ip.
+     * @param port The port.
+     *
+     * @return The key.
+     */
+    private static String toKey(
+            final String ip,
+            final int port) {
+        return ip + ":" + port;
+    }
+
+    /**
+     * Reads the response as a plain text error, if it is one.
+     *
+     * @param response The response.
+     *
+     * @return The error, if the response wasn't encrypted.
+     */
+    private static Optional<Map<String, Object>> toPlainTextError(
+            final String response) {
+        if (response.contains("\"enc\"")) {
+            return Optional.empty();
+        }
+        try {
+            return Optional
+                    .of(readMap(response))
+                    .filter(error -> "E".equals(error.get("STATUS")));
+        } catch (final IOException e) {
+            // Not json, so it must be encrypted
+            return Optional.empty();
+        }
+    }
+
     /**
      * Writes the provided map to a json string.
      *
@@ -541,4 +744,33 @@ public class WhatsminerApi {
             throws JsonProcessingException {
         return OBJECT_MAPPER.writeValueAsString(map);
     }
+
+    /** A token and key that were negotiated with a miner for writes. */
+    private static class Session {
+
+        /** The AES key. */
+        private final SecretKeySpec aesKey;
+
+        /** The signed token. */
+        private final String hostSign;
+
+        /** The password that the session was negotiated with. */
+        private final String password;
+
+        /**
+         * Constructor.
+         *
+         * @param password The password that the session was negotiated with.
+         * @param hostSign The signed token.
+         * @param aesKey   The AES key.
+         */
+        Session(
+                final String password,
+                final String hostSign,
+                final SecretKeySpec aesKey) {
+            this.password = password;
+            this.hostSign = hostSign;
+            this.aesKey = aesKey;
+        }
+    }
 }